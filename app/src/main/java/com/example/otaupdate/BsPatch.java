@@ -0,0 +1,110 @@
+package com.example.otaupdate;
+
+import androidx.annotation.NonNull;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * bspatch 的 Java 实现
+ * 补丁为 ENDSLEY/BSDIFF43 格式（bsdiff 4.3 的单流格式）去掉 bzip2 外层后的原始数据，压缩由承载补丁的 zip 条目负责：
+ * 16 字节魔数、8 字节新文件长度，之后重复 [3 个 8 字节控制字][diff 数据][extra 数据]。
+ * 旧文件按需随机读取，不整体载入内存，可以处理 GB 级的镜像
+ */
+public final class BsPatch {
+    private static final byte[] MAGIC = "ENDSLEY/BSDIFF43".getBytes(StandardCharsets.US_ASCII);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private BsPatch() {
+    }
+
+    /**
+     * 把补丁应用到 oldFile，结果写入 out（调用方负责关闭）
+     *
+     * @return 新文件长度
+     */
+    public static long apply(@NonNull File oldFile, @NonNull InputStream patch, @NonNull OutputStream out)
+            throws IOException {
+        DataInputStream in = new DataInputStream(patch);
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) throw new IOException("Not a BSDIFF43 patch");
+        long newSize = readOffset(in);
+        if (newSize < 0) throw new IOException("Corrupt patch: negative size");
+
+        byte[] diff = new byte[BUFFER_SIZE];
+        byte[] old = new byte[BUFFER_SIZE];
+        try (RandomAccessFile oldRaf = new RandomAccessFile(oldFile, "r")) {
+            long oldSize = oldRaf.length();
+            long oldPos = 0;
+            long newPos = 0;
+            while (newPos < newSize) {
+                long diffLength = readOffset(in);
+                long extraLength = readOffset(in);
+                long seek = readOffset(in);
+                if (diffLength < 0 || extraLength < 0 || newPos + diffLength + extraLength > newSize) {
+                    throw new IOException("Corrupt patch: bad control block at " + newPos);
+                }
+                // diff 段：补丁字节与旧文件对应字节相加，旧文件范围外按 0 处理
+                long remaining = diffLength;
+                while (remaining > 0) {
+                    int n = (int) Math.min(remaining, BUFFER_SIZE);
+                    in.readFully(diff, 0, n);
+                    readOld(oldRaf, oldSize, oldPos, old, n);
+                    for (int i = 0; i < n; i++) {
+                        diff[i] += old[i];
+                    }
+                    out.write(diff, 0, n);
+                    oldPos += n;
+                    remaining -= n;
+                }
+                // extra 段：原样写出
+                remaining = extraLength;
+                while (remaining > 0) {
+                    int n = (int) Math.min(remaining, BUFFER_SIZE);
+                    in.readFully(diff, 0, n);
+                    out.write(diff, 0, n);
+                    remaining -= n;
+                }
+                newPos += diffLength + extraLength;
+                oldPos += seek;
+            }
+        }
+        return newSize;
+    }
+
+    private static void readOld(RandomAccessFile raf, long oldSize, long position, byte[] into, int length)
+            throws IOException {
+        Arrays.fill(into, 0, length, (byte) 0);
+        long begin = Math.max(position, 0);
+        long end = Math.min(position + length, oldSize);
+        if (begin >= end) return;
+        raf.seek(begin);
+        raf.readFully(into, (int) (begin - position), (int) (end - begin));
+    }
+
+    /**
+     * bsdiff 的 offtin 编码：小端序的绝对值，最高字节的最高位为符号位
+     */
+    private static long readOffset(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            int b = in.read();
+            if (b < 0) throw new EOFException("Truncated patch");
+            if (i == 7) {
+                value |= (long) (b & 0x7f) << 56;
+                if ((b & 0x80) != 0) value = -value;
+            } else {
+                value |= (long) b << (8 * i);
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.otaupdate;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 可复用的直接内存缓冲区环
+ * 缓冲区在创建时一次性分配，之后在网络读取与磁盘写入之间循环使用，避免每次下载重复分配
+ */
+public class BufferRing {
+    private final BlockingQueue<ByteBuffer> free;
+    private final int bufferSize;
+
+    public BufferRing(int bufferCount, int bufferSize) {
+        this.bufferSize = bufferSize;
+        this.free = new ArrayBlockingQueue<>(bufferCount);
+        for (int i = 0; i < bufferCount; i++) {
+            free.add(ByteBuffer.allocateDirect(bufferSize));
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * 取出一个已清空的缓冲区，超时返回 null，便于调用方检查取消状态
+     */
+    @Nullable
+    public ByteBuffer acquire(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        ByteBuffer buffer = free.poll(timeout, unit);
+        if (buffer != null) buffer.clear();
+        return buffer;
+    }
+
+    public void release(@NonNull ByteBuffer buffer) {
+        free.offer(buffer);
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.otaupdate;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONException;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.ZipException;
+
+/**
+ * 系统应用包按文件同步
+ * 按 {@link FileManifest} 与 /mnt/sdcard 中已有的文件比较大小和 SHA-256，只拉取有变化的文件：
+ * 单独发布的对象直接下载，其余通过 {@link RemoteZipReader} 按区间读取应用包中的条目。
+ * 拉取的文件按相对路径写入暂存目录并逐个校验，安装时只移动这些文件，未变化的文件不会被重新写入。
+ * 暂存目录中已校验的文件在暂停或失败后保留，再次同步时不会重复拉取
+ */
+public class BundleSync {
+    private static final String TAG = "BundleSync";
+    private static final String PART_SUFFIX = ".part";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // 进度回调的最小间隔字节数
+    private static final long PROGRESS_STEP = 256L * 1024;
+
+    /**
+     * 按对象键读取单独发布的对象，对象不存在时抛出 FileNotFoundException
+     */
+    public interface ObjectOpener {
+        @NonNull
+        InputStream open(@NonNull String key) throws IOException;
+    }
+
+    private final ExecutorService executor;
+
+    public BundleSync(@NonNull ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * 开始同步，完成时 {@link SegmentedDownloader.Listener#onComplete} 收到暂存目录，由调用方 {@link #install} 。
+     * 应用包没有发布文件清单时以 FileNotFoundException 失败，调用方应回退到下载完整包
+     */
+    @NonNull
+    public SegmentedDownloader.Task start(@NonNull SegmentedDownloader.RangeSource bundle,
+                                          @NonNull ObjectOpener opener, @NonNull File targetDir,
+                                          @NonNull File stagingDir, @NonNull SegmentedDownloader.Listener listener,
+                                          @Nullable ProgressTracker tracker) {
+        SegmentedDownloader.Task task = new SegmentedDownloader.Task();
+        executor.submit(() -> {
+            try {
+                FileManifest manifest = readManifest(task, opener, FileManifest.keyFor(bundle.getKey()));
+                List<FileManifest.Entry> changed = diff(manifest, targetDir, stagingDir);
+                long total = 0;
+                for (FileManifest.Entry entry : changed) {
+                    total += entry.size;
+                }
+                listener.onProgress(0, total);
+                if (tracker != null) tracker.startPhase(ProgressTracker.Phase.DOWNLOAD, total);
+                RemoteZipReader zip = new RemoteZipReader(bundle);
+                final long totalBytes = total;
+                // [0] 已拉取的字节，[1] 上次上报时的字节数
+                final long[] fetched = {0, 0};
+                CountingInputStream.Observer observer = n -> {
+                    fetched[0] += n;
+                    if (tracker != null) tracker.setDownloaded(fetched[0], totalBytes);
+                    if (fetched[0] - fetched[1] >= PROGRESS_STEP) {
+                        fetched[1] = fetched[0];
+                        listener.onProgress(fetched[0], totalBytes);
+                    }
+                };
+                for (FileManifest.Entry entry : changed) {
+                    if (task.isCancelled()) throw new IOException("Download cancelled");
+                    fetch(task, entry, opener, zip, stagingDir, observer);
+                }
+                listener.onProgress(total, total);
+                SegmentedDownloader.finish(task, listener, stagingDir, null);
+            } catch (FileNotFoundException e) {
+                Log.d(TAG, "Not found while syncing " + bundle.getKey() + ": " + e.getMessage());
+                SegmentedDownloader.finish(task, listener, stagingDir, e);
+            } catch (Exception e) {
+                Log.e(TAG, "Bundle sync failed: " + bundle.getKey(), e);
+                SegmentedDownloader.finish(task, listener, stagingDir,
+                        task.isCancelled() ? new IOException("Download cancelled", e) : e);
+            }
+        });
+        return task;
+    }
+
+    private static FileManifest readManifest(SegmentedDownloader.Task task, ObjectOpener opener, String key)
+            throws IOException {
+        InputStream in = opener.open(key);
+        task.track(in);
+        try {
+            return FileManifest.parse(UpdateCatalog.readFully(in));
+        } catch (JSONException e) {
+            throw new IOException("Invalid file manifest: " + key, e);
+        } finally {
+            task.untrack(in);
+            FileUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * 需要拉取的文件：目标目录中不存在或内容不同，且暂存目录中没有已校验的副本
+     */
+    @NonNull
+    static List<FileManifest.Entry> diff(@NonNull FileManifest manifest, @NonNull File targetDir,
+                                         @NonNull File stagingDir) throws IOException {
+        long start = System.nanoTime();
+        List<FileManifest.Entry> changed = new ArrayList<>();
+        int unchanged = 0;
+        int staged = 0;
+        long hashedBytes = 0;
+        for (FileManifest.Entry entry : manifest.getEntries()) {
+            File stagedFile = new File(stagingDir, entry.path);
+            if (stagedFile.isFile() && stagedFile.length() == entry.size) {
+                hashedBytes += entry.size;
+                if (entry.sha256.equals(sha256Of(stagedFile))) {
+                    staged++;
+                    continue;
+                }
+                stagedFile.delete();
+            }
+            File target = new File(targetDir, entry.path);
+            // 大小不同时无需计算摘要即可判定有变化
+            if (target.isFile() && target.length() == entry.size) {
+                hashedBytes += entry.size;
+                if (entry.sha256.equals(sha256Of(target))) {
+                    unchanged++;
+                    continue;
+                }
+            }
+            changed.add(entry);
+        }
+        Log.i(TAG, "Compared " + manifest.getEntries().size() + " files in " + (System.nanoTime() - start) / 1000000
+                + "ms (" + hashedBytes + " bytes hashed): " + unchanged + " unchanged, " + staged + " already staged, "
+                + changed.size() + " to fetch");
+        return changed;
+    }
+
+    private static void fetch(SegmentedDownloader.Task task, FileManifest.Entry entry, ObjectOpener opener,
+                              RemoteZipReader zip, File stagingDir, CountingInputStream.Observer observer)
+            throws IOException {
+        File target = new File(stagingDir, entry.path);
+        File parent = target.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Failed to create " + parent);
+        }
+        InputStream in;
+        if (entry.key != null) {
+            in = opener.open(entry.key);
+        } else {
+            RemoteZipReader.Entry zipEntry = zip.find(entry.zipEntry);
+            if (zipEntry == null) throw new ZipException("Entry not found in bundle: " + entry.zipEntry);
+            in = zip.open(zipEntry);
+        }
+        task.track(in);
+        File part = new File(target.getPath() + PART_SUFFIX);
+        MessageDigest digest = Digests.newSha256();
+        long length = 0;
+        FileOutputStream fileOut = null;
+        try {
+            fileOut = new FileOutputStream(part);
+            DigestOutputStream out = new DigestOutputStream(new BufferedOutputStream(fileOut, BUFFER_SIZE), digest);
+            InputStream counted = new CountingInputStream(in, observer);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = counted.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+                length += n;
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        } catch (IOException e) {
+            FileUtils.closeQuietly(fileOut);
+            part.delete();
+            throw e;
+        } finally {
+            task.untrack(in);
+            FileUtils.closeQuietly(in);
+        }
+        fileOut.close();
+
+        String actual = Digests.toHex(digest.digest());
+        if (length != entry.size || !actual.equals(entry.sha256)) {
+            part.delete();
+            throw new IOException("Fetched " + entry.path + " does not match manifest: " + length + " bytes, sha256="
+                    + actual);
+        }
+        if (!part.renameTo(target)) {
+            part.delete();
+            throw new IOException("Failed to rename " + part + " -> " + target);
+        }
+        Log.d(TAG, "Fetched " + entry + (entry.key != null ? " from " + entry.key : " from bundle"));
+    }
+
+    /**
+     * 把暂存目录中的文件按相对路径通过 {@link StagedInstaller} 安装到 targetDir，只替换这些文件，返回安装的文件数。
+     * 全部文件落盘后才开始替换，中断时下次启动继续完成或回滚
+     */
+    public static int install(@NonNull File stagingDir, @NonNull File targetDir, @Nullable ProgressTracker tracker)
+            throws IOException {
+        List<String> paths = new ArrayList<>();
+        collectFiles(stagingDir, "", paths);
+        if (paths.isEmpty()) {
+            if (stagingDir.exists()) FileUtils.deleteRecursive(stagingDir);
+            return 0;
+        }
+        List<StagedInstaller.Item> items = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            items.add(new StagedInstaller.Item(new File(stagingDir, path), path));
+        }
+        StagedInstaller installer = new StagedInstaller(targetDir);
+        installer.install(items, stagingDir, tracker);
+        Log.i(TAG, "Installed " + paths.size() + " changed files to " + targetDir + ": " + installer.getStats());
+        return paths.size();
+    }
+
+    private static void collectFiles(File dir, String prefix, List<String> out) {
+        File[] children = dir.listFiles();
+        if (children == null) return;
+        for (File child : children) {
+            String path = prefix + child.getName();
+            if (child.isDirectory()) {
+                collectFiles(child, path + "/", out);
+            } else if (!child.getName().endsWith(PART_SUFFIX)) {
+                out.add(path);
+            }
+        }
+    }
+
+    @NonNull
+    private static String sha256Of(File file) throws IOException {
+        MessageDigest digest = Digests.newSha256();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = new FileInputStream(file)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return Digests.toHex(digest.digest());
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.otaupdate;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.security.MessageDigest;
+import java.util.Locale;
+
+/**
+ * 分块清单
+ * 与升级包一起发布（对象键为升级包键 + {@link #SUFFIX}），把包按固定大小切块并列出每块的 SHA-256，
+ * 下载时逐块校验，出错时只需重新拉取损坏的块。格式：
+ * <pre>
+ * {
+ *   "schema": 1,
+ *   "length": 2147483648,
+ *   "chunkSize": 8388608,
+ *   "sha256": ["9f86d0...", "60303a...", ...]
+ * }
+ * </pre>
+ */
+public class ChunkManifest {
+    public static final String SUFFIX = ".chunks.json";
+    private static final int SCHEMA = 1;
+
+    private final long length;
+    private final long chunkSize;
+    private final byte[][] hashes;
+
+    private ChunkManifest(long length, long chunkSize, byte[][] hashes) {
+        this.length = length;
+        this.chunkSize = chunkSize;
+        this.hashes = hashes;
+    }
+
+    @NonNull
+    public static String keyFor(@NonNull String objectKey) {
+        return objectKey + SUFFIX;
+    }
+
+    /**
+     * 解析清单，schema 不支持、块数与长度不符或格式错误时抛出 JSONException
+     */
+    @NonNull
+    public static ChunkManifest parse(@NonNull String json) throws JSONException {
+        JSONObject root = new JSONObject(json);
+        int schema = root.optInt("schema", 0);
+        if (schema != SCHEMA) {
+            throw new JSONException("Unsupported chunk manifest schema: " + schema);
+        }
+        long length = root.getLong("length");
+        long chunkSize = root.getLong("chunkSize");
+        JSONArray list = root.getJSONArray("sha256");
+        if (length < 0 || chunkSize <= 0 || list.length() != (length + chunkSize - 1) / chunkSize) {
+            throw new JSONException("Chunk manifest does not cover " + length + " bytes");
+        }
+        byte[][] hashes = new byte[list.length()][];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = parseHex(list.getString(i));
+        }
+        return new ChunkManifest(length, chunkSize, hashes);
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public long getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getChunkCount() {
+        return hashes.length;
+    }
+
+    public long chunkBegin(int index) {
+        return index * chunkSize;
+    }
+
+    /**
+     * 块的结束位置（不含）
+     */
+    public long chunkEnd(int index) {
+        return Math.min(length, (index + 1) * chunkSize);
+    }
+
+    public int chunkAt(long position) {
+        return (int) (position / chunkSize);
+    }
+
+    public boolean matches(int index, @NonNull byte[] sha256) {
+        return MessageDigest.isEqual(hashes[index], sha256);
+    }
+
+    private static byte[] parseHex(String hex) throws JSONException {
+        String value = hex.trim().toLowerCase(Locale.ROOT);
+        if (value.length() != 64) throw new JSONException("Invalid SHA-256: " + hex);
+        byte[] bytes = new byte[32];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(value.charAt(i * 2), 16);
+            int low = Character.digit(value.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) throw new JSONException("Invalid SHA-256: " + hex);
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.otaupdate;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按 {@link ChunkManifest} 逐块校验下载的数据
+ * 每块从块首开始按顺序写入时在写线程中直接计算，写满即比对；
+ * 从块中间开始写入的块（断点续传、分段边界落在块内）记为未校验，在 {@link #collectBad()} 时从文件读回校验。
+ * 仅由下载器的写线程访问
+ */
+class ChunkVerifier {
+    private static final String TAG = "ChunkVerifier";
+    private static final byte UNVERIFIED = 0;
+    private static final byte VERIFIED = 1;
+    private static final byte BAD = 2;
+    private static final int READ_BUFFER_SIZE = 256 * 1024;
+
+    private static final class Progress {
+        final MessageDigest digest;
+        long next;
+
+        Progress(MessageDigest digest, long next) {
+            this.digest = digest;
+            this.next = next;
+        }
+    }
+
+    private final ChunkManifest manifest;
+    private final FileChannel channel;
+    private final byte[] status;
+    // 正在按顺序写入的块
+    private final Map<Integer, Progress> inProgress = new HashMap<>();
+    private ByteBuffer readBuffer;
+
+    ChunkVerifier(@NonNull ChunkManifest manifest, @NonNull FileChannel channel) {
+        this.manifest = manifest;
+        this.channel = channel;
+        this.status = new byte[manifest.getChunkCount()];
+    }
+
+    @NonNull
+    ChunkManifest getManifest() {
+        return manifest;
+    }
+
+    void onWritten(long position, @NonNull ByteBuffer data) {
+        ByteBuffer view = data.duplicate();
+        while (view.hasRemaining()) {
+            int index = manifest.chunkAt(position);
+            long chunkEnd = manifest.chunkEnd(index);
+            int n = (int) Math.min(view.remaining(), chunkEnd - position);
+            ByteBuffer part = view.slice();
+            part.limit(n);
+            feed(index, position, part, chunkEnd);
+            view.position(view.position() + n);
+            position += n;
+        }
+    }
+
+    private void feed(int index, long position, ByteBuffer part, long chunkEnd) {
+        Progress progress = inProgress.get(index);
+        if (progress == null) {
+            if (position != manifest.chunkBegin(index)) {
+                status[index] = UNVERIFIED;
+                return;
+            }
+            progress = new Progress(Digests.newSha256(), position);
+            inProgress.put(index, progress);
+        } else if (progress.next != position) {
+            inProgress.remove(index);
+            status[index] = UNVERIFIED;
+            return;
+        }
+        progress.next += part.remaining();
+        progress.digest.update(part);
+        if (progress.next == chunkEnd) {
+            inProgress.remove(index);
+            mark(index, progress.digest.digest());
+        }
+    }
+
+    /**
+     * 读回所有未在写入时完成校验的块，返回校验失败的块序号
+     */
+    @NonNull
+    List<Integer> collectBad() throws IOException {
+        inProgress.clear();
+        List<Integer> bad = new ArrayList<>();
+        int readBack = 0;
+        for (int i = 0; i < status.length; i++) {
+            if (status[i] == UNVERIFIED) {
+                verifyFromFile(i);
+                readBack++;
+            }
+            if (status[i] == BAD) bad.add(i);
+        }
+        if (readBack > 0) Log.d(TAG, "Verified " + readBack + " chunks from disk");
+        return bad;
+    }
+
+    /**
+     * 从文件读回并校验一块，用于重新拉取之后
+     */
+    boolean verifyFromFile(int index) throws IOException {
+        if (readBuffer == null) readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        MessageDigest digest = Digests.newSha256();
+        long position = manifest.chunkBegin(index);
+        long end = manifest.chunkEnd(index);
+        while (position < end) {
+            readBuffer.clear();
+            readBuffer.limit((int) Math.min(readBuffer.capacity(), end - position));
+            int n = channel.read(readBuffer, position);
+            if (n < 0) throw new IOException("Unexpected end of file at " + position);
+            readBuffer.flip();
+            digest.update(readBuffer);
+            position += n;
+        }
+        return mark(index, digest.digest());
+    }
+
+    private boolean mark(int index, byte[] sha256) {
+        boolean ok = manifest.matches(index, sha256);
+        status[index] = ok ? VERIFIED : BAD;
+        if (!ok) {
+            Log.w(TAG, "Chunk " + index + " [" + manifest.chunkBegin(index) + ", " + manifest.chunkEnd(index)
+                    + ") failed verification");
+        }
+        return ok;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.otaupdate;
+
+import androidx.annotation.NonNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 统计实际读取字节数的输入流，每次读取后通知观察者本次读取的字节数
+ */
+public class CountingInputStream extends FilterInputStream {
+
+    public interface Observer {
+        void onBytesRead(long count);
+    }
+
+    private final Observer observer;
+    private long count;
+
+    public CountingInputStream(@NonNull InputStream in, @NonNull Observer observer) {
+        super(in);
+        this.observer = observer;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) advance(1);
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) advance(n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        if (skipped > 0) advance(skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void advance(long n) {
+        count += n;
+        observer.onBytesRead(n);
+    }
+}
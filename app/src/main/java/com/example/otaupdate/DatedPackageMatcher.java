@@ -0,0 +1,78 @@
+package com.example.otaupdate;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.alibaba.sdk.android.oss.model.OSSObjectSummary;
+
+import java.util.Locale;
+
+/**
+ * 在列举结果中查找指定 CPU 型号和分辨率的最新升级包
+ * 文件名格式为 CPU_分辨率_yyyyMMdd.zip（系统包）或 ALLApp_CPU_分辨率_yyyyMMdd.zip（系统应用包），
+ * CPU 与分辨率不区分大小写，日期取最后一段。
+ * OSS 按字节序返回键，同一 CPU_分辨率 的文件按大小写写法分成若干段排列，其中全小写的写法排在最后，
+ * 因此找到匹配后，一旦越过全小写写法的区间即可停止列举，不会漏掉大小写不同的同名文件
+ */
+class DatedPackageMatcher implements ObjectLister.Visitor {
+    private static final String TAG = "DatedPackageMatcher";
+
+    private final int cpuIndex;
+    private final String target;
+    private final boolean acceptLegacy;
+    private UpdateInfo latest;
+    private long latestDate;
+    // 已匹配文件所在区间各种大小写写法中字节序最大的键前缀（目录保留原样，文件名部分转为小写）
+    private String matchedGroup;
+
+    /**
+     * @param cpuIndex     CPU 型号在文件名分段中的位置
+     * @param acceptLegacy 是否兼容只有日期的旧文件名；旧文件名不按 CPU 排列，开启后不会提前结束
+     */
+    DatedPackageMatcher(int cpuIndex, @Nullable String cpuModel, @Nullable String resolution, boolean acceptLegacy) {
+        this.cpuIndex = cpuIndex;
+        this.target = cpuModel + "_" + resolution;
+        this.acceptLegacy = acceptLegacy;
+    }
+
+    @Override
+    public boolean visit(@NonNull OSSObjectSummary summary) {
+        String key = summary.getKey();
+        if (!acceptLegacy && matchedGroup != null && !key.startsWith(matchedGroup) && key.compareTo(matchedGroup) > 0) {
+            return false;
+        }
+        if (key.endsWith("/") || summary.getSize() <= 0) return true;
+        String fileName = key.substring(key.lastIndexOf('/') + 1);
+        if (!fileName.endsWith(".zip")) return true;
+        String[] parts = fileName.substring(0, fileName.length() - ".zip".length()).split("_");
+        if (parts.length >= cpuIndex + 3) {
+            String cpuAndRes = parts[cpuIndex] + "_" + parts[cpuIndex + 1];
+            if (!cpuAndRes.equalsIgnoreCase(target)) return true;
+            if (offer(parts[parts.length - 1], key)) {
+                matchedGroup = key.substring(0, key.lastIndexOf('/') + 1)
+                        + fileName.substring(0, fileName.indexOf(cpuAndRes) + cpuAndRes.length() + 1).toLowerCase(Locale.ROOT);
+            }
+        } else if (acceptLegacy && parts.length > 1) {
+            offer(parts[parts.length - 1], key);
+        }
+        return true;
+    }
+
+    private boolean offer(String dateStr, String key) {
+        if (!dateStr.matches("\\d{8}")) return false;
+        long date = Long.parseLong(dateStr);
+        if (latest == null || date > latestDate) {
+            latestDate = date;
+            latest = new UpdateInfo(dateStr, key);
+            Log.d(TAG, "找到更新版本: " + dateStr + ", 文件: " + key);
+        }
+        return true;
+    }
+
+    @Nullable
+    UpdateInfo getLatest() {
+        return latest;
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.otaupdate;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * 系统包增量更新
+ * 补丁包是一个 zip，根目录的 {@link #MANIFEST_ENTRY} 列出需要更新的文件，其余条目为补丁数据：
+ * <pre>
+ * {
+ *   "schema": 1,
+ *   "from": "20250206",
+ *   "to": "20250306",
+ *   "files": [
+ *     { "name": "system.img", "sourceSize": 1073741824, "sha256": "9f86d0...", "diff": "system.img.bsdiff" },
+ *     { "name": "vendor.cfg", "sha256": "60303a...", "data": "vendor.cfg" }
+ *   ]
+ * }
+ * </pre>
+ * "name" 是相对已安装目录的路径，以 '/' 分隔，可以位于子目录中（如 "oem/vaudioshow/config.xml"），
+ * 不能是绝对路径或包含 "." 和 ".." 段。
+ * "diff" 为 {@link BsPatch} 格式，以已安装的同名文件为基准；"data" 为完整的新文件。
+ * 未列出的文件与旧版本相同，保持不动。补丁链的中间结果写在工作目录中，后一个补丁优先以工作目录中的文件为基准，
+ * 工作目录中的 {@link #VERSION_MARKER} 记录已经到达的版本，中断后从该版本继续
+ */
+public final class DeltaUpdate {
+    private static final String TAG = "DeltaUpdate";
+    public static final String MANIFEST_ENTRY = "patch.json";
+    public static final String VERSION_MARKER = ".delta_version";
+    private static final int SCHEMA = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private DeltaUpdate() {
+    }
+
+    /**
+     * 在目录发布的补丁中选出从 from 到 to 总大小最小的补丁链，没有可用链时返回 null
+     */
+    @Nullable
+    public static List<UpdateCatalog.Patch> planChain(@NonNull List<UpdateCatalog.Patch> patches,
+                                                      @NonNull String from, @NonNull String to) {
+        if (from.equals(to)) return null;
+        Map<String, List<UpdateCatalog.Patch>> edges = new HashMap<>();
+        for (UpdateCatalog.Patch patch : patches) {
+            List<UpdateCatalog.Patch> list = edges.get(patch.from);
+            if (list == null) {
+                list = new ArrayList<>();
+                edges.put(patch.from, list);
+            }
+            list.add(patch);
+        }
+        // 以补丁大小为边权的最短路径
+        Map<String, Long> cost = new HashMap<>();
+        Map<String, UpdateCatalog.Patch> via = new HashMap<>();
+        PriorityQueue<Object[]> queue = new PriorityQueue<>((a, b) -> Long.compare((Long) a[1], (Long) b[1]));
+        cost.put(from, 0L);
+        queue.add(new Object[]{from, 0L});
+        while (!queue.isEmpty()) {
+            Object[] head = queue.poll();
+            String version = (String) head[0];
+            long distance = (Long) head[1];
+            if (distance > cost.get(version)) continue;
+            if (version.equals(to)) break;
+            List<UpdateCatalog.Patch> out = edges.get(version);
+            if (out == null) continue;
+            for (UpdateCatalog.Patch patch : out) {
+                long next = distance + Math.max(patch.size, 0);
+                Long known = cost.get(patch.to);
+                if (known == null || next < known) {
+                    cost.put(patch.to, next);
+                    via.put(patch.to, patch);
+                    queue.add(new Object[]{patch.to, next});
+                }
+            }
+        }
+        if (!via.containsKey(to)) return null;
+        List<UpdateCatalog.Patch> chain = new ArrayList<>();
+        for (String version = to; !version.equals(from); version = via.get(version).from) {
+            chain.add(via.get(version));
+        }
+        Collections.reverse(chain);
+        return chain;
+    }
+
+    public static long totalSize(@NonNull List<UpdateCatalog.Patch> chain) {
+        long total = 0;
+        for (UpdateCatalog.Patch patch : chain) {
+            total += patch.size;
+        }
+        return total;
+    }
+
+    /**
+     * 工作目录中已经到达的版本，没有记录时返回 null
+     */
+    @Nullable
+    public static String readReachedVersion(@NonNull File workDir) {
+        File marker = new File(workDir, VERSION_MARKER);
+        if (!marker.isFile()) return null;
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(marker);
+            String version = UpdateCatalog.readFully(in).trim();
+            return version.isEmpty() ? null : version;
+        } catch (IOException e) {
+            Log.w(TAG, "Unreadable delta marker: " + marker, e);
+            return null;
+        } finally {
+            FileUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * 补丁链全部完成、安装之前删除版本记录，避免被一同安装
+     */
+    public static void clearReachedVersion(@NonNull File workDir) {
+        File marker = new File(workDir, VERSION_MARKER);
+        if (marker.exists() && !marker.delete()) {
+            Log.w(TAG, "Failed to delete delta marker: " + marker);
+        }
+    }
+
+    /**
+     * 应用一个补丁包，更新后的文件写入 workDir。每个文件先写临时文件并校验 SHA-256，落盘后再重命名，
+     * 任一文件失败时抛出 IOException，已完成的文件和版本记录保持之前的状态
+     *
+     * @param baseDir 已安装的文件所在目录
+     */
+    public static void apply(@NonNull File patchZip, @NonNull UpdateCatalog.Patch patch, @NonNull File baseDir,
+                             @NonNull File workDir) throws IOException {
+        if (!workDir.isDirectory() && !workDir.mkdirs()) {
+            throw new IOException("Failed to create " + workDir);
+        }
+        long start = System.nanoTime();
+        long written = 0;
+        try (ZipFile zip = new ZipFile(patchZip)) {
+            JSONArray files = readManifest(zip, patch);
+            for (int i = 0; i < files.length(); i++) {
+                written += applyFile(zip, files.getJSONObject(i), baseDir, workDir);
+            }
+            writeReachedVersion(workDir, patch.to);
+            Log.i(TAG, "Applied " + patch + ": " + files.length() + " files, " + written + " bytes in "
+                    + (System.nanoTime() - start) / 1000000 + "ms");
+        } catch (JSONException e) {
+            throw new IOException("Invalid patch manifest in " + patchZip.getName(), e);
+        }
+    }
+
+    private static JSONArray readManifest(ZipFile zip, UpdateCatalog.Patch patch) throws IOException, JSONException {
+        ZipEntry entry = zip.getEntry(MANIFEST_ENTRY);
+        if (entry == null) throw new IOException("Missing " + MANIFEST_ENTRY);
+        JSONObject manifest;
+        try (InputStream in = zip.getInputStream(entry)) {
+            manifest = new JSONObject(UpdateCatalog.readFully(in));
+        }
+        int schema = manifest.optInt("schema", 0);
+        if (schema != SCHEMA) throw new IOException("Unsupported patch schema: " + schema);
+        if (!patch.from.equals(manifest.getString("from")) || !patch.to.equals(manifest.getString("to"))) {
+            throw new IOException("Patch manifest " + manifest.getString("from") + "->" + manifest.getString("to")
+                    + " does not match catalog " + patch);
+        }
+        return manifest.getJSONArray("files");
+    }
+
+    private static long applyFile(ZipFile zip, JSONObject file, File baseDir, File workDir)
+            throws IOException, JSONException {
+        String name = checkRelativePath(file.getString("name"));
+        String expected = file.getString("sha256");
+        String diffEntry = file.optString("diff", null);
+        String dataEntry = file.optString("data", null);
+        ZipEntry entry = zip.getEntry(diffEntry != null ? diffEntry : dataEntry != null ? dataEntry : "");
+        if (entry == null) throw new IOException("Missing patch data for " + name);
+
+        File target = new File(workDir, name);
+        File parent = target.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Failed to create " + parent);
+        }
+        File tmp = new File(parent, target.getName() + ".tmp");
+        MessageDigest digest = Digests.newSha256();
+        FileOutputStream fileOut = new FileOutputStream(tmp);
+        long length;
+        try (InputStream in = zip.getInputStream(entry)) {
+            DigestOutputStream out = new DigestOutputStream(new BufferedOutputStream(fileOut, BUFFER_SIZE), digest);
+            if (diffEntry != null) {
+                // 补丁链的前一步已经更新过的文件优先作为基准
+                File base = target.isFile() ? target : new File(baseDir, name);
+                long sourceSize = file.optLong("sourceSize", -1);
+                if (!base.isFile() || (sourceSize >= 0 && base.length() != sourceSize)) {
+                    throw new IOException("Patch base mismatch for " + name + ": " + base + " ("
+                            + (base.isFile() ? base.length() : -1) + " bytes, expected " + sourceSize + ")");
+                }
+                length = BsPatch.apply(base, in, out);
+            } else {
+                length = copy(in, out);
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        } catch (IOException e) {
+            FileUtils.closeQuietly(fileOut);
+            tmp.delete();
+            throw e;
+        }
+        fileOut.close();
+
+        String actual = Digests.toHex(digest.digest());
+        if (!actual.equalsIgnoreCase(expected)) {
+            tmp.delete();
+            throw new IOException("Patched " + name + " SHA-256 mismatch: expected " + expected + ", actual " + actual);
+        }
+        if (!tmp.renameTo(target)) {
+            tmp.delete();
+            throw new IOException("Failed to rename " + tmp + " -> " + target);
+        }
+        return length;
+    }
+
+    /**
+     * 校验补丁中的相对路径：拒绝绝对路径、反斜杠、空段、"." 和 ".." 段，
+     * 以及以 "." 开头的顶层名称（工作目录中的版本记录与临时文件）
+     */
+    @NonNull
+    static String checkRelativePath(@NonNull String name) throws IOException {
+        if (name.isEmpty() || name.startsWith("/") || name.startsWith(".") || name.contains("\\")) {
+            throw new IOException("Invalid file name in patch: " + name);
+        }
+        for (String segment : name.split("/", -1)) {
+            if (segment.isEmpty() || segment.equals(".") || segment.equals("..")) {
+                throw new IOException("Invalid file name in patch: " + name);
+            }
+        }
+        return name;
+    }
+
+    private static long copy(InputStream in, DigestOutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long total = 0;
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+            total += n;
+        }
+        return total;
+    }
+
+    private static void writeReachedVersion(File workDir, String version) throws IOException {
+        File marker = new File(workDir, VERSION_MARKER);
+        File tmp = new File(workDir, VERSION_MARKER + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            out.write(version.getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(marker)) {
+            throw new IOException("Failed to rename " + tmp + " -> " + marker);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.otaupdate;
+
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * 设备指纹
+ * CPU 型号、MCU 型号、分辨率、系统/应用编译日期等信息只探测一次，之后的调用直接读取内存中的结果；
+ * 探测结果同时保存到应用私有目录，以 ro.build.fingerprint、开机 ID 和应用编译时间作为有效性校验，
+ * 系统升级、重启或应用更新后重新探测。冷启动时缓存有效则不需要读取 sysfs 或创建任何进程
+ */
+public final class DeviceFingerprint {
+    private static final String TAG = "DeviceFingerprint";
+    private static final String CACHE_FILE = "device_fingerprint.properties";
+    private static final String BOOT_ID_PATH = "/proc/sys/kernel/random/boot_id";
+    private static final int VERSION = 1;
+
+    @NonNull
+    public final String cpuModel;
+    @NonNull
+    public final String mcuModel;
+    @Nullable
+    public final String resolution;
+    @NonNull
+    public final String systemBuildDate;
+    @NonNull
+    public final String appBuildTime;
+    @NonNull
+    public final String standardSystemVersion;
+    @NonNull
+    public final String standardAppVersion;
+    private final String validityKey;
+
+    private static volatile DeviceFingerprint current;
+    private static Context appContext;
+
+    private DeviceFingerprint(@NonNull String cpuModel, @NonNull String mcuModel, @Nullable String resolution,
+                              @NonNull String systemBuildDate, @NonNull String appBuildTime,
+                              @NonNull String validityKey) {
+        this.cpuModel = cpuModel;
+        this.mcuModel = mcuModel;
+        this.resolution = resolution;
+        this.systemBuildDate = systemBuildDate;
+        this.appBuildTime = appBuildTime;
+        this.standardSystemVersion = DeviceInfoUtils.formatDateToStandardVersion(systemBuildDate);
+        this.standardAppVersion = DeviceInfoUtils.formatDateToStandardVersion(appBuildTime);
+        this.validityKey = validityKey;
+    }
+
+    /**
+     * 获取设备指纹，首次调用时读取缓存或探测；已有结果时只是一次 volatile 读
+     */
+    @NonNull
+    public static DeviceFingerprint get() {
+        DeviceFingerprint fingerprint = current;
+        if (fingerprint != null) return fingerprint;
+        return load(null);
+    }
+
+    /**
+     * 同 {@link #get()}，并记录应用上下文用于持久化和获取分辨率
+     */
+    @NonNull
+    public static DeviceFingerprint get(@NonNull Context context) {
+        DeviceFingerprint fingerprint = current;
+        if (fingerprint != null && fingerprint.resolution != null) return fingerprint;
+        return load(context.getApplicationContext());
+    }
+
+    private static synchronized DeviceFingerprint load(@Nullable Context context) {
+        if (context != null && appContext == null) appContext = context;
+        DeviceFingerprint fingerprint = current;
+        if (fingerprint == null) {
+            long start = System.nanoTime();
+            String validityKey = currentValidityKey();
+            fingerprint = readCache(validityKey);
+            if (fingerprint == null) {
+                fingerprint = probe(validityKey);
+                writeCache(fingerprint);
+                Log.i(TAG, "Probed device fingerprint in " + (System.nanoTime() - start) / 1000000 + "ms: " + fingerprint);
+            } else {
+                Log.d(TAG, "Loaded cached device fingerprint in " + (System.nanoTime() - start) / 1000 + "us: " + fingerprint);
+            }
+        }
+        if (fingerprint.resolution == null && appContext != null) {
+            // 首次探测时还没有上下文，补充分辨率
+            fingerprint = new DeviceFingerprint(fingerprint.cpuModel, fingerprint.mcuModel,
+                    DeviceInfoUtils.probeResolution(appContext), fingerprint.systemBuildDate,
+                    fingerprint.appBuildTime, fingerprint.validityKey);
+            writeCache(fingerprint);
+        }
+        current = fingerprint;
+        return fingerprint;
+    }
+
+    private static DeviceFingerprint probe(String validityKey) {
+        String cpuModel = DeviceInfoUtils.probeCpuModel();
+        return new DeviceFingerprint(cpuModel, DeviceInfoUtils.getMcuVersion(cpuModel),
+                appContext != null ? DeviceInfoUtils.probeResolution(appContext) : null,
+                DeviceInfoUtils.probeSystemBuildDate(), DeviceInfoUtils.probeAppBuildTime(), validityKey);
+    }
+
+    /**
+     * 系统指纹 + 开机 ID + 应用编译时间，任一变化都说明缓存的探测结果可能过期
+     */
+    private static String currentValidityKey() {
+        return Build.FINGERPRINT + "|" + readBootId() + "|" + BuildConfig.BUILD_TIMESTAMP;
+    }
+
+    private static String readBootId() {
+        try (BufferedReader reader = new BufferedReader(new FileReader(BOOT_ID_PATH))) {
+            String line = reader.readLine();
+            return line != null ? line.trim() : "";
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot read boot id: " + e.getMessage());
+            return "";
+        }
+    }
+
+    @Nullable
+    private static File cacheFile() {
+        return appContext != null ? new File(appContext.getFilesDir(), CACHE_FILE) : null;
+    }
+
+    @Nullable
+    private static DeviceFingerprint readCache(String validityKey) {
+        File file = cacheFile();
+        if (file == null || !file.isFile()) return null;
+        Properties props = new Properties();
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            props.load(in);
+            if (Integer.parseInt(props.getProperty("version", "0")) != VERSION
+                    || !validityKey.equals(props.getProperty("validityKey"))) {
+                Log.d(TAG, "Device fingerprint cache invalidated");
+                return null;
+            }
+            String cpuModel = props.getProperty("cpuModel");
+            String mcuModel = props.getProperty("mcuModel");
+            String systemBuildDate = props.getProperty("systemBuildDate");
+            String appBuildTime = props.getProperty("appBuildTime");
+            if (cpuModel == null || mcuModel == null || systemBuildDate == null || appBuildTime == null) return null;
+            return new DeviceFingerprint(cpuModel, mcuModel, props.getProperty("resolution"),
+                    systemBuildDate, appBuildTime, validityKey);
+        } catch (Exception e) {
+            Log.w(TAG, "Ignoring unreadable device fingerprint cache: " + file, e);
+            return null;
+        } finally {
+            FileUtils.closeQuietly(in);
+        }
+    }
+
+    private static void writeCache(DeviceFingerprint fingerprint) {
+        File file = cacheFile();
+        if (file == null) return;
+        Properties props = new Properties();
+        props.setProperty("version", String.valueOf(VERSION));
+        props.setProperty("validityKey", fingerprint.validityKey);
+        props.setProperty("cpuModel", fingerprint.cpuModel);
+        props.setProperty("mcuModel", fingerprint.mcuModel);
+        if (fingerprint.resolution != null) props.setProperty("resolution", fingerprint.resolution);
+        props.setProperty("systemBuildDate", fingerprint.systemBuildDate);
+        props.setProperty("appBuildTime", fingerprint.appBuildTime);
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(tmp);
+            props.store(out, null);
+            out.close();
+            out = null;
+            if (!tmp.renameTo(file)) {
+                Log.w(TAG, "Failed to rename " + tmp + " -> " + file);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to save device fingerprint", e);
+        } finally {
+            FileUtils.closeQuietly(out);
+        }
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "DeviceFingerprint{cpu=" + cpuModel + ", mcu=" + mcuModel + ", resolution=" + resolution
+                + ", system=" + standardSystemVersion + ", app=" + standardAppVersion + "}";
+    }
+}
@@ -11,15 +11,14 @@ import android.view.WindowManager;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Locale;
+import java.util.Map;
 import java.util.TimeZone;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -27,141 +26,151 @@ import java.util.regex.Pattern;
 public class DeviceInfoUtils {
     private static final String TAG = "DeviceInfoUtils";
     private static final String UNKNOWN = "Unknown";
+    private static volatile PropertySource propertySource = SystemPropertyReader.getInstance();
+    // sysfs、cmdline 等文件中用于识别芯片的关键词，位顺序与下面的掩码对应
+    private static final String[] SOC_TOKENS = {"8581", "t618", "8141", "unisoc", "t310", "sp9863a"};
+    private static final int SOC_8581A_MASK = 0b000011;
+    private static final int SOC_8141E_MASK = 0b111100;
+    // 各来源原先识别的关键词不同：device-tree/model 不认 t618，/proc/cpuinfo 只认 8581、8141 与 unisoc，
+    // 查找结果先与来源掩码相与，保持原有的识别结果
+    private static final int DEVICE_TREE_TOKENS = 0b111101;
+    private static final int CPUINFO_TOKENS = 0b001101;
+    // CPU 型号探测的总超时，超时后采用已得到的最高优先级结果
+    private static final long CPU_PROBE_TIMEOUT_MS = 3000;
     
-    // 缓存标准化后的版本号
-    private static String cachedStandardSystemVersion = null;
-    private static String cachedStandardAppVersion = null;
-
     private DeviceInfoUtils() {
     }
 
+    /**
+     * CPU型号，取自只探测一次的 {@link DeviceFingerprint}
+     */
     @NonNull
     public static String getCpuModel() {
+        return DeviceFingerprint.get().cpuModel;
+    }
+
+    /**
+     * 实际探测CPU型号：并行检查 sysfs、/proc、系统属性和 Build 信息，开销较大
+     */
+    @NonNull
+    static String probeCpuModel() {
         Log.d(TAG, "开始获取CPU型号信息...");
+        // 各来源相互独立，并行探测；注册顺序即优先级，结果与按顺序逐个检查一致。
+        // 名称带上硬件型号，便于从日志中按硬件版本统计各来源耗时
+        ProbeEngine<String> engine = new ProbeEngine<>("CpuModel@" + Build.HARDWARE);
+        engine.add("specialFiles", DeviceInfoUtils::probeSpecialFiles);
+        engine.add("socinfo", DeviceInfoUtils::probeSocInfo);
+        engine.add("cmdline", DeviceInfoUtils::probeCmdline);
+        engine.add("deviceTree", DeviceInfoUtils::probeDeviceTreeModel);
+        engine.add("cpuinfo", DeviceInfoUtils::probeCpuInfo);
+        engine.add("platform", DeviceInfoUtils::probeBoardPlatform);
+        engine.add("properties", DeviceInfoUtils::probeCpuProperties);
+        engine.add("build", DeviceInfoUtils::probeBuildFields);
+        engine.add("sysClass", DeviceInfoUtils::probeSysClass);
+        engine.add("buildDate", DeviceInfoUtils::probeBuildDateHint);
+        String cpuModel = engine.run(CPU_PROBE_TIMEOUT_MS);
+        if (cpuModel != null) {
+            return cpuModel;
+        }
         
-        try {
-            String[] specialFiles = {
-                "/sys/devices/platform/soc/soc:aon/8141",
-                "/sys/devices/platform/soc/soc:ap-ahb/8141",
-                "/proc/device-tree/soc/8141",
-                "/sys/devices/soc.0/8141",
-                "/sys/devices/platform/8141",
-                "/sys/devices/soc/8141"
-            };
-            
-            for (String filePath : specialFiles) {
-                File file = new File(filePath);
-                if (file.exists()) {
-                    Log.i(TAG, "通过特殊文件检测到UIS8141E: " + filePath);
-                    return "UIS8141E";
-                }
+        // 如果无法获取，则返回UNKNOWN
+        Log.w(TAG, "无法获取CPU信息，返回UNKNOWN");
+        return UNKNOWN;
+    }
+
+    @Nullable
+    private static String probeSpecialFiles() {
+        String[] specialFiles = {
+            "/sys/devices/platform/soc/soc:aon/8141",
+            "/sys/devices/platform/soc/soc:ap-ahb/8141",
+            "/proc/device-tree/soc/8141",
+            "/sys/devices/soc.0/8141",
+            "/sys/devices/platform/8141",
+            "/sys/devices/soc/8141"
+        };
+        
+        for (String filePath : specialFiles) {
+            File file = new File(filePath);
+            if (file.exists()) {
+                Log.i(TAG, "通过特殊文件检测到UIS8141E: " + filePath);
+                return "UIS8141E";
             }
-            
-            // 检查/sys/class/socinfo目录下的文件
-            try {
-                File socInfoDir = new File("/sys/class/socinfo");
-                if (socInfoDir.exists() && socInfoDir.isDirectory()) {
-                    File[] socFiles = socInfoDir.listFiles();
-                    if (socFiles != null) {
-                        for (File socFile : socFiles) {
-                            if (socFile.isFile() && socFile.canRead()) {
-                                try (BufferedReader reader = new BufferedReader(new FileReader(socFile))) {
-                                    String line;
-                                    while ((line = reader.readLine()) != null) {
-                                        String lowerLine = line.toLowerCase();
-                                        // 优先检查UIS8581A相关关键词
-                                        if (lowerLine.contains("8581") || lowerLine.contains("uis8581") ||
-                                            lowerLine.contains("t618")) {
-                                            Log.i(TAG, "通过/sys/class/socinfo/" + socFile.getName() + "检测到UIS8581A: " + line);
-                                            return "UIS8581A";
-                                        } else if (lowerLine.contains("8141") || 
-                                                  (lowerLine.contains("unisoc") && !lowerLine.contains("8581")) || 
-                                                  lowerLine.contains("t310") || lowerLine.contains("sp9863a")) {
-                                            Log.i(TAG, "通过/sys/class/socinfo/" + socFile.getName() + "检测到UIS8141E: " + line);
-                                            return "UIS8141E";
-                                        }
-                                    }
-                                } catch (Exception e) {
-                                    Log.w(TAG, "读取socinfo文件出错: " + socFile.getPath(), e);
-                                }
+        }
+        return null;
+    }
+
+    @Nullable
+    private static String probeSocInfo() {
+        // 检查/sys/class/socinfo目录下的文件
+        try {
+            File socInfoDir = new File("/sys/class/socinfo");
+            if (socInfoDir.exists() && socInfoDir.isDirectory()) {
+                File[] socFiles = socInfoDir.listFiles();
+                if (socFiles != null) {
+                    for (File socFile : socFiles) {
+                        if (socFile.isFile() && socFile.canRead()) {
+                            String model = classifySoc(ProcFsReader.findTokens(socFile.getPath(), SOC_TOKENS));
+                            if (model != null) {
+                                Log.i(TAG, "通过/sys/class/socinfo/" + socFile.getName() + "检测到" + model);
+                                return model;
                             }
                         }
                     }
                 }
-            } catch (Exception e) {
-                Log.w(TAG, "检查socinfo目录出错", e);
-            }
-            
-            // 检查设备特定的命令输出
-            Process process = Runtime.getRuntime().exec("cat /proc/cmdline");
-            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-            String cmdline = reader.readLine();
-            reader.close();
-            
-            if (cmdline != null) {
-                Log.d(TAG, "cmdline内容: " + cmdline);
-                String lowerCmdline = cmdline.toLowerCase();
-                // 优先检查UIS8581A相关关键词
-                if (lowerCmdline.contains("8581") || lowerCmdline.contains("uis8581") ||
-                    lowerCmdline.contains("t618")) {
-                    Log.i(TAG, "通过cmdline检测到UIS8581A");
-                    return "UIS8581A";
-                } else if (lowerCmdline.contains("8141") || 
-                          (lowerCmdline.contains("unisoc") && !lowerCmdline.contains("8581")) ||
-                          lowerCmdline.contains("t310") || lowerCmdline.contains("sp9863a")) {
-                    Log.i(TAG, "通过cmdline检测到UIS8141E");
-                    return "UIS8141E";
-                }
             }
-            
-            // 尝试读取/proc/device-tree/model文件
-            try {
-                File dtModel = new File("/proc/device-tree/model");
-                if (dtModel.exists() && dtModel.canRead()) {
-                    try (BufferedReader modelReader = new BufferedReader(new FileReader(dtModel))) {
-                        String modelLine = modelReader.readLine();
-                        if (modelLine != null) {
-                            Log.d(TAG, "/proc/device-tree/model内容: " + modelLine);
-                            String lowerModel = modelLine.toLowerCase();
-                            // 优先检查UIS8581A相关关键词
-                            if (lowerModel.contains("8581") || lowerModel.contains("uis8581")) {
-                                Log.i(TAG, "通过device-tree/model检测到UIS8581A: " + modelLine);
-                                return "UIS8581A";
-                            } else if (lowerModel.contains("8141") || 
-                                      (lowerModel.contains("unisoc") && !lowerModel.contains("8581")) ||
-                                      lowerModel.contains("t310") || lowerModel.contains("sp9863a")) {
-                                Log.i(TAG, "通过device-tree/model检测到UIS8141E: " + modelLine);
-                                return "UIS8141E";
-                            }
-                        }
-                    }
+        } catch (Exception e) {
+            Log.w(TAG, "检查socinfo目录出错", e);
+        }
+        return null;
+    }
+
+    @Nullable
+    private static String probeCmdline() {
+        // 检查内核启动参数
+        String cmdlineModel = classifySoc(ProcFsReader.findTokens("/proc/cmdline", SOC_TOKENS));
+        if (cmdlineModel != null) {
+            Log.i(TAG, "通过cmdline检测到" + cmdlineModel);
+            return cmdlineModel;
+        }
+        return null;
+    }
+
+    @Nullable
+    private static String probeDeviceTreeModel() {
+        // 尝试读取/proc/device-tree/model文件
+        try {
+            String modelLine = ProcFsReader.readFirstLine("/proc/device-tree/model");
+            if (modelLine != null) {
+                Log.d(TAG, "/proc/device-tree/model内容: " + modelLine);
+                String model = classifySoc(ProcFsReader.findTokensIn(modelLine, SOC_TOKENS) & DEVICE_TREE_TOKENS);
+                if (model != null) {
+                    Log.i(TAG, "通过device-tree/model检测到" + model + ": " + modelLine);
+                    return model;
                 }
-            } catch (Exception e) {
-                Log.w(TAG, "读取device-tree/model出错", e);
             }
         } catch (Exception e) {
-            Log.e(TAG, "检查特殊文件或命令时出错", e);
+            Log.w(TAG, "读取device-tree/model出错", e);
         }
-        
+        return null;
+    }
+
+    @Nullable
+    private static String probeCpuInfo() {
         // 尝试从/proc/cpuinfo读取CPU架构信息
         String cpuInfo = readCpuInfo();
         if (isValidValue(cpuInfo)) {
             Log.d(TAG, "从/proc/cpuinfo获取CPU信息: " + cpuInfo);
-            // 根据CPU型号返回对应的型号
-            String lowerCpuInfo = cpuInfo.toLowerCase();
-            // 先检查是否包含UIS8581A相关关键词
-            if (lowerCpuInfo.contains("uis8581") || lowerCpuInfo.contains("8581a") || 
-                lowerCpuInfo.contains("8581") || lowerCpuInfo.contains("unisoc uis8581")) {
-                Log.i(TAG, "从/proc/cpuinfo检测到CPU型号: UIS8581A");
-                return "UIS8581A";
-            } else if (lowerCpuInfo.contains("uis8141") || lowerCpuInfo.contains("8141e") || 
-                      lowerCpuInfo.contains("8141") || 
-                      (lowerCpuInfo.contains("unisoc") && !lowerCpuInfo.contains("8581"))) {
-                Log.i(TAG, "从/proc/cpuinfo检测到CPU型号: UIS8141E");
-                return "UIS8141E";
+            String model = classifySoc(ProcFsReader.findTokensIn(cpuInfo, SOC_TOKENS) & CPUINFO_TOKENS);
+            if (model != null) {
+                Log.i(TAG, "从/proc/cpuinfo检测到CPU型号: " + model);
+                return model;
             }
         }
-        
+        return null;
+    }
+
+    @Nullable
+    private static String probeBoardPlatform() {
         // 特别检查ro.board.platform属性，用户确认可以通过此属性获取sp7731e平台号
         String platformProp = getSystemProperty("ro.board.platform");
         if (isValidValue(platformProp)) {
@@ -172,7 +181,11 @@ public class DeviceInfoUtils {
                 return "UIS8141E";
             }
         }
-        
+        return null;
+    }
+
+    @Nullable
+    static String probeCpuProperties() {
         // 尝试从更多系统属性获取
         String[] cpuProps = {
             "ro.product.board", 
@@ -193,8 +206,10 @@ public class DeviceInfoUtils {
             "ro.build.description"
         };
         
+        // 一次批量解析全部候选属性，再按优先级顺序匹配
+        Map<String, String> cpuPropValues = propertySource.getAll(Arrays.asList(cpuProps));
         for (String prop : cpuProps) {
-            String propVal = getSystemProperty(prop);
+            String propVal = cpuPropValues.get(prop);
             if (isValidValue(propVal)) {
                 Log.d(TAG, "从系统属性 " + prop + " 获取CPU信息: " + propVal);
                 String lowerPropVal = propVal.toLowerCase();
@@ -213,7 +228,11 @@ public class DeviceInfoUtils {
                 }
             }
         }
-        
+        return null;
+    }
+
+    @Nullable
+    private static String probeBuildFields() {
         // 尝试从Build类获取信息
         try {
             Log.d(TAG, "尝试从Build类获取CPU信息");
@@ -276,9 +295,11 @@ public class DeviceInfoUtils {
         } catch (Exception e) {
             Log.e(TAG, "从Build类获取CPU信息时出错", e);
         }
-        
-        // 不再通过分辨率判断CPU型号，这种方法不可靠
-        
+        return null;
+    }
+
+    @Nullable
+    private static String probeSysClass() {
         // 尝试读取/sys/class目录下的其他可能包含CPU信息的文件
         try {
             String[] sysClassPaths = {
@@ -290,40 +311,32 @@ public class DeviceInfoUtils {
             };
             
             for (String path : sysClassPaths) {
-                File file = new File(path);
-                if (file.exists() && file.canRead()) {
-                    try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                        String content = reader.readLine();
-                        if (content != null) {
-                            Log.d(TAG, path + "内容: " + content);
-                            String lowerContent = content.toLowerCase();
-                            // 优先检查UIS8581A相关关键词
-                            if (lowerContent.contains("8581") || lowerContent.contains("uis8581") ||
-                               lowerContent.contains("t618")) {
-                                Log.i(TAG, "通过" + path + "检测到CPU型号: UIS8581A");
-                                return "UIS8581A";
-                            } else if (lowerContent.contains("8141") || 
-                                      (lowerContent.contains("unisoc") && !lowerContent.contains("8581")) ||
-                                      lowerContent.contains("t310") || lowerContent.contains("sp9863a") ||
-                                      lowerContent.contains("spreadtrum") || lowerContent.contains("sprd")) {
-                                Log.i(TAG, "通过" + path + "检测到CPU型号: UIS8141E");
-                                return "UIS8141E";
-                            }
-                        }
-                    } catch (Exception e) {
-                        Log.w(TAG, "读取" + path + "出错", e);
+                String content = ProcFsReader.readFirstLine(path);
+                if (content != null) {
+                    Log.d(TAG, path + "内容: " + content);
+                    String model = classifySoc(ProcFsReader.findTokensIn(content, SOC_TOKENS));
+                    if (model == null && ProcFsReader.findTokensIn(content, "spreadtrum", "sprd") != 0) {
+                        model = "UIS8141E";
+                    }
+                    if (model != null) {
+                        Log.i(TAG, "通过" + path + "检测到CPU型号: " + model);
+                        return model;
                     }
                 }
             }
         } catch (Exception e) {
             Log.e(TAG, "检查sys/class文件时出错", e);
         }
-        
+        return null;
+    }
+
+    @Nullable
+    private static String probeBuildDateHint() {
         // 不再使用强制返回机制，避免错误识别CPU型号
         // 只有在确实检测到特定系统版本特征时才返回特定型号
         try {
             // 检查系统版本或其他特征
-            String buildDate = getSystemBuildDate();
+            String buildDate = probeSystemBuildDate();
             if (buildDate != null && buildDate.contains("2025")) { // 这是一个特定的系统版本特征
                 Log.i(TAG, "通过系统构建日期特征识别为UIS8141E设备");
                 return "UIS8141E";
@@ -331,16 +344,12 @@ public class DeviceInfoUtils {
         } catch (Exception e) {
             Log.e(TAG, "检查系统特征过程中出错", e);
         }
-        
-        // 如果无法获取，则返回UNKNOWN
-        Log.w(TAG, "无法获取CPU信息，返回UNKNOWN");
-        return UNKNOWN;
+        return null;
     }
 
     @NonNull
     public static String getMcuVersion() {
-        String cpuModel = getCpuModel();
-        return getMcuVersion(cpuModel);
+        return DeviceFingerprint.get().mcuModel;
     }
     
     @NonNull
@@ -381,6 +390,12 @@ public class DeviceInfoUtils {
     
     @NonNull
     public static String getResolution(@NonNull Context context) {
+        String resolution = DeviceFingerprint.get(context).resolution;
+        return resolution != null ? resolution : probeResolution(context);
+    }
+
+    @NonNull
+    static String probeResolution(@NonNull Context context) {
         try {
             // 根据日志分析，设备实际分辨率为800x1280
             // 尝试从WindowManager获取
@@ -419,29 +434,19 @@ public class DeviceInfoUtils {
 
     @NonNull
     public static String getSystemBuildDate() {
+        return DeviceFingerprint.get().systemBuildDate;
+    }
+
+    @NonNull
+    static String probeSystemBuildDate() {
         String buildDate = UNKNOWN;
         try {
-            // 尝试从系统属性获取
-            buildDate = getSystemProperty("ro.build.date");
-            if (!isValidValue(buildDate)) {
-                buildDate = getSystemProperty("ro.system.build.date");
-            }
-            if (!isValidValue(buildDate)) {
-                buildDate = getSystemProperty("ro.vendor.build.date");
-            }
-            
-            // 如果仍然无法获取，尝试从build.prop文件读取
-            if (!isValidValue(buildDate)) {
-                String[] buildPropPaths = {
-                    "/system/build.prop",
-                    "/vendor/build.prop",
-                    "/system/vendor/build.prop"
-                };
-                
-                for (String path : buildPropPaths) {
-                    buildDate = readPropertyFromFile(path, "ro.build.date=");
-                    if (isValidValue(buildDate)) break;
-                }
+            // 从系统属性获取，运行时属性不可用时由属性源回退到build.prop文件
+            String[] dateProps = {"ro.build.date", "ro.system.build.date", "ro.vendor.build.date"};
+            Map<String, String> dateValues = propertySource.getAll(Arrays.asList(dateProps));
+            for (String prop : dateProps) {
+                buildDate = dateValues.get(prop);
+                if (isValidValue(buildDate)) break;
             }
             
             // 格式化日期
@@ -516,6 +521,11 @@ public class DeviceInfoUtils {
      */
     @NonNull
     public static String getAppBuildTime() {
+        return DeviceFingerprint.get().appBuildTime;
+    }
+
+    @NonNull
+    static String probeAppBuildTime() {
         try {
             // 使用系统属性ro.lsec.app.version获取真实的APP编译时间
             String buildTime = getSystemProperty("ro.lsec.app.version");
@@ -533,105 +543,36 @@ public class DeviceInfoUtils {
         return UNKNOWN;
     }
     
-    private static String readPropertyFromFile(String filePath, String propertyPrefix) {
-        BufferedReader reader = null;
-        try {
-            File file = new File(filePath);
-            if (!file.exists() || !file.canRead()) {
-                return null;
-            }
-            
-            reader = new BufferedReader(new FileReader(file));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.startsWith(propertyPrefix)) {
-                    return line.substring(propertyPrefix.length()).trim();
-                }
-            }
-            return null;
-        } catch (Exception e) {
-            Log.e(TAG, "读取属性文件失败: " + filePath, e);
-            return null;
-        } finally {
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (IOException e) {
-                    // 忽略关闭异常
-                }
-            }
-        }
+    private static String getSystemProperty(String propName) {
+        return propertySource.get(propName);
     }
 
-    private static String getSystemProperty(String propName) {
-        Process proc = null;
-        BufferedReader reader = null;
-        try {
-            Log.d(TAG, "Attempting to get system property: " + propName);
-            proc = Runtime.getRuntime().exec("getprop " + propName);
-            reader = new BufferedReader(new InputStreamReader(proc.getInputStream()));
-            String line = reader.readLine();
-            String result = (line != null && !line.trim().isEmpty()) ? line.trim() : null;
-            if (result != null) {
-                Log.d(TAG, "Successfully got property " + propName + ": " + result);
-            } else {
-                Log.d(TAG, "Property " + propName + " returned empty or null value");
-            }
-            return result;
-        } catch (IOException e) {
-            Log.e(TAG, "Failed getprop: " + propName, e);
-            return null;
-        } catch (SecurityException e) {
-            Log.e(TAG, "Security exception getting property: " + propName, e);
-            return null;
-        } catch (Exception e) {
-            Log.e(TAG, "Unexpected error getting property: " + propName, e);
-            return null;
-        } finally {
-            try {
-                if (reader != null) reader.close();
-            } catch (IOException ignored) {
-            }
-            if (proc != null) proc.destroy();
-        }
+    /**
+     * 替换属性来源，用于在 JVM 上测试依赖系统属性的探测逻辑
+     */
+    static void setPropertySource(@NonNull PropertySource source) {
+        propertySource = source;
     }
     
     private static String readCpuInfo() {
-        Process proc = null;
-        BufferedReader reader = null;
-        try {
-            Log.d(TAG, "Attempting to read CPU info from /proc/cpuinfo");
-            proc = Runtime.getRuntime().exec("cat /proc/cpuinfo");
-            reader = new BufferedReader(new InputStreamReader(proc.getInputStream()));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.contains("Hardware") || line.contains("model name") || line.contains("Processor")) {
-                    String[] parts = line.split(":");
-                    if (parts.length >= 2) {
-                        String result = parts[1].trim();
-                        Log.d(TAG, "Found CPU info: " + result);
-                        return result;
-                    }
-                }
-            }
+        String result = ProcFsReader.findField("/proc/cpuinfo", "Hardware", "model name", "Processor");
+        if (result != null) {
+            Log.d(TAG, "Found CPU info: " + result);
+        } else {
             Log.w(TAG, "No CPU model information found in /proc/cpuinfo");
-            return null;
-        } catch (IOException e) {
-            Log.e(TAG, "Failed to read CPU info", e);
-            return null;
-        } catch (SecurityException e) {
-            Log.e(TAG, "Security exception reading CPU info", e);
-            return null;
-        } catch (Exception e) {
-            Log.e(TAG, "Unexpected error reading CPU info", e);
-            return null;
-        } finally {
-            try {
-                if (reader != null) reader.close();
-            } catch (IOException ignored) {
-            }
-            if (proc != null) proc.destroy();
         }
+        return result;
+    }
+
+    /**
+     * 根据 {@link ProcFsReader#findTokens} 返回的关键词掩码判断芯片型号，8581 相关关键词优先
+     */
+    @Nullable
+    private static String classifySoc(int tokenMask) {
+        if (tokenMask <= 0) return null;
+        if ((tokenMask & SOC_8581A_MASK) != 0) return "UIS8581A";
+        if ((tokenMask & SOC_8141E_MASK) != 0) return "UIS8141E";
+        return null;
     }
 
     private static boolean isValidValue(String value) {
@@ -697,12 +638,7 @@ public class DeviceInfoUtils {
      */
     @NonNull
     public static String getStandardSystemVersion() {
-        if (cachedStandardSystemVersion == null) {
-            String systemDate = getSystemBuildDate();
-            cachedStandardSystemVersion = formatDateToStandardVersion(systemDate);
-            Log.d(TAG, "初始化标准系统版本: " + systemDate + " -> " + cachedStandardSystemVersion);
-        }
-        return cachedStandardSystemVersion;
+        return DeviceFingerprint.get().standardSystemVersion;
     }
     
     /**
@@ -711,11 +647,6 @@ public class DeviceInfoUtils {
      */
     @NonNull
     public static String getStandardAppVersion() {
-        if (cachedStandardAppVersion == null) {
-            String appDate = getAppBuildTime();
-            cachedStandardAppVersion = formatDateToStandardVersion(appDate);
-            Log.d(TAG, "初始化标准应用版本: " + appDate + " -> " + cachedStandardAppVersion);
-        }
-        return cachedStandardAppVersion;
+        return DeviceFingerprint.get().standardAppVersion;
     }
 }
\ No newline at end of file
@@ -0,0 +1,165 @@
+package com.example.otaupdate;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * 断点续传日志
+ * 与目标文件放在同一目录（destination + ".journal"），记录对象键、ETag、总大小
+ * 以及每个分段已落盘的区间，用于在暂停、进程被杀或重启后从上次的偏移继续下载
+ */
+public class DownloadJournal {
+    private static final String TAG = "DownloadJournal";
+    private static final String SUFFIX = ".journal";
+    private static final int VERSION = 1;
+
+    /**
+     * 分段区间：[begin, position) 已写入并同步到磁盘，end 为闭区间终点
+     */
+    public static final class Range {
+        public final long begin;
+        public final long end;
+        public final long position;
+
+        public Range(long begin, long end, long position) {
+            this.begin = begin;
+            this.end = end;
+            this.position = position;
+        }
+    }
+
+    private final String objectKey;
+    private final String etag;
+    private final long totalSize;
+    private final List<Range> ranges;
+
+    public DownloadJournal(@NonNull String objectKey, @Nullable String etag, long totalSize, @NonNull List<Range> ranges) {
+        this.objectKey = objectKey;
+        this.etag = etag;
+        this.totalSize = totalSize;
+        this.ranges = Collections.unmodifiableList(new ArrayList<>(ranges));
+    }
+
+    @NonNull
+    public String getObjectKey() {
+        return objectKey;
+    }
+
+    @Nullable
+    public String getETag() {
+        return etag;
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    @NonNull
+    public List<Range> getRanges() {
+        return ranges;
+    }
+
+    public long getCompletedBytes() {
+        long completed = 0;
+        for (Range range : ranges) {
+            completed += range.position - range.begin;
+        }
+        return completed;
+    }
+
+    /**
+     * 判断日志是否仍对应同一个远端对象，ETag 变化说明对象已被替换，必须从头下载
+     */
+    public boolean matches(@NonNull String objectKey, @Nullable String etag, long totalSize) {
+        return this.objectKey.equals(objectKey)
+                && this.totalSize == totalSize
+                && this.etag != null && this.etag.equals(etag);
+    }
+
+    @NonNull
+    public static File journalFileFor(@NonNull File destination) {
+        return new File(destination.getPath() + SUFFIX);
+    }
+
+    /**
+     * 读取目标文件对应的日志，不存在、损坏或与数据文件不一致时返回 null
+     */
+    @Nullable
+    public static DownloadJournal load(@NonNull File destination) {
+        File file = journalFileFor(destination);
+        if (!file.isFile() || !destination.isFile()) return null;
+        Properties props = new Properties();
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            props.load(in);
+            if (Integer.parseInt(props.getProperty("version", "0")) != VERSION) return null;
+            String objectKey = props.getProperty("objectKey");
+            long totalSize = Long.parseLong(props.getProperty("totalSize"));
+            int count = Integer.parseInt(props.getProperty("ranges"));
+            if (objectKey == null || destination.length() != totalSize) return null;
+            List<Range> ranges = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String[] parts = props.getProperty("range." + i).split(",");
+                Range range = new Range(Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+                if (range.position < range.begin || range.position > range.end + 1) return null;
+                ranges.add(range);
+            }
+            return new DownloadJournal(objectKey, props.getProperty("etag"), totalSize, ranges);
+        } catch (Exception e) {
+            Log.w(TAG, "Ignoring unreadable journal: " + file, e);
+            return null;
+        } finally {
+            FileUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * 先写临时文件并 fsync，再原子重命名，保证断电后日志要么是旧的要么是新的
+     */
+    public void save(@NonNull File destination) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("version", String.valueOf(VERSION));
+        props.setProperty("objectKey", objectKey);
+        if (etag != null) props.setProperty("etag", etag);
+        props.setProperty("totalSize", String.valueOf(totalSize));
+        props.setProperty("ranges", String.valueOf(ranges.size()));
+        for (int i = 0; i < ranges.size(); i++) {
+            Range range = ranges.get(i);
+            props.setProperty("range." + i, range.begin + "," + range.end + "," + range.position);
+        }
+
+        File file = journalFileFor(destination);
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(tmp);
+            props.store(out, null);
+            out.flush();
+            out.getFD().sync();
+        } finally {
+            FileUtils.closeQuietly(out);
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Failed to commit journal: " + file);
+        }
+    }
+
+    public static void delete(@NonNull File destination) {
+        File file = journalFileFor(destination);
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Failed to delete journal: " + file);
+        }
+    }
+}
@@ -177,6 +177,36 @@ public class DownloadProgressManager {
             }
         }
         
+        applyProgress(progress, status);
+    }
+
+    /**
+     * 更新解压、安装等阶段的进度，返回显示的状态文本；下载阶段的进度由 {@link #updateProgress} 处理，此时返回 null
+     * 速度与剩余时间直接取自进度快照中该阶段的吞吐率，避免阶段切换时字节数回落导致速度计算为负
+     */
+    @Nullable
+    public String updatePhaseProgress(@NonNull ProgressTracker.Snapshot snapshot) {
+        if (snapshot.phase == ProgressTracker.Phase.DOWNLOAD) return null;
+        int percent = snapshot.getPercent();
+        String status = snapshot.phase == ProgressTracker.Phase.EXTRACT
+                ? context.getString(R.string.status_unzipping, percent)
+                : context.getString(R.string.status_installing_files, percent);
+        if (!isPaused && tvDownloadInfo != null) {
+            String speedString = context.getString(R.string.download_speed,
+                    formatSpeed((float) snapshot.getPhaseBytesPerSecond()));
+            String remainingTime = snapshot.etaSeconds >= 0 ? formatTime(snapshot.etaSeconds)
+                    : context.getString(R.string.unknown);
+            String remainingString = context.getString(R.string.download_remaining_time, remainingTime);
+            final String info = context.getString(R.string.download_info_format, speedString, remainingString);
+            handler.post(() -> tvDownloadInfo.setText(info));
+        }
+        // 进入下一阶段后重新开始下载速度的计算
+        lastUpdateTime = 0;
+        applyProgress(percent, status);
+        return status;
+    }
+
+    private void applyProgress(int progress, String status) {
         // 更新UI元素
         handler.post(() -> {
             // 更新进度条
@@ -211,7 +241,7 @@ public class DownloadProgressManager {
         String speedText = formatSpeed(downloadSpeed);
         
         // 计算剩余时间
-        String remainingTime = "未知";
+        String remainingTime = context.getString(R.string.unknown);
         if (downloadSpeed > 0 && totalSize > currentSize) {
             long remainingBytes = totalSize - currentSize;
             long remainingSeconds = (long) (remainingBytes / downloadSpeed);
@@ -308,7 +338,7 @@ public class DownloadProgressManager {
      * 格式化时间（秒）为可读字符串
      */
     private String formatTime(long seconds) {
-        if (seconds < 0) return "未知";
+        if (seconds < 0) return context.getString(R.string.unknown);
         
         // 根据系统语言决定显示格式
         boolean isChineseLocale = Locale.getDefault().getLanguage().equals(Locale.CHINESE.getLanguage());
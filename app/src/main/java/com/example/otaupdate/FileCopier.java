@@ -0,0 +1,179 @@
+package com.example.otaupdate;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 文件复制
+ * 通过 FileChannel.transferTo 交给内核完成数据搬运（Linux 上为 sendfile/copy_file_range），
+ * 数据不经过 Java 堆；块大小随文件大小自适应，并可按目录批量 fsync
+ */
+public class FileCopier {
+    private static final String TAG = "FileCopier";
+    // 小于该大小的文件一次读写完成，避免 transferTo 的系统调用开销
+    private static final int SMALL_FILE_SIZE = 64 * 1024;
+    private static final long MIN_CHUNK = 1024L * 1024;
+    private static final long MAX_CHUNK = 64L * 1024 * 1024;
+    // transferTo 不被支持时（部分 FUSE 挂载）使用的直接缓冲区大小
+    private static final int FALLBACK_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * 落盘策略
+     */
+    public enum SyncMode {
+        /** 不主动 fsync，由系统回写 */
+        NONE,
+        /** 每个文件复制完立即 fsync */
+        PER_FILE,
+        /** 记录目录下复制的文件，在 {@link #syncDirectory(File)} 时统一 fsync 文件和目录本身 */
+        PER_DIRECTORY
+    }
+
+    private final SyncMode syncMode;
+    private final Map<File, List<File>> pendingSync = new HashMap<>();
+
+    public FileCopier() {
+        this(SyncMode.NONE);
+    }
+
+    public FileCopier(@NonNull SyncMode syncMode) {
+        this.syncMode = syncMode;
+    }
+
+    /**
+     * 复制单个文件，目标存在时覆盖，返回复制的字节数
+     */
+    public long copy(@NonNull File source, @NonNull File target) throws IOException {
+        FileInputStream in = null;
+        FileOutputStream out = null;
+        long size;
+        try {
+            in = new FileInputStream(source);
+            out = new FileOutputStream(target);
+            FileChannel src = in.getChannel();
+            FileChannel dst = out.getChannel();
+            size = src.size();
+            if (size <= SMALL_FILE_SIZE) {
+                copySmall(src, dst, size);
+            } else {
+                copyLarge(src, dst, size, source);
+            }
+            if (syncMode == SyncMode.PER_FILE) {
+                dst.force(true);
+            }
+        } finally {
+            FileUtils.closeQuietly(in);
+            FileUtils.closeQuietly(out);
+        }
+        if (syncMode == SyncMode.PER_DIRECTORY) {
+            File dir = target.getAbsoluteFile().getParentFile();
+            synchronized (pendingSync) {
+                List<File> files = pendingSync.get(dir);
+                if (files == null) {
+                    files = new ArrayList<>();
+                    pendingSync.put(dir, files);
+                }
+                files.add(target);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 同步目录下已复制但未落盘的文件，再同步目录项本身；仅 PER_DIRECTORY 模式生效
+     */
+    public void syncDirectory(@NonNull File dir) throws IOException {
+        if (syncMode != SyncMode.PER_DIRECTORY) return;
+        File key = dir.getAbsoluteFile();
+        List<File> files;
+        synchronized (pendingSync) {
+            files = pendingSync.remove(key);
+        }
+        if (files != null) {
+            for (File file : files) {
+                RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                try {
+                    raf.getFD().sync();
+                } finally {
+                    raf.close();
+                }
+            }
+        }
+        fsyncDirectory(key);
+    }
+
+    /**
+     * 目录 fsync 保证新建、重命名的目录项持久化，部分文件系统不支持时忽略
+     */
+    static void fsyncDirectory(@NonNull File dir) {
+        try {
+            FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ);
+            try {
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+        } catch (IOException e) {
+            Log.d(TAG, "Directory fsync unsupported: " + dir + ", " + e.getMessage());
+        }
+    }
+
+    private static void copySmall(FileChannel src, FileChannel dst, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining()) {
+            if (src.read(buffer) < 0) break;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            dst.write(buffer);
+        }
+    }
+
+    /**
+     * 块大小从 1MB 起每轮翻倍，上限 64MB：大文件减少系统调用次数，同时中途出错时能尽快返回
+     */
+    private static void copyLarge(FileChannel src, FileChannel dst, long size, File source) throws IOException {
+        long position = 0;
+        long chunk = MIN_CHUNK;
+        while (position < size) {
+            long n = src.transferTo(position, Math.min(chunk, size - position), dst);
+            if (n <= 0) {
+                Log.d(TAG, "transferTo made no progress, using buffered copy: " + source);
+                copyBuffered(src, dst, position, size);
+                return;
+            }
+            position += n;
+            chunk = Math.min(chunk * 2, MAX_CHUNK);
+        }
+    }
+
+    private static void copyBuffered(FileChannel src, FileChannel dst, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(FALLBACK_BUFFER_SIZE);
+        src.position(position);
+        dst.position(position);
+        while (position < size) {
+            buffer.clear();
+            int n = src.read(buffer);
+            if (n < 0) throw new IOException("Unexpected end of file at " + position + "/" + size);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                dst.write(buffer);
+            }
+            position += n;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.otaupdate;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 系统应用包的文件清单
+ * 与应用包一起发布（对象键为应用包键 + {@link #SUFFIX}），列出安装后每个文件相对 /mnt/sdcard 的路径、大小和 SHA-256，
+ * 设备据此只拉取与本地不同的文件。格式：
+ * <pre>
+ * {
+ *   "schema": 1,
+ *   "files": [
+ *     { "path": "Navi/navi.apk", "size": 73400320, "sha256": "9f86d0...", "entry": "ALLApp/Navi/navi.apk" },
+ *     { "path": "Music/music.apk", "size": 20971520, "sha256": "60303a...", "key": "firmware/System APP/files/9f86d0.apk" }
+ *   ]
+ * }
+ * </pre>
+ * "key" 为单独发布的对象，没有时从应用包中按 "entry"（缺省与 path 相同）对应的 zip 条目读取
+ */
+public class FileManifest {
+    public static final String SUFFIX = ".files.json";
+    private static final int SCHEMA = 1;
+
+    public static final class Entry {
+        @NonNull
+        public final String path;
+        @NonNull
+        public final String zipEntry;
+        @Nullable
+        public final String key;
+        public final long size;
+        @NonNull
+        public final String sha256;
+
+        Entry(@NonNull String path, @NonNull String zipEntry, @Nullable String key, long size,
+              @NonNull String sha256) {
+            this.path = path;
+            this.zipEntry = zipEntry;
+            this.key = key;
+            this.size = size;
+            this.sha256 = sha256;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return path + " (" + size + " bytes)";
+        }
+    }
+
+    private final List<Entry> entries;
+
+    private FileManifest(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    @NonNull
+    public static String keyFor(@NonNull String objectKey) {
+        return objectKey + SUFFIX;
+    }
+
+    /**
+     * 解析清单，schema 不支持、路径越出目标目录或格式错误时抛出 JSONException
+     */
+    @NonNull
+    public static FileManifest parse(@NonNull String json) throws JSONException {
+        JSONObject root = new JSONObject(json);
+        int schema = root.optInt("schema", 0);
+        if (schema != SCHEMA) {
+            throw new JSONException("Unsupported file manifest schema: " + schema);
+        }
+        JSONArray list = root.getJSONArray("files");
+        List<Entry> entries = new ArrayList<>(list.length());
+        for (int i = 0; i < list.length(); i++) {
+            JSONObject file = list.getJSONObject(i);
+            String path = file.getString("path");
+            if (path.isEmpty() || path.startsWith("/") || path.contains("\\") || ("/" + path + "/").contains("/../")) {
+                throw new JSONException("Invalid path in file manifest: " + path);
+            }
+            String sha256 = file.getString("sha256").trim().toLowerCase(Locale.ROOT);
+            if (sha256.length() != 64) throw new JSONException("Invalid SHA-256 for " + path);
+            String key = file.optString("key", null);
+            entries.add(new Entry(path, file.optString("entry", path), key != null && !key.isEmpty() ? key : null,
+                    file.getLong("size"), sha256));
+        }
+        return new FileManifest(Collections.unmodifiableList(entries));
+    }
+
+    @NonNull
+    public List<Entry> getEntries() {
+        return entries;
+    }
+}
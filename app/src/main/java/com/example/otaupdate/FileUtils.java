@@ -6,18 +6,23 @@ import android.os.Build;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipInputStream;
 
 public class FileUtils {
     private static final String TAG = "FileUtils";
-    private static final int BUFFER_SIZE = 8192;
+    // 解压时的读写缓冲区，过小会导致每个条目大量的 read/write 系统调用
+    private static final int BUFFER_SIZE = 64 * 1024;
 
     public interface ProgressCallback {
         void onProgress(int progress);
@@ -27,10 +32,24 @@ public class FileUtils {
     }
 
     public static boolean unzip(String zipFilePath, String destDirectory) {
-        return unzip(zipFilePath, destDirectory, null);
+        return unzip(zipFilePath, destDirectory, (ProgressTracker) null);
     }
 
+    /**
+     * 按百分比回调解压进度，百分比由实际消耗的压缩字节数计算
+     */
     public static boolean unzip(String zipFilePath, String destDirectory, @Nullable ProgressCallback callback) {
+        if (callback == null) return unzip(zipFilePath, destDirectory, (ProgressTracker) null);
+        PercentAdapter adapter = new PercentAdapter(callback);
+        boolean success = unzip(zipFilePath, destDirectory, new ProgressTracker(adapter));
+        if (success) adapter.complete();
+        return success;
+    }
+
+    /**
+     * 解压并把解压阶段的字节进度与吞吐率上报给 tracker
+     */
+    public static boolean unzip(String zipFilePath, String destDirectory, @Nullable ProgressTracker tracker) {
         File destDir = new File(destDirectory);
         if (!destDir.exists() && !destDir.mkdirs()) {
             Log.e(TAG, "Failed mkdir: " + destDirectory);
@@ -41,82 +60,32 @@ public class FileUtils {
         try {
             File zipFile = new File(zipFilePath);
             long totalSize = zipFile.length();
-            int lastProgress = -1;
             if (!zipFile.exists() || !zipFile.isFile() || totalSize == 0) {
                 Log.e(TAG, "Zip file invalid: " + zipFilePath);
                 return false;
             }
-            checkStream = new FileInputStream(zipFilePath);
-            zipIn = new ZipInputStream(checkStream);
-            ZipEntry entry = zipIn.getNextEntry();
-            byte[] buffer = new byte[BUFFER_SIZE];
-            long currentSize = 0;
 
             // 检查是否是MCU更新文件
-            boolean isMcuUpdate = zipFile.getName().matches("L\\d+_MCU\\.zip");
+            boolean isMcuUpdate = isMcuPackage(zipFile.getName());
             Log.d(TAG, "Unzipping file: " + zipFile.getName() + ", isMcuUpdate: " + isMcuUpdate);
-
-            while (entry != null) {
-                // 对于MCU更新文件，去掉第一层目录
-                String entryName = entry.getName();
-                if (isMcuUpdate && entryName.startsWith("L")) {
-                    int firstSlash = entryName.indexOf('/');
-                    if (firstSlash != -1) {
-                        entryName = entryName.substring(firstSlash + 1);
-                        if (entryName.isEmpty()) {
-                            zipIn.closeEntry();
-                            entry = zipIn.getNextEntry();
-                            continue;
-                        }
-                    }
-                }
-
-                File newFile = new File(destDir, entryName);
-                String canonicalDestinationPath = destDir.getCanonicalPath();
-                String canonicalNewFilePath = newFile.getCanonicalPath();
-                
-                if (!canonicalNewFilePath.startsWith(canonicalDestinationPath + File.separator)) {
-                    Log.w(TAG, "Skipping entry outside destination directory: " + entryName);
-                    zipIn.closeEntry();
-                    entry = zipIn.getNextEntry();
-                    continue;
-                }
-
-                if (entry.isDirectory()) {
-                    if (!newFile.isDirectory() && !newFile.mkdirs()) {
-                        throw new IOException("Failed mkdir: " + newFile);
-                    }
-                } else {
-                    File parent = newFile.getParentFile();
-                    if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
-                        throw new IOException("Failed mkdir parent: " + parent);
-                    }
-                    FileOutputStream fos = null;
-                    try {
-                        fos = new FileOutputStream(newFile);
-                        int len;
-                        while ((len = zipIn.read(buffer)) > 0) {
-                            fos.write(buffer, 0, len);
-                        }
-                    } finally {
-                        closeQuietly(fos);
-                    }
-                }
-
-                long entryCompSize = entry.getCompressedSize();
-                if (callback != null && totalSize > 0 && entryCompSize > 0) {
-                    currentSize += entryCompSize;
-                    int progress = (int) ((currentSize * 100) / totalSize);
-                    progress = Math.min(progress, 100);
-                    if (progress != lastProgress) {
-                        lastProgress = progress;
-                        callback.onProgress(progress);
-                    }
-                }
-                zipIn.closeEntry();
-                entry = zipIn.getNextEntry();
+            try {
+                // 优先按中央目录多线程解压
+                new ParallelZipExtractor().extract(zipFile, destDir, isMcuUpdate, tracker);
+                return true;
+            } catch (ZipException e) {
+                // 中央目录损坏或缺失时退回按本地文件头顺序解压
+                Log.w(TAG, "Central directory unreadable, falling back to sequential unzip", e);
             }
-            if (callback != null && lastProgress < 100) callback.onProgress(100);
+            checkStream = new FileInputStream(zipFilePath);
+            InputStream rawIn = checkStream;
+            if (tracker != null) {
+                // 以实际读取的压缩字节计算进度，不依赖条目头中可能为 -1 的压缩大小
+                tracker.startPhase(ProgressTracker.Phase.EXTRACT, totalSize);
+                rawIn = new CountingInputStream(checkStream, tracker::addCompressed);
+            }
+            zipIn = new ZipInputStream(rawIn);
+            extractEntries(zipIn, destDir, isMcuUpdate, tracker);
+            if (tracker != null) tracker.flush();
             return true;
         } catch (IOException e) {
             Log.e(TAG, "Unzip failed", e);
@@ -128,7 +97,122 @@ public class FileUtils {
         }
     }
 
+    /**
+     * MCU升级包命名为 L数字_MCU.zip，解压时需要去掉第一层目录
+     */
+    public static boolean isMcuPackage(@NonNull String fileName) {
+        return fileName.matches("L\\d+_MCU\\.zip");
+    }
+
+    /**
+     * 计算条目的解压目标：MCU升级包去掉第一层目录，并校验规范路径防止 zip-slip。
+     * 返回 null 表示该条目应跳过
+     */
+    @Nullable
+    static File resolveEntryTarget(File destDir, String canonicalDestinationPath, String entryName,
+                                   boolean isMcuUpdate) throws IOException {
+        // 对于MCU更新文件，去掉第一层目录
+        if (isMcuUpdate && entryName.startsWith("L")) {
+            int firstSlash = entryName.indexOf('/');
+            if (firstSlash != -1) {
+                entryName = entryName.substring(firstSlash + 1);
+                if (entryName.isEmpty()) return null;
+            }
+        }
+
+        File newFile = new File(destDir, entryName);
+        String canonicalNewFilePath = newFile.getCanonicalPath();
+        if (!canonicalNewFilePath.startsWith(canonicalDestinationPath + File.separator)) {
+            Log.w(TAG, "Skipping entry outside destination directory: " + entryName);
+            return null;
+        }
+        return newFile;
+    }
+
+    private static void extractEntries(ZipInputStream zipIn, File destDir, boolean isMcuUpdate,
+                                       @Nullable ProgressTracker tracker) throws IOException {
+        ZipEntry entry = zipIn.getNextEntry();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        String canonicalDestinationPath = destDir.getCanonicalPath();
+
+        while (entry != null) {
+            File newFile = resolveEntryTarget(destDir, canonicalDestinationPath, entry.getName(), isMcuUpdate);
+            if (newFile == null) {
+                zipIn.closeEntry();
+                entry = zipIn.getNextEntry();
+                continue;
+            }
+
+            if (entry.isDirectory()) {
+                if (!newFile.isDirectory() && !newFile.mkdirs()) {
+                    throw new IOException("Failed mkdir: " + newFile);
+                }
+            } else {
+                File parent = newFile.getParentFile();
+                if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                    throw new IOException("Failed mkdir parent: " + parent);
+                }
+                FileOutputStream fos = null;
+                try {
+                    fos = new FileOutputStream(newFile);
+                    int len;
+                    while ((len = zipIn.read(buffer)) > 0) {
+                        fos.write(buffer, 0, len);
+                        if (tracker != null) {
+                            tracker.addInflated(len);
+                            tracker.addWritten(len);
+                        }
+                    }
+                } finally {
+                    closeQuietly(fos);
+                }
+            }
+            zipIn.closeEntry();
+            entry = zipIn.getNextEntry();
+        }
+    }
+
+    /**
+     * 把解压阶段的字节进度转换为去重、单调递增的百分比回调
+     */
+    private static final class PercentAdapter implements ProgressTracker.Listener {
+        private final ProgressCallback callback;
+        private int lastProgress = -1;
+
+        PercentAdapter(ProgressCallback callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public synchronized void onPhaseProgress(@NonNull ProgressTracker.Snapshot snapshot) {
+            if (snapshot.phase != ProgressTracker.Phase.EXTRACT) return;
+            int progress = snapshot.getPercent();
+            if (progress > lastProgress) {
+                lastProgress = progress;
+                callback.onProgress(progress);
+            }
+        }
+
+        synchronized void complete() {
+            if (lastProgress < 100) {
+                lastProgress = 100;
+                callback.onProgress(100);
+            }
+        }
+    }
+
     public static boolean moveFilesFromDirectory(String sourceDirPath, String destDirPath) {
+        StagedInstaller.Stats stats = new StagedInstaller.Stats();
+        boolean success = moveFilesFromDirectory(sourceDirPath, destDirPath, stats);
+        Log.d(TAG, "[Move] Finished: " + stats);
+        return success;
+    }
+
+    /**
+     * 通过 {@link StagedInstaller} 安装：新内容先在 destDir 所在文件系统上暂存并落盘，再逐项原子替换，
+     * 任一项失败时整体回滚，destDir 保持原样。同一文件系统内直接重命名，跨文件系统才复制，移动与复制的字节数累计到 stats
+     */
+    public static boolean moveFilesFromDirectory(String sourceDirPath, String destDirPath, @NonNull StagedInstaller.Stats stats) {
         File sourceDir = new File(sourceDirPath);
         File destDir = new File(destDirPath);
         Log.d(TAG, "[Move] Starting move from: " + sourceDirPath + " to " + destDirPath);
@@ -191,94 +275,18 @@ public class FileUtils {
         Log.d(TAG, "[Move] Update type detection: isSystemUpdate=" + isSystemUpdate + 
                 ", isMcuUpdate=" + isMcuUpdate);
         
-        // 如果是系统更新，保留完整目录结构
+        // 系统升级包和系统应用包的每一项按原名替换，MCU升级包展开子目录中的文件
+        List<StagedInstaller.Item> items = new ArrayList<>();
+        collectMoveItems(sourceDir, items);
+        try {
+            new StagedInstaller(destDir, stats).install(items, sourceDir, null);
+        } catch (IOException e) {
+            Log.e(TAG, "[Move] Install failed, previous files kept in " + destDirPath, e);
+            return false;
+        }
+        Log.d(TAG, "[Move] Installed " + items.size() + " items to " + destDirPath);
+
         if (isSystemUpdate) {
-            Log.d(TAG, "[Move] Handling system update - preserving entire directory structure");
-            boolean success = true;
-            
-            // 复制每个文件和文件夹到目标位置，保留完整结构
-            for (File file : files) {
-                String fileName = file.getName();
-                File targetFile = new File(destDir, fileName);
-                
-                if (file.isDirectory()) {
-                    Log.d(TAG, "[Move] Processing directory: " + fileName);
-                    
-                    // 判断是否是特殊目录
-                    boolean isSpecialDir = fileName.toLowerCase().equals("lsec_updatesh") || 
-                                          fileName.toLowerCase().equals("oem") || 
-                                          fileName.toLowerCase().equals("vaudioshow");
-                    
-                    // 如果目标已存在，先删除
-                    if (targetFile.exists()) {
-                        if (!deleteRecursive(targetFile)) {
-                            Log.e(TAG, "[Move] Failed to delete existing directory: " + targetFile.getAbsolutePath());
-                            if (isSpecialDir) {
-                                Log.e(TAG, "[Move] Critical error: failed to clean special directory: " + fileName);
-                                return false;
-                            }
-                            success = false;
-                            continue;
-                        }
-                    }
-                    
-                    // 创建目标目录
-                    if (!targetFile.mkdir()) {
-                        Log.e(TAG, "[Move] Failed to create directory: " + targetFile.getAbsolutePath());
-                        if (isSpecialDir) {
-                            Log.e(TAG, "[Move] Critical error: failed to create special directory: " + fileName);
-                            return false;
-                        }
-                        success = false;
-                        continue;
-                    }
-                    
-                    // 递归复制目录内容
-                    try {
-                        if (!copyDirectoryRecursively(file, targetFile)) {
-                            Log.e(TAG, "[Move] Failed to copy directory contents: " + fileName);
-                            if (isSpecialDir) {
-                                Log.e(TAG, "[Move] Critical error: failed to copy special directory content: " + fileName);
-                                return false;
-                            }
-                            success = false;
-                        } else {
-                            Log.d(TAG, "[Move] Successfully copied directory: " + fileName);
-                        }
-                    } catch (Exception e) {
-                        Log.e(TAG, "[Move] Error copying directory: " + fileName, e);
-                        if (isSpecialDir) {
-                            Log.e(TAG, "[Move] Critical error: exception while copying special directory: " + fileName, e);
-                            return false;
-                        }
-                        success = false;
-                    }
-                } else {
-                    // 如果是文件，直接复制到目标位置
-                    Log.d(TAG, "[Move] Processing file: " + fileName);
-                    
-                    if (targetFile.exists()) {
-                        if (!targetFile.delete()) {
-                            Log.e(TAG, "[Move] Failed to delete existing file: " + targetFile.getAbsolutePath());
-                            success = false;
-                            continue;
-                        }
-                    }
-                    
-                    try {
-                        if (!copyFile(file, targetFile)) {
-                            Log.e(TAG, "[Move] Failed to copy file: " + fileName);
-                            success = false;
-                        } else {
-                            Log.d(TAG, "[Move] Successfully copied file: " + fileName);
-                        }
-                    } catch (Exception e) {
-                        Log.e(TAG, "[Move] Error copying file: " + fileName, e);
-                        success = false;
-                    }
-                }
-            }
-            
             // 验证特殊文件夹是否存在
             boolean hasLsecUpdatesh = new File(destDir, "lsec_updatesh").exists();
             boolean hasOem = new File(destDir, "oem").exists();
@@ -286,207 +294,45 @@ public class FileUtils {
             
             Log.d(TAG, "[Move] Special folders verification: lsec_updatesh=" + hasLsecUpdatesh + 
                     ", oem=" + hasOem + ", vaudioshow=" + hasVaudioshow);
-            
-            // 只有在成功时才删除源目录
-            if (success) {
-                if (!deleteRecursive(sourceDir)) {
-                    Log.e(TAG, "[Move] Failed to delete source directory: " + sourceDir.getAbsolutePath());
-                }
-            }
-            
-            return success;
-        }
-        // MCU升级包处理逻辑保持不变
-        else if (isMcuUpdate) {
-            Log.d(TAG, "[Move] Detected MCU update directory: " + dirName + ", moving its contents");
-            if (files != null) {
-                boolean overallSuccess = true;
-                for (File file : files) {
-                    if (file.isDirectory()) {
-                        // 如果是子目录，递归移动其内容
-                        if (!moveFilesFromDirectory(file.getAbsolutePath(), destDirPath)) {
-                            overallSuccess = false;
-                        }
-                    } else {
-                        // 如果是文件，直接移动到目标目录
-                        File targetFile = new File(destDir, file.getName());
-                        if (targetFile.exists()) {
-                            if (!deleteRecursive(targetFile)) {
-                                Log.e(TAG, "[Move] Failed to delete existing file: " + targetFile);
-                                overallSuccess = false;
-                                continue;
-                            }
-                        }
-                        if (!file.renameTo(targetFile)) {
-                            Log.e(TAG, "[Move] Failed to move file: " + file.getAbsolutePath());
-                            overallSuccess = false;
-                        } else {
-                            Log.d(TAG, "[Move] Successfully moved file: " + file.getName());
-                        }
-                    }
-                }
-                
-                // 删除源目录及其父目录（如果是MCU更新目录）
-                if (overallSuccess) {
-                    // 首先删除当前目录
-                    if (!deleteRecursive(sourceDir)) {
-                        Log.e(TAG, "[Move] Failed to delete source directory: " + sourceDir.getAbsolutePath());
-                        overallSuccess = false;
-                    } else {
-                        Log.d(TAG, "[Move] Successfully deleted source directory: " + sourceDir.getAbsolutePath());
-                        
-                        // 获取父目录
-                        File parentDir = sourceDir.getParentFile();
-                        if (parentDir != null && parentDir.getName().equals(dirName)) {
-                            // 如果父目录也是同名的MCU目录，删除它
-                            if (!deleteRecursive(parentDir)) {
-                                Log.e(TAG, "[Move] Failed to delete parent MCU directory: " + parentDir.getAbsolutePath());
-                            } else {
-                                Log.d(TAG, "[Move] Successfully deleted parent MCU directory: " + parentDir.getAbsolutePath());
-                            }
-                        }
-                    }
-                }
-                return overallSuccess;
-            }
-            return true;
-        }
-        // 系统应用更新处理逻辑 - 同样使用复制而非移动
-        else {
-            Log.d(TAG, "[Move] Processing system app update, moving all files to root");
-            boolean overallSuccess = true;
-            for (File file : files) {
-                String fileName = file.getName();
-                File targetFile = new File(destDir, fileName);
-                
-                if (targetFile.exists()) {
-                    if (!deleteRecursive(targetFile)) {
-                        Log.e(TAG, "[Move] Failed to delete existing file/dir: " + targetFile.getAbsolutePath());
-                        overallSuccess = false;
-                        continue;
-                    }
-                }
-                
-                if (file.isDirectory()) {
-                    // 处理目录
-                    if (!copyDirectoryRecursively(file, targetFile)) {
-                        Log.e(TAG, "[Move] Failed to copy directory: " + fileName);
-                        overallSuccess = false;
-                    } else {
-                        Log.d(TAG, "[Move] Successfully copied directory: " + fileName);
-                    }
+        } else if (isMcuUpdate) {
+            // 源目录已在安装完成时删除，父目录也是同名的MCU目录时一并删除
+            File parentDir = sourceDir.getParentFile();
+            if (parentDir != null && parentDir.getName().equals(dirName)) {
+                if (!deleteRecursive(parentDir)) {
+                    Log.e(TAG, "[Move] Failed to delete parent MCU directory: " + parentDir.getAbsolutePath());
                 } else {
-                    // 处理文件
-                    try {
-                        if (!copyFile(file, targetFile)) {
-                            Log.e(TAG, "[Move] Failed to copy file: " + fileName);
-                            overallSuccess = false;
-                        } else {
-                            Log.d(TAG, "[Move] Successfully copied file: " + fileName);
-                        }
-                    } catch (Exception e) {
-                        Log.e(TAG, "[Move] Error copying file: " + fileName, e);
-                        overallSuccess = false;
-                    }
+                    Log.d(TAG, "[Move] Successfully deleted parent MCU directory: " + parentDir.getAbsolutePath());
                 }
             }
-            
-            // 只有在成功时才删除源目录
-            if (overallSuccess) {
-                if (!deleteRecursive(sourceDir)) {
-                    Log.e(TAG, "[Move] Failed to delete source directory: " + sourceDir.getAbsolutePath());
-                }
-            }
-            
-            return overallSuccess;
         }
+        return true;
     }
-    
+
     /**
-     * 递归复制目录及其内容
+     * MCU升级包目录（L数字_MCU）中的子目录继续展开，其余每一项按原名安装到目标根目录，同名时后出现的为准
      */
-    private static boolean copyDirectoryRecursively(File sourceDir, File destDir) {
-        if (sourceDir == null || !sourceDir.exists() || !sourceDir.isDirectory()) {
-            return false;
-        }
-        
-        if (!destDir.exists()) {
-            if (!destDir.mkdirs()) {
-                Log.e(TAG, "[Copy] Failed to create destination directory: " + destDir.getAbsolutePath());
-                return false;
-            }
-        }
-        
-        boolean success = true;
+    private static void collectMoveItems(File sourceDir, List<StagedInstaller.Item> out) {
         File[] files = sourceDir.listFiles();
-        
-        if (files != null) {
-            // 遍历并复制每个文件和目录
-            for (File file : files) {
-                File targetFile = new File(destDir, file.getName());
-                
-                if (file.isDirectory()) {
-                    // 创建目标子目录
-                    if (!targetFile.exists() && !targetFile.mkdir()) {
-                        Log.e(TAG, "[Copy] Failed to create subdirectory: " + targetFile.getAbsolutePath());
-                        success = false;
-                        continue;
-                    }
-                    
-                    // 递归复制子目录内容
-                    if (!copyDirectoryRecursively(file, targetFile)) {
-                        success = false;
-                    }
-                } else {
-                    // 复制文件
-                    try {
-                        if (!copyFile(file, targetFile)) {
-                            Log.e(TAG, "[Copy] Failed to copy file: " + file.getName());
-                            success = false;
-                        }
-                    } catch (Exception e) {
-                        Log.e(TAG, "[Copy] Error copying file: " + file.getName(), e);
-                        success = false;
-                    }
-                }
+        if (files == null) return;
+        boolean isMcuUpdate = sourceDir.getName().matches("L\\d+_MCU");
+        for (File file : files) {
+            if (isMcuUpdate && file.isDirectory()) {
+                collectMoveItems(file, out);
+            } else {
+                out.add(new StagedInstaller.Item(file, file.getName()));
             }
         }
-        
-        return success;
     }
-
+    
     public static boolean copyFile(File sourceFile, File destFile) throws IOException {
         if (!sourceFile.exists()) return false;
         if (sourceFile.isDirectory()) {
             Log.d(TAG, "Copying directory: " + sourceFile.getPath());
-            if (!destFile.exists() && !destFile.mkdirs()) {
-                Log.e(TAG, "Copy failed: mkdirs dest " + destFile.getPath());
-                return false;
-            }
-            boolean success = true;
-            File[] files = sourceFile.listFiles();
-            if (files != null) {
-                for (File file : files) {
-                    if (!copyFile(file, new File(destFile, file.getName()))) success = false;
-                }
-            }
-            return success;
-        }
-        FileInputStream fis = null;
-        FileOutputStream fos = null;
-        try {
-            fis = new FileInputStream(sourceFile);
-            fos = new FileOutputStream(destFile);
-            byte[] buffer = new byte[BUFFER_SIZE];
-            int length;
-            while ((length = fis.read(buffer)) > 0) {
-                fos.write(buffer, 0, length);
-            }
+            new ParallelTreeCopier().copy(sourceFile, destFile);
             return true;
-        } finally {
-            closeQuietly(fis);
-            closeQuietly(fos);
         }
+        new FileCopier().copy(sourceFile, destFile);
+        return true;
     }
 
     public static boolean deleteRecursive(File fileOrDirectory) {
@@ -532,6 +378,19 @@ public class FileUtils {
         return df;
     }
 
+    /**
+     * 从 in 读满 length 字节到 buffer，数据不足时抛出 EOFException
+     */
+    public static void readFully(@NonNull InputStream in, @NonNull byte[] buffer, int offset, int length)
+            throws IOException {
+        while (length > 0) {
+            int n = in.read(buffer, offset, length);
+            if (n < 0) throw new EOFException("Unexpected end of stream, " + length + " bytes missing");
+            offset += n;
+            length -= n;
+        }
+    }
+
     public static void closeQuietly(InputStream s) {
         if (s != null) {
             try {
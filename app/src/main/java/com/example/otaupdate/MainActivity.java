@@ -23,13 +23,10 @@ import android.widget.ProgressBar;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.ContextCompat;
 
-import com.alibaba.sdk.android.oss.internal.OSSAsyncTask;
-import com.alibaba.sdk.android.oss.model.GetObjectResult;
 import com.example.otaupdate.databinding.ActivityMainBinding;
 
 import java.io.File;
@@ -56,8 +53,8 @@ public class MainActivity extends AppCompatActivity {
 
     private ExecutorService backgroundExecutor;
     private Handler mainThreadHandler;
-    @Nullable
-    private OSSAsyncTask<GetObjectResult> currentDownloadTask = null;
+    // 本页面发起的下载尚未结束
+    private boolean downloadActive = false;
 
     private static boolean isDownloading = false;
     public static boolean isDownloading() { return isDownloading; }
@@ -105,8 +102,9 @@ public class MainActivity extends AppCompatActivity {
         setContentView(binding.getRoot());
         backgroundExecutor = Executors.newSingleThreadExecutor();
         mainThreadHandler = new Handler(Looper.getMainLooper());
-        ossManager = new OssManager(this);
-        
+        // 上次中断的安装由 OssManager 创建时在网络线程上完成或回滚
+        ossManager = OssManager.getInstance(this);
+
         // Register reboot dialog broadcast receiver
         registerReceiver(new android.content.BroadcastReceiver() {
             @Override
@@ -181,11 +179,12 @@ public class MainActivity extends AppCompatActivity {
         if (backgroundExecutor != null && !backgroundExecutor.isShutdown()) {
             backgroundExecutor.shutdown();
         }
-        if (ossManager != null) {
+        // 共享实例在配置变更（如旋转）后继续使用，只有真正退出时才释放
+        if (ossManager != null && isFinishing()) {
             ossManager.shutdown();
         }
-        if (currentDownloadTask != null && !currentDownloadTask.isCompleted()) {
-            currentDownloadTask.cancel();
+        if (downloadActive && ossManager != null) {
+            ossManager.cancelDownload();
             Log.d(TAG, "Cancelling download task in onDestroy");
         }
     }
@@ -265,6 +264,8 @@ public class MainActivity extends AppCompatActivity {
         backgroundExecutor.submit(() -> {
             try {
                 Log.d(TAG, "Starting to fetch device info...");
+                // 先带上下文加载设备指纹，探测结果可以持久化，下次启动直接读取
+                DeviceFingerprint.get(MainActivity.this);
                 deviceCpuModel = DeviceInfoUtils.getCpuModel();
                 deviceResolution = DeviceInfoUtils.getResolution(MainActivity.this);
                 deviceSystemBuildDate = DeviceInfoUtils.getSystemBuildDate();
@@ -283,6 +284,8 @@ public class MainActivity extends AppCompatActivity {
             // Device info fetched, can be accessed by Fragments via shared ViewModel
             Log.d(TAG, "Device info fetched, available for Fragments");
         });
+        // 启动时一次完成三项检查，各页面打开时直接显示保存的结果，检查未完成时加入等待而不单独检查
+        ossManager.checkAllUpdates();
     }
 
     private void checkSystemUpdate() {
@@ -345,13 +348,14 @@ public class MainActivity extends AppCompatActivity {
         final String unzipDirPath = new File(getCacheDir(), "unzipped_" + (isSystemUpdate ? "system" : "mcu")).getAbsolutePath();
         final String targetDirPath = ROOT_UPDATE_DIR;
 
-        if (currentDownloadTask != null && !currentDownloadTask.isCompleted()) {
-            currentDownloadTask.cancel();
+        if (downloadActive) {
+            ossManager.cancelDownload();
             Log.d(TAG, "Previous download task cancelled.");
         }
 
         // Download progress handling logic moved to respective Fragments
-        currentDownloadTask = ossManager.downloadUpdate(updateInfo.getObjectKey(), downloadFilePath, new OssManager.DownloadCallback() {
+        downloadActive = true;
+        ossManager.downloadUpdate(updateInfo.getObjectKey(), downloadFilePath, new OssManager.DownloadCallback() {
             @Override
             public void onProgress(long currentSize, long totalSize) {
                 int progress = (totalSize > 0) ? (int) ((currentSize * 100) / totalSize) : 0;
@@ -362,7 +366,7 @@ public class MainActivity extends AppCompatActivity {
             @Override
             public void onSuccess() {
                 String downloadedFilePath = downloadFilePath;
-                currentDownloadTask = null;
+                downloadActive = false;
                 Log.d(TAG, "Download completed: " + downloadFilePath);
                 // Download completion handling logic moved to respective Fragments
                 backgroundExecutor.submit(() -> {
@@ -423,19 +427,12 @@ public class MainActivity extends AppCompatActivity {
 
             @Override
             public void onFailure(Exception e) {
-                currentDownloadTask = null;
+                downloadActive = false;
                 Log.e(TAG, "Download failed", e);
                 Log.e(TAG, "Download failed: " + e.getMessage());
                 cleanupTemporaryFiles(downloadFilePath, unzipDirPath);
             }
         });
-        if (currentDownloadTask == null) {
-            Log.e(TAG, "Failed to start download task.");
-            // 使用Fragment中的视图，这里暂时使用日志记录错误
-            Log.e(TAG, "Failed to start download task.");
-            // 不再使用errorStatusView，因为它可能在Fragment中
-            // 不再直接操作UI元素，由Fragment处理
-        }
     }
 
     private String getDetailedErrorMessage(Exception e) {
@@ -589,8 +586,7 @@ public class MainActivity extends AppCompatActivity {
     
     private void cancelAllDownloads() {
         // 取消所有下载任务
-        OssManager ossManager = new OssManager(this);
-        ossManager.cancelDownload();
+        OssManager.getInstance(this).cancelDownload();
         
         // 重置下载状态
         setDownloading(false);
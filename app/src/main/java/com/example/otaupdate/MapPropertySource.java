@@ -0,0 +1,30 @@
+package com.example.otaupdate;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 基于不可变 Map 的属性来源，用于保存解析后的 build.prop，也可在 JVM 单元测试中构造任意属性
+ */
+public final class MapPropertySource implements PropertySource {
+    private final Map<String, String> properties;
+
+    public MapPropertySource(@NonNull Map<String, String> properties) {
+        this.properties = Collections.unmodifiableMap(new HashMap<>(properties));
+    }
+
+    @Nullable
+    @Override
+    public String get(@NonNull String key) {
+        String value = properties.get(key);
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    public int size() {
+        return properties.size();
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.otaupdate;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.alibaba.sdk.android.oss.ClientException;
+import com.alibaba.sdk.android.oss.ServiceException;
+import com.alibaba.sdk.android.oss.model.ListObjectsRequest;
+import com.alibaba.sdk.android.oss.model.ListObjectsResult;
+import com.alibaba.sdk.android.oss.model.OSSObjectSummary;
+
+/**
+ * 分页列举 OSS 目录
+ * 按 nextMarker 逐页请求，每页到达后立即把对象交给访问者处理，访问者返回 false 时不再请求后续页面。
+ * OSS 按键的字典序返回对象，调用方可以利用这一顺序在越过目标区间后提前结束
+ */
+public class ObjectLister {
+    private static final String TAG = "ObjectLister";
+    // 单页键数：页越大单次请求越慢，提前结束时浪费的也越多
+    public static final int DEFAULT_PAGE_SIZE = 200;
+
+    /**
+     * 执行单页请求，通常为 OSS#listObjects
+     */
+    public interface PageFetcher {
+        @NonNull
+        ListObjectsResult fetch(@NonNull ListObjectsRequest request) throws ClientException, ServiceException;
+    }
+
+    public interface Visitor {
+        /**
+         * @return 是否继续列举
+         */
+        boolean visit(@NonNull OSSObjectSummary summary);
+    }
+
+    /**
+     * 列举统计
+     */
+    public static final class Result {
+        public final int pages;
+        public final int objects;
+        public final boolean stoppedEarly;
+
+        Result(int pages, int objects, boolean stoppedEarly) {
+            this.pages = pages;
+            this.objects = objects;
+            this.stoppedEarly = stoppedEarly;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return pages + " pages, " + objects + " objects" + (stoppedEarly ? ", stopped early" : "");
+        }
+    }
+
+    private final PageFetcher fetcher;
+    private final String bucketName;
+    private final int pageSize;
+
+    public ObjectLister(@NonNull PageFetcher fetcher, @NonNull String bucketName) {
+        this(fetcher, bucketName, DEFAULT_PAGE_SIZE);
+    }
+
+    public ObjectLister(@NonNull PageFetcher fetcher, @NonNull String bucketName, int pageSize) {
+        this.fetcher = fetcher;
+        this.bucketName = bucketName;
+        this.pageSize = Math.max(1, Math.min(pageSize, 1000));
+    }
+
+    /**
+     * 列举 prefix 下的对象（delimiter 为 "/" 时不进入子目录），startAfter 不为空时从该键之后开始
+     */
+    @NonNull
+    public Result list(@NonNull String prefix, @Nullable String delimiter, @Nullable String startAfter,
+                       @NonNull Visitor visitor) throws ClientException, ServiceException {
+        String marker = startAfter;
+        int pages = 0;
+        int objects = 0;
+        while (true) {
+            ListObjectsRequest request = new ListObjectsRequest(bucketName);
+            request.setPrefix(prefix);
+            if (delimiter != null) request.setDelimiter(delimiter);
+            request.setMaxKeys(pageSize);
+            if (marker != null) request.setMarker(marker);
+            ListObjectsResult page = fetcher.fetch(request);
+            pages++;
+            String lastKey = null;
+            if (page.getObjectSummaries() != null) {
+                for (OSSObjectSummary summary : page.getObjectSummaries()) {
+                    objects++;
+                    lastKey = summary.getKey();
+                    if (!visitor.visit(summary)) {
+                        Result result = new Result(pages, objects, true);
+                        Log.d(TAG, "Listed " + prefix + ": " + result);
+                        return result;
+                    }
+                }
+            }
+            if (!page.isTruncated()) break;
+            // 指定 delimiter 时 nextMarker 可能是公共前缀，总是以服务端返回的为准
+            marker = page.getNextMarker() != null ? page.getNextMarker() : lastKey;
+            if (marker == null) {
+                Log.w(TAG, "Truncated listing without marker: " + prefix);
+                break;
+            }
+        }
+        Result result = new Result(pages, objects, false);
+        Log.d(TAG, "Listed " + prefix + ": " + result);
+        return result;
+    }
+}
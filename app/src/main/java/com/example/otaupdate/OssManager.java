@@ -5,6 +5,7 @@ import android.app.Activity;
 import android.content.Context;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.widget.Toast;
 
@@ -15,44 +16,90 @@ import com.alibaba.sdk.android.oss.ClientException;
 import com.alibaba.sdk.android.oss.OSS;
 import com.alibaba.sdk.android.oss.OSSClient;
 import com.alibaba.sdk.android.oss.ServiceException;
-import com.alibaba.sdk.android.oss.callback.OSSCompletedCallback;
-import com.alibaba.sdk.android.oss.callback.OSSProgressCallback; // 确保导入
+import com.alibaba.sdk.android.oss.common.OSSHeaders;
 import com.alibaba.sdk.android.oss.common.auth.OSSCredentialProvider;
 import com.alibaba.sdk.android.oss.common.auth.OSSStsTokenCredentialProvider;
-import com.alibaba.sdk.android.oss.internal.OSSAsyncTask;
 import com.alibaba.sdk.android.oss.model.GetObjectRequest;
 import com.alibaba.sdk.android.oss.model.GetObjectResult;
-import com.alibaba.sdk.android.oss.model.ListObjectsRequest;
-import com.alibaba.sdk.android.oss.model.ListObjectsResult;
-import com.alibaba.sdk.android.oss.model.OSSObjectSummary;
+import com.alibaba.sdk.android.oss.model.HeadObjectRequest;
+import com.alibaba.sdk.android.oss.model.HeadObjectResult;
+import com.alibaba.sdk.android.oss.model.ObjectMetadata;
+import com.alibaba.sdk.android.oss.model.Range;
+
+import org.json.JSONException;
 
 import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipException;
 
 public class OssManager {
     private static final String TAG = "OssManager";
+    private static final String SYSTEM_PREFIX = "firmware/System/";
+    private static final String SYSTEM_APP_PREFIX = "firmware/System APP/";
+    private static final String MCU_PREFIX = "firmware/MCU/";
+    private static final String SDCARD_PATH = "/mnt/sdcard";
+    // 分段下载并发数之外，额外的线程留给写线程、更新检查和包校验的后台读回
+    private static final int NETWORK_THREADS = SegmentedDownloader.DEFAULT_SEGMENT_COUNT + 2;
+    // 网络线程空闲超过该时间后回收，应用空闲时不常驻线程
+    private static final long NETWORK_THREAD_KEEP_ALIVE_SECONDS = 60;
+    private static final String CATALOG_FILE = "update_catalog.json";
+    private static final String CHECK_CACHE_FILE = "update_check_cache.json";
+    // 系统、系统应用、MCU 三项检查通常同时发起，该时间内共用一次目录请求
+    private static final long CATALOG_REVALIDATE_INTERVAL_MS = 60 * 1000;
+
+    private static OssManager instance;
     private final OSS oss;
     private final String bucketName = "ota-firmware-carupdate";
     private final ExecutorService networkExecutor; // Network specific executor
+    private final ObjectLister objectLister;
+    private final UpdateCheckCache checkCache;
+    private final SegmentedDownloader segmentedDownloader;
+    private final StreamingExtractor streamingExtractor;
+    private final ZstdPackageExtractor zstdExtractor;
+    private final BundleSync bundleSync;
     private final Handler mainThreadHandler;
-    private final Context context; // 保存原始 context
+    private final Context context; // Application context
+    // 当前界面，用于显示重启确认对话框；弱引用避免共享实例泄漏 Activity
+    private volatile WeakReference<Activity> activityRef = new WeakReference<>(null);
     
-    // 当前下载任务引用，用于取消下载
-    private OSSAsyncTask<GetObjectResult> currentDownloadTask = null;
+    // 当前下载任务引用，用于取消下载；与暂停状态一起由 downloadLock 保护
+    private final Object downloadLock = new Object();
+    private SegmentedDownloader.Task currentDownloadTask = null;
     
     // 用于保存暂停前的状态
     private String pausedObjectKey = null;
     private String pausedDestinationPath = null;
     private DownloadCallback pausedCallback = null;
     private boolean isPaused = false;
+    // 每次恢复、暂停或取消时递增，等待旧任务停下的恢复请求据此判断是否已被后来的操作取代
+    private int resumeSerial = 0;
     private long downloadedSize = 0;
     private long totalSize = 0;
 
+    // 更新目录：检查更新时重新校验，下载时读取其中的 SHA-256 与增量补丁
+    private final UpdateCatalogStore catalogStore;
+    // 组合检查的状态只在主线程读写：进行中的检查、等待其结果的回调、最近一次完成的结果
+    private UpdateCheckResult updateCheckInFlight;
+    private final List<AllUpdatesCallback> updateCheckCallbacks = new ArrayList<>();
+    private UpdateCheckResult lastUpdateCheck;
+
     // Callback Interfaces
     public interface OssCallback<T> {
         void onSuccess(@Nullable T result); // Allow null result
@@ -60,653 +107,1334 @@ public class OssManager {
         void onFailure(@NonNull Exception e);
     }
 
+    /**
+     * 更新类别
+     */
+    public enum UpdateKind {
+        SYSTEM,
+        SYSTEM_APP,
+        MCU
+    }
+
+    /**
+     * 组合检查结果，某一项检查失败时对应的结果为 null、错误不为 null
+     */
+    public static final class UpdateCheckResult {
+        private final Map<UpdateKind, UpdateInfo> updates = new EnumMap<>(UpdateKind.class);
+        private final Map<UpdateKind, Exception> errors = new EnumMap<>(UpdateKind.class);
+        private final Set<UpdateKind> checked = EnumSet.noneOf(UpdateKind.class);
+
+        synchronized void set(@NonNull UpdateKind kind, @Nullable UpdateInfo info, @Nullable Exception error) {
+            if (info != null) updates.put(kind, info);
+            if (error != null) errors.put(kind, error);
+            checked.add(kind);
+        }
+
+        /**
+         * 该项检查是否已完成（包括失败）
+         */
+        public synchronized boolean isChecked(@NonNull UpdateKind kind) {
+            return checked.contains(kind);
+        }
+
+        synchronized boolean isComplete() {
+            return checked.size() == UpdateKind.values().length;
+        }
+
+        @Nullable
+        public synchronized UpdateInfo get(@NonNull UpdateKind kind) {
+            return updates.get(kind);
+        }
+
+        @Nullable
+        public synchronized Exception getError(@NonNull UpdateKind kind) {
+            return errors.get(kind);
+        }
+
+        public synchronized boolean hasErrors() {
+            return !errors.isEmpty();
+        }
+
+        @NonNull
+        @Override
+        public synchronized String toString() {
+            return "UpdateCheckResult{updates=" + updates + ", errors=" + errors.keySet() + "}";
+        }
+    }
+
+    public interface AllUpdatesCallback {
+        /**
+         * 单项检查完成，info 为 null 且 error 为 null 表示没有更新
+         */
+        default void onPartialResult(@NonNull UpdateKind kind, @Nullable UpdateInfo info, @Nullable Exception error) {
+        }
+
+        void onComplete(@NonNull UpdateCheckResult result);
+    }
+
     public interface DownloadCallback {
         void onProgress(long currentSize, long totalSize);
 
+        /**
+         * 分阶段的字节进度（下载/解压/安装），附带各阶段吞吐率与剩余时间
+         */
+        default void onPhaseProgress(@NonNull ProgressTracker.Snapshot progress) {
+        }
+
         void onSuccess();
 
         void onFailure(@NonNull Exception e);
     }
 
-    public OssManager(@NonNull Context context) {
+    /**
+     * 获取应用级共享实例
+     * 所有页面共用同一个 OSSClient（及其 HTTP 连接池）和网络线程池，避免每次操作重新建连和握手，
+     * 暂停/继续/取消也总是作用在正在进行的下载上。传入 Activity 时记录为当前界面
+     */
+    @NonNull
+    public static synchronized OssManager getInstance(@NonNull Context context) {
+        if (instance == null) {
+            instance = new OssManager(context.getApplicationContext());
+        }
+        if (context instanceof Activity) {
+            instance.activityRef = new WeakReference<>((Activity) context);
+        }
+        return instance;
+    }
+
+    private OssManager(@NonNull Context context) {
         String ossEndpoint = "";
         String accessKeyId = "";
         String accessKeySecret = ""; 
         String securityToken = ""; 
         
-        this.context = context; // 保存原始 context
+        this.context = context;
         
         OSSCredentialProvider credentialProvider = new OSSStsTokenCredentialProvider(accessKeyId, accessKeySecret, securityToken);
         ClientConfiguration conf = new ClientConfiguration();
         conf.setConnectionTimeout(15 * 1000);
         conf.setSocketTimeout(15 * 1000);
-        conf.setMaxConcurrentRequest(5);
+        // 并发请求数与网络线程数一致，分段下载的各个 Range 请求可以同时复用连接池中的长连接
+        conf.setMaxConcurrentRequest(NETWORK_THREADS);
         conf.setMaxErrorRetry(2);
-        oss = new OSSClient(context.getApplicationContext(), ossEndpoint, credentialProvider, conf);
+        oss = new OSSClient(context, ossEndpoint, credentialProvider, conf);
         Log.d(TAG, "OSS SDK initialized with real credentials.");
-        networkExecutor = Executors.newFixedThreadPool(3);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(NETWORK_THREADS, NETWORK_THREADS,
+                NETWORK_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(@NonNull Runnable r) {
+                        return new Thread(r, "oss-network-" + count.incrementAndGet());
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        networkExecutor = executor;
+        objectLister = new ObjectLister(oss::listObjects, bucketName);
+        checkCache = new UpdateCheckCache(new File(context.getFilesDir(), CHECK_CACHE_FILE));
+        catalogStore = new UpdateCatalogStore(new File(context.getFilesDir(), CATALOG_FILE),
+                CATALOG_REVALIDATE_INTERVAL_MS);
+        segmentedDownloader = new SegmentedDownloader(networkExecutor, SegmentedDownloader.DEFAULT_SEGMENT_COUNT);
+        streamingExtractor = new StreamingExtractor(networkExecutor);
+        zstdExtractor = new ZstdPackageExtractor();
+        bundleSync = new BundleSync(networkExecutor);
         mainThreadHandler = new Handler(Looper.getMainLooper());
+        // 上次安装到一半断电或被杀时，启动后先完成或回滚，/mnt/sdcard 不会停留在半新半旧的状态
+        networkExecutor.submit(() -> new StagedInstaller(new File(SDCARD_PATH)).recover());
     }
 
-    public void checkMcuUpdate(@NonNull final OssCallback<UpdateInfo> callback) {
-        networkExecutor.submit(() -> {
-            final String prefix = "firmware/MCU/";
-            Log.d(TAG, "Checking MCU updates: " + prefix);
-            ListObjectsRequest request = new ListObjectsRequest(bucketName);
-            request.setPrefix(prefix);
-            request.setDelimiter("/");
+    /**
+     * 获取更新目录：先用本地保存的 ETag 发起条件请求，未变化（304）时直接使用本地副本。
+     * 目录未发布（404）或暂时无法获取且本地没有副本时返回 null，由调用方退回到列举目录的方式。
+     * 在网络线程上调用
+     */
+    @Nullable
+    private UpdateCatalog fetchCatalog() {
+        return catalogStore.revalidate(etag -> {
+            GetObjectRequest request = new GetObjectRequest(bucketName, UpdateCatalog.OBJECT_KEY);
+            if (etag != null) {
+                Map<String, String> headers = new HashMap<>();
+                headers.put("If-None-Match", etag);
+                request.setRequestHeaders(headers);
+            }
             try {
-                ListObjectsResult result = oss.listObjects(request);
-                String cpuModel = DeviceInfoUtils.getCpuModel();
-                String expectedMcuFileName;
-                
-                if ("UIS8581A".equals(cpuModel)) {
-                    expectedMcuFileName = "L6315_MCU.zip";
-                } else if ("UIS8141E".equals(cpuModel)) {
-                    expectedMcuFileName = "L6523_MCU.zip";
-                } else {
-                    expectedMcuFileName = "L6315_MCU.zip"; // 默认值
-                    Log.w(TAG, "未知CPU型号: " + cpuModel + "，默认使用: " + expectedMcuFileName);
+                GetObjectResult result = oss.getObject(request);
+                String json;
+                InputStream in = result.getObjectContent();
+                try {
+                    json = UpdateCatalog.readFully(in);
+                } finally {
+                    FileUtils.closeQuietly(in);
                 }
+                return UpdateCatalog.parse(json, result.getMetadata().getETag());
+            } catch (ServiceException e) {
+                if (e.getStatusCode() == 304) return null;
+                if (e.getStatusCode() == 404) throw new FileNotFoundException(UpdateCatalog.OBJECT_KEY);
+                throw new IOException("Catalog request failed: " + e.getRawMessage(), e);
+            }
+        }, SystemClock.elapsedRealtime());
+    }
 
-                String targetKey = prefix + expectedMcuFileName;
-                UpdateInfo mcuUpdate = null;
+    /**
+     * 统一分辨率格式，宽度在前（如 800x1280 -> 1280x800）
+     */
+    private static String formatResolution(String resolution) {
+        if (resolution == null || !resolution.contains("x")) return resolution;
+        String[] parts = resolution.split("x");
+        if (parts.length != 2) return resolution;
+        try {
+            int width = Integer.parseInt(parts[0]);
+            int height = Integer.parseInt(parts[1]);
+            if (width < height) {
+                String formatted = height + "x" + width;
+                Log.d(TAG, "分辨率格式已调整: " + resolution + " -> " + formatted);
+                return formatted;
+            }
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "分辨率格式解析失败: " + resolution, e);
+        }
+        return resolution;
+    }
 
-                if (result != null && result.getObjectSummaries() != null) {
-                    for (OSSObjectSummary summary : result.getObjectSummaries()) {
-                        String key = summary.getKey();
-                        if (key.equals(targetKey)) {
-                            String version = expectedMcuFileName.replace(".zip", "");
-                            mcuUpdate = new UpdateInfo(version, key);
-                            break;
-                        }
-                    }
-                }
-                final UpdateInfo finalUpdate = mcuUpdate;
-                mainThreadHandler.post(() -> callback.onSuccess(finalUpdate));
+    /**
+     * 单项更新检查：优先从更新目录中查找，目录不可用时列举 OSS 目录
+     */
+    private interface UpdateLookup {
+        @Nullable
+        UpdateInfo fromCatalog(@NonNull UpdateCatalog catalog);
+
+        @Nullable
+        UpdateInfo fromListing() throws Exception;
+    }
+
+    /**
+     * 带本地缓存的更新检查，在当前线程执行并直接回调
+     * 缓存新鲜时直接返回；过期不久时先返回旧结果，再重新检查并更新缓存；否则同步检查。
+     * 重新检查时目录通过 ETag 条件请求获取，未变化时不会重新下载
+     */
+    private void performUpdateCheck(@NonNull String label, @NonNull String prefix, @Nullable String cpuModel,
+                                    @Nullable String resolution, @NonNull UpdateLookup lookup,
+                                    @NonNull OssCallback<UpdateInfo> callback) {
+        UpdateCheckCache.Entry cached = checkCache.get(prefix, cpuModel, resolution);
+        long now = System.currentTimeMillis();
+        if (cached != null && cached.isFresh(now)) {
+            Log.d(TAG, label + " update from cache: " + cached.info);
+            callback.onSuccess(cached.info);
+            return;
+        }
+        if (cached != null && cached.isUsableStale(now)) {
+            Log.d(TAG, label + " update from stale cache, revalidating: " + cached.info);
+            callback.onSuccess(cached.info);
+            try {
+                resolveUpdate(label, prefix, cpuModel, resolution, lookup, cached);
             } catch (Exception e) {
-                Log.e(TAG, "检查MCU更新失败", e);
-                String errorMessage = e.getMessage();
-                // 检查是否是凭证无效错误
-                if (errorMessage != null && (errorMessage.contains("InvalidAccessKeyId") || 
-                        errorMessage.contains("Access Key Id") || 
-                        errorMessage.contains("AccessKeyId"))) {
-                    Log.e(TAG, "OSS凭证无效，请检查AccessKeyId和AccessKeySecret", e);
-                    mainThreadHandler.post(() -> callback.onFailure(
-                            new Exception("OSS凭证无效，请联系管理员更新凭证")));
-                } else if (errorMessage != null && (errorMessage.contains("Network") || 
-                        errorMessage.contains("timeout") || 
-                        errorMessage.contains("connection"))) {
-                    Log.e(TAG, "网络连接错误", e);
-                    mainThreadHandler.post(() -> callback.onFailure(
-                            new Exception("网络连接错误，请检查网络设置")));
-                } else {
-                    mainThreadHandler.post(() -> callback.onFailure(e));
+                Log.w(TAG, label + " background revalidation failed", e);
+            }
+            return;
+        }
+        UpdateInfo result;
+        try {
+            result = resolveUpdate(label, prefix, cpuModel, resolution, lookup, cached);
+        } catch (Exception e) {
+            Log.e(TAG, label + " update check failed", e);
+            callback.onFailure(mapCheckFailure(e));
+            return;
+        }
+        callback.onSuccess(result);
+    }
+
+    @Nullable
+    private UpdateInfo resolveUpdate(String label, String prefix, String cpuModel, String resolution,
+                                     UpdateLookup lookup, @Nullable UpdateCheckCache.Entry cached) throws Exception {
+        UpdateCatalog catalog = fetchCatalog();
+        UpdateInfo result;
+        String etag = null;
+        if (catalog != null) {
+            etag = catalog.getETag();
+            if (cached != null && etag != null && etag.equals(cached.etag)) {
+                // 目录未变化，之前的结果仍然有效
+                result = cached.info;
+                Log.d(TAG, label + " update unchanged (catalog " + etag + ")");
+            } else {
+                result = lookup.fromCatalog(catalog);
+                Log.d(TAG, label + " update from catalog r" + catalog.getRevision() + ": " + result);
+            }
+        } else {
+            result = lookup.fromListing();
+        }
+        checkCache.put(prefix, cpuModel, resolution, result, etag);
+        return result;
+    }
+
+    @NonNull
+    private static Exception mapCheckFailure(@NonNull Exception e) {
+        String errorMessage = e.getMessage();
+        // 检查是否是凭证无效错误
+        if (errorMessage != null && (errorMessage.contains("InvalidAccessKeyId") ||
+                errorMessage.contains("Access Key Id") ||
+                errorMessage.contains("AccessKeyId"))) {
+            Log.e(TAG, "OSS凭证无效，请检查AccessKeyId和AccessKeySecret", e);
+            return new Exception("OSS凭证无效，请联系管理员更新凭证");
+        } else if (errorMessage != null && (errorMessage.contains("Network") ||
+                errorMessage.contains("timeout") ||
+                errorMessage.contains("connection"))) {
+            Log.e(TAG, "网络连接错误", e);
+            return new Exception("网络连接错误，请检查网络设置");
+        }
+        return e;
+    }
+
+    @NonNull
+    private UpdateLookup systemLookup(final String cpuModel, final String resolution) {
+        return new UpdateLookup() {
+            @Override
+            public UpdateInfo fromCatalog(@NonNull UpdateCatalog catalog) {
+                return catalog.findSystem(cpuModel, resolution);
+            }
+
+            @Override
+            public UpdateInfo fromListing() throws Exception {
+                // 文件名格式: UIS8581A_1280x800_20250306.zip
+                DatedPackageMatcher matcher = new DatedPackageMatcher(0, cpuModel, resolution, false);
+                objectLister.list(SYSTEM_PREFIX, "/", null, matcher);
+                return matcher.getLatest();
+            }
+        };
+    }
+
+    @NonNull
+    private UpdateLookup systemAppLookup(final String cpuModel, final String resolution) {
+        return new UpdateLookup() {
+            @Override
+            public UpdateInfo fromCatalog(@NonNull UpdateCatalog catalog) {
+                return catalog.findSystemApp(cpuModel, resolution);
+            }
+
+            @Override
+            public UpdateInfo fromListing() throws Exception {
+                // 文件名格式: ALLApp_UIS8581A_1280x800_20250306.zip，同时兼容只有日期的旧格式
+                DatedPackageMatcher matcher = new DatedPackageMatcher(1, cpuModel, resolution, true);
+                objectLister.list(SYSTEM_APP_PREFIX, "/", null, matcher);
+                return matcher.getLatest();
+            }
+        };
+    }
+
+    @NonNull
+    private UpdateLookup mcuLookup(final String expectedMcuFileName) {
+        return new UpdateLookup() {
+            @Override
+            public UpdateInfo fromCatalog(@NonNull UpdateCatalog catalog) {
+                return catalog.findMcu(expectedMcuFileName.replace("_MCU.zip", ""));
+            }
+
+            @Override
+            public UpdateInfo fromListing() throws Exception {
+                final UpdateInfo[] mcuUpdate = new UpdateInfo[1];
+                objectLister.list(MCU_PREFIX, "/", null, summary -> {
+                    String key = summary.getKey();
+                    if (key.endsWith("/") || summary.getSize() <= 0) return true;
+                    String fileName = key.substring(key.lastIndexOf('/') + 1);
+                    if (!fileName.equalsIgnoreCase(expectedMcuFileName)) return true;
+                    mcuUpdate[0] = new UpdateInfo(fileName.replace(".zip", ""), key);
+                    Log.d(TAG, "Matching MCU found: " + fileName);
+                    return false;
+                });
+                return mcuUpdate[0];
+            }
+        };
+    }
+
+    /**
+     * 根据当前MCU版本确定要查找的文件名
+     */
+    @NonNull
+    private static String mcuFileForVersion(String mcuVersion) {
+        if ("L6523".equals(mcuVersion)) {
+            return "L6523_MCU.zip"; // UIS8141E对应的MCU
+        } else if ("L6315".equals(mcuVersion)) {
+            return "L6315_MCU.zip"; // UIS8581A对应的MCU
+        }
+        // 默认查找L6315
+        Log.w(TAG, "未知MCU版本: " + mcuVersion + "，默认查找: L6315_MCU.zip");
+        return "L6315_MCU.zip";
+    }
+
+    /**
+     * 一次完成系统、系统应用和 MCU 三项检查
+     * 设备信息只探测一次，三项检查在网络线程池上并发执行（共用一次目录请求），
+     * 每项完成时回调 onPartialResult，全部完成后回调一次 onComplete，均在主线程。
+     * 已有组合检查在进行时不再发起新的检查，callback 加入等待并先补发已完成的单项结果，
+     * 启动时的检查与随后打开的页面因此只请求一次
+     */
+    public void checkAllUpdates(@NonNull final AllUpdatesCallback callback) {
+        mainThreadHandler.post(() -> {
+            updateCheckCallbacks.add(callback);
+            final UpdateCheckResult inFlight = updateCheckInFlight;
+            if (inFlight != null) {
+                for (UpdateKind kind : UpdateKind.values()) {
+                    if (inFlight.isChecked(kind)) {
+                        callback.onPartialResult(kind, inFlight.get(kind), inFlight.getError(kind));
+                    }
                 }
+                return;
             }
+            final UpdateCheckResult result = new UpdateCheckResult();
+            updateCheckInFlight = result;
+            networkExecutor.submit(() -> {
+                final String cpuModel = DeviceInfoUtils.getCpuModel();
+                final String resolution = formatResolution(DeviceInfoUtils.getScreenResolution(context));
+                final String mcuFileName = mcuFileForVersion(DeviceInfoUtils.getMcuVersion(cpuModel));
+                Log.d(TAG, "Checking all updates: CPU=" + cpuModel + ", 分辨率=" + resolution + ", MCU=" + mcuFileName);
+
+                submitCombinedCheck(UpdateKind.SYSTEM, SYSTEM_PREFIX, cpuModel, resolution,
+                        systemLookup(cpuModel, resolution), result);
+                submitCombinedCheck(UpdateKind.SYSTEM_APP, SYSTEM_APP_PREFIX, cpuModel, resolution,
+                        systemAppLookup(cpuModel, resolution), result);
+                submitCombinedCheck(UpdateKind.MCU, MCU_PREFIX, mcuFileName, null,
+                        mcuLookup(mcuFileName), result);
+            });
         });
     }
 
-    public void checkSystemUpdate(String cpuModel, String resolution, @NonNull final OssCallback<UpdateInfo> callback) {
-        networkExecutor.submit(() -> {
-            String mappedCpuModel = cpuModel;
-            String formattedResolution = resolution;
-            if (resolution != null && resolution.contains("x")) {
-                String[] parts = resolution.split("x");
-                if (parts.length == 2) {
-                    try {
-                        int width = Integer.parseInt(parts[0]);
-                        int height = Integer.parseInt(parts[1]);
-                        if (width < height) {
-                            formattedResolution = height + "x" + width;
-                            Log.d(TAG, "分辨率格式已调整: " + resolution + " -> " + formattedResolution);
-                        }
-                    } catch (NumberFormatException e) {
-                        Log.w(TAG, "分辨率格式解析失败: " + resolution, e);
+    /**
+     * 发起组合检查但不等待结果，结果保存后通过 {@link #getLastUpdateCheck} 读取
+     */
+    public void checkAllUpdates() {
+        checkAllUpdates(result -> {
+        });
+    }
+
+    /**
+     * 最近一次完成的组合检查结果，还没有完成过时返回 null；在主线程调用
+     */
+    @Nullable
+    public UpdateCheckResult getLastUpdateCheck() {
+        return lastUpdateCheck;
+    }
+
+    private void submitCombinedCheck(final UpdateKind kind, String prefix, String cpuModel, String resolution,
+                                     UpdateLookup lookup, final UpdateCheckResult result) {
+        networkExecutor.submit(() -> performUpdateCheck(kind.name(), prefix, cpuModel, resolution, lookup,
+                new OssCallback<UpdateInfo>() {
+                    @Override
+                    public void onSuccess(@Nullable UpdateInfo info) {
+                        mainThreadHandler.post(() -> deliverCombinedCheck(result, kind, info, null));
                     }
-                }
+
+                    @Override
+                    public void onFailure(@NonNull Exception e) {
+                        mainThreadHandler.post(() -> deliverCombinedCheck(result, kind, null, e));
+                    }
+                }));
+    }
+
+    /**
+     * 在主线程记录单项结果并通知等待的回调，三项都完成后保存为最近一次结果
+     */
+    private void deliverCombinedCheck(UpdateCheckResult result, UpdateKind kind, @Nullable UpdateInfo info,
+                                      @Nullable Exception error) {
+        result.set(kind, info, error);
+        List<AllUpdatesCallback> callbacks = new ArrayList<>(updateCheckCallbacks);
+        boolean last = result.isComplete();
+        if (last) {
+            updateCheckInFlight = null;
+            updateCheckCallbacks.clear();
+            lastUpdateCheck = result;
+            Log.d(TAG, "Update check finished: " + result);
+        }
+        for (AllUpdatesCallback callback : callbacks) {
+            callback.onPartialResult(kind, info, error);
+            if (last) callback.onComplete(result);
+        }
+    }
+
+    /**
+     * 任务结束时的状态：已被替换（暂停后重新开始、已取消或已开始新的下载）、因暂停而中断、正常结束或失败
+     */
+    private enum TaskEnd {
+        REPLACED,
+        PAUSED,
+        ENDED
+    }
+
+    /**
+     * 下载任务句柄，在 downloadLock 内与 currentDownloadTask 同时赋值。
+     * 任务的回调通过它判断自己是否仍是当前任务，被替换的旧任务迟到的回调不再修改状态、报告失败或删除文件
+     */
+    private final class TaskHandle {
+        private SegmentedDownloader.Task task;
+
+        /**
+         * 当前任务结束后接着启动下一个任务（补丁链的下一步或回退方式）；已被替换或已暂停时不启动，返回 false
+         */
+        boolean handOff(@NonNull TaskStarter next) {
+            synchronized (downloadLock) {
+                if (task != currentDownloadTask || isPaused) return false;
+                launch(next);
+                return true;
             }
-            // 新路径规则：直接在firmware/System/目录下查找
-            final String prefix = "firmware/System/";
-            Log.d(TAG, "Checking system updates: " + prefix + " (原始分辨率: " + resolution + ")");
-            ListObjectsRequest request = new ListObjectsRequest(bucketName);
-            request.setPrefix(prefix);
-            request.setDelimiter("/");
-            try {
-                ListObjectsResult result = oss.listObjects(request);
-                UpdateInfo latestUpdate = null;
-                long latestDate = 0L;
-                if (result != null && result.getObjectSummaries() != null) {
-                    Log.d(TAG, "找到" + result.getObjectSummaries().size() + "个对象");
-                    for (OSSObjectSummary summary : result.getObjectSummaries()) {
-                        String key = summary.getKey();
-                        Log.d(TAG, "检查对象: " + key + ", 大小: " + summary.getSize());
-                        if (summary.getKey().endsWith("/") || summary.getSize() <= 0) {
-                            Log.d(TAG, "跳过目录或空文件: " + key);
-                            continue;
-                        }
-                        String fileName = key.substring(key.lastIndexOf('/') + 1);
-                        Log.d(TAG, "提取文件名: " + fileName);
-                        // 文件名格式: UIS8581A_1280x800_20250306.zip
-                        if (fileName.endsWith(".zip")) {
-                            String fileNameWithoutExt = fileName.replace(".zip", "");
-                            String[] parts = fileNameWithoutExt.split("_");
-                            Log.d(TAG, "文件名分段: " + String.join(", ", parts) + ", 分段数: " + parts.length);
-                            // 匹配CPU+分辨率
-                            if (parts.length >= 3) {
-                                String cpuAndRes = parts[0] + "_" + parts[1];
-                                if (cpuAndRes.equalsIgnoreCase(mappedCpuModel + "_" + formattedResolution)) {
-                                    String dateStr = parts[parts.length - 1];
-                                    Log.d(TAG, "提取日期字符串: " + dateStr);
-                                    if (dateStr.matches("\\d{8}")) {
-                                        try {
-                                            long currentDate = Long.parseLong(dateStr);
-                                            if (latestUpdate == null || currentDate > latestDate) {
-                                                latestDate = currentDate;
-                                                latestUpdate = new UpdateInfo(dateStr, key);
-                                                Log.d(TAG, "找到更新版本: " + dateStr + ", 文件: " + key);
-                                            }
-                                        } catch (NumberFormatException e) {
-                                            Log.w(TAG, "日期格式无效: " + dateStr, e);
-                                        }
-                                    }
-                                }
-                            }
-                        }
+        }
+
+        /**
+         * 任务结束，仍是当前任务时清除当前任务引用；暂停状态在同一把锁内读取，不会与恢复操作交错
+         */
+        @NonNull
+        TaskEnd end() {
+            synchronized (downloadLock) {
+                if (task != currentDownloadTask) return TaskEnd.REPLACED;
+                currentDownloadTask = null;
+                return isPaused ? TaskEnd.PAUSED : TaskEnd.ENDED;
+            }
+        }
+    }
+
+    private interface TaskStarter {
+        @NonNull
+        SegmentedDownloader.Task start(@NonNull TaskHandle handle);
+    }
+
+    /**
+     * 启动任务并设为当前任务。启动与赋值在同一把锁内完成，任务的回调在此之前不会读到旧的当前任务
+     */
+    private void launch(@NonNull TaskStarter starter) {
+        synchronized (downloadLock) {
+            TaskHandle handle = new TaskHandle();
+            handle.task = starter.start(handle);
+            currentDownloadTask = handle.task;
+        }
+    }
+
+    /**
+     * 开始下载。选择下载方式要读取本地文件、探测设备版本，在网络线程上进行，可以从主线程调用；
+     * 通过 {@link #pauseDownload}、{@link #cancelDownload} 控制下载
+     */
+    public void downloadUpdate(
+            String objectKey,
+            String destinationPath,
+            @NonNull final DownloadCallback callback
+    ) {
+        Log.d(TAG, "Download task started: " + objectKey);
+        int serial;
+        synchronized (downloadLock) {
+            serial = ++resumeSerial;
+        }
+        networkExecutor.submit(() -> startDownload(objectKey, destinationPath, callback, serial));
+    }
+
+    /**
+     * 选择下载方式并启动，在网络线程上调用；serial 已被之后的暂停、取消或新的下载取代时不启动
+     */
+    private void startDownload(String objectKey, String destinationPath,
+                               @NonNull final DownloadCallback callback, int serial) {
+        ProgressTracker tracker = new ProgressTracker(
+                snapshot -> mainThreadHandler.post(() -> callback.onPhaseProgress(snapshot)));
+        // 补丁链规划可能删除中间结果、读取设备版本，不占用 downloadLock
+        List<UpdateCatalog.Patch> chain = planDeltaChain(objectKey, destinationPath);
+        synchronized (downloadLock) {
+            if (serial != resumeSerial) {
+                Log.d(TAG, "Download superseded before start: " + objectKey);
+                return;
+            }
+            // 保存下载参数，以便暂停时使用
+            pausedObjectKey = objectKey;
+            pausedDestinationPath = destinationPath;
+            pausedCallback = callback;
+            isPaused = false;
+            if (chain != null) {
+                launch(handle -> startDeltaUpdate(objectKey, destinationPath, chain, 0, callback, tracker, handle));
+            } else if (shouldSyncBundle(objectKey, destinationPath)) {
+                launch(handle -> startBundleSync(objectKey, destinationPath, callback, tracker, handle));
+            } else {
+                launch(handle -> startFullDownload(objectKey, destinationPath, callback, tracker, handle));
+            }
+        }
+    }
+
+    private SegmentedDownloader.Task startFullDownload(
+            String objectKey,
+            String destinationPath,
+            @NonNull final DownloadCallback callback,
+            @NonNull final ProgressTracker tracker,
+            @NonNull final TaskHandle handle
+    ) {
+        if (shouldStreamExtract(objectKey, destinationPath)) {
+            return startStreamingExtraction(objectKey, destinationPath, callback, tracker, handle);
+        }
+        return startSegmentedDownload(objectKey, destinationPath, callback, tracker, handle);
+    }
+
+    /**
+     * 目录为系统包发布了增量补丁时，从当前系统版本（或上次中断时补丁链到达的版本）选出最小的补丁链；
+     * 补丁链总大小不小于完整包时仍下载完整包
+     *
+     * @return 不走增量更新时返回 null
+     */
+    @Nullable
+    private List<UpdateCatalog.Patch> planDeltaChain(String objectKey, String destinationPath) {
+        if (!objectKey.startsWith(SYSTEM_PREFIX)) return null;
+        File workDir = new File(PackageFormat.stripExtension(destinationPath));
+        String reached = DeltaUpdate.readReachedVersion(workDir);
+        List<UpdateCatalog.Patch> chain = selectDeltaChain(objectKey,
+                reached != null ? reached : DeviceInfoUtils.getStandardSystemVersion());
+        if (chain == null && reached != null) {
+            // 改为下载完整包，清掉补丁链的中间结果
+            FileUtils.deleteRecursive(workDir);
+        } else if (chain != null && reached == null) {
+            // 新开始的补丁链不能以之前完整包解压留下的文件为基准
+            FileUtils.deleteRecursive(workDir);
+        }
+        return chain;
+    }
+
+    @Nullable
+    private List<UpdateCatalog.Patch> selectDeltaChain(String objectKey, String from) {
+        UpdateCatalog current = catalogStore.current();
+        if (current == null) return null;
+        String target = current.findVersion(objectKey);
+        List<UpdateCatalog.Patch> patches = current.findPatches(objectKey);
+        if (target == null || patches.isEmpty()) return null;
+        List<UpdateCatalog.Patch> chain = DeltaUpdate.planChain(patches, from, target);
+        if (chain == null) {
+            Log.d(TAG, "No patch chain " + from + " -> " + target + ", downloading full package");
+            return null;
+        }
+        long chainSize = DeltaUpdate.totalSize(chain);
+        long fullSize = current.findSize(objectKey);
+        if (fullSize > 0 && chainSize >= fullSize) {
+            Log.d(TAG, "Patch chain " + chain + " not smaller than full package (" + fullSize + " bytes)");
+            return null;
+        }
+        Log.i(TAG, "Delta update " + from + " -> " + target + " via " + chain + ", full package " + fullSize);
+        return chain;
+    }
+
+    /**
+     * 增量更新：依次下载并应用补丁链中的每个补丁，更新后的文件写入解压目录，全部完成后与完整包相同地安装。
+     * 补丁无法应用或校验失败时删除中间结果，改为下载完整包
+     */
+    private SegmentedDownloader.Task startDeltaUpdate(
+            String objectKey,
+            String destinationPath,
+            @NonNull final List<UpdateCatalog.Patch> chain,
+            final int step,
+            @NonNull final DownloadCallback callback,
+            @NonNull final ProgressTracker tracker,
+            @NonNull final TaskHandle handle
+    ) {
+        UpdateCatalog.Patch patch = chain.get(step);
+        File workDir = new File(PackageFormat.stripExtension(destinationPath));
+        File patchFile = new File(new File(destinationPath).getParentFile(),
+                patch.key.substring(patch.key.lastIndexOf('/') + 1));
+        long chainSize = DeltaUpdate.totalSize(chain);
+        long doneBefore = DeltaUpdate.totalSize(chain.subList(0, step));
+        Log.d(TAG, "Downloading patch " + (step + 1) + "/" + chain.size() + ": " + patch.key);
+        if (step == 0) {
+            // 整条补丁链只进入一次下载阶段，各步的下载字节在同一阶段内累计
+            tracker.startPhase(ProgressTracker.Phase.DOWNLOAD, chainSize);
+        }
+
+        OssRangeSource source = new OssRangeSource(patch.key, catalogSha256(patch.key));
+        PackageVerifier verifier = new PackageVerifier(patchFile, networkExecutor);
+        return segmentedDownloader.start(source, patchFile, new SegmentedDownloader.Listener() {
+            @Override
+            public void onProgress(long currentSize, long totalSize) {
+                // 进度按整条补丁链累计
+                long current = doneBefore + currentSize;
+                downloadedSize = current;
+                OssManager.this.totalSize = chainSize;
+                tracker.setDownloaded(current, chainSize);
+                mainThreadHandler.post(() -> callback.onProgress(current, chainSize));
+            }
+
+            @Override
+            public void onComplete(@NonNull File file) {
+                try {
+                    verifyPackage(source, verifier);
+                    // 应用补丁计入下载阶段，不切换阶段以免下一步下载时进度从 0 重新计算
+                    DeltaUpdate.apply(patchFile, patch, new File(SDCARD_PATH), workDir);
+                } catch (Exception e) {
+                    Log.w(TAG, "Patch " + patch + " failed, falling back to full package", e);
+                    FileUtils.deleteRecursive(workDir);
+                    if (!handle.handOff(next -> startFullDownload(objectKey, destinationPath, callback, tracker,
+                            next))) {
+                        handle.end();
+                    }
+                    return;
+                } finally {
+                    if (patchFile.exists() && !patchFile.delete()) {
+                        Log.w(TAG, "Failed to delete patch file: " + patchFile);
                     }
                 }
-                final UpdateInfo finalResult = latestUpdate;
-                mainThreadHandler.post(() -> callback.onSuccess(finalResult));
-            } catch (Exception e) {
-                Log.e(TAG, "System update check failed", e);
-                String errorMessage = e.getMessage();
-                // 检查是否是凭证无效错误
-                if (errorMessage != null && (errorMessage.contains("InvalidAccessKeyId") || 
-                        errorMessage.contains("Access Key Id") || 
-                        errorMessage.contains("AccessKeyId"))) {
-                    Log.e(TAG, "OSS凭证无效，请检查AccessKeyId和AccessKeySecret", e);
-                    mainThreadHandler.post(() -> callback.onFailure(
-                            new Exception("OSS凭证无效，请联系管理员更新凭证")));
-                } else if (errorMessage != null && (errorMessage.contains("Network") || 
-                        errorMessage.contains("timeout") || 
-                        errorMessage.contains("connection"))) {
-                    Log.e(TAG, "网络连接错误", e);
-                    mainThreadHandler.post(() -> callback.onFailure(
-                            new Exception("网络连接错误，请检查网络设置")));
-                } else {
+                if (step + 1 < chain.size()) {
+                    // 暂停时不再启动下一步，已应用的补丁记录在解压目录中，恢复时从到达的版本继续
+                    if (!handle.handOff(next -> startDeltaUpdate(objectKey, destinationPath, chain, step + 1,
+                            callback, tracker, next))) {
+                        handle.end();
+                    }
+                    return;
+                }
+                Log.d(TAG, "Delta update complete: " + objectKey);
+                try {
+                    DeltaUpdate.clearReachedVersion(workDir);
+                    if (!installExtractedFiles(workDir, callback, tracker)) return;
+                    mainThreadHandler.post(callback::onSuccess);
+                } catch (Exception e) {
+                    Log.e(TAG, "Post-download processing failed", e);
+                    FileUtils.deleteRecursive(workDir);
                     mainThreadHandler.post(() -> callback.onFailure(e));
+                } finally {
+                    handle.end();
                 }
             }
-        });
-    }
 
-    public void checkSystemAppUpdate(@NonNull final OssCallback<UpdateInfo> callback) {
-        networkExecutor.submit(() -> {
-            final String prefix = "firmware/System APP/";
-            Log.d(TAG, "Checking System APP updates: " + prefix);
-            ListObjectsRequest request = new ListObjectsRequest(bucketName);
-            request.setPrefix(prefix);
-            request.setDelimiter("/");
-
-            // 获取当前设备的CPU型号和分辨率
-            String cpuModel = DeviceInfoUtils.getCpuModel();
-            String resolution = DeviceInfoUtils.getScreenResolution(context);
-            String mappedCpuModel = cpuModel;
-            String formattedResolution = resolution;
-
-            // 格式化分辨率，确保宽度和高度按规则排序
-            if (resolution != null && resolution.contains("x")) {
-                String[] parts = resolution.split("x");
-                if (parts.length == 2) {
-                    try {
-                        int width = Integer.parseInt(parts[0]);
-                        int height = Integer.parseInt(parts[1]);
-                        if (width < height) {
-                            formattedResolution = height + "x" + width;
-                            Log.d(TAG, "分辨率格式已调整: " + resolution + " -> " + formattedResolution);
-                        }
-                    } catch (NumberFormatException e) {
-                        Log.w(TAG, "分辨率格式解析失败: " + resolution, e);
-                    }
+            @Override
+            public void onFailure(@NonNull Exception error) {
+                TaskEnd end = handle.end();
+                if (end == TaskEnd.REPLACED) return;
+                if (end == TaskEnd.PAUSED) {
+                    // 已应用的补丁记录在解压目录中，恢复时从到达的版本继续
+                    Log.d(TAG, "Delta update paused at patch " + (step + 1) + "/" + chain.size());
+                    return;
                 }
+                if (!DownloadJournal.journalFileFor(patchFile).exists()) {
+                    FileUtils.deleteRecursive(patchFile);
+                }
+                reportDownloadFailure(error, callback);
             }
+        }, verifier);
+    }
 
-            Log.d(TAG, "查找System APP更新: CPU=" + mappedCpuModel + ", 分辨率=" + formattedResolution);
+    /**
+     * 系统固件 zip 包在下载目录所在分区放不下包文件加解压结果时（按目录给出的包大小估算）边下载边解压，
+     * 之前的流式解压留下了断点时继续流式解压；其余情况分段并发下载，更快。
+     * 已有分段下载的断点日志时继续分段续传
+     */
+    private boolean shouldStreamExtract(String objectKey, String destinationPath) {
+        if (!objectKey.startsWith(SYSTEM_PREFIX)
+                || PackageFormat.fromName(destinationPath) != PackageFormat.ZIP
+                || DownloadJournal.journalFileFor(new File(destinationPath)).exists()) {
+            return false;
+        }
+        File extractDir = new File(PackageFormat.stripExtension(destinationPath));
+        if (StreamingExtractor.checkpointFileFor(extractDir).exists()) return true;
+        UpdateCatalog current = catalogStore.current();
+        long packageSize = current != null ? current.findSize(objectKey) : 0;
+        File parent = extractDir.getParentFile();
+        long usable = parent != null ? parent.getUsableSpace() : 0;
+        // 解压结果与包大小相当，先下载后解压的峰值约为包大小的两倍
+        boolean stream = packageSize > 0 && usable > 0 && usable < packageSize * 2;
+        if (stream) {
+            Log.i(TAG, "Only " + usable + " bytes free for " + packageSize + " byte package, extracting while downloading");
+        }
+        return stream;
+    }
 
-            try {
-                ListObjectsResult result = oss.listObjects(request);
-                UpdateInfo latestUpdate = null;
-                long latestDate = 0L;
-                if (result != null && result.getObjectSummaries() != null) {
-                    Log.d(TAG, "找到" + result.getObjectSummaries().size() + "个对象");
-                    for (OSSObjectSummary summary : result.getObjectSummaries()) {
-                        String key = summary.getKey();
-                        Log.d(TAG, "检查对象: " + key + ", 大小: " + summary.getSize());
-                        if (summary.getKey().endsWith("/") || summary.getSize() <= 0) {
-                            Log.d(TAG, "跳过目录或空文件: " + key);
-                            continue;
-                        }
-                        String fileName = key.substring(key.lastIndexOf('/') + 1);
-                        Log.d(TAG, "提取文件名: " + fileName);
-                        
-                        // 文件名格式: ALLApp_UIS8581A_1280x800_20250306.zip
-                        if (fileName.endsWith(".zip")) {
-                            String fileNameWithoutExt = fileName.replace(".zip", "");
-                            String[] parts = fileNameWithoutExt.split("_");
-                            Log.d(TAG, "文件名分段: " + String.join(", ", parts) + ", 分段数: " + parts.length);
-                            
-                            // 检查是否符合新的命名格式，至少应该有4个部分
-                            if (parts.length >= 4) {
-                                // ALLApp_UIS8581A_1280x800_20250306
-                                String cpuAndRes = parts[1] + "_" + parts[2];
-                                if (cpuAndRes.equalsIgnoreCase(mappedCpuModel + "_" + formattedResolution)) {
-                                    String dateStr = parts[parts.length - 1];
-                                    Log.d(TAG, "提取日期字符串: " + dateStr);
-                                    if (dateStr.matches("\\d{8}")) {
-                                        try {
-                                            long currentDate = Long.parseLong(dateStr);
-                                            if (latestUpdate == null || currentDate > latestDate) {
-                                                latestDate = currentDate;
-                                                latestUpdate = new UpdateInfo(dateStr, key);
-                                                Log.d(TAG, "找到System APP更新版本: " + dateStr + ", 文件: " + key);
-                                            }
-                                        } catch (NumberFormatException e) {
-                                            Log.w(TAG, "日期格式无效: " + dateStr, e);
-                                        }
-                                    }
-                                } else {
-                                    Log.d(TAG, "CPU型号或分辨率不匹配: 期望 " + mappedCpuModel + "_" + formattedResolution + 
-                                           ", 实际 " + cpuAndRes);
-                                }
+    /**
+     * 系统应用包按文件同步；已有断点日志说明之前回退到了下载完整包，继续按分段方式续传
+     */
+    private boolean shouldSyncBundle(String objectKey, String destinationPath) {
+        return objectKey.startsWith(SYSTEM_APP_PREFIX)
+                && destinationPath.toLowerCase().endsWith(".zip")
+                && !DownloadJournal.journalFileFor(new File(destinationPath)).exists();
+    }
+
+    /**
+     * 按文件清单只拉取与 /mnt/sdcard 不同的文件并就地替换，没有清单时回退到下载完整包
+     */
+    private SegmentedDownloader.Task startBundleSync(
+            String objectKey,
+            String destinationPath,
+            @NonNull final DownloadCallback callback,
+            @NonNull final ProgressTracker tracker,
+            @NonNull final TaskHandle handle
+    ) {
+        // 与完整包的解压目录分开，回退时不会混入按路径暂存的文件
+        File stagingDir = new File(PackageFormat.stripExtension(destinationPath) + ".sync");
+        Log.d(TAG, "Syncing bundle files via: " + stagingDir);
+        return bundleSync.start(new OssRangeSource(objectKey, null), this::openObject, new File(SDCARD_PATH), stagingDir,
+                new SegmentedDownloader.Listener() {
+                    @Override
+                    public void onProgress(long currentSize, long totalSize) {
+                        downloadedSize = currentSize;
+                        OssManager.this.totalSize = totalSize;
+                        mainThreadHandler.post(() -> callback.onProgress(currentSize, totalSize));
+                    }
+
+                    @Override
+                    public void onComplete(@NonNull File dir) {
+                        try {
+                            int installed = BundleSync.install(dir, new File(SDCARD_PATH), tracker);
+                            if (installed > 0) {
+                                rebootDevice();
                             } else {
-                                // 兼容旧格式，仅根据日期判断
-                                String dateStr = parts.length > 1 ? parts[parts.length - 1] : null;
-                                if (dateStr != null && dateStr.matches("\\d{8}")) {
-                                    Log.d(TAG, "使用旧格式解析: 日期 = " + dateStr);
-                                    try {
-                                        long currentDate = Long.parseLong(dateStr);
-                                        if (latestUpdate == null || currentDate > latestDate) {
-                                            latestDate = currentDate;
-                                            latestUpdate = new UpdateInfo(dateStr, key);
-                                            Log.d(TAG, "找到System APP更新版本: " + dateStr + ", 文件: " + key);
-                                        }
-                                    } catch (NumberFormatException e) {
-                                        Log.w(TAG, "System APP日期格式无效: " + dateStr, e);
-                                    }
-                                }
+                                Log.i(TAG, "All bundle files already up to date: " + objectKey);
                             }
+                            mainThreadHandler.post(callback::onSuccess);
+                        } catch (Exception e) {
+                            Log.e(TAG, "Installing synced files failed", e);
+                            mainThreadHandler.post(() -> callback.onFailure(e));
+                        } finally {
+                            handle.end();
                         }
                     }
-                }
-                final UpdateInfo finalResult = latestUpdate;
-                mainThreadHandler.post(() -> callback.onSuccess(finalResult));
-            } catch (Exception e) {
-                Log.e(TAG, "System APP update check failed", e);
-                String errorMessage = e.getMessage();
-                // 检查是否是凭证无效错误
-                if (errorMessage != null && (errorMessage.contains("InvalidAccessKeyId") || 
-                        errorMessage.contains("Access Key Id") || 
-                        errorMessage.contains("AccessKeyId"))) {
-                    Log.e(TAG, "OSS凭证无效，请检查AccessKeyId和AccessKeySecret", e);
-                    mainThreadHandler.post(() -> callback.onFailure(
-                            new Exception("OSS凭证无效，请联系管理员更新凭证")));
-                } else if (errorMessage != null && (errorMessage.contains("Network") || 
-                        errorMessage.contains("timeout") || 
-                        errorMessage.contains("connection"))) {
-                    Log.e(TAG, "网络连接错误", e);
-                    mainThreadHandler.post(() -> callback.onFailure(
-                            new Exception("网络连接错误，请检查网络设置")));
-                } else {
+
+                    @Override
+                    public void onFailure(@NonNull Exception error) {
+                        if (error instanceof FileNotFoundException && handle.handOff(next -> {
+                            Log.i(TAG, "No file manifest for " + objectKey + ", downloading full bundle");
+                            FileUtils.deleteRecursive(stagingDir);
+                            return startSegmentedDownload(objectKey, destinationPath, callback, tracker, next);
+                        })) {
+                            return;
+                        }
+                        TaskEnd end = handle.end();
+                        if (end == TaskEnd.REPLACED) return;
+                        if (end == TaskEnd.PAUSED) {
+                            // 已校验的文件保留在暂存目录中，恢复时不再拉取
+                            Log.d(TAG, "Bundle sync paused, will resume from staged files");
+                            return;
+                        }
+                        reportDownloadFailure(error, callback);
+                    }
+                }, tracker);
+    }
+
+    /**
+     * 读取整个对象，对象不存在时抛出 FileNotFoundException
+     */
+    @NonNull
+    private InputStream openObject(@NonNull String key) throws IOException {
+        try {
+            return oss.getObject(new GetObjectRequest(bucketName, key)).getObjectContent();
+        } catch (ClientException e) {
+            throw new IOException(e.getMessage(), e);
+        } catch (ServiceException e) {
+            if (e.getStatusCode() == 404) throw new FileNotFoundException(key);
+            throw new IOException(e.getRawMessage(), e);
+        }
+    }
+
+    /**
+     * 边下载边解压：数据流直接解压到与包同名的目录，完成后移动到/mnt/sdcard。
+     * 中断时已解压的条目记在断点中，恢复时从下一个条目续读；zip 不支持流式解压时改为分段下载
+     */
+    private SegmentedDownloader.Task startStreamingExtraction(
+            String objectKey,
+            String destinationPath,
+            @NonNull final DownloadCallback callback,
+            @NonNull final ProgressTracker tracker,
+            @NonNull final TaskHandle handle
+    ) {
+        File extractDir = new File(PackageFormat.stripExtension(destinationPath));
+        boolean isMcuUpdate = FileUtils.isMcuPackage(new File(destinationPath).getName());
+        Log.d(TAG, "Streaming extraction to: " + extractDir);
+        OssRangeSource source = new OssRangeSource(objectKey, catalogSha256(objectKey));
+        PackageVerifier verifier = new PackageVerifier(null);
+        SegmentedDownloader.Listener listener = new SegmentedDownloader.Listener() {
+            @Override
+            public void onProgress(long currentSize, long totalSize) {
+                downloadedSize = currentSize;
+                OssManager.this.totalSize = totalSize;
+                tracker.setDownloaded(currentSize, totalSize);
+                mainThreadHandler.post(() -> callback.onProgress(currentSize, totalSize));
+            }
+
+            @Override
+            public void onComplete(@NonNull File dir) {
+                Log.d(TAG, "Streaming extraction complete: " + objectKey);
+                try {
+                    if (!installExtractedFiles(dir, callback, tracker)) return;
+                    mainThreadHandler.post(callback::onSuccess);
+                } catch (Exception e) {
+                    Log.e(TAG, "Post-download processing failed", e);
+                    FileUtils.deleteRecursive(dir);
                     mainThreadHandler.post(() -> callback.onFailure(e));
+                } finally {
+                    handle.end();
                 }
             }
-        });
-    }
 
-    public void checkMcuUpdate(String currentMcuVersion, @NonNull final OssCallback<UpdateInfo> callback) {
-        networkExecutor.submit(() -> {
-            final String prefix = "firmware/MCU/";
-            Log.d(TAG, "Checking MCU updates: " + prefix + ", current MCU version: " + currentMcuVersion);
-            ListObjectsRequest request = new ListObjectsRequest(bucketName);
-            request.setPrefix(prefix);
-            request.setDelimiter("/");
-            try {
-                ListObjectsResult result = oss.listObjects(request); // Blocking call
-                UpdateInfo mcuUpdate = null;
-                // 根据当前MCU版本确定要查找的文件名
-                String expectedMcuFileName;
-                if ("L6523".equals(currentMcuVersion)) {
-                    expectedMcuFileName = "L6523_MCU.zip"; // UIS8141E对应的MCU
-                } else if ("L6315".equals(currentMcuVersion)) {
-                    expectedMcuFileName = "L6315_MCU.zip"; // UIS8581A对应的MCU
-                } else {
-                    // 默认查找L6315
-                    expectedMcuFileName = "L6315_MCU.zip";
-                    Log.w(TAG, "未知MCU版本: " + currentMcuVersion + "，默认查找: " + expectedMcuFileName);
-                }
-                Log.d(TAG, "查找MCU更新文件: " + expectedMcuFileName);
-                
-                if (result != null && result.getObjectSummaries() != null) {
-                    for (OSSObjectSummary summary : result.getObjectSummaries()) {
-                        if (summary.getKey().endsWith("/") || summary.getSize() <= 0) continue;
-                        String key = summary.getKey();
-                        String fileName = key.substring(key.lastIndexOf('/') + 1);
-                        if (fileName.equalsIgnoreCase(expectedMcuFileName)) {
-                            mcuUpdate = new UpdateInfo(fileName.replace(".zip", ""), key);
-                            Log.d(TAG, "Matching MCU found: " + fileName);
-                            break;
-                        }
-                    }
+            @Override
+            public void onFailure(@NonNull Exception error) {
+                // 包结构不支持流式解压（如压缩方式不支持）时改为先下载后解压，已解压的条目不再有用
+                if (error instanceof ZipException && handle.handOff(next -> {
+                    Log.w(TAG, "Streaming extraction unsupported, falling back to segmented download", error);
+                    StreamingExtractor.deleteCheckpoint(extractDir);
+                    FileUtils.deleteRecursive(extractDir);
+                    return startSegmentedDownload(objectKey, destinationPath, callback, tracker, next);
+                })) {
+                    return;
                 }
-                final UpdateInfo finalResult = mcuUpdate;
-                mainThreadHandler.post(() -> callback.onSuccess(finalResult));
-            } catch (Exception e) {
-                Log.e(TAG, "MCU update check failed", e);
-                String errorMessage = e.getMessage();
-                // 检查是否是凭证无效错误
-                if (errorMessage != null && (errorMessage.contains("InvalidAccessKeyId") || 
-                        errorMessage.contains("Access Key Id") || 
-                        errorMessage.contains("AccessKeyId"))) {
-                    Log.e(TAG, "OSS凭证无效，请检查AccessKeyId和AccessKeySecret", e);
-                    mainThreadHandler.post(() -> callback.onFailure(
-                            new Exception("OSS凭证无效，请联系管理员更新凭证")));
-                } else if (errorMessage != null && (errorMessage.contains("Network") || 
-                        errorMessage.contains("timeout") || 
-                        errorMessage.contains("connection"))) {
-                    Log.e(TAG, "网络连接错误", e);
-                    mainThreadHandler.post(() -> callback.onFailure(
-                            new Exception("网络连接错误，请检查网络设置")));
-                } else {
-                    mainThreadHandler.post(() -> callback.onFailure(e));
+                TaskEnd end = handle.end();
+                if (end == TaskEnd.REPLACED) return;
+                if (end == TaskEnd.PAUSED) {
+                    // 恢复时从断点处的条目续读
+                    Log.d(TAG, "Streaming extraction paused, will resume from checkpoint");
+                    return;
                 }
+                reportDownloadFailure(error, callback);
             }
-        });
+        };
+        return streamingExtractor.start(source, extractDir, isMcuUpdate, listener, tracker, verifier);
     }
 
-    @Nullable
-    public OSSAsyncTask<GetObjectResult> downloadUpdate(
+    /**
+     * 按字节区间分段并发下载，直接写入目标文件的对应偏移，完成后再解压
+     */
+    private SegmentedDownloader.Task startSegmentedDownload(
             String objectKey,
             String destinationPath,
-            @NonNull final DownloadCallback callback
+            @NonNull final DownloadCallback callback,
+            @NonNull final ProgressTracker tracker,
+            @NonNull final TaskHandle handle
     ) {
-        Log.d(TAG, "Download task started: " + objectKey);
-        GetObjectRequest request = new GetObjectRequest(bucketName, objectKey);
-
-        // 保存下载参数，以便暂停时使用
-        pausedObjectKey = objectKey;
-        pausedDestinationPath = destinationPath;
-        pausedCallback = callback;
-
-        // 正确设置进度回调
-        request.setProgressListener(new OSSProgressCallback<GetObjectRequest>() {
+        OssRangeSource source = new OssRangeSource(objectKey, catalogSha256(objectKey));
+        File destination = new File(destinationPath);
+        // 边写边算摘要，下载完成后先校验再解压
+        PackageVerifier verifier = new PackageVerifier(destination, networkExecutor);
+        return segmentedDownloader.start(source, destination, new SegmentedDownloader.Listener() {
             @Override
-            public void onProgress(GetObjectRequest request, long currentSize, long totalSize) {
+            public void onProgress(long currentSize, long totalSize) {
                 // 保存当前下载进度
                 downloadedSize = currentSize;
                 OssManager.this.totalSize = totalSize;
-                
+                tracker.setDownloaded(currentSize, totalSize);
+
                 // 回调到主线程更新 UI
                 mainThreadHandler.post(() -> callback.onProgress(currentSize, totalSize));
             }
-        });
-        // ===============================================
 
-        currentDownloadTask = oss.asyncGetObject(request, new OSSCompletedCallback<GetObjectRequest, GetObjectResult>() {
             @Override
-            public void onSuccess(GetObjectRequest completedRequest, GetObjectResult result) {
-                Log.d(TAG, "OSS Download onSuccess: " + objectKey);
-                networkExecutor.submit(() -> { // 在后台线程写入文件
-                    FileOutputStream fos = null;
-                    InputStream inputStream = null;
-                    try {
-                        inputStream = result.getObjectContent();
-                        fos = new FileOutputStream(destinationPath);
-                        byte[] buffer = new byte[8192];
-                        int len;
-                        while ((len = inputStream.read(buffer)) != -1 && !Thread.currentThread().isInterrupted()) {
-                            fos.write(buffer, 0, len);
-                        }
-                        if (Thread.currentThread().isInterrupted())
-                            throw new IOException("Download cancelled during write");
-                        fos.flush();
-                        Log.d(TAG, "File write success: " + destinationPath);
-                        
-                        // 下载完成后解压文件
-                        File downloadedFile = new File(destinationPath);
-                        if (destinationPath.toLowerCase().endsWith(".zip")) {
-                            // 创建解压目录
-                            String extractDirPath = destinationPath.substring(0, destinationPath.lastIndexOf('.'));
-                            File extractDir = new File(extractDirPath);
-                            if (!extractDir.exists()) {
-                                extractDir.mkdirs();
-                            }
-                            
-                            Log.d(TAG, "Extracting zip file to: " + extractDirPath);
-                            // 解压文件，并通过主线程回调更新UI
-                            boolean extractSuccess = FileUtils.unzip(destinationPath, extractDirPath, progress -> {
-                                Log.d(TAG, "Unzip progress: " + progress + "%");
-                                // 通过主线程更新UI
-                                mainThreadHandler.post(() -> {
-                                    callback.onProgress(progress, 100); // 复用下载进度回调
-                                });
-                            });
-                            
-                            if (extractSuccess) {
-                                Log.d(TAG, "Extraction successful");
-                                // 删除原始下载的zip文件以释放空间
-                                if (downloadedFile.exists()) {
-                                    if (downloadedFile.delete()) {
-                                        Log.d(TAG, "Deleted original zip file: " + destinationPath);
-                                    } else {
-                                        Log.w(TAG, "Failed to delete original zip file: " + destinationPath);
-                                    }
-                                }
-                                
-                                // 移动文件到/mnt/sdcard目录（直接移动文件内容，而不是整个文件夹）
-                                String sdcardPath = "/mnt/sdcard";
-                                Log.d(TAG, "Moving files to: " + sdcardPath);
-                                
-                                // 确保目标目录存在
-                                File sdcardDir = new File(sdcardPath);
-                                if (!sdcardDir.exists()) {
-                                    sdcardDir.mkdirs();
-                                    Log.d(TAG, "Created target directory: " + sdcardPath);
-                                }
-                                
-                                // 获取解压目录中的所有文件和文件夹
-                                File[] extractedItems = new File(extractDirPath).listFiles();
-                                boolean moveSuccess = true;
-                                if (extractedItems != null && extractedItems.length > 0) {
-                                    int totalItems = extractedItems.length;
-                                    int processedItems = 0;
-                                    for (File item : extractedItems) {
-                                        Log.d(TAG, "Moving item: " + item.getName());
-                                        File targetPath = new File(sdcardPath, item.getName());
-                                        // 如果目标已存在，先删除
-                                        if (targetPath.exists()) {
-                                            targetPath.delete();
-                                        }
-                                        // 只移动文件（不移动整个文件夹）
-                                        if (item.isFile()) {
-                                            if (!item.renameTo(targetPath)) {
-                                                // 如果重命名失败，尝试复制
-                                                if (!FileUtils.copyFile(item, targetPath) || !item.delete()) {
-                                                    Log.e(TAG, "Failed to move file: " + item.getName());
-                                                    moveSuccess = false;
-                                                }
-                                            }
-                                        } else if (item.isDirectory()) {
-                                            // 递归移动文件夹内所有文件
-                                            File[] subFiles = item.listFiles();
-                                            if (subFiles != null) {
-                                                for (File subFile : subFiles) {
-                                                    File subTarget = new File(sdcardPath, subFile.getName());
-                                                    if (subTarget.exists()) subTarget.delete();
-                                                    if (!subFile.renameTo(subTarget)) {
-                                                        if (!FileUtils.copyFile(subFile, subTarget) || !subFile.delete()) {
-                                                            Log.e(TAG, "Failed to move file: " + subFile.getName());
-                                                            moveSuccess = false;
-                                                        }
-                                                    }
-                                                }
-                                            }
-                                            // 删除空文件夹
-                                            item.delete();
-                                        }
-                                        // 更新进度
-                                        processedItems++;
-                                        final int progress = (int)((processedItems * 100) / totalItems);
-                                        Log.d(TAG, "Move progress: " + progress + "%");
-                                        mainThreadHandler.post(() -> {
-                                            callback.onProgress(progress, 100);
-                                        });
-                                    }
-                                } else {
-                                    Log.w(TAG, "No files found in extraction directory");
-                                }
-                                
-                                if (moveSuccess) {
-                                    Log.d(TAG, "Files moved successfully");
-                                    // 删除解压目录
-                                    if (extractDir.exists()) {
-                                        if (FileUtils.deleteRecursive(extractDir)) {
-                                            Log.d(TAG, "Deleted extraction directory: " + extractDirPath);
-                                        } else {
-                                            Log.w(TAG, "Failed to delete extraction directory: " + extractDirPath);
-                                        }
-                                    }
-                                    
-                                    // 重启系统
-                                    rebootDevice();
-                                } else {
-                                    Log.e(TAG, "Failed to move files to " + sdcardPath);
-                                    mainThreadHandler.post(() -> callback.onFailure(new IOException("Failed to move files to " + sdcardPath)));
-                                    return;
-                                }
-                            } else {
-                                Log.e(TAG, "Failed to extract zip file");
-                                mainThreadHandler.post(() -> callback.onFailure(new IOException("Failed to extract zip file")));
-                                return;
-                            }
-                        }
-                        
-                        mainThreadHandler.post(callback::onSuccess); // 回调成功
-                        // 清空当前下载任务引用
-                        currentDownloadTask = null;
-                    } catch (Exception e) {
-                        Log.e(TAG, "File write failed", e);
-                        FileUtils.deleteRecursive(new File(destinationPath));
-                        mainThreadHandler.post(() -> callback.onFailure(e)); // 回调失败
-                        // 清空当前下载任务引用
-                        currentDownloadTask = null;
-                    } finally {
-                        FileUtils.closeQuietly(fos); // 使用修正后的 public 方法
-                        FileUtils.closeQuietly(inputStream); // 使用修正后的 public 方法
-                    }
-                });
+            public void onComplete(@NonNull File file) {
+                Log.d(TAG, "Download complete: " + objectKey);
+                try {
+                    verifyPackage(source, verifier);
+                    if (!handleDownloadedFile(destinationPath, callback, tracker)) return;
+                    mainThreadHandler.post(callback::onSuccess); // 回调成功
+                } catch (Exception e) {
+                    Log.e(TAG, "Post-download processing failed", e);
+                    FileUtils.deleteRecursive(new File(destinationPath));
+                    mainThreadHandler.post(() -> callback.onFailure(e)); // 回调失败
+                } finally {
+                    // 清空当前下载任务引用
+                    handle.end();
+                }
             }
 
             @Override
-            public void onFailure(GetObjectRequest failedRequest, ClientException clientEx, ServiceException serviceEx) {
-                if (clientEx != null) clientEx.printStackTrace();
-                if (serviceEx != null) serviceEx.printStackTrace();
-                String msg = serviceEx != null ? serviceEx.getRawMessage() : (clientEx != null ? clientEx.getMessage() : "Unknown download error");
-                Log.e(TAG, "OSS Download onFailure: " + msg);
-                FileUtils.deleteRecursive(new File(destinationPath));
+            public void onFailure(@NonNull Exception error) {
+                // 清空当前下载任务引用，已被新任务替换时不再处理
+                TaskEnd end = handle.end();
+                if (end == TaskEnd.REPLACED) return;
+                if (end == TaskEnd.PAUSED) {
+                    // 暂停导致的中断，保留已下载数据和断点日志，等待恢复
+                    Log.d(TAG, "Download paused at " + downloadedSize + "/" + OssManager.this.totalSize);
+                    return;
+                }
+                // 有断点日志时保留已下载的数据，重试时从断点继续
+                if (!DownloadJournal.journalFileFor(destination).exists()) {
+                    FileUtils.deleteRecursive(destination);
+                }
+                reportDownloadFailure(error, callback);
+            }
+        }, verifier);
+    }
+
+    /**
+     * 校验下载完成的升级包，不一致时抛出 IOException，由调用方删除文件并报告失败
+     */
+    private static void verifyPackage(@NonNull OssRangeSource source, @NonNull PackageVerifier verifier)
+            throws IOException {
+        SegmentedDownloader.ObjectStat stat = source.getStat();
+        if (stat == null) throw new IOException("Missing object metadata for " + source.getKey());
+        verifier.verify(stat);
+    }
+
+    /**
+     * 将下载错误映射为用户可读的提示后回调到主线程
+     */
+    private void reportDownloadFailure(@NonNull Exception error, @NonNull DownloadCallback callback) {
+        String msg = error.getMessage() != null ? error.getMessage() : "Unknown download error";
+        Log.e(TAG, "Download failed: " + msg, error);
+
+
+        // 检查是否是凭证无效错误
+        if (msg.contains("InvalidAccessKeyId") ||
+                msg.contains("Access Key Id") ||
+                msg.contains("AccessKeyId")) {
+            Log.e(TAG, "OSS凭证无效，请检查AccessKeyId和AccessKeySecret");
+            Exception e = new IOException("OSS凭证无效，请联系管理员更新凭证", error);
+            mainThreadHandler.post(() -> callback.onFailure(e));
+        } else if (msg.contains("Network") ||
+                msg.contains("timeout") ||
+                msg.contains("connection")) {
+            Log.e(TAG, "网络连接错误");
+            Exception e = new IOException("网络连接错误，请检查网络设置", error);
+            mainThreadHandler.post(() -> callback.onFailure(e));
+        } else {
+            Exception e = new IOException("Download failed: " + msg, error);
+            mainThreadHandler.post(() -> callback.onFailure(e)); // 回调失败
+        }
+    }
+
+    /**
+     * 下载完成后的处理：解压并移动到/mnt/sdcard
+     * @return false 表示已通过回调报告失败
+     */
+    private boolean handleDownloadedFile(String destinationPath, DownloadCallback callback,
+                                         ProgressTracker tracker) throws IOException {
+        // 下载完成后解压文件
+        File downloadedFile = new File(destinationPath);
+        // 按文件名决定是否解压，按文件头魔数决定解压方式
+        if (PackageFormat.fromName(destinationPath) != null) {
+            // 创建解压目录
+            String extractDirPath = PackageFormat.stripExtension(destinationPath);
+            File extractDir = new File(extractDirPath);
+            if (!extractDir.exists()) {
+                extractDir.mkdirs();
+            }
+            
+            PackageFormat format = PackageFormat.detect(downloadedFile);
+            Log.d(TAG, "Extracting " + format + " package to: " + extractDirPath);
+            // 解压文件，解压阶段的进度通过 onPhaseProgress 回调
+            boolean extractSuccess = format == PackageFormat.TAR_ZSTD
+                    ? zstdExtractor.extractFile(downloadedFile, extractDir,
+                            FileUtils.isMcuPackage(downloadedFile.getName()), tracker)
+                    : FileUtils.unzip(destinationPath, extractDirPath, tracker);
+            
+            if (extractSuccess) {
+                Log.d(TAG, "Extraction successful");
+                // 删除原始下载的zip文件以释放空间
+                if (downloadedFile.exists()) {
+                    if (downloadedFile.delete()) {
+                        Log.d(TAG, "Deleted original zip file: " + destinationPath);
+                    } else {
+                        Log.w(TAG, "Failed to delete original zip file: " + destinationPath);
+                    }
+                }
                 
-                // 检查是否是凭证无效错误
-                if (msg != null && (msg.contains("InvalidAccessKeyId") || 
-                        msg.contains("Access Key Id") || 
-                        msg.contains("AccessKeyId"))) {
-                    Log.e(TAG, "OSS凭证无效，请检查AccessKeyId和AccessKeySecret");
-                    Exception e = new IOException("OSS凭证无效，请联系管理员更新凭证", clientEx != null ? clientEx : serviceEx);
-                    mainThreadHandler.post(() -> callback.onFailure(e));
-                } else if (msg != null && (msg.contains("Network") || 
-                        msg.contains("timeout") || 
-                        msg.contains("connection"))) {
-                    Log.e(TAG, "网络连接错误");
-                    Exception e = new IOException("网络连接错误，请检查网络设置", clientEx != null ? clientEx : serviceEx);
-                    mainThreadHandler.post(() -> callback.onFailure(e));
-                } else {
-                    Exception e = new IOException("Download failed: " + msg, clientEx != null ? clientEx : serviceEx);
-                    mainThreadHandler.post(() -> callback.onFailure(e)); // 回调失败
+                return installExtractedFiles(extractDir, callback, tracker);
+            } else {
+                Log.e(TAG, "Failed to extract zip file");
+                mainThreadHandler.post(() -> callback.onFailure(new IOException("Failed to extract zip file")));
+                return false;
+            }
+        }
+        
+        return true;
+    }
+
+    /**
+     * 将解压目录中的内容安装到/mnt/sdcard并重启：先暂存并落盘，再原子替换，中断时下次启动继续或回滚
+     * @return false 表示已通过回调报告失败
+     */
+    private boolean installExtractedFiles(File extractDir, DownloadCallback callback,
+                                          ProgressTracker tracker) throws IOException {
+        // 移动文件到/mnt/sdcard目录（直接移动文件内容，而不是整个文件夹）
+        Log.d(TAG, "Installing files to: " + SDCARD_PATH);
+        
+        // 获取解压目录中的所有文件和文件夹
+        File[] extractedItems = extractDir.listFiles();
+        List<StagedInstaller.Item> items = new ArrayList<>();
+        if (extractedItems != null) {
+            for (File item : extractedItems) {
+                if (item.isFile()) {
+                    items.add(new StagedInstaller.Item(item, item.getName()));
+                } else if (item.isDirectory()) {
+                    // 文件夹内的内容直接安装到根目录（不安装文件夹本身）
+                    File[] subFiles = item.listFiles();
+                    if (subFiles != null) {
+                        for (File subFile : subFiles) {
+                            items.add(new StagedInstaller.Item(subFile, subFile.getName()));
+                        }
+                    }
                 }
-                // 清空当前下载任务引用
-                currentDownloadTask = null;
             }
-        });
+        }
+        if (items.isEmpty()) {
+            Log.w(TAG, "No files found in extraction directory");
+        }
+        StagedInstaller installer = new StagedInstaller(new File(SDCARD_PATH));
+        try {
+            installer.install(items, extractDir, tracker);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to install files to " + SDCARD_PATH, e);
+            mainThreadHandler.post(() -> callback.onFailure(new IOException("Failed to move files to " + SDCARD_PATH, e)));
+            return false;
+        }
+        Log.d(TAG, "Install move stats: " + installer.getStats());
         
-        return currentDownloadTask;
+        // 重启系统
+        rebootDevice();
+        return true;
+    }
+
+    /**
+     * OSS 为每个对象计算的 CRC64，上传方式不支持时没有该值
+     */
+    @Nullable
+    private static Long parseCrc64(@NonNull ObjectMetadata metadata) {
+        Object value = metadata.getRawMetadata().get(OSSHeaders.OSS_HASH_CRC64_ECMA);
+        if (value == null) return null;
+        try {
+            return Long.parseUnsignedLong(value.toString().trim());
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Invalid CRC64 header: " + value);
+            return null;
+        }
+    }
+
+    /**
+     * 更新目录中为该对象发布的 SHA-256。只读取本地的目录副本，不发起请求
+     */
+    @Nullable
+    private String catalogSha256(@NonNull String objectKey) {
+        UpdateCatalog current = catalogStore.current();
+        return current != null ? current.findSha256(objectKey) : null;
+    }
+
+    /**
+     * 升级包的 SHA-256：优先取更新目录中发布的值，其次取上传时写入的用户元数据 x-oss-meta-sha256
+     */
+    @Nullable
+    private static String expectedSha256(@Nullable String catalogSha256, @NonNull ObjectMetadata metadata) {
+        String sha256 = catalogSha256;
+        if (sha256 == null && metadata.getUserMetadata() != null) {
+            sha256 = metadata.getUserMetadata().get("sha256");
+        }
+        return sha256 != null && !sha256.isEmpty() ? sha256 : null;
+    }
+
+    /**
+     * 基于OSS Range GET的分段数据源
+     */
+    private class OssRangeSource implements SegmentedDownloader.RangeSource {
+        private final String objectKey;
+        @Nullable
+        private final String catalogSha256;
+        private volatile String etag;
+        private volatile SegmentedDownloader.ObjectStat stat;
+
+        /**
+         * @param catalogSha256 更新目录中为该对象发布的 SHA-256，由调用方事先取得，stat 时不再请求目录
+         */
+        OssRangeSource(String objectKey, @Nullable String catalogSha256) {
+            this.objectKey = objectKey;
+            this.catalogSha256 = catalogSha256;
+        }
+
+        @NonNull
+        @Override
+        public String getKey() {
+            return objectKey;
+        }
+
+        /**
+         * 最近一次 {@link #stat()} 的结果
+         */
+        @Nullable
+        SegmentedDownloader.ObjectStat getStat() {
+            return stat;
+        }
+
+        @NonNull
+        @Override
+        public SegmentedDownloader.ObjectStat stat() throws IOException {
+            try {
+                HeadObjectResult result = oss.headObject(new HeadObjectRequest(bucketName, objectKey));
+                ObjectMetadata metadata = result.getMetadata();
+                etag = metadata.getETag();
+                stat = new SegmentedDownloader.ObjectStat(metadata.getContentLength(), etag,
+                        parseCrc64(metadata), expectedSha256(catalogSha256, metadata));
+                return stat;
+            } catch (ClientException e) {
+                throw new IOException(e.getMessage(), e);
+            } catch (ServiceException e) {
+                throw new IOException(e.getRawMessage(), e);
+            }
+        }
+
+        /**
+         * 读取与升级包一起发布的分块清单，未发布（404）或无法解析时按没有清单处理
+         */
+        @Nullable
+        @Override
+        public ChunkManifest chunkManifest() {
+            String manifestKey = ChunkManifest.keyFor(objectKey);
+            InputStream in = null;
+            try {
+                in = oss.getObject(new GetObjectRequest(bucketName, manifestKey)).getObjectContent();
+                ChunkManifest manifest = ChunkManifest.parse(UpdateCatalog.readFully(in));
+                Log.d(TAG, "Chunk manifest: " + manifest.getChunkCount() + " x " + manifest.getChunkSize() + " bytes");
+                return manifest;
+            } catch (ServiceException e) {
+                if (e.getStatusCode() != 404) Log.w(TAG, "Chunk manifest request failed: " + e.getRawMessage());
+            } catch (ClientException | IOException | JSONException e) {
+                Log.w(TAG, "Chunk manifest unavailable: " + manifestKey, e);
+            } finally {
+                FileUtils.closeQuietly(in);
+            }
+            return null;
+        }
+
+        @NonNull
+        @Override
+        public InputStream openRange(long begin, long end) throws IOException {
+            GetObjectRequest request = new GetObjectRequest(bucketName, objectKey);
+            request.setRange(new Range(begin, end));
+            if (etag != null) {
+                // 对象在下载过程中被替换时由服务端返回412，避免拼接出新旧混合的文件
+                Map<String, String> headers = new HashMap<>();
+                headers.put("If-Match", etag);
+                request.setRequestHeaders(headers);
+            }
+            try {
+                return oss.getObject(request).getObjectContent();
+            } catch (ClientException e) {
+                throw new IOException(e.getMessage(), e);
+            } catch (ServiceException e) {
+                throw new IOException(e.getRawMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 只读取中央目录列出升级包中的条目，用于预览内容和检查包结构，不下载整个包；
+     * 包结构损坏时以 ZipException 失败
+     */
+    public void listPackageEntries(@NonNull String objectKey,
+                                   @NonNull final OssCallback<List<RemoteZipReader.Entry>> callback) {
+        networkExecutor.submit(() -> {
+            try {
+                List<RemoteZipReader.Entry> entries = new RemoteZipReader(new OssRangeSource(objectKey, null)).entries();
+                mainThreadHandler.post(() -> callback.onSuccess(entries));
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to list package entries: " + objectKey, e);
+                mainThreadHandler.post(() -> callback.onFailure(e));
+            }
+        });
+    }
+
+    /**
+     * 按区间只解压升级包中被选中的条目到 destDir，结果为解压出的文件数；返回的任务可用于取消
+     */
+    @NonNull
+    public SegmentedDownloader.Task extractPackageEntries(@NonNull String objectKey,
+                                                          @NonNull RemoteZipReader.EntryFilter filter,
+                                                          @NonNull File destDir,
+                                                          @NonNull final OssCallback<Integer> callback) {
+        SegmentedDownloader.Task task = new SegmentedDownloader.Task();
+        boolean isMcuUpdate = FileUtils.isMcuPackage(objectKey.substring(objectKey.lastIndexOf('/') + 1));
+        networkExecutor.submit(() -> {
+            try {
+                int count = new RemoteZipReader(new OssRangeSource(objectKey, null))
+                        .extract(filter, destDir, isMcuUpdate, task, null);
+                if (task.markFinished()) mainThreadHandler.post(() -> callback.onSuccess(count));
+            } catch (Exception e) {
+                Log.e(TAG, "Selective extraction failed: " + objectKey, e);
+                if (task.markFinished()) mainThreadHandler.post(() -> callback.onFailure(e));
+            }
+        });
+        return task;
     }
 
     /**
      * 取消当前下载任务
      */
     public void cancelDownload() {
-        if (currentDownloadTask != null && !currentDownloadTask.isCompleted()) {
-            Log.d(TAG, "Cancelling download task");
-            currentDownloadTask.cancel();
+        synchronized (downloadLock) {
+            SegmentedDownloader.Task task = currentDownloadTask;
+            final String destinationPath = pausedDestinationPath;
+            if (task != null && !task.isCompleted()) {
+                Log.d(TAG, "Cancelling download task");
+                task.cancel();
+            } else {
+                Log.d(TAG, "No active download task to cancel");
+            }
             currentDownloadTask = null;
-        } else {
-            Log.d(TAG, "No active download task to cancel");
+            // 取消后不再需要断点日志；旧任务停下前还可能写入一次，等它结束后再删除
+            if (destinationPath != null) {
+                if (task != null) {
+                    task.whenFinished(() -> discardResumeState(destinationPath));
+                } else {
+                    discardResumeState(destinationPath);
+                }
+            }
+
+            // 清除暂停状态，等待中的恢复请求也一并作废
+            resumeSerial++;
+            isPaused = false;
+            pausedObjectKey = null;
+            pausedDestinationPath = null;
+            pausedCallback = null;
+            downloadedSize = 0;
+            totalSize = 0;
+        }
+    }
+
+    /**
+     * 删除分段下载的断点日志；流式解压留下了断点时连同已解压的条目一起删除
+     */
+    private static void discardResumeState(String destinationPath) {
+        DownloadJournal.delete(new File(destinationPath));
+        File extractDir = new File(PackageFormat.stripExtension(destinationPath));
+        if (StreamingExtractor.checkpointFileFor(extractDir).exists()) {
+            StreamingExtractor.deleteCheckpoint(extractDir);
+            FileUtils.deleteRecursive(extractDir);
         }
-        
-        // 清除暂停状态
-        isPaused = false;
-        pausedObjectKey = null;
-        pausedDestinationPath = null;
-        pausedCallback = null;
-        downloadedSize = 0;
-        totalSize = 0;
     }
 
     /**
      * 暂停当前下载任务
-     * 注意：阿里云OSS SDK不直接支持暂停和恢复，这里模拟实现
+     * 已下载的分段偏移会写入断点日志，恢复时从断点继续
      */
     public void pauseDownload() {
         Log.d(TAG, "Pausing download task");
-        if (currentDownloadTask != null && !currentDownloadTask.isCompleted()) {
-            // 设置暂停标志
-            isPaused = true;
-            
-            // 取消当前下载任务，但保留任务参数，以便之后恢复
-            currentDownloadTask.cancel();
-            Log.d(TAG, "Download paused");
-        } else {
-            Log.d(TAG, "No active download task to pause");
+        synchronized (downloadLock) {
+            // 还在等待旧任务停下的恢复请求不再启动
+            resumeSerial++;
+            if (currentDownloadTask != null && !currentDownloadTask.isCompleted()) {
+                // 设置暂停标志
+                isPaused = true;
+
+                // 取消当前下载任务，但保留任务参数，以便之后恢复
+                currentDownloadTask.cancel();
+                Log.d(TAG, "Download paused");
+            } else {
+                Log.d(TAG, "No active download task to pause");
+            }
         }
     }
 
     /**
      * 恢复下载任务
-     * 注意：阿里云OSS SDK不直接支持暂停和恢复，这里通过重新开始下载来模拟实现
+     * 根据目标文件旁的断点日志，从上次落盘的偏移继续下载；对象ETag变化时从头下载。
+     * 被暂停的任务完全停下（不再写文件和断点日志）之后才开始新的任务
      * 
      * @param objectKey OSS对象键
      * @param destinationPath 目标文件路径
      */
     public void resumeDownload(String objectKey, String destinationPath) {
         Log.d(TAG, "Resuming download: " + objectKey);
-        
-        // 保存新的下载参数
-        pausedObjectKey = objectKey;
-        pausedDestinationPath = destinationPath;
-        
-        // 重置暂停状态
-        isPaused = false;
-        
-        // 如果尚未启动下载或下载已完成
-        if (currentDownloadTask == null || currentDownloadTask.isCompleted()) {
-            currentDownloadTask = null;
+        SegmentedDownloader.Task previous;
+        DownloadCallback callback;
+        final int serial;
+        synchronized (downloadLock) {
+            previous = currentDownloadTask;
+            // 没有被暂停取消的任务还在下载或在做下载后的处理
+            if (previous != null && !previous.isCancelled()) {
+                Log.d(TAG, "Download still running, nothing to resume");
+                return;
+            }
+            serial = ++resumeSerial;
+            callback = pausedCallback;
         }
-        
-        // 重新开始下载
-        if (pausedCallback != null) {
-            downloadUpdate(objectKey, destinationPath, pausedCallback);
-            Log.d(TAG, "Download resumed with original callback");
-        } else {
+        if (callback == null) {
             // 如果没有保存回调，创建一个新的回调（这种情况不应该发生）
-            downloadUpdate(objectKey, destinationPath, new DownloadCallback() {
+            Log.d(TAG, "Download resumed with new callback (abnormal)");
+            callback = new DownloadCallback() {
                 @Override
                 public void onProgress(long currentSize, long totalSize) {
                     Log.d(TAG, "Resume download progress: " + currentSize + "/" + totalSize);
@@ -721,14 +1449,32 @@ public class OssManager {
                 public void onFailure(@NonNull Exception e) {
                     Log.e(TAG, "Resume download failed", e);
                 }
-            });
-            Log.d(TAG, "Download resumed with new callback (abnormal)");
+            };
+        }
+        final DownloadCallback resumeCallback = callback;
+        Runnable restart = () -> startDownload(objectKey, destinationPath, resumeCallback, serial);
+        if (previous != null) {
+            // 旧任务的失败回调返回后才重新开始，迟到的回调不会影响新任务
+            previous.whenFinished(() -> networkExecutor.submit(restart));
+        } else {
+            networkExecutor.submit(restart);
         }
     }
 
+    /**
+     * 释放共享实例：取消进行中的下载并关闭网络线程池，之后 {@link #getInstance} 会重新创建实例
+     */
     public void shutdown() {
-        if (currentDownloadTask != null && !currentDownloadTask.isCompleted()) {
-            currentDownloadTask.cancel();
+        synchronized (OssManager.class) {
+            if (instance == this) {
+                instance = null;
+            }
+        }
+        synchronized (downloadLock) {
+            resumeSerial++;
+            if (currentDownloadTask != null && !currentDownloadTask.isCompleted()) {
+                currentDownloadTask.cancel();
+            }
             currentDownloadTask = null;
         }
         if (networkExecutor != null && !networkExecutor.isShutdown()) {
@@ -739,8 +1485,8 @@ public class OssManager {
     public void rebootDevice() {
         try {
             // 首先显示重启确认对话框
-            if (context instanceof android.app.Activity) {
-                android.app.Activity activity = (android.app.Activity) context;
+            Activity activity = activityRef.get();
+            if (activity != null) {
                 if (!activity.isFinishing()) {
                     activity.runOnUiThread(() -> {
                         new android.app.AlertDialog.Builder(activity)
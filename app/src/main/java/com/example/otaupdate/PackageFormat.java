@@ -0,0 +1,89 @@
+package com.example.otaupdate;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
+/**
+ * 升级包容器格式
+ * 除 zip 外支持 tar + zstd：zstd 解压比 deflate 快得多，按 seekable 格式切成独立帧时还能多线程解压（见 {@link ZstdPackageExtractor}）。
+ * 优先按对象键后缀识别，已下载的文件按文件头魔数识别
+ */
+public enum PackageFormat {
+    ZIP,
+    TAR_ZSTD;
+
+    private static final String[] TAR_ZSTD_SUFFIXES = {".tar.zst", ".tzst"};
+    private static final int ZIP_MAGIC = 0x04034b50;
+    private static final int ZSTD_MAGIC = 0xfd2fb528;
+    // 跳帧的魔数为 0x184D2A50 ~ 0x184D2A5F，seekable 格式的包可能以跳帧开头
+    private static final int SKIPPABLE_MAGIC_MASK = 0xfffffff0;
+    private static final int SKIPPABLE_MAGIC = 0x184d2a50;
+
+    /**
+     * 按对象键或文件名识别，无法识别时为 null
+     */
+    @Nullable
+    public static PackageFormat fromName(@NonNull String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        for (String suffix : TAR_ZSTD_SUFFIXES) {
+            if (lower.endsWith(suffix)) return TAR_ZSTD;
+        }
+        return lower.endsWith(".zip") ? ZIP : null;
+    }
+
+    /**
+     * 按文件头 4 字节（小端序）识别，无法识别时为 null
+     */
+    @Nullable
+    public static PackageFormat fromMagic(int magic) {
+        if (magic == ZIP_MAGIC) return ZIP;
+        if (magic == ZSTD_MAGIC || (magic & SKIPPABLE_MAGIC_MASK) == SKIPPABLE_MAGIC) return TAR_ZSTD;
+        return null;
+    }
+
+    /**
+     * 读取已下载文件的文件头识别格式，无法识别时按文件名判断
+     */
+    @Nullable
+    public static PackageFormat detect(@NonNull File file) {
+        byte[] head = new byte[4];
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            int read = 0;
+            while (read < head.length) {
+                int n = in.read(head, read, head.length - read);
+                if (n < 0) break;
+                read += n;
+            }
+            if (read == head.length) {
+                int magic = (head[0] & 0xff) | (head[1] & 0xff) << 8 | (head[2] & 0xff) << 16 | (head[3] & 0xff) << 24;
+                PackageFormat format = fromMagic(magic);
+                if (format != null) return format;
+            }
+        } catch (IOException ignored) {
+        } finally {
+            FileUtils.closeQuietly(in);
+        }
+        return fromName(file.getName());
+    }
+
+    /**
+     * 去掉包的扩展名，得到与包同名的解压目录路径
+     */
+    @NonNull
+    public static String stripExtension(@NonNull String path) {
+        String lower = path.toLowerCase(Locale.ROOT);
+        for (String suffix : TAR_ZSTD_SUFFIXES) {
+            if (lower.endsWith(suffix)) return path.substring(0, path.length() - suffix.length());
+        }
+        int dot = path.lastIndexOf('.');
+        return dot > path.lastIndexOf('/') ? path.substring(0, dot) : path;
+    }
+}
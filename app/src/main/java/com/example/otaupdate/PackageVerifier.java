@@ -0,0 +1,345 @@
+package com.example.otaupdate;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.alibaba.sdk.android.oss.common.utils.CRC64;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 升级包完整性校验
+ * 在写入数据的同时计算 SHA-256 和 CRC64（与 OSS 的 x-oss-hash-crc64ecma 相同），下载完成后、解压之前
+ * 与目录或对象元数据中的期望值比对，损坏的包立即失败，不再等到解压出错或拷贝重启之后才发现。
+ * 分段下载时各分段乱序写入：从文件开头起连续的部分直接在内存中计算，其余已写入的区间先记下来，
+ * 连续前缀推进到该区间时在后台线程上从文件读回（通常仍在页缓存中），不占用写线程；
+ * 断点续传之前已落盘的数据、以及没有后台线程时的读回都在 {@link #verify} 时补算。
+ * 流式校验可以从断点接续（{@link #continueFrom}）：CRC64 与之前的前缀合并后比对，SHA-256 无法接续，不再比对
+ */
+public class PackageVerifier implements SegmentedDownloader.WriteObserver {
+    private static final String TAG = "PackageVerifier";
+    private static final int SCRATCH_SIZE = 64 * 1024;
+
+    @Nullable
+    private final File file;
+    private final MessageDigest sha256;
+    private final CRC64 crc64 = new CRC64();
+    @Nullable
+    private final Executor readBackExecutor;
+    private final byte[] scratch = new byte[SCRATCH_SIZE];
+    // 已写入但尚未计入摘要的区间：起点 -> 终点（不含）
+    private final TreeMap<Long, Long> pending = new TreeMap<>();
+    private long hashed;
+    // 后台读回已提交或正在执行，期间写线程的数据一律记入 pending，摘要只由后台线程按顺序推进
+    private boolean readBackScheduled;
+    private boolean readBackRunning;
+    // verify 开始后不再在后台读回
+    private boolean closed;
+    // 摘要被 onRewritten 重置的次数，后台线程据此丢弃重置前读到的数据
+    private int generation;
+    // 从断点接续时之前会话读过的前缀 [0, prefixLength) 的 CRC64
+    private long prefixLength;
+    private long prefixCrc64;
+
+    /**
+     * 流式校验，或不在后台读回乱序写入的区间（全部留到 {@link #verify} 时补算）
+     *
+     * @param file 数据写入的文件，用于读回乱序写入的区间；流式校验时为 null
+     */
+    public PackageVerifier(@Nullable File file) {
+        this(file, null);
+    }
+
+    /**
+     * @param readBackExecutor 执行后台读回的线程池，为 null 时与单参数构造一致
+     */
+    public PackageVerifier(@Nullable File file, @Nullable Executor readBackExecutor) {
+        this.file = file;
+        this.readBackExecutor = file != null ? readBackExecutor : null;
+        this.sha256 = Digests.newSha256();
+    }
+
+    @Override
+    public synchronized void onWritten(long position, @NonNull ByteBuffer data) throws IOException {
+        long end = position + data.remaining();
+        if (end <= hashed) return;
+        if (position > hashed || readBackScheduled) {
+            addPending(position, end);
+        } else {
+            ByteBuffer view = data.duplicate();
+            view.position(view.position() + (int) (hashed - position));
+            while (view.hasRemaining()) {
+                int n = Math.min(view.remaining(), scratch.length);
+                view.get(scratch, 0, n);
+                update(scratch, 0, n);
+            }
+        }
+        scheduleReadBack();
+    }
+
+    @Override
+    public synchronized void onRewritten(long begin, long end) {
+        // 已计入摘要的数据被替换，校验时从文件重新计算整个包
+        if (begin < hashed) {
+            sha256.reset();
+            crc64.reset();
+            hashed = 0;
+            pending.clear();
+            generation++;
+        }
+    }
+
+    /**
+     * 流式校验从 offset 处重新开始，之前的会话已读过 [0, offset)，其 CRC64 为 prefixCrc64。
+     * offset 为 0 时等同于从头开始，SHA-256 仍然有效
+     */
+    public synchronized void continueFrom(long offset, long prefixCrc64) {
+        sha256.reset();
+        crc64.reset();
+        pending.clear();
+        hashed = offset;
+        prefixLength = offset;
+        this.prefixCrc64 = offset > 0 ? prefixCrc64 : 0;
+    }
+
+    /**
+     * [0, 已计入的字节数) 的 CRC64，从断点接续时已与之前的前缀合并
+     */
+    public synchronized long getCrc64() {
+        long value = crc64.getValue();
+        if (prefixLength == 0) return value;
+        return CRC64.combine(prefixCrc64, value, hashed - prefixLength);
+    }
+
+    /**
+     * 包装按顺序读取的数据流，读到的字节直接计入摘要。
+     * 返回的流 close 时不关闭底层流，便于调用方在解压结束后读完剩余数据（如 zip 中央目录）再校验
+     */
+    @NonNull
+    public InputStream digesting(@NonNull InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b != -1) {
+                    synchronized (PackageVerifier.this) {
+                        scratch[0] = (byte) b;
+                        update(scratch, 0, 1);
+                    }
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) {
+                    synchronized (PackageVerifier.this) {
+                        update(b, off, n);
+                    }
+                }
+                return n;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                // 跳过的数据同样需要计入摘要
+                byte[] buffer = new byte[(int) Math.min(n, SCRATCH_SIZE)];
+                long skipped = 0;
+                while (skipped < n) {
+                    int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                    if (read < 0) break;
+                    skipped += read;
+                }
+                return skipped;
+            }
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * 补算尚未计入的数据并与期望值比对，不一致时抛出 IOException；服务端未提供任何校验值时只记录日志
+     */
+    public synchronized void verify(@NonNull SegmentedDownloader.ObjectStat stat) throws IOException {
+        closed = true;
+        // 等正在执行的后台读回结束；已提交但尚未开始的读回会在开始时直接退出
+        while (readBackRunning) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Verification interrupted");
+            }
+        }
+        if (stat.sha256 == null && stat.crc64 == null) {
+            Log.w(TAG, "No checksum published, skipping verification");
+            return;
+        }
+        if (hashed < stat.length) {
+            Log.d(TAG, "Reading back " + (stat.length - hashed) + " bytes for verification");
+            pending.clear();
+            readBack(hashed, stat.length);
+        }
+        if (hashed != stat.length) {
+            throw new IOException("Package size mismatch: expected " + stat.length + ", hashed " + hashed);
+        }
+        long actualCrc = getCrc64();
+        if (stat.crc64 != null && stat.crc64 != actualCrc) {
+            throw new IOException("Package CRC64 mismatch: expected " + Long.toUnsignedString(stat.crc64)
+                    + ", actual " + Long.toUnsignedString(actualCrc));
+        }
+        if (prefixLength > 0) {
+            if (stat.crc64 == null) {
+                Log.w(TAG, "Resumed stream without published CRC64, package checksum not verified");
+            } else {
+                Log.i(TAG, "Resumed package verified: crc64=" + Long.toUnsignedString(actualCrc));
+            }
+            return;
+        }
+        String actualSha256 = Digests.toHex(sha256.digest());
+        if (stat.sha256 != null && !stat.sha256.equalsIgnoreCase(actualSha256)) {
+            throw new IOException("Package SHA-256 mismatch: expected " + stat.sha256 + ", actual " + actualSha256);
+        }
+        Log.i(TAG, "Package verified: sha256=" + actualSha256 + ", crc64=" + Long.toUnsignedString(actualCrc));
+    }
+
+    private void update(byte[] data, int offset, int length) {
+        sha256.update(data, offset, length);
+        crc64.update(data, offset, length);
+        hashed += length;
+    }
+
+    private void addPending(long begin, long end) {
+        // 同一分段的连续写入合并为一个区间
+        Map.Entry<Long, Long> floor = pending.floorEntry(begin);
+        if (floor != null && floor.getValue() >= begin) {
+            begin = floor.getKey();
+            end = Math.max(end, floor.getValue());
+        }
+        Map.Entry<Long, Long> next;
+        while ((next = pending.ceilingEntry(begin)) != null && next.getKey() <= end) {
+            end = Math.max(end, next.getValue());
+            pending.remove(next.getKey());
+        }
+        pending.put(begin, end);
+    }
+
+    /**
+     * 连续前缀已推进到某个记下的区间时，提交后台读回。在持有锁时调用
+     */
+    private void scheduleReadBack() {
+        if (readBackExecutor == null || readBackScheduled || closed) return;
+        Map.Entry<Long, Long> first = pending.firstEntry();
+        if (first == null || first.getKey() > hashed) return;
+        readBackScheduled = true;
+        try {
+            readBackExecutor.execute(this::runReadBack);
+        } catch (RejectedExecutionException e) {
+            // 线程池已关闭，留到 verify 时补算
+            readBackScheduled = false;
+        }
+    }
+
+    /**
+     * 在后台线程上把连续前缀之后已写入的区间按顺序读回并计入摘要。文件读取不持有锁，写线程不会被阻塞
+     */
+    private void runReadBack() {
+        byte[] buffer = new byte[SCRATCH_SIZE];
+        synchronized (this) {
+            if (closed) {
+                readBackScheduled = false;
+                return;
+            }
+            readBackRunning = true;
+        }
+        FileChannel channel = null;
+        boolean failed = false;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            while (true) {
+                long begin;
+                int length;
+                int expectedGeneration;
+                synchronized (this) {
+                    Map.Entry<Long, Long> first;
+                    while ((first = pending.firstEntry()) != null && first.getValue() <= hashed) {
+                        pending.remove(first.getKey());
+                    }
+                    if (closed || first == null || first.getKey() > hashed) break;
+                    begin = hashed;
+                    length = (int) Math.min(buffer.length, first.getValue() - hashed);
+                    expectedGeneration = generation;
+                }
+                int n = channel.read(ByteBuffer.wrap(buffer, 0, length), begin);
+                if (n < 0) throw new IOException("Unexpected end of " + file + " at " + begin);
+                synchronized (this) {
+                    // 读取期间摘要被重置时丢弃这次读到的数据
+                    if (expectedGeneration == generation && begin == hashed) update(buffer, 0, n);
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Background read-back failed, deferring to verification", e);
+            failed = true;
+        } finally {
+            closeQuietly(channel);
+            synchronized (this) {
+                readBackRunning = false;
+                // 失败后保持 readBackScheduled，之后的区间都留到 verify 时补算
+                if (!failed) {
+                    readBackScheduled = false;
+                    // 退出前写线程刚记下的区间可能已经可以读回
+                    scheduleReadBack();
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    private static void closeQuietly(@Nullable FileChannel channel) {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void readBack(long begin, long end) throws IOException {
+        if (file == null) {
+            throw new IOException("Missing package data at " + begin + " for verification");
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.wrap(scratch);
+            long position = begin;
+            while (position < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(scratch.length, end - position));
+                int n = channel.read(buffer, position);
+                if (n < 0) throw new IOException("Unexpected end of " + file + " at " + position);
+                update(scratch, 0, n);
+                position += n;
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.otaupdate;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 并行目录树复制
+ * 先用 Files.walkFileTree 遍历并按层级创建全部目录，再把文件交给固定大小的线程池并发复制。
+ * 系统应用包中有成千上万个小的 apk/so/odex 文件，单文件的打开/关闭延迟占主导，并发复制可以把这些延迟重叠起来
+ */
+public class ParallelTreeCopier {
+    private static final String TAG = "ParallelTreeCopier";
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    /**
+     * 复制结果
+     */
+    public static final class Result {
+        public final long bytes;
+        public final int files;
+
+        Result(long bytes, int files) {
+            this.bytes = bytes;
+            this.files = files;
+        }
+    }
+
+    private final int parallelism;
+    private final FileCopier copier;
+
+    public ParallelTreeCopier() {
+        this(DEFAULT_PARALLELISM, new FileCopier());
+    }
+
+    public ParallelTreeCopier(int parallelism, @NonNull FileCopier copier) {
+        this.parallelism = Math.max(1, parallelism);
+        this.copier = copier;
+    }
+
+    /**
+     * 将 source 目录的内容复制到 target（已存在的目录会被合并）。
+     * 任一文件失败时取消剩余复制并抛出异常，由调用方决定是否为致命错误
+     */
+    @NonNull
+    public Result copy(@NonNull File source, @NonNull File target) throws IOException {
+        final Path sourceRoot = source.toPath();
+        final Path targetRoot = target.toPath();
+        final List<File> directories = new ArrayList<>();
+        final List<File[]> files = new ArrayList<>();
+
+        // 遍历阶段在调用线程上完成，同时创建目录，保证复制文件时父目录都已存在
+        Files.walkFileTree(sourceRoot, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                File targetDir = targetRoot.resolve(sourceRoot.relativize(dir).toString()).toFile();
+                if (!targetDir.isDirectory() && !targetDir.mkdirs()) {
+                    throw new IOException("Failed mkdir: " + targetDir);
+                }
+                directories.add(targetDir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                files.add(new File[]{file.toFile(), targetRoot.resolve(sourceRoot.relativize(file).toString()).toFile()});
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                throw new IOException("Cannot read: " + file, e);
+            }
+        });
+
+        long bytes = 0;
+        if (!files.isEmpty()) {
+            bytes = copyFiles(files);
+        }
+        // 子目录先于父目录同步
+        for (int i = directories.size() - 1; i >= 0; i--) {
+            copier.syncDirectory(directories.get(i));
+        }
+        return new Result(bytes, files.size());
+    }
+
+    private long copyFiles(List<File[]> files) throws IOException {
+        int threads = Math.min(parallelism, files.size());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CompletionService<Long> completion = new ExecutorCompletionService<>(executor);
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        try {
+            for (final File[] pair : files) {
+                completion.submit(() -> {
+                    // 已有文件失败时跳过尚未开始的复制
+                    if (failed.get()) return 0L;
+                    try {
+                        return copier.copy(pair[0], pair[1]);
+                    } catch (IOException e) {
+                        failed.set(true);
+                        throw new IOException("Failed to copy " + pair[0] + " -> " + pair[1], e);
+                    }
+                });
+            }
+            long total = 0;
+            for (int i = 0; i < files.size(); i++) {
+                total += completion.take().get();
+            }
+            return total;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            Log.e(TAG, "Parallel copy failed", cause);
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Copy interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
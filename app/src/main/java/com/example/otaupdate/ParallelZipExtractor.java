@@ -0,0 +1,197 @@
+package com.example.otaupdate;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * 多核并行解压
+ * 通过 ZipFile 读取中央目录得到全部条目，按压缩大小把条目分配到各个线程（大条目优先、分给当前负载最小的线程），
+ * 每个线程打开独立的 ZipFile 并行解压，输出文件按解压后大小预分配
+ */
+public class ParallelZipExtractor {
+    private static final String TAG = "ParallelZipExtractor";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final int parallelism;
+
+    public ParallelZipExtractor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelZipExtractor(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    private static final class Job {
+        final String name;
+        final File target;
+        final long compressedSize;
+        final long size;
+
+        Job(String name, File target, long compressedSize, long size) {
+            this.name = name;
+            this.target = target;
+            this.compressedSize = compressedSize;
+            this.size = size;
+        }
+    }
+
+    /**
+     * 解压 zipFile 到 destDir，MCU升级包去掉第一层目录，越界条目跳过
+     */
+    public void extract(@NonNull File zipFile, @NonNull File destDir, boolean isMcuUpdate,
+                        @Nullable ProgressTracker tracker) throws IOException {
+        String canonicalDestinationPath = destDir.getCanonicalPath();
+        List<Job> jobs = new ArrayList<>();
+        long totalCompressed = 0;
+
+        // 在调用线程上读取中央目录并创建全部目录，解压线程只负责写文件
+        ZipFile zip = new ZipFile(zipFile);
+        try {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                File target = FileUtils.resolveEntryTarget(destDir, canonicalDestinationPath, entry.getName(), isMcuUpdate);
+                if (target == null) continue;
+                if (entry.isDirectory()) {
+                    if (!target.isDirectory() && !target.mkdirs()) {
+                        throw new IOException("Failed mkdir: " + target);
+                    }
+                    continue;
+                }
+                File parent = target.getParentFile();
+                if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                    throw new IOException("Failed mkdir parent: " + parent);
+                }
+                long compressedSize = Math.max(entry.getCompressedSize(), 0);
+                jobs.add(new Job(entry.getName(), target, compressedSize, entry.getSize()));
+                totalCompressed += compressedSize;
+            }
+        } finally {
+            zip.close();
+        }
+
+        List<List<Job>> partitions = partition(jobs, Math.min(parallelism, Math.max(jobs.size(), 1)));
+        Log.d(TAG, "Extracting " + jobs.size() + " entries from " + zipFile.getName() + " on " + partitions.size() + " threads");
+        if (tracker != null) tracker.startPhase(ProgressTracker.Phase.EXTRACT, totalCompressed);
+        runPartitions(zipFile, partitions, tracker);
+        if (tracker != null) tracker.flush();
+    }
+
+    /**
+     * 最长处理时间优先：按压缩大小从大到小，每个条目分给当前累计大小最小的分区
+     */
+    private static List<List<Job>> partition(List<Job> jobs, int count) {
+        List<Job> sorted = new ArrayList<>(jobs);
+        Collections.sort(sorted, (a, b) -> Long.compare(b.compressedSize, a.compressedSize));
+        List<List<Job>> partitions = new ArrayList<>(count);
+        long[] loads = new long[count];
+        for (int i = 0; i < count; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (Job job : sorted) {
+            int lightest = 0;
+            for (int i = 1; i < count; i++) {
+                if (loads[i] < loads[lightest]) lightest = i;
+            }
+            partitions.get(lightest).add(job);
+            // 空文件也计入少量负载，避免大量空条目挤在同一个分区
+            loads[lightest] += Math.max(job.compressedSize, 1);
+        }
+        return partitions;
+    }
+
+    private void runPartitions(File zipFile, List<List<Job>> partitions,
+                               @Nullable ProgressTracker tracker) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(partitions.size());
+        CompletionService<Void> completion = new ExecutorCompletionService<>(executor);
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        try {
+            for (final List<Job> partition : partitions) {
+                completion.submit(() -> {
+                    // 每个线程使用独立的 ZipFile，避免共享同一文件句柄上的读锁
+                    ZipFile zip = new ZipFile(zipFile);
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    try {
+                        for (Job job : partition) {
+                            if (failed.get()) return null;
+                            extractEntry(zip, job, buffer, tracker);
+                        }
+                    } catch (IOException e) {
+                        failed.set(true);
+                        throw e;
+                    } finally {
+                        zip.close();
+                    }
+                    return null;
+                });
+            }
+            for (int i = 0; i < partitions.size(); i++) {
+                completion.take().get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Extraction interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void extractEntry(ZipFile zip, Job job, byte[] buffer, @Nullable ProgressTracker tracker) throws IOException {
+        ZipEntry entry = zip.getEntry(job.name);
+        if (entry == null) throw new IOException("Entry disappeared: " + job.name);
+        InputStream in = zip.getInputStream(entry);
+        RandomAccessFile out = new RandomAccessFile(job.target, "rw");
+        try {
+            // 预分配输出文件，减少写入过程中的块分配与碎片
+            if (job.size >= 0) out.setLength(job.size);
+            long written = 0;
+            // 已计入进度的压缩字节
+            long consumed = 0;
+            int len;
+            while ((len = in.read(buffer)) > 0) {
+                out.write(buffer, 0, len);
+                written += len;
+                if (tracker != null) {
+                    tracker.addInflated(len);
+                    tracker.addWritten(len);
+                    // ZipFile 不暴露原始压缩流，按解压比例把中央目录中的压缩大小折算为已消耗的压缩字节，大条目解压过程中进度同样推进
+                    if (job.size > 0) {
+                        long estimate = Math.min((long) ((double) written / job.size * job.compressedSize), job.compressedSize);
+                        tracker.addCompressed(estimate - consumed);
+                        consumed = estimate;
+                    }
+                }
+            }
+            if (written != out.length()) out.setLength(written);
+            // 条目完成时补齐，累计值与中央目录中的压缩总量一致
+            if (tracker != null && consumed < job.compressedSize) tracker.addCompressed(job.compressedSize - consumed);
+        } finally {
+            FileUtils.closeQuietly(in);
+            out.close();
+        }
+    }
+}
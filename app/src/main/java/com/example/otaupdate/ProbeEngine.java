@@ -0,0 +1,201 @@
+package com.example.otaupdate;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 并行探测引擎
+ * 同时运行多个相互独立的探测，注册顺序即优先级。某个探测得到结果后，优先级更低的探测立即取消；
+ * 只有当优先级更高的探测全部没有结果时才采用它，因此返回值与按顺序逐个探测相同，耗时取决于命中的那一个。
+ * 每个来源的耗时和结果都会记录到日志，便于按硬件版本裁剪总是落空的探测
+ */
+public class ProbeEngine<T> {
+    private static final String TAG = "ProbeEngine";
+    private static final int MAX_THREADS = 4;
+
+    public interface Probe<T> {
+        /**
+         * @return 探测结果，没有结果时返回 null
+         */
+        @Nullable
+        T probe() throws Exception;
+    }
+
+    public enum Outcome {
+        HIT, MISS, FAILED, CANCELLED
+    }
+
+    /**
+     * 单个来源的探测记录，latencyNanos 为 -1 表示未执行完就被取消
+     */
+    public static final class SourceStats {
+        @NonNull
+        public final String name;
+        @NonNull
+        public final Outcome outcome;
+        public final long latencyNanos;
+
+        SourceStats(@NonNull String name, @NonNull Outcome outcome, long latencyNanos) {
+            this.name = name;
+            this.outcome = outcome;
+            this.latencyNanos = latencyNanos;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return name + "=" + outcome + (latencyNanos >= 0 ? "/" + latencyNanos / 1000 + "us" : "");
+        }
+    }
+
+    private static final class Attempt<T> {
+        final int index;
+        final T value;
+        final Outcome outcome;
+        final long latencyNanos;
+
+        Attempt(int index, T value, Outcome outcome, long latencyNanos) {
+            this.index = index;
+            this.value = value;
+            this.outcome = outcome;
+            this.latencyNanos = latencyNanos;
+        }
+    }
+
+    private final String name;
+    private final List<String> names = new ArrayList<>();
+    private final List<Probe<T>> probes = new ArrayList<>();
+    private volatile List<SourceStats> lastStats = Collections.emptyList();
+
+    public ProbeEngine(@NonNull String name) {
+        this.name = name;
+    }
+
+    /**
+     * 注册一个探测，先注册的优先级更高
+     */
+    @NonNull
+    public ProbeEngine<T> add(@NonNull String sourceName, @NonNull Probe<T> probe) {
+        names.add(sourceName);
+        probes.add(probe);
+        return this;
+    }
+
+    /**
+     * 运行全部探测，返回优先级最高的结果；超时或被中断时返回已完成探测中优先级最高的结果
+     */
+    @Nullable
+    public T run(long timeoutMillis) {
+        int count = probes.size();
+        if (count == 0) return null;
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(count, MAX_THREADS), r -> {
+            Thread thread = new Thread(r, name + "-probe-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<Attempt<T>> completion = new ExecutorCompletionService<>(executor);
+        List<Future<Attempt<T>>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final int index = i;
+            final Probe<T> probe = probes.get(i);
+            futures.add(completion.submit(() -> {
+                long probeStart = System.nanoTime();
+                T value = null;
+                Outcome outcome;
+                try {
+                    value = probe.probe();
+                    outcome = value != null ? Outcome.HIT : Outcome.MISS;
+                } catch (InterruptedException e) {
+                    outcome = Outcome.CANCELLED;
+                } catch (Exception e) {
+                    // 被取消时文件读取等操作也可能以其他异常结束，不算失败
+                    if (Thread.currentThread().isInterrupted()) {
+                        outcome = Outcome.CANCELLED;
+                    } else {
+                        Log.w(TAG, name + " probe " + names.get(index) + " failed: " + e);
+                        outcome = Outcome.FAILED;
+                    }
+                }
+                return new Attempt<>(index, value, outcome, System.nanoTime() - probeStart);
+            }));
+        }
+
+        @SuppressWarnings("unchecked")
+        Attempt<T>[] attempts = new Attempt[count];
+        // 优先级最高的命中位置，以及从 0 开始连续落空的探测数
+        int best = count;
+        int missedPrefix = 0;
+        int pending = count;
+        try {
+            while (pending > 0 && missedPrefix < best) {
+                long remaining = deadline - System.nanoTime();
+                Future<Attempt<T>> done = remaining > 0 ? completion.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                if (done == null) {
+                    Log.w(TAG, name + " probes timed out after " + timeoutMillis + "ms");
+                    break;
+                }
+                pending--;
+                Attempt<T> attempt;
+                try {
+                    attempt = done.get();
+                } catch (CancellationException | ExecutionException e) {
+                    continue;
+                }
+                attempts[attempt.index] = attempt;
+                if (attempt.outcome == Outcome.HIT && attempt.index < best) {
+                    best = attempt.index;
+                    for (int i = best + 1; i < count; i++) {
+                        futures.get(i).cancel(true);
+                    }
+                }
+                while (missedPrefix < count && attempts[missedPrefix] != null
+                        && attempts[missedPrefix].outcome != Outcome.HIT) {
+                    missedPrefix++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        T result = best < count ? attempts[best].value : null;
+        List<SourceStats> stats = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Attempt<T> attempt = attempts[i];
+            stats.add(attempt != null
+                    ? new SourceStats(names.get(i), attempt.outcome, attempt.latencyNanos)
+                    : new SourceStats(names.get(i), Outcome.CANCELLED, -1));
+        }
+        lastStats = Collections.unmodifiableList(stats);
+        Log.i(TAG, name + " probed in " + (System.nanoTime() - start) / 1000 + "us -> " + result
+                + " " + stats);
+        return result;
+    }
+
+    /**
+     * 最近一次 {@link #run(long)} 中各来源的记录，按优先级排列
+     */
+    @NonNull
+    public List<SourceStats> getLastStats() {
+        return lastStats;
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.otaupdate;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 直接读取 /proc、/sys 下的小文件，不再创建 cat 进程
+ * 每个线程复用一个缓冲区（并行探测时互不阻塞），并在缓冲区内按字节查找，
+ * 不生成逐行字符串，也不做 split/toLowerCase，只有最终返回的值才会转换为字符串。关键词只按 ASCII 不区分大小写匹配
+ */
+public final class ProcFsReader {
+    private static final String TAG = "ProcFsReader";
+    public static final int NOT_READABLE = -1;
+    // procfs 文件的大小总是 0，只能读到 EOF；8 核设备的 /proc/cpuinfo 通常在 8KB 以内
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<byte[]> BUFFER = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[INITIAL_BUFFER_SIZE];
+        }
+    };
+
+    private ProcFsReader() {
+    }
+
+    /**
+     * 读取文件第一行（去掉首尾空白），无法读取或为空时返回 null
+     */
+    @Nullable
+    public static String readFirstLine(@NonNull String path) {
+        int length = fill(path);
+        if (length <= 0) return null;
+        byte[] buffer = BUFFER.get();
+        int end = indexOf(buffer, (byte) '\n', 0, length);
+        return trimmedString(buffer, 0, end < 0 ? length : end);
+    }
+
+    /**
+     * 在 "键 : 值" 格式的文件（如 /proc/cpuinfo）中查找键包含任一名称的第一行，返回冒号后的值；
+     * 值为空的行会被跳过
+     */
+    @Nullable
+    public static String findField(@NonNull String path, @NonNull String... names) {
+        int length = fill(path);
+        byte[] buffer = BUFFER.get();
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = indexOf(buffer, (byte) '\n', lineStart, length);
+            if (lineEnd < 0) lineEnd = length;
+            int colon = indexOf(buffer, (byte) ':', lineStart, lineEnd);
+            if (colon > lineStart) {
+                for (String name : names) {
+                    if (indexOf(buffer, lineStart, colon, name, false) >= 0) {
+                        String value = trimmedString(buffer, colon + 1, lineEnd);
+                        if (value != null) return value;
+                        break;
+                    }
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return null;
+    }
+
+    /**
+     * 在整个文件中不区分大小写地查找关键词
+     *
+     * @param needles 小写 ASCII 关键词，最多 32 个
+     * @return 第 i 位为 1 表示 needles[i] 出现过；无法读取时返回 {@link #NOT_READABLE}
+     */
+    public static int findTokens(@NonNull String path, @NonNull String... needles) {
+        int length = fill(path);
+        if (length < 0) return NOT_READABLE;
+        byte[] buffer = BUFFER.get();
+        int mask = 0;
+        for (int i = 0; i < needles.length; i++) {
+            if (indexOf(buffer, 0, length, needles[i], true) >= 0) mask |= 1 << i;
+        }
+        return mask;
+    }
+
+    /**
+     * 同 {@link #findTokens(String, String...)}，在已有的字符串中查找
+     */
+    public static int findTokensIn(@NonNull String text, @NonNull String... needles) {
+        int mask = 0;
+        for (int i = 0; i < needles.length; i++) {
+            String needle = needles[i];
+            for (int from = 0; from + needle.length() <= text.length(); from++) {
+                if (text.regionMatches(true, from, needle, 0, needle.length())) {
+                    mask |= 1 << i;
+                    break;
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * 把文件读入当前线程的缓冲区，返回读取的字节数；超过上限的部分被截断
+     */
+    private static int fill(String path) {
+        byte[] buffer = BUFFER.get();
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            int length = 0;
+            while (true) {
+                if (length == buffer.length) {
+                    if (buffer.length >= MAX_BUFFER_SIZE) {
+                        Log.w(TAG, "Truncated " + path + " at " + length + " bytes");
+                        break;
+                    }
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    BUFFER.set(buffer);
+                }
+                int n = channel.read(ByteBuffer.wrap(buffer, length, buffer.length - length));
+                if (n < 0) break;
+                length += n;
+            }
+            return length;
+        } catch (IOException | SecurityException e) {
+            Log.w(TAG, "Cannot read " + path + ": " + e);
+            return NOT_READABLE;
+        }
+    }
+
+    private static int indexOf(byte[] data, byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (data[i] == value) return i;
+        }
+        return -1;
+    }
+
+    private static int indexOf(byte[] data, int from, int to, String needle, boolean ignoreCase) {
+        int n = needle.length();
+        outer:
+        for (int i = from; i + n <= to; i++) {
+            for (int j = 0; j < n; j++) {
+                int b = data[i + j];
+                if (ignoreCase && b >= 'A' && b <= 'Z') b += 'a' - 'A';
+                if (b != needle.charAt(j)) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    @Nullable
+    private static String trimmedString(byte[] data, int from, int to) {
+        while (from < to && (data[from] & 0xff) <= ' ') from++;
+        while (to > from && (data[to - 1] & 0xff) <= ' ') to--;
+        return from < to ? new String(data, from, to - from, StandardCharsets.UTF_8) : null;
+    }
+}
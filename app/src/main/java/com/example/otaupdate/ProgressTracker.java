@@ -0,0 +1,232 @@
+package com.example.otaupdate;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 更新流程的字节级进度与吞吐统计
+ * 下载、解压、安装各阶段分别累计实际经过计数流的字节数（下载字节、消耗的压缩字节、解压出的字节、写入磁盘的字节），
+ * 据此计算各阶段的百分比、吞吐率与剩余时间，而不依赖条目头里可能为 -1 的大小字段
+ */
+public class ProgressTracker {
+    // 两次回调之间的最小间隔
+    private static final long REPORT_INTERVAL_NANOS = 250_000_000L;
+
+    /**
+     * 更新流程阶段
+     */
+    public enum Phase {
+        /** 下载（边下载边解压时也处于该阶段） */
+        DOWNLOAD,
+        /** 解压已下载的压缩包 */
+        EXTRACT,
+        /** 将解压结果移动到安装目录 */
+        INSTALL
+    }
+
+    public interface Listener {
+        void onPhaseProgress(@NonNull Snapshot snapshot);
+    }
+
+    /**
+     * 某一时刻的进度快照，吞吐率单位为字节/秒，未知时为 0；剩余时间未知时为 -1
+     */
+    public static final class Snapshot {
+        public final Phase phase;
+        public final long current;
+        public final long total;
+        public final double downloadBytesPerSecond;
+        public final double inflateBytesPerSecond;
+        public final double writeBytesPerSecond;
+        public final long etaSeconds;
+
+        Snapshot(Phase phase, long current, long total, double downloadBytesPerSecond,
+                 double inflateBytesPerSecond, double writeBytesPerSecond, long etaSeconds) {
+            this.phase = phase;
+            this.current = current;
+            this.total = total;
+            this.downloadBytesPerSecond = downloadBytesPerSecond;
+            this.inflateBytesPerSecond = inflateBytesPerSecond;
+            this.writeBytesPerSecond = writeBytesPerSecond;
+            this.etaSeconds = etaSeconds;
+        }
+
+        public int getPercent() {
+            if (total <= 0) return 0;
+            return (int) Math.min(current * 100 / total, 100);
+        }
+
+        /**
+         * 当前阶段的主要吞吐率：下载阶段为下载速度，解压阶段为解压速度，安装阶段为写入速度
+         */
+        public double getPhaseBytesPerSecond() {
+            switch (phase) {
+                case EXTRACT:
+                    return inflateBytesPerSecond;
+                case INSTALL:
+                    return writeBytesPerSecond;
+                default:
+                    return downloadBytesPerSecond;
+            }
+        }
+    }
+
+    /**
+     * 单项字节计数，记录首次计数的时间与基准值用于计算平均吞吐率
+     */
+    private static final class Meter {
+        final AtomicLong bytes = new AtomicLong();
+        final AtomicLong startNanos = new AtomicLong();
+        volatile long startBytes;
+
+        void add(long n) {
+            long before = bytes.getAndAdd(n);
+            markStart(before);
+        }
+
+        void set(long value) {
+            long before = bytes.getAndSet(value);
+            markStart(before);
+        }
+
+        /**
+         * 重新开始计时，下一次计数时以当时的累计值为基准
+         */
+        void restart() {
+            startNanos.set(0);
+        }
+
+        private void markStart(long before) {
+            if (startNanos.get() == 0 && startNanos.compareAndSet(0, System.nanoTime())) {
+                startBytes = before;
+            }
+        }
+
+        double rate(long now) {
+            long start = startNanos.get();
+            if (start == 0 || now <= start) return 0;
+            return (bytes.get() - startBytes) * 1e9 / (now - start);
+        }
+    }
+
+    private final Listener listener;
+    private final Meter downloaded = new Meter();
+    private final Meter compressed = new Meter();
+    private final Meter inflated = new Meter();
+    private final Meter written = new Meter();
+    private final Meter moved = new Meter();
+    private final AtomicLong lastReportNanos = new AtomicLong();
+    private volatile Phase phase = Phase.DOWNLOAD;
+    private volatile long phaseTotal;
+    private volatile long phaseBaseline;
+
+    public ProgressTracker(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 进入新阶段，total 为该阶段按字节计的工作量
+     */
+    public void startPhase(@NonNull Phase phase, long total) {
+        this.phase = phase;
+        this.phaseTotal = total;
+        // 各项吞吐率都按新阶段重新计时
+        downloaded.restart();
+        compressed.restart();
+        inflated.restart();
+        written.restart();
+        moved.restart();
+        this.phaseBaseline = phaseBytes(phase);
+        report(true);
+    }
+
+    @NonNull
+    public Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * 下载进度以绝对值上报（续传时从已完成的偏移开始）
+     */
+    public void setDownloaded(long bytes, long total) {
+        downloaded.set(bytes);
+        if (phase == Phase.DOWNLOAD) phaseTotal = total;
+        report(false);
+    }
+
+    public void addCompressed(long n) {
+        compressed.add(n);
+        report(false);
+    }
+
+    public void addInflated(long n) {
+        inflated.add(n);
+        report(false);
+    }
+
+    public void addWritten(long n) {
+        written.add(n);
+        report(false);
+    }
+
+    /**
+     * 安装阶段通过重命名完成的字节：推进安装进度，但没有实际写盘，不计入写入吞吐
+     */
+    public void addMoved(long n) {
+        moved.add(n);
+        report(false);
+    }
+
+    /**
+     * 立即回调一次，用于阶段结束时确保最终进度被送达
+     */
+    public void flush() {
+        report(true);
+    }
+
+    @NonNull
+    public Snapshot snapshot() {
+        long now = System.nanoTime();
+        Phase current = phase;
+        Meter meter = meterFor(current);
+        long done = phaseBytes(current) - phaseBaseline;
+        long total = phaseTotal;
+        // 解压阶段按压缩字节推进，剩余时间用压缩字节的消耗速度估算
+        // 安装阶段按写入与重命名的字节推进，剩余时间只按实际写入速度估算
+        double phaseRate = meter.rate(now);
+        long eta = -1;
+        if (phaseRate > 0 && total > done) {
+            eta = (long) ((total - done) / phaseRate);
+        } else if (total > 0 && done >= total) {
+            eta = 0;
+        }
+        return new Snapshot(current, done, total, downloaded.rate(now), inflated.rate(now), written.rate(now), eta);
+    }
+
+    private long phaseBytes(Phase phase) {
+        long bytes = meterFor(phase).bytes.get();
+        return phase == Phase.INSTALL ? bytes + moved.bytes.get() : bytes;
+    }
+
+    private Meter meterFor(Phase phase) {
+        switch (phase) {
+            case EXTRACT:
+                return compressed;
+            case INSTALL:
+                return written;
+            default:
+                return downloaded;
+        }
+    }
+
+    private void report(boolean force) {
+        if (listener == null) return;
+        long now = System.nanoTime();
+        long last = lastReportNanos.get();
+        if (!force && now - last < REPORT_INTERVAL_NANOS) return;
+        if (!lastReportNanos.compareAndSet(last, now) && !force) return;
+        listener.onPhaseProgress(snapshot());
+    }
+}
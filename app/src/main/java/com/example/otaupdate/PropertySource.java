@@ -0,0 +1,33 @@
+package com.example.otaupdate;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 系统属性来源
+ * 设备上由 {@link SystemPropertyReader} 提供；在 JVM 上可以用 {@link MapPropertySource} 代替
+ */
+public interface PropertySource {
+    /**
+     * @return 属性值，不存在或为空时返回 null
+     */
+    @Nullable
+    String get(@NonNull String key);
+
+    /**
+     * 一次解析多个属性，结果中只包含存在的键
+     */
+    @NonNull
+    default Map<String, String> getAll(@NonNull Collection<String> keys) {
+        Map<String, String> result = new HashMap<>();
+        for (String key : keys) {
+            String value = get(key);
+            if (value != null) result.put(key, value);
+        }
+        return result;
+    }
+}
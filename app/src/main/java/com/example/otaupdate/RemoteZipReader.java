@@ -0,0 +1,540 @@
+package com.example.otaupdate;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * 按区间读取远端 zip
+ * 只用两次区间请求取得文件尾的中央目录结束记录和中央目录，即可列出条目、检查包结构；
+ * 之后每个条目一次区间请求即可读出，选择性解压时相邻的条目合并为一次请求，不需要下载整个压缩包。
+ * 支持 ZIP64，读出的每个条目都按中央目录中的 CRC32 和大小校验
+ */
+public class RemoteZipReader {
+    private static final String TAG = "RemoteZipReader";
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_EOCD_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int ZIP64_EOCD_SIZE = 56;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int MAX_COMMENT_SIZE = 0xffff;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final long ZIP64_MAGIC = 0xffffffffL;
+    // 选择性解压时，未选中条目的间隔不超过该值则一并读过，省去一次请求
+    private static final long MAX_RUN_GAP = 256L * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 选择性解压的条目过滤器
+     */
+    public interface EntryFilter {
+        boolean accept(@NonNull Entry entry);
+    }
+
+    public static final class Entry {
+        @NonNull
+        public final String name;
+        public final int method;
+        public final long crc;
+        public final long compressedSize;
+        public final long size;
+        final long localHeaderOffset;
+        // 本条目的本地记录（文件头、数据和数据描述符）在文件中的结束位置，即下一条目或中央目录的起点
+        long recordEnd;
+
+        Entry(@NonNull String name, int method, long crc, long compressedSize, long size, long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return name + " (" + size + " bytes)";
+        }
+    }
+
+    private final SegmentedDownloader.RangeSource source;
+    private List<Entry> entries;
+    private Map<String, Entry> byName;
+
+    public RemoteZipReader(@NonNull SegmentedDownloader.RangeSource source) {
+        this.source = source;
+    }
+
+    /**
+     * 中央目录中的全部条目，首次调用时读取；包结构损坏（条目重叠、越界、签名错误）时抛出 ZipException
+     */
+    @NonNull
+    public synchronized List<Entry> entries() throws IOException {
+        if (entries == null) readCentralDirectory();
+        return entries;
+    }
+
+    @Nullable
+    public synchronized Entry find(@NonNull String name) throws IOException {
+        if (entries == null) readCentralDirectory();
+        return byName.get(name);
+    }
+
+    /**
+     * 打开条目的解压后数据流，调用方负责关闭；读到末尾时 CRC32 或大小不符抛出 ZipException
+     */
+    @NonNull
+    public InputStream open(@NonNull Entry entry) throws IOException {
+        checkMethod(entry);
+        InputStream in = source.openRange(entry.localHeaderOffset, entry.recordEnd - 1);
+        try {
+            return entryStream(in, entry, true);
+        } catch (IOException e) {
+            FileUtils.closeQuietly(in);
+            throw e;
+        }
+    }
+
+    /**
+     * 只解压被选中的条目到 destDir，文件中相邻（间隔不超过 {@link #MAX_RUN_GAP}）的条目用一次区间请求读出。
+     * 目标路径的处理与 {@link FileUtils#unzip} 相同
+     *
+     * @param task    可为 null，不为 null 时可通过它取消
+     * @param tracker 可为 null，不为 null 时按解压阶段上报进度
+     * @return 解压出的文件数
+     */
+    public int extract(@NonNull EntryFilter filter, @NonNull File destDir, boolean isMcuUpdate,
+                       @Nullable SegmentedDownloader.Task task, @Nullable ProgressTracker tracker)
+            throws IOException {
+        long start = System.nanoTime();
+        if (!destDir.isDirectory() && !destDir.mkdirs()) {
+            throw new IOException("Failed mkdir: " + destDir);
+        }
+        String canonicalDestinationPath = destDir.getCanonicalPath();
+        List<Entry> selected = new ArrayList<>();
+        long rangeTotal = 0;
+        for (Entry entry : entries()) {
+            if (!filter.accept(entry)) continue;
+            File target = FileUtils.resolveEntryTarget(destDir, canonicalDestinationPath, entry.name, isMcuUpdate);
+            if (target == null) continue;
+            if (entry.isDirectory()) {
+                if (!target.isDirectory() && !target.mkdirs()) throw new IOException("Failed mkdir: " + target);
+                continue;
+            }
+            checkMethod(entry);
+            selected.add(entry);
+            rangeTotal += entry.recordEnd - entry.localHeaderOffset;
+        }
+        Collections.sort(selected, (a, b) -> Long.compare(a.localHeaderOffset, b.localHeaderOffset));
+        // 解压阶段按读取的压缩字节推进
+        if (tracker != null) tracker.startPhase(ProgressTracker.Phase.EXTRACT, rangeTotal);
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long written = 0;
+        int requests = 0;
+        int runStart = 0;
+        while (runStart < selected.size()) {
+            int runEnd = runStart + 1;
+            while (runEnd < selected.size()
+                    && selected.get(runEnd).localHeaderOffset - selected.get(runEnd - 1).recordEnd <= MAX_RUN_GAP) {
+                runEnd++;
+            }
+            long begin = selected.get(runStart).localHeaderOffset;
+            InputStream range = source.openRange(begin, selected.get(runEnd - 1).recordEnd - 1);
+            requests++;
+            if (task != null) task.track(range);
+            try {
+                CountingInputStream counted = new CountingInputStream(range, n -> {
+                    if (tracker != null) tracker.addCompressed(n);
+                });
+                for (int i = runStart; i < runEnd; i++) {
+                    if (task != null && task.isCancelled()) throw new IOException("Extraction cancelled");
+                    Entry entry = selected.get(i);
+                    skipFully(counted, entry.localHeaderOffset - (begin + counted.getCount()));
+                    File target = FileUtils.resolveEntryTarget(destDir, canonicalDestinationPath, entry.name,
+                            isMcuUpdate);
+                    written += writeEntry(entryStream(counted, entry, false), target, buffer, tracker);
+                }
+            } finally {
+                if (task != null) task.untrack(range);
+                FileUtils.closeQuietly(range);
+            }
+            runStart = runEnd;
+        }
+        if (tracker != null) tracker.flush();
+        Log.i(TAG, "Extracted " + selected.size() + " of " + entries().size() + " entries (" + written + " bytes, "
+                + requests + " range requests) from " + source.getKey() + " in "
+                + (System.nanoTime() - start) / 1000000 + "ms");
+        return selected.size();
+    }
+
+    static long writeEntry(InputStream in, File target, byte[] buffer,
+                                   @Nullable ProgressTracker tracker) throws IOException {
+        File parent = target.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Failed mkdir parent: " + parent);
+        }
+        long total = 0;
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(target);
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+                total += n;
+                if (tracker != null) {
+                    tracker.addInflated(n);
+                    tracker.addWritten(n);
+                }
+            }
+        } finally {
+            FileUtils.closeQuietly(out);
+            FileUtils.closeQuietly(in);
+        }
+        return total;
+    }
+
+    static void checkMethod(Entry entry) throws ZipException {
+        if (entry.method != ZipEntry.STORED && entry.method != ZipEntry.DEFLATED) {
+            throw new ZipException("Unsupported compression method " + entry.method + " for " + entry.name);
+        }
+    }
+
+    /**
+     * in 位于条目的本地文件头，返回解压并校验后的数据流
+     *
+     * @param closeSource 关闭返回的流时是否关闭 in
+     */
+    static InputStream entryStream(InputStream in, Entry entry, boolean closeSource) throws IOException {
+        ByteBuffer header = ByteBuffer.wrap(readFully(in, LOCAL_HEADER_SIZE)).order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt(0) != LOCAL_SIGNATURE) {
+            throw new ZipException("Bad local header for " + entry.name);
+        }
+        skipFully(in, (header.getShort(26) & 0xffff) + (header.getShort(28) & 0xffff));
+        InputStream data = new BoundedInputStream(in, entry.compressedSize, closeSource);
+        if (entry.method == ZipEntry.DEFLATED) {
+            Inflater inflater = new Inflater(true);
+            data = new InflaterInputStream(data, inflater, BUFFER_SIZE) {
+                private boolean closed;
+
+                @Override
+                public void close() throws IOException {
+                    if (closed) return;
+                    closed = true;
+                    inflater.end();
+                    super.close();
+                }
+            };
+        }
+        return new CheckedEntryStream(data, entry);
+    }
+
+    private void readCentralDirectory() throws IOException {
+        long start = System.nanoTime();
+        long length = source.stat().length;
+        if (length < EOCD_SIZE) throw new ZipException("Not a zip: " + source.getKey());
+        int tailSize = (int) Math.min(length, EOCD_SIZE + MAX_COMMENT_SIZE + ZIP64_LOCATOR_SIZE + ZIP64_EOCD_SIZE);
+        long tailStart = length - tailSize;
+        byte[] tail;
+        try (InputStream in = source.openRange(tailStart, length - 1)) {
+            tail = readFully(in, tailSize);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(tail).order(ByteOrder.LITTLE_ENDIAN);
+        int eocd = -1;
+        for (int i = tailSize - EOCD_SIZE; i >= 0; i--) {
+            if (buffer.getInt(i) == EOCD_SIGNATURE) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd < 0) throw new ZipException("End of central directory not found: " + source.getKey());
+        long count = buffer.getShort(eocd + 10) & 0xffff;
+        long cdSize = buffer.getInt(eocd + 12) & 0xffffffffL;
+        long cdOffset = buffer.getInt(eocd + 16) & 0xffffffffL;
+        long cdLimit = tailStart + eocd;
+        boolean zip64 = count == 0xffff || cdSize == ZIP64_MAGIC || cdOffset == ZIP64_MAGIC;
+        if (zip64) {
+            int locator = eocd - ZIP64_LOCATOR_SIZE;
+            if (locator < 0 || buffer.getInt(locator) != ZIP64_LOCATOR_SIGNATURE) {
+                throw new ZipException("ZIP64 locator not found: " + source.getKey());
+            }
+            long recordOffset = buffer.getLong(locator + 8);
+            ByteBuffer record;
+            if (recordOffset >= tailStart && recordOffset + ZIP64_EOCD_SIZE <= tailStart + locator) {
+                record = ByteBuffer.wrap(tail, (int) (recordOffset - tailStart), ZIP64_EOCD_SIZE).slice()
+                        .order(ByteOrder.LITTLE_ENDIAN);
+            } else {
+                try (InputStream in = source.openRange(recordOffset, recordOffset + ZIP64_EOCD_SIZE - 1)) {
+                    record = ByteBuffer.wrap(readFully(in, ZIP64_EOCD_SIZE)).order(ByteOrder.LITTLE_ENDIAN);
+                }
+            }
+            if (record.getInt(0) != ZIP64_EOCD_SIGNATURE) {
+                throw new ZipException("Bad ZIP64 end of central directory: " + source.getKey());
+            }
+            count = record.getLong(32);
+            cdSize = record.getLong(40);
+            cdOffset = record.getLong(48);
+            cdLimit = recordOffset;
+        }
+        if (cdOffset < 0 || cdSize < 0 || cdOffset + cdSize > cdLimit || cdSize > Integer.MAX_VALUE
+                || count > cdSize / CENTRAL_HEADER_SIZE) {
+            throw new ZipException("Corrupt central directory: " + source.getKey());
+        }
+
+        byte[] directory;
+        if (cdOffset >= tailStart) {
+            // 中央目录已经包含在文件尾的数据中
+            directory = new byte[(int) cdSize];
+            System.arraycopy(tail, (int) (cdOffset - tailStart), directory, 0, (int) cdSize);
+        } else {
+            try (InputStream in = source.openRange(cdOffset, cdOffset + cdSize - 1)) {
+                directory = readFully(in, (int) cdSize);
+            }
+        }
+        List<Entry> list = parseCentralDirectory(directory, (int) count);
+        assignRecordBounds(list, cdOffset);
+        Map<String, Entry> map = new HashMap<>(list.size() * 2);
+        for (Entry entry : list) {
+            map.put(entry.name, entry);
+        }
+        entries = Collections.unmodifiableList(list);
+        byName = map;
+        Log.d(TAG, "Read " + list.size() + " entries of " + source.getKey() + " (" + cdSize
+                + " bytes of central directory" + (zip64 ? ", ZIP64" : "") + ") in "
+                + (System.nanoTime() - start) / 1000000 + "ms");
+    }
+
+    private static List<Entry> parseCentralDirectory(byte[] directory, int count) throws ZipException {
+        ByteBuffer buffer = ByteBuffer.wrap(directory).order(ByteOrder.LITTLE_ENDIAN);
+        List<Entry> list = new ArrayList<>(count);
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            if (position + CENTRAL_HEADER_SIZE > directory.length || buffer.getInt(position) != CENTRAL_SIGNATURE) {
+                throw new ZipException("Bad central directory entry " + i);
+            }
+            int method = buffer.getShort(position + 10) & 0xffff;
+            long crc = buffer.getInt(position + 16) & 0xffffffffL;
+            long compressedSize = buffer.getInt(position + 20) & 0xffffffffL;
+            long size = buffer.getInt(position + 24) & 0xffffffffL;
+            int nameLength = buffer.getShort(position + 28) & 0xffff;
+            int extraLength = buffer.getShort(position + 30) & 0xffff;
+            int commentLength = buffer.getShort(position + 32) & 0xffff;
+            long localHeaderOffset = buffer.getInt(position + 42) & 0xffffffffL;
+            int extraStart = position + CENTRAL_HEADER_SIZE + nameLength;
+            int next = extraStart + extraLength + commentLength;
+            if (next > directory.length) throw new ZipException("Truncated central directory entry " + i);
+            String name = new String(directory, position + CENTRAL_HEADER_SIZE, nameLength, StandardCharsets.UTF_8);
+
+            // ZIP64 扩展字段按顺序给出被置为 0xffffffff 的字段
+            for (int extra = extraStart; extra + 4 <= extraStart + extraLength; ) {
+                int id = buffer.getShort(extra) & 0xffff;
+                int dataSize = buffer.getShort(extra + 2) & 0xffff;
+                int field = extra + 4;
+                if (id == ZIP64_EXTRA_ID) {
+                    int end = field + dataSize;
+                    if (size == ZIP64_MAGIC && field + 8 <= end) {
+                        size = buffer.getLong(field);
+                        field += 8;
+                    }
+                    if (compressedSize == ZIP64_MAGIC && field + 8 <= end) {
+                        compressedSize = buffer.getLong(field);
+                        field += 8;
+                    }
+                    if (localHeaderOffset == ZIP64_MAGIC && field + 8 <= end) {
+                        localHeaderOffset = buffer.getLong(field);
+                    }
+                    break;
+                }
+                extra = field + dataSize;
+            }
+            list.add(new Entry(name, method, crc, compressedSize, size, localHeaderOffset));
+            position = next;
+        }
+        return list;
+    }
+
+    /**
+     * 按文件中的位置排序，每个条目的记录到下一个条目（或中央目录）为止，数据越出该范围说明包已损坏
+     */
+    private static void assignRecordBounds(List<Entry> list, long cdOffset) throws ZipException {
+        List<Entry> sorted = new ArrayList<>(list);
+        Collections.sort(sorted, (a, b) -> Long.compare(a.localHeaderOffset, b.localHeaderOffset));
+        long next = cdOffset;
+        for (int i = sorted.size() - 1; i >= 0; i--) {
+            Entry entry = sorted.get(i);
+            entry.recordEnd = next;
+            if (entry.localHeaderOffset + LOCAL_HEADER_SIZE + entry.compressedSize > entry.recordEnd) {
+                throw new ZipException("Entry " + entry.name + " overlaps the next record");
+            }
+            next = entry.localHeaderOffset;
+        }
+    }
+
+    private static byte[] readFully(InputStream in, int length) throws IOException {
+        byte[] data = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int n = in.read(data, read, length - read);
+            if (n < 0) throw new ZipException("Unexpected end of range after " + read + " bytes");
+            read += n;
+        }
+        return data;
+    }
+
+    static void skipFully(InputStream in, long count) throws IOException {
+        while (count > 0) {
+            long n = in.skip(count);
+            if (n <= 0) {
+                if (in.read() < 0) throw new ZipException("Unexpected end of range");
+                n = 1;
+            }
+            count -= n;
+        }
+    }
+
+    /**
+     * 只读出条目的压缩数据，之后的字节不交给解压器
+     */
+    private static final class BoundedInputStream extends FilterInputStream {
+        private final boolean closeSource;
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long length, boolean closeSource) {
+            super(in);
+            this.remaining = length;
+            this.closeSource = closeSource;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int b = super.read();
+            if (b >= 0) remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) return -1;
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) remaining -= n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            if (skipped > 0) remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closeSource) super.close();
+        }
+    }
+
+    /**
+     * 读到末尾时按中央目录校验解压后的大小和 CRC32
+     */
+    private static final class CheckedEntryStream extends FilterInputStream {
+        private final Entry entry;
+        private final CRC32 crc = new CRC32();
+        private long count;
+
+        CheckedEntryStream(InputStream in, Entry entry) {
+            super(in);
+            this.entry = entry;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                crc.update(b);
+                count++;
+            } else {
+                check();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                crc.update(b, off, n);
+                count += n;
+            } else if (n < 0) {
+                check();
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // 跳过的数据同样需要计入校验
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (read < 0) break;
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void check() throws ZipException {
+            if (count != entry.size || crc.getValue() != entry.crc) {
+                throw new ZipException("Entry " + entry.name + " failed verification: " + count + " bytes, crc "
+                        + Long.toHexString(crc.getValue()) + ", expected " + entry.size + " bytes, crc "
+                        + Long.toHexString(entry.crc));
+            }
+        }
+    }
+}
@@ -0,0 +1,664 @@
+package com.example.otaupdate;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 分段并发下载器
+ * 将对象按字节区间切分为多个分段，在给定线程池上并发拉取，
+ * 读到的数据经可复用的直接缓冲区交给写线程，直接写入预分配文件中对应的偏移位置。
+ * 各分段已落盘的偏移会定期记录到 {@link DownloadJournal}，再次下载同一对象时从断点继续
+ */
+public class SegmentedDownloader {
+    private static final String TAG = "SegmentedDownloader";
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final int BUFFERS_PER_SEGMENT = 4;
+    // 小于该大小的对象不再切分，避免多余的连接开销
+    private static final long MIN_SEGMENT_SIZE = 4L * 1024 * 1024;
+    // 进度回调的最小间隔字节数
+    private static final long PROGRESS_STEP = 256L * 1024;
+    private static final int MAX_SEGMENT_RETRY = 3;
+    // 每写入该字节数同步一次数据并更新断点日志
+    private static final long CHECKPOINT_STEP = 4L * 1024 * 1024;
+    // 损坏的块最多重新拉取的轮数
+    private static final int MAX_CHUNK_REFETCH = 3;
+
+    public static final int DEFAULT_SEGMENT_COUNT = 4;
+
+    /**
+     * 按字节区间读取对象的数据源，OSS 与本地测试桩均可实现
+     */
+    public interface RangeSource {
+        @NonNull
+        String getKey();
+
+        /**
+         * 获取对象大小与 ETag，之后的区间请求应只针对该 ETag 对应的对象版本
+         */
+        @NonNull
+        ObjectStat stat() throws IOException;
+
+        /**
+         * 打开 [begin, end] 闭区间的数据流
+         */
+        @NonNull
+        InputStream openRange(long begin, long end) throws IOException;
+
+        /**
+         * 对象的分块清单，提供时逐块校验并只重新拉取损坏的块；没有清单时返回 null
+         */
+        @Nullable
+        default ChunkManifest chunkManifest() throws IOException {
+            return null;
+        }
+    }
+
+    public static final class ObjectStat {
+        public final long length;
+        @Nullable
+        public final String etag;
+        // 服务端提供的校验值，用于 {@link PackageVerifier}；未提供时为 null
+        @Nullable
+        public final Long crc64;
+        @Nullable
+        public final String sha256;
+
+        public ObjectStat(long length, @Nullable String etag) {
+            this(length, etag, null, null);
+        }
+
+        public ObjectStat(long length, @Nullable String etag, @Nullable Long crc64, @Nullable String sha256) {
+            this.length = length;
+            this.etag = etag;
+            this.crc64 = crc64;
+            this.sha256 = sha256;
+        }
+    }
+
+    /**
+     * 写入观察者，数据写入文件后由写线程回调，可用于边下载边校验
+     */
+    public interface WriteObserver {
+        void onWritten(long position, @NonNull ByteBuffer data) throws IOException;
+
+        /**
+         * [begin, end) 的数据已在文件中被重新写入（损坏的块重新拉取之后），之前通过 onWritten 收到的该区间数据作废
+         */
+        default void onRewritten(long begin, long end) throws IOException {
+        }
+    }
+
+    public interface Listener {
+        void onProgress(long currentSize, long totalSize);
+
+        void onComplete(@NonNull File file);
+
+        void onFailure(@NonNull Exception e);
+    }
+
+    /**
+     * 下载任务句柄，用于取消和查询状态
+     */
+    public static final class Task {
+        private final AtomicBoolean finished = new AtomicBoolean(false);
+        private final Set<InputStream> openStreams = ConcurrentHashMap.newKeySet();
+        // 结束回调返回后执行的动作，由自身加锁保护
+        private final List<Runnable> finishActions = new ArrayList<>();
+        private boolean finishActionsRun = false;
+        private volatile boolean cancelled = false;
+
+        public void cancel() {
+            cancelled = true;
+            // 关闭正在读取的连接，使阻塞中的 read 立即返回
+            for (InputStream in : openStreams) {
+                FileUtils.closeQuietly(in);
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public boolean isCompleted() {
+            return finished.get();
+        }
+
+        void track(InputStream in) {
+            openStreams.add(in);
+        }
+
+        void untrack(InputStream in) {
+            openStreams.remove(in);
+        }
+
+        /**
+         * 标记任务结束，只有第一次调用返回 true，保证完成/失败回调只触发一次
+         */
+        boolean markFinished() {
+            return finished.compareAndSet(false, true);
+        }
+
+        /**
+         * 任务结束且完成/失败回调返回后执行 action，此时任务不会再读写任何文件；已结束时立即在调用线程执行。
+         * 用于取消后等旧任务停下再开始新任务，避免两个任务同时写同一个文件
+         */
+        public void whenFinished(@NonNull Runnable action) {
+            synchronized (finishActions) {
+                if (!finishActionsRun) {
+                    finishActions.add(action);
+                    return;
+                }
+            }
+            action.run();
+        }
+
+        void runFinishActions() {
+            List<Runnable> actions;
+            synchronized (finishActions) {
+                finishActionsRun = true;
+                actions = new ArrayList<>(finishActions);
+                finishActions.clear();
+            }
+            for (Runnable action : actions) {
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Finish action failed", e);
+                }
+            }
+        }
+    }
+
+    private static final class Segment {
+        final int index;
+        final long begin;
+        final long end;
+        volatile long position;
+        // 最近一次检查点时已落盘的偏移
+        volatile long durable;
+
+        Segment(int index, long begin, long end, long position) {
+            this.index = index;
+            this.begin = begin;
+            this.end = end;
+            this.position = position;
+            this.durable = position;
+        }
+    }
+
+    /**
+     * 先同步数据再写日志，保证日志中记录的偏移之前的数据一定已落盘
+     */
+    private static final class Checkpointer {
+        private final String objectKey;
+        private final ObjectStat stat;
+        private final File destination;
+        private final FileChannel channel;
+        private final List<Segment> segments;
+        private final AtomicLong lastCheckpoint;
+
+        Checkpointer(String objectKey, ObjectStat stat, File destination, FileChannel channel,
+                     List<Segment> segments, long completed) {
+            this.objectKey = objectKey;
+            this.stat = stat;
+            this.destination = destination;
+            this.channel = channel;
+            this.segments = segments;
+            this.lastCheckpoint = new AtomicLong(completed);
+        }
+
+        void maybeCheckpoint(long downloaded) throws IOException {
+            long last = lastCheckpoint.get();
+            if (downloaded - last >= CHECKPOINT_STEP && lastCheckpoint.compareAndSet(last, downloaded)) {
+                checkpoint();
+            }
+        }
+
+        synchronized void checkpoint() throws IOException {
+            List<DownloadJournal.Range> ranges = new ArrayList<>(segments.size());
+            for (Segment segment : segments) {
+                ranges.add(new DownloadJournal.Range(segment.begin, segment.end, segment.position));
+            }
+            channel.force(false);
+            for (int i = 0; i < segments.size(); i++) {
+                segments.get(i).durable = ranges.get(i).position;
+            }
+            // 没有ETag无法校验对象是否变化，不记录断点
+            if (stat.etag == null) return;
+            new DownloadJournal(objectKey, stat.etag, stat.length, ranges).save(destination);
+        }
+
+        void checkpointQuietly() {
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to save journal for " + destination.getName(), e);
+            }
+        }
+    }
+
+    private static final class WriteOp {
+        final Segment segment;
+        final long position;
+        final ByteBuffer buffer;
+
+        WriteOp(Segment segment, long position, ByteBuffer buffer) {
+            this.segment = segment;
+            this.position = position;
+            this.buffer = buffer;
+        }
+    }
+
+    private static final WriteOp END_OF_STREAM = new WriteOp(null, -1, null);
+
+    private final ExecutorService executor;
+    private final int segmentCount;
+    private final BufferRing bufferRing;
+
+    public SegmentedDownloader(@NonNull ExecutorService executor, int segmentCount) {
+        this.executor = executor;
+        this.segmentCount = Math.max(1, segmentCount);
+        this.bufferRing = new BufferRing(this.segmentCount * BUFFERS_PER_SEGMENT, BUFFER_SIZE);
+    }
+
+    @NonNull
+    public Task start(@NonNull RangeSource source, @NonNull File destination, @NonNull Listener listener) {
+        return start(source, destination, listener, null);
+    }
+
+    @NonNull
+    public Task start(@NonNull RangeSource source, @NonNull File destination, @NonNull Listener listener,
+                      @Nullable WriteObserver observer) {
+        Task task = new Task();
+        executor.submit(() -> {
+            try {
+                ObjectStat stat = source.stat();
+                long length = stat.length;
+                ChunkManifest manifest = source.chunkManifest();
+                if (manifest != null && manifest.getLength() != length) {
+                    Log.w(TAG, "Ignoring chunk manifest for " + length + " bytes: " + manifest.getLength());
+                    manifest = null;
+                }
+                List<Segment> segments;
+                DownloadJournal journal = DownloadJournal.load(destination);
+                if (journal != null && journal.matches(source.getKey(), stat.etag, length)) {
+                    segments = fromJournal(journal);
+                    Log.d(TAG, "Resuming " + destination.getName() + " from " + journal.getCompletedBytes() + "/" + length);
+                } else {
+                    if (journal != null) Log.d(TAG, "Journal outdated, restarting: " + destination.getName());
+                    DownloadJournal.delete(destination);
+                    // 分段边界与块边界对齐，每块都能在写入时按顺序校验
+                    segments = split(length, manifest != null ? manifest.getChunkSize() : 1);
+                }
+                Log.d(TAG, "Start download: " + destination.getName() + ", size=" + length + ", segments=" + segments.size());
+
+                RandomAccessFile raf = new RandomAccessFile(destination, "rw");
+                try {
+                    // 预分配目标文件，各分段按偏移写入；空间不足时在这里失败
+                    if (raf.length() != length) raf.setLength(length);
+                } catch (IOException e) {
+                    closeQuietly(raf);
+                    throw e;
+                }
+                if (segments.isEmpty()) {
+                    closeQuietly(raf);
+                    finish(task, listener, destination, null);
+                    return;
+                }
+
+                Pipeline pipeline = new Pipeline(source, stat, destination, raf, segments, task, listener, observer,
+                        manifest);
+                listener.onProgress(pipeline.downloaded, length);
+                executor.submit(pipeline::runWriter);
+                for (Segment segment : segments) {
+                    if (segment.position <= segment.end) {
+                        executor.submit(() -> pipeline.readSegment(segment));
+                    }
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Download setup failed", e);
+                finish(task, listener, destination, e);
+            }
+        });
+        return task;
+    }
+
+    @NonNull
+    private List<Segment> split(long length, long alignment) {
+        List<Segment> segments = new ArrayList<>();
+        for (DownloadJournal.Range range : splitRange(0, length, segmentCount, alignment)) {
+            segments.add(new Segment(segments.size(), range.begin, range.end, range.position));
+        }
+        return segments;
+    }
+
+    /**
+     * 把 [begin, length) 切分为最多 count 个未开始的区间，区间大小按 alignment 对齐
+     */
+    @NonNull
+    private static List<DownloadJournal.Range> splitRange(long begin, long length, int count, long alignment) {
+        List<DownloadJournal.Range> ranges = new ArrayList<>();
+        long remaining = length - begin;
+        if (remaining <= 0) return ranges;
+        count = (int) Math.max(1, Math.min(count, remaining / MIN_SEGMENT_SIZE));
+        long segmentSize = (remaining + count - 1) / count;
+        segmentSize = (segmentSize + alignment - 1) / alignment * alignment;
+        for (int i = 0; i < count; i++) {
+            long rangeBegin = begin + i * segmentSize;
+            long rangeEnd = Math.min(length, rangeBegin + segmentSize) - 1;
+            if (rangeBegin > rangeEnd) break;
+            ranges.add(new DownloadJournal.Range(rangeBegin, rangeEnd, rangeBegin));
+        }
+        return ranges;
+    }
+
+    @NonNull
+    private static List<Segment> fromJournal(DownloadJournal journal) {
+        List<DownloadJournal.Range> ranges = journal.getRanges();
+        List<Segment> segments = new ArrayList<>(ranges.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            DownloadJournal.Range range = ranges.get(i);
+            segments.add(new Segment(i, range.begin, range.end, range.position));
+        }
+        return segments;
+    }
+
+    /**
+     * 一次下载的读写流水线
+     * 每个分段一个读线程，把网络数据读入缓冲区后交给唯一的写线程；
+     * 写线程按偏移写入文件、回调观察者并推进断点，读写互不等待
+     */
+    private final class Pipeline {
+        private final RangeSource source;
+        private final File destination;
+        private final RandomAccessFile raf;
+        private final FileChannel channel;
+        private final List<Segment> segments;
+        private final Task task;
+        private final Listener listener;
+        private final WriteObserver observer;
+        private final Checkpointer checkpointer;
+        private final ChunkVerifier chunkVerifier;
+        private final long length;
+        private final BlockingQueue<WriteOp> queue = new LinkedBlockingQueue<>();
+        private final AtomicReference<Exception> error = new AtomicReference<>();
+        private volatile boolean writerDone = false;
+
+        // 以下字段仅由写线程访问
+        private long downloaded;
+        private long lastReported;
+        private int completedSegments;
+
+        Pipeline(RangeSource source, ObjectStat stat, File destination, RandomAccessFile raf, List<Segment> segments,
+                 Task task, Listener listener, WriteObserver observer, ChunkManifest manifest) {
+            this.source = source;
+            this.destination = destination;
+            this.raf = raf;
+            this.channel = raf.getChannel();
+            this.segments = segments;
+            this.task = task;
+            this.listener = listener;
+            this.observer = observer;
+            this.length = stat.length;
+            for (Segment segment : segments) {
+                downloaded += segment.position - segment.begin;
+                if (segment.position > segment.end) completedSegments++;
+            }
+            this.lastReported = downloaded;
+            this.checkpointer = new Checkpointer(source.getKey(), stat, destination, channel, segments, downloaded);
+            this.chunkVerifier = manifest != null ? new ChunkVerifier(manifest, channel) : null;
+        }
+
+        void readSegment(Segment segment) {
+            long position = segment.position;
+            int attempt = 0;
+            long durableAtFailure = segment.durable;
+            while (position <= segment.end) {
+                InputStream in = null;
+                try {
+                    if (task.isCancelled()) throw new IOException("Download cancelled");
+                    in = source.openRange(position, segment.end);
+                    task.track(in);
+                    ReadableByteChannel input = Channels.newChannel(in);
+                    boolean eof = false;
+                    while (!eof && position <= segment.end) {
+                        ByteBuffer buffer = acquireBuffer();
+                        buffer.limit((int) Math.min(buffer.capacity(), segment.end - position + 1));
+                        try {
+                            // 尽量填满缓冲区再交给写线程，减少写入次数
+                            while (buffer.hasRemaining()) {
+                                if (input.read(buffer) == -1) {
+                                    eof = true;
+                                    break;
+                                }
+                            }
+                        } finally {
+                            // 出错时已读到的部分数据同样有效，照常写入
+                            position = submit(segment, position, buffer);
+                        }
+                        if (task.isCancelled()) throw new IOException("Download cancelled");
+                    }
+                    if (position <= segment.end) {
+                        throw new IOException("Unexpected end of stream at " + position + " for segment " + segment.index);
+                    }
+                } catch (IOException e) {
+                    // 上次失败之后又有数据落盘，说明连接恢复过，重试次数重新计算
+                    if (segment.durable > durableAtFailure) {
+                        durableAtFailure = segment.durable;
+                        attempt = 0;
+                    }
+                    // 弱网下从当前偏移重试该分段，而不是整个文件重来
+                    if (task.isCancelled() || ++attempt > MAX_SEGMENT_RETRY) {
+                        Log.e(TAG, "Segment " + segment.index + " failed", e);
+                        fail(e);
+                        return;
+                    }
+                    Log.w(TAG, "Segment " + segment.index + " interrupted at " + position + ", retry " + attempt, e);
+                } finally {
+                    if (in != null) {
+                        task.untrack(in);
+                        FileUtils.closeQuietly(in);
+                    }
+                }
+            }
+        }
+
+        private ByteBuffer acquireBuffer() throws IOException {
+            try {
+                while (true) {
+                    if (task.isCancelled()) throw new IOException("Download cancelled");
+                    ByteBuffer buffer = bufferRing.acquire(100, TimeUnit.MILLISECONDS);
+                    if (buffer != null) return buffer;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Download interrupted");
+            }
+        }
+
+        private long submit(Segment segment, long position, ByteBuffer buffer) {
+            buffer.flip();
+            int size = buffer.remaining();
+            if (size == 0) {
+                bufferRing.release(buffer);
+                return position;
+            }
+            queue.add(new WriteOp(segment, position, buffer));
+            // 写线程已退出时归还缓冲区，避免缓冲区环被耗尽
+            if (writerDone) drainQueue();
+            return position + size;
+        }
+
+        void runWriter() {
+            try {
+                while (completedSegments < segments.size()) {
+                    WriteOp op = queue.take();
+                    if (op == END_OF_STREAM) break;
+                    try {
+                        write(op);
+                    } finally {
+                        bufferRing.release(op.buffer);
+                    }
+                }
+                if (error.get() == null && completedSegments == segments.size()) {
+                    writerDone = true;
+                    if (chunkVerifier != null) repairChunks();
+                    channel.force(false);
+                    closeQuietly(raf);
+                    DownloadJournal.delete(destination);
+                    listener.onProgress(length, length);
+                    finish(task, listener, destination, null);
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(new InterruptedIOException("Download interrupted"));
+            } catch (Exception e) {
+                Log.e(TAG, "Write failed: " + destination.getName(), e);
+                fail(e);
+            }
+            writerDone = true;
+            drainQueue();
+            // 记录已落盘的进度，下次从断点继续
+            checkpointer.checkpointQuietly();
+            closeQuietly(raf);
+            finish(task, listener, destination, error.get());
+        }
+
+        private void write(WriteOp op) throws IOException {
+            ByteBuffer data = op.buffer;
+            ByteBuffer view = observer != null ? data.duplicate() : null;
+            ByteBuffer chunkView = chunkVerifier != null ? data.duplicate() : null;
+            long position = op.position;
+            while (data.hasRemaining()) {
+                position += channel.write(data, position);
+            }
+            if (observer != null) observer.onWritten(op.position, view);
+            if (chunkVerifier != null) chunkVerifier.onWritten(op.position, chunkView);
+            int written = (int) (position - op.position);
+            op.segment.position = position;
+            if (position > op.segment.end) completedSegments++;
+            downloaded += written;
+            checkpointer.maybeCheckpoint(downloaded);
+            if (downloaded - lastReported >= PROGRESS_STEP) {
+                lastReported = downloaded;
+                listener.onProgress(downloaded, length);
+            }
+        }
+
+        /**
+         * 所有分段写完后校验剩余的块，损坏的块按区间重新拉取，多轮后仍损坏则失败
+         */
+        private void repairChunks() throws IOException {
+            List<Integer> bad = chunkVerifier.collectBad();
+            for (int round = 1; !bad.isEmpty(); round++) {
+                if (round > MAX_CHUNK_REFETCH) {
+                    throw new IOException(bad.size() + " chunks of " + destination.getName()
+                            + " still corrupt after " + MAX_CHUNK_REFETCH + " re-fetches");
+                }
+                Log.w(TAG, "Re-fetching " + bad.size() + " corrupt chunks of " + destination.getName() + ", round " + round);
+                List<Integer> stillBad = new ArrayList<>();
+                for (int index : bad) {
+                    if (task.isCancelled()) throw new IOException("Download cancelled");
+                    try {
+                        if (refetchChunk(index)) continue;
+                    } catch (IOException e) {
+                        Log.w(TAG, "Failed to re-fetch chunk " + index, e);
+                    }
+                    stillBad.add(index);
+                }
+                bad = stillBad;
+            }
+        }
+
+        private boolean refetchChunk(int index) throws IOException {
+            ChunkManifest manifest = chunkVerifier.getManifest();
+            long begin = manifest.chunkBegin(index);
+            long end = manifest.chunkEnd(index);
+            ByteBuffer buffer = acquireBuffer();
+            InputStream in = null;
+            try {
+                in = source.openRange(begin, end - 1);
+                task.track(in);
+                ReadableByteChannel input = Channels.newChannel(in);
+                long position = begin;
+                while (position < end) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                    if (input.read(buffer) == -1) {
+                        throw new IOException("Unexpected end of stream re-fetching chunk " + index);
+                    }
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        position += channel.write(buffer, position);
+                    }
+                }
+            } finally {
+                bufferRing.release(buffer);
+                if (in != null) {
+                    task.untrack(in);
+                    FileUtils.closeQuietly(in);
+                }
+            }
+            if (observer != null) observer.onRewritten(begin, end);
+            return chunkVerifier.verifyFromFile(index);
+        }
+
+        private void fail(Exception e) {
+            if (error.compareAndSet(null, e)) {
+                task.cancel();
+                queue.add(END_OF_STREAM);
+            }
+        }
+
+        private void drainQueue() {
+            WriteOp op;
+            while ((op = queue.poll()) != null) {
+                if (op != END_OF_STREAM) bufferRing.release(op.buffer);
+            }
+        }
+    }
+
+    static void finish(Task task, Listener listener, File destination, Exception error) {
+        if (!task.markFinished()) return;
+        try {
+            if (error == null) {
+                listener.onComplete(destination);
+            } else {
+                listener.onFailure(error);
+            }
+        } finally {
+            task.runFinishActions();
+        }
+    }
+
+    private static void closeQuietly(RandomAccessFile raf) {
+        try {
+            raf.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,552 @@
+package com.example.otaupdate;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 崩溃安全的分阶段安装
+ * 新内容先放入目标目录下的暂存目录 {@link #STAGING_DIR}（与目标同一文件系统），全部落盘后再逐项原子重命名到目标位置，
+ * 被替换的旧内容先重命名到暂存目录中的备份目录，全部切换完成后才删除。暂存目录中的安装日志记录当前阶段：
+ * <ul>
+ *   <li>暂存阶段中断：目标目录未被改动，下次启动时从源内容继续暂存并完成切换，源内容不完整时回滚</li>
+ *   <li>切换阶段中断：新内容都已 fsync，下次启动时继续完成切换</li>
+ * </ul>
+ * 安装过程中失败时回滚：已切换的项还原为旧内容，已移入暂存目录的源内容移回原位置，调用方可以直接重试而不必重新下载
+ */
+public class StagedInstaller {
+    private static final String TAG = "StagedInstaller";
+    public static final String STAGING_DIR = ".ota_install";
+    private static final String JOURNAL_FILE = "install.journal";
+    private static final String NEW_DIR = "new";
+    private static final String OLD_DIR = "old";
+    private static final String PART_SUFFIX = ".part";
+    private static final int VERSION = 1;
+    // 同一进程内的安装与恢复串行执行
+    private static final Object LOCK = new Object();
+
+    private enum State {
+        STAGING,
+        SWAPPING,
+        COMMITTED
+    }
+
+    /**
+     * 一个安装项：source（文件或目录）安装到目标目录下的相对路径 path，已存在的同名内容整体替换
+     */
+    public static final class Item {
+        @NonNull
+        public final File source;
+        @NonNull
+        public final String path;
+
+        public Item(@NonNull File source, @NonNull String path) {
+            this.source = source;
+            this.path = path;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return source + " -> " + path;
+        }
+    }
+
+    /**
+     * 暂存统计：源与目标在同一文件系统时直接原子重命名，不产生数据拷贝；
+     * 跨文件系统（例如 /data 到 sdcardfs/FUSE 挂载的 /mnt/sdcard）时才复制，两者分别累计
+     */
+    public static final class Stats {
+        private final AtomicLong movedBytes = new AtomicLong();
+        private final AtomicLong copiedBytes = new AtomicLong();
+        private final AtomicInteger movedFiles = new AtomicInteger();
+        private final AtomicInteger copiedFiles = new AtomicInteger();
+
+        public long getMovedBytes() {
+            return movedBytes.get();
+        }
+
+        public long getCopiedBytes() {
+            return copiedBytes.get();
+        }
+
+        public int getMovedFiles() {
+            return movedFiles.get();
+        }
+
+        public int getCopiedFiles() {
+            return copiedFiles.get();
+        }
+
+        void addMoved(long bytes, int files) {
+            movedBytes.addAndGet(bytes);
+            movedFiles.addAndGet(files);
+        }
+
+        void addCopied(long bytes, int files) {
+            copiedBytes.addAndGet(bytes);
+            copiedFiles.addAndGet(files);
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "moved " + movedFiles.get() + " files/" + movedBytes.get() + " bytes, copied "
+                    + copiedFiles.get() + " files/" + copiedBytes.get() + " bytes";
+        }
+    }
+
+    /**
+     * 安装项（文件或目录树）的总字节数与文件数
+     */
+    private static final class Size {
+        final long bytes;
+        final int files;
+
+        Size(long bytes, int files) {
+            this.bytes = bytes;
+            this.files = files;
+        }
+    }
+
+    private static final class Journal {
+        State state;
+        @Nullable
+        final File sourceRoot;
+        final List<Item> items;
+
+        Journal(State state, @Nullable File sourceRoot, List<Item> items) {
+            this.state = state;
+            this.sourceRoot = sourceRoot;
+            this.items = items;
+        }
+    }
+
+    private final File targetDir;
+    private final File stagingRoot;
+    private final File newDir;
+    private final File oldDir;
+    private final File journalFile;
+    private final Stats stats;
+    // 跨文件系统复制时按目录批量 fsync
+    private final FileCopier copier = new FileCopier(FileCopier.SyncMode.PER_DIRECTORY);
+
+    public StagedInstaller(@NonNull File targetDir) {
+        this(targetDir, new Stats());
+    }
+
+    /**
+     * @param stats 暂存时重命名与跨文件系统复制的字节数累计到 stats
+     */
+    public StagedInstaller(@NonNull File targetDir, @NonNull Stats stats) {
+        this.targetDir = targetDir;
+        this.stats = stats;
+        this.stagingRoot = new File(targetDir, STAGING_DIR);
+        this.newDir = new File(stagingRoot, NEW_DIR);
+        this.oldDir = new File(stagingRoot, OLD_DIR);
+        this.journalFile = new File(stagingRoot, JOURNAL_FILE);
+    }
+
+    @NonNull
+    public Stats getStats() {
+        return stats;
+    }
+
+    /**
+     * 安装 items，同一 path 以后加入的项为准。成功后删除被替换的旧内容和 sourceRoot（可为 null），返回安装的项数。
+     * 失败时抛出 IOException，此时目标目录保持安装前的内容，源内容回到原位置
+     */
+    public int install(@NonNull List<Item> items, @Nullable File sourceRoot, @Nullable ProgressTracker tracker)
+            throws IOException {
+        synchronized (LOCK) {
+            recover();
+            Map<String, Item> byPath = new LinkedHashMap<>();
+            for (Item item : items) {
+                checkPath(item.path);
+                byPath.put(item.path, item);
+            }
+            List<Item> plan = new ArrayList<>(byPath.values());
+            long start = System.nanoTime();
+            // 每项只遍历一次，阶段总量和暂存时的统计共用
+            List<Size> sizes = new ArrayList<>(plan.size());
+            long total = 0;
+            for (Item item : plan) {
+                Size size = measure(item.source);
+                sizes.add(size);
+                total += size.bytes;
+            }
+            if (tracker != null) tracker.startPhase(ProgressTracker.Phase.INSTALL, total);
+            if (stagingRoot.exists() && !FileUtils.deleteRecursive(stagingRoot)) {
+                throw new IOException("Failed to clear " + stagingRoot);
+            }
+            if (!newDir.mkdirs()) throw new IOException("Failed mkdir: " + newDir);
+            Journal journal = new Journal(State.STAGING, sourceRoot, plan);
+            save(journal);
+
+            try {
+                stage(plan, sizes, tracker);
+                syncTree(newDir);
+                journal.state = State.SWAPPING;
+                save(journal);
+            } catch (IOException e) {
+                Log.e(TAG, "Staging failed, rolling back", e);
+                rollbackAfterFailure(plan, false, e);
+                throw e;
+            }
+            try {
+                swap(plan);
+            } catch (IOException e) {
+                Log.e(TAG, "Swap failed, restoring previous files", e);
+                rollbackAfterFailure(plan, true, e);
+                throw e;
+            }
+            commit(journal);
+            if (tracker != null) tracker.flush();
+            Log.i(TAG, "Installed " + plan.size() + " items to " + targetDir + " in "
+                    + (System.nanoTime() - start) / 1000000 + "ms: " + stats);
+            return plan.size();
+        }
+    }
+
+    /**
+     * 处理上次中断的安装，应在启动时于后台线程调用。返回是否存在中断的安装
+     */
+    public boolean recover() {
+        synchronized (LOCK) {
+            Journal journal = load();
+            if (journal == null) {
+                // 日志写入之前不会移动任何内容，没有日志的暂存目录可以直接删除
+                if (stagingRoot.exists() && !FileUtils.deleteRecursive(stagingRoot)) {
+                    Log.w(TAG, "Failed to delete stale staging dir: " + stagingRoot);
+                }
+                return false;
+            }
+            Log.w(TAG, "Recovering interrupted install in state " + journal.state + ": " + journal.items.size()
+                    + " items");
+            try {
+                if (journal.state == State.STAGING) {
+                    if (!canStage(journal.items)) {
+                        Log.w(TAG, "Install sources incomplete, rolling back");
+                        rollback(journal.items, false);
+                        return true;
+                    }
+                    stage(journal.items, null, null);
+                    syncTree(newDir);
+                    journal.state = State.SWAPPING;
+                    save(journal);
+                }
+                if (journal.state == State.SWAPPING) {
+                    swap(journal.items);
+                }
+                commit(journal);
+                Log.i(TAG, "Rolled forward interrupted install to " + targetDir);
+            } catch (IOException e) {
+                Log.e(TAG, "Roll forward failed, rolling back", e);
+                rollbackAfterFailure(journal.items, journal.state != State.STAGING, e);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 每一项要么已在暂存目录中，要么源内容还在
+     */
+    private boolean canStage(List<Item> items) {
+        for (Item item : items) {
+            if (!new File(newDir, item.path).exists() && !item.source.exists()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 把源内容放入暂存目录：同一文件系统时直接重命名，否则复制到临时名称后再重命名，源内容保留到提交时删除。
+     * 暂存目录中已存在的项说明之前已完成，跳过。重命名的字节计入安装进度但不计入写入吞吐
+     *
+     * @param sizes 与 items 对应的源内容大小，为 null 时暂存前逐项统计
+     */
+    private void stage(List<Item> items, @Nullable List<Size> sizes, @Nullable ProgressTracker tracker)
+            throws IOException {
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            File staged = new File(newDir, item.path);
+            if (staged.exists()) {
+                if (tracker != null && sizes != null) tracker.addMoved(sizes.get(i).bytes);
+            } else {
+                File part = new File(newDir, item.path + PART_SUFFIX);
+                if (part.exists() && !FileUtils.deleteRecursive(part)) {
+                    throw new IOException("Failed to delete " + part);
+                }
+                if (!item.source.exists()) throw new FileNotFoundException("Install source missing: " + item.source);
+                mkdirsParent(staged);
+                Size size = sizes != null ? sizes.get(i) : measure(item.source);
+                try {
+                    Files.move(item.source.toPath(), staged.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                    stats.addMoved(size.bytes, size.files);
+                    if (tracker != null) tracker.addMoved(size.bytes);
+                } catch (AtomicMoveNotSupportedException e) {
+                    copySynced(item.source, part);
+                    rename(part, staged);
+                    stats.addCopied(size.bytes, size.files);
+                    if (tracker != null) tracker.addWritten(size.bytes);
+                }
+            }
+        }
+    }
+
+    /**
+     * 跨文件系统复制到临时名称，复制的文件和所在目录都落盘后才返回。
+     * 重命名到暂存名称之前必须落盘：中断后恢复时暂存目录中已存在的项会被跳过，不能是复制了一半的内容
+     */
+    private void copySynced(File source, File part) throws IOException {
+        if (source.isDirectory()) {
+            new ParallelTreeCopier(ParallelTreeCopier.DEFAULT_PARALLELISM, copier).copy(source, part);
+        } else {
+            copier.copy(source, part);
+            copier.syncDirectory(part.getParentFile());
+        }
+    }
+
+    /**
+     * 逐项切换：目标已存在时先重命名到备份目录，再把暂存的新内容重命名到目标位置。
+     * 暂存目录中已不存在的项说明已经切换过，跳过
+     */
+    private void swap(List<Item> items) throws IOException {
+        for (Item item : items) {
+            File staged = new File(newDir, item.path);
+            if (!staged.exists()) continue;
+            File target = new File(targetDir, item.path);
+            File backup = new File(oldDir, item.path);
+            if (target.exists()) {
+                if (backup.exists()) {
+                    // 备份已存在时目标是之后才出现的内容，直接替换
+                    if (!FileUtils.deleteRecursive(target)) throw new IOException("Failed to delete " + target);
+                } else {
+                    mkdirsParent(backup);
+                    rename(target, backup);
+                }
+            }
+            mkdirsParent(target);
+            rename(staged, target);
+        }
+        syncParents(items);
+    }
+
+    /**
+     * 回滚失败时保留日志和暂存目录，下次启动时由 {@link #recover} 再处理
+     */
+    private void rollbackAfterFailure(List<Item> items, boolean swapStarted, IOException cause) {
+        try {
+            rollback(items, swapStarted);
+        } catch (IOException e) {
+            Log.e(TAG, "Rollback failed, keeping journal for next start", e);
+            cause.addSuppressed(e);
+        }
+    }
+
+    /**
+     * 回滚：已切换的项移回暂存目录、备份还原到目标位置，再把暂存内容移回源位置（复制得到的直接删除），最后删除暂存目录
+     *
+     * @param swapStarted 是否已进入切换阶段，之前目标目录未被改动
+     */
+    private void rollback(List<Item> items, boolean swapStarted) throws IOException {
+        if (swapStarted) {
+            for (int i = items.size() - 1; i >= 0; i--) {
+                Item item = items.get(i);
+                File staged = new File(newDir, item.path);
+                File target = new File(targetDir, item.path);
+                File backup = new File(oldDir, item.path);
+                // 暂存项不存在说明已切换，目标位置是新内容
+                if (!staged.exists() && target.exists()) {
+                    mkdirsParent(staged);
+                    rename(target, staged);
+                }
+                if (backup.exists() && !target.exists()) {
+                    rename(backup, target);
+                }
+            }
+            syncParents(items);
+        }
+        for (Item item : items) {
+            File staged = new File(newDir, item.path);
+            File part = new File(newDir, item.path + PART_SUFFIX);
+            if (part.exists() && !FileUtils.deleteRecursive(part)) throw new IOException("Failed to delete " + part);
+            if (!staged.exists()) continue;
+            if (item.source.exists()) {
+                if (!FileUtils.deleteRecursive(staged)) throw new IOException("Failed to delete " + staged);
+            } else {
+                mkdirsParent(item.source);
+                rename(staged, item.source);
+            }
+        }
+        if (!FileUtils.deleteRecursive(stagingRoot)) throw new IOException("Failed to delete " + stagingRoot);
+        Log.i(TAG, "Rolled back install of " + items.size() + " items");
+    }
+
+    /**
+     * 先把日志标记为已提交，再删除备份、源目录和暂存目录，清理中断时下次启动继续清理
+     */
+    private void commit(Journal journal) throws IOException {
+        if (journal.state != State.COMMITTED) {
+            journal.state = State.COMMITTED;
+            save(journal);
+        }
+        if (oldDir.exists() && !FileUtils.deleteRecursive(oldDir)) {
+            Log.w(TAG, "Failed to delete replaced files: " + oldDir);
+        }
+        if (journal.sourceRoot != null && journal.sourceRoot.exists()
+                && !FileUtils.deleteRecursive(journal.sourceRoot)) {
+            Log.w(TAG, "Failed to delete install source: " + journal.sourceRoot);
+        }
+        if (!FileUtils.deleteRecursive(stagingRoot)) {
+            Log.w(TAG, "Failed to delete staging dir: " + stagingRoot);
+        }
+        FileCopier.fsyncDirectory(targetDir);
+    }
+
+    private void syncParents(List<Item> items) {
+        List<File> dirs = new ArrayList<>();
+        for (Item item : items) {
+            File parent = new File(targetDir, item.path).getParentFile();
+            if (parent != null && !dirs.contains(parent)) dirs.add(parent);
+        }
+        for (File dir : dirs) {
+            FileCopier.fsyncDirectory(dir);
+        }
+    }
+
+    /**
+     * fsync 暂存的每个文件和目录，重命名到目标位置之前保证内容已落盘
+     */
+    private static void syncTree(File file) throws IOException {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    syncTree(child);
+                }
+            }
+            FileCopier.fsyncDirectory(file);
+            return;
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.getFD().sync();
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static void rename(File source, File target) throws IOException {
+        Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void mkdirsParent(File file) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Failed mkdir: " + parent);
+        }
+    }
+
+    private static void checkPath(String path) throws IOException {
+        if (path.isEmpty() || path.startsWith("/") || ("/" + path + "/").contains("/../")
+                || path.equals(STAGING_DIR) || path.startsWith(STAGING_DIR + "/")) {
+            throw new IOException("Invalid install path: " + path);
+        }
+    }
+
+    /**
+     * 先写临时文件并 fsync，再原子重命名，保证断电后日志要么是旧的要么是新的
+     */
+    private void save(Journal journal) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("version", String.valueOf(VERSION));
+        props.setProperty("state", journal.state.name());
+        if (journal.sourceRoot != null) props.setProperty("sourceRoot", journal.sourceRoot.getPath());
+        props.setProperty("items", String.valueOf(journal.items.size()));
+        for (int i = 0; i < journal.items.size(); i++) {
+            Item item = journal.items.get(i);
+            props.setProperty("item." + i + ".path", item.path);
+            props.setProperty("item." + i + ".source", item.source.getPath());
+        }
+        File tmp = new File(journalFile.getPath() + ".tmp");
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(tmp);
+            props.store(out, null);
+            out.flush();
+            out.getFD().sync();
+        } finally {
+            FileUtils.closeQuietly(out);
+        }
+        rename(tmp, journalFile);
+        FileCopier.fsyncDirectory(stagingRoot);
+    }
+
+    @Nullable
+    private Journal load() {
+        if (!journalFile.isFile()) return null;
+        Properties props = new Properties();
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(journalFile);
+            props.load(in);
+            if (Integer.parseInt(props.getProperty("version", "0")) != VERSION) return null;
+            State state = State.valueOf(props.getProperty("state"));
+            String sourceRoot = props.getProperty("sourceRoot");
+            int count = Integer.parseInt(props.getProperty("items"));
+            List<Item> items = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String path = props.getProperty("item." + i + ".path");
+                String source = props.getProperty("item." + i + ".source");
+                if (path == null || source == null) return null;
+                checkPath(path);
+                items.add(new Item(new File(source), path));
+            }
+            return new Journal(state, sourceRoot != null ? new File(sourceRoot) : null,
+                    Collections.unmodifiableList(items));
+        } catch (Exception e) {
+            Log.w(TAG, "Ignoring unreadable install journal: " + journalFile, e);
+            return null;
+        } finally {
+            FileUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * 遍历一次，同时统计字节数与文件数
+     */
+    @NonNull
+    private static Size measure(@NonNull File file) {
+        if (!file.isDirectory()) return new Size(file.length(), 1);
+        long bytes = 0;
+        int files = 0;
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                Size size = measure(child);
+                bytes += size.bytes;
+                files += size.files;
+            }
+        }
+        return new Size(bytes, files);
+    }
+}
@@ -0,0 +1,329 @@
+package com.example.otaupdate;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.ZipException;
+
+/**
+ * 边下载边解压
+ * 先用 {@link RemoteZipReader} 读出中央目录，再单连接顺序读取对象，按中央目录给出的位置和大小把条目解压到暂存目录，
+ * 包本身不写入磁盘，峰值占用只有解压后的大小。
+ * 断点按条目边界记录（解压目录 + ".stream"）：已解压的文件落盘后写入断点，之后从下一个条目的偏移续读，
+ * 断网时在任务内重试，暂停或进程重启后由下一次 {@link #start} 接续，均不从头下载
+ */
+public class StreamingExtractor {
+    private static final String TAG = "StreamingExtractor";
+    private static final String CHECKPOINT_SUFFIX = ".stream";
+    private static final int CHECKPOINT_VERSION = 1;
+    // 进度回调的最小间隔字节数
+    private static final long PROGRESS_STEP = 256L * 1024;
+    // 每解压该数量的压缩字节同步一次已写出的文件并更新断点
+    private static final long CHECKPOINT_STEP = 8L * 1024 * 1024;
+    // 断网时从最近的条目边界重新请求的次数，有新的条目完成后重新计数
+    private static final int MAX_RETRY = 3;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ExecutorService executor;
+
+    public StreamingExtractor(@NonNull ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * 解压目录对应的断点文件
+     */
+    @NonNull
+    public static File checkpointFileFor(@NonNull File destDir) {
+        return new File(destDir.getPath() + CHECKPOINT_SUFFIX);
+    }
+
+    /**
+     * 删除断点，下次从头开始
+     */
+    public static void deleteCheckpoint(@NonNull File destDir) {
+        File file = checkpointFileFor(destDir);
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Failed to delete checkpoint: " + file);
+        }
+    }
+
+    /**
+     * 开始边下载边解压，完成时 {@link SegmentedDownloader.Listener#onComplete} 收到解压目录。
+     * 失败或取消时解压目录与断点保留，再次调用时从断点续读；压缩方式不支持时以 {@link ZipException} 失败。
+     * 指定 verifier 时，解压结束后读完中央目录并校验整个包，校验失败时删除解压目录和断点，不会交给调用方安装
+     */
+    @NonNull
+    public SegmentedDownloader.Task start(@NonNull SegmentedDownloader.RangeSource source, @NonNull File destDir,
+                                          boolean isMcuUpdate, @NonNull SegmentedDownloader.Listener listener,
+                                          @Nullable ProgressTracker tracker, @Nullable PackageVerifier verifier) {
+        SegmentedDownloader.Task task = new SegmentedDownloader.Task();
+        executor.submit(() -> {
+            Session session = null;
+            try {
+                SegmentedDownloader.ObjectStat stat = source.stat();
+                if (stat.length <= 0) throw new IOException("Empty package: " + source.getKey());
+                List<RemoteZipReader.Entry> entries = new ArrayList<>(new RemoteZipReader(source).entries());
+                for (RemoteZipReader.Entry entry : entries) {
+                    if (!entry.isDirectory()) RemoteZipReader.checkMethod(entry);
+                }
+                Collections.sort(entries, (a, b) -> Long.compare(a.localHeaderOffset, b.localHeaderOffset));
+                session = new Session(source, stat, destDir, isMcuUpdate, task, listener, tracker, verifier);
+                session.resume();
+                session.run(entries);
+                if (task.isCancelled()) throw new IOException("Download cancelled");
+                if (verifier != null) {
+                    try {
+                        verifier.verify(stat);
+                    } catch (IOException e) {
+                        // 包已损坏，续传也无法得到正确的包
+                        deleteCheckpoint(destDir);
+                        FileUtils.deleteRecursive(destDir);
+                        throw e;
+                    }
+                }
+                deleteCheckpoint(destDir);
+                listener.onProgress(stat.length, stat.length);
+                SegmentedDownloader.finish(task, listener, destDir, null);
+            } catch (Throwable e) {
+                Log.e(TAG, "Streaming extraction failed: " + source.getKey(), e);
+                if (session != null) session.suspend();
+                Exception error = e instanceof Exception ? (Exception) e : new IOException(e);
+                SegmentedDownloader.finish(task, listener, destDir,
+                        task.isCancelled() ? new IOException("Download cancelled", e) : error);
+            }
+        });
+        return task;
+    }
+
+    /**
+     * 一次解压过程：offset 为下一个要读的条目边界，crc64 为 [0, offset) 的 CRC64（未校验时为 0），
+     * unsynced 为 offset 之前写出但尚未落盘的文件
+     */
+    private static final class Session {
+        private final SegmentedDownloader.RangeSource source;
+        private final SegmentedDownloader.ObjectStat stat;
+        private final File destDir;
+        private final boolean isMcuUpdate;
+        private final SegmentedDownloader.Task task;
+        private final SegmentedDownloader.Listener listener;
+        @Nullable
+        private final ProgressTracker tracker;
+        @Nullable
+        private final PackageVerifier verifier;
+        private final Set<File> unsynced = new LinkedHashSet<>();
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private long offset;
+        private long crc64;
+        private long durable;
+        private long reported;
+
+        Session(SegmentedDownloader.RangeSource source, SegmentedDownloader.ObjectStat stat, File destDir,
+                boolean isMcuUpdate, SegmentedDownloader.Task task, SegmentedDownloader.Listener listener,
+                @Nullable ProgressTracker tracker, @Nullable PackageVerifier verifier) {
+            this.source = source;
+            this.stat = stat;
+            this.destDir = destDir;
+            this.isMcuUpdate = isMcuUpdate;
+            this.task = task;
+            this.listener = listener;
+            this.tracker = tracker;
+            this.verifier = verifier;
+        }
+
+        /**
+         * 断点与对象一致时从断点接续，否则清掉之前的解压结果从头开始
+         */
+        void resume() throws IOException {
+            Properties checkpoint = loadCheckpoint(destDir);
+            if (checkpoint != null && source.getKey().equals(checkpoint.getProperty("objectKey"))
+                    && stat.etag != null && stat.etag.equals(checkpoint.getProperty("etag"))
+                    && stat.length == Long.parseLong(checkpoint.getProperty("totalSize"))) {
+                offset = Long.parseLong(checkpoint.getProperty("offset"));
+                crc64 = Long.parseUnsignedLong(checkpoint.getProperty("crc64"));
+                Log.i(TAG, "Resuming " + source.getKey() + " at " + offset + "/" + stat.length);
+            } else if (checkpoint != null || destDir.exists()) {
+                Log.d(TAG, "Discarding previous extraction in " + destDir);
+                deleteCheckpoint(destDir);
+                FileUtils.deleteRecursive(destDir);
+            }
+            if (!destDir.isDirectory() && !destDir.mkdirs()) {
+                throw new IOException("Failed mkdir: " + destDir);
+            }
+            durable = offset;
+            reported = offset;
+            listener.onProgress(offset, stat.length);
+        }
+
+        /**
+         * 从 offset 起读到对象末尾，断网时从最近的条目边界重新请求
+         */
+        void run(List<RemoteZipReader.Entry> entries) throws IOException {
+            int attempt = 0;
+            long offsetAtFailure = offset;
+            while (true) {
+                try {
+                    readFrom(entries);
+                    return;
+                } catch (IOException e) {
+                    if (offset > offsetAtFailure) {
+                        offsetAtFailure = offset;
+                        attempt = 0;
+                    }
+                    // 条目 CRC32 不符也可能是传输出错，同样从条目边界重新读取
+                    if (task.isCancelled() || ++attempt > MAX_RETRY) {
+                        throw e;
+                    }
+                    Log.w(TAG, "Stream interrupted at " + offset + ", retry " + attempt, e);
+                }
+            }
+        }
+
+        private void readFrom(List<RemoteZipReader.Entry> entries) throws IOException {
+            if (verifier != null) verifier.continueFrom(offset, crc64);
+            InputStream range = source.openRange(offset, stat.length - 1);
+            task.track(range);
+            try {
+                InputStream data = verifier != null ? verifier.digesting(range) : range;
+                final long begin = offset;
+                CountingInputStream counted = new CountingInputStream(data, n -> {
+                    // 从网络读到的压缩字节既是下载进度，也是解压消耗的压缩字节
+                    if (tracker != null) tracker.addCompressed(n);
+                });
+                String canonicalDestinationPath = destDir.getCanonicalPath();
+                for (RemoteZipReader.Entry entry : entries) {
+                    if (entry.localHeaderOffset < begin) continue;
+                    if (task.isCancelled()) throw new IOException("Download cancelled");
+                    RemoteZipReader.skipFully(counted, entry.localHeaderOffset - (begin + counted.getCount()));
+                    File target = FileUtils.resolveEntryTarget(destDir, canonicalDestinationPath, entry.name,
+                            isMcuUpdate);
+                    if (target != null && entry.isDirectory()) {
+                        if (!target.isDirectory() && !target.mkdirs()) throw new IOException("Failed mkdir: " + target);
+                    } else if (target != null) {
+                        RemoteZipReader.writeEntry(RemoteZipReader.entryStream(counted, entry, false), target, buffer,
+                                tracker);
+                        unsynced.add(target);
+                    }
+                    advance(begin + counted.getCount());
+                }
+                // 中央目录等剩余数据同样计入摘要
+                while (counted.read(buffer) != -1) {
+                    if (task.isCancelled()) throw new IOException("Download cancelled");
+                }
+                advance(begin + counted.getCount());
+            } finally {
+                task.untrack(range);
+                FileUtils.closeQuietly(range);
+            }
+        }
+
+        /**
+         * 一个条目解压完成，offset 推进到该条目之后
+         */
+        private void advance(long position) {
+            offset = position;
+            if (verifier != null) crc64 = verifier.getCrc64();
+            if (offset - reported >= PROGRESS_STEP || offset == stat.length) {
+                reported = offset;
+                listener.onProgress(offset, stat.length);
+            }
+            if (offset - durable >= CHECKPOINT_STEP && offset < stat.length) {
+                try {
+                    checkpoint();
+                } catch (IOException e) {
+                    // 断点只影响续传的起点，不中断解压
+                    Log.w(TAG, "Failed to save checkpoint at " + offset, e);
+                }
+            }
+        }
+
+        /**
+         * 中断时把已解压的条目落盘并记下断点
+         */
+        void suspend() {
+            if (offset <= durable || offset >= stat.length) return;
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to save checkpoint for " + destDir, e);
+            }
+        }
+
+        /**
+         * 先同步 offset 之前写出的文件和所在目录，再写入断点；对象没有 ETag 时无法确认续传时对象未变，不写断点
+         */
+        private void checkpoint() throws IOException {
+            if (stat.etag == null) return;
+            Set<File> dirs = new LinkedHashSet<>();
+            for (File file : unsynced) {
+                try (FileOutputStream out = new FileOutputStream(file, true)) {
+                    out.getFD().sync();
+                }
+                dirs.add(file.getParentFile());
+            }
+            for (File dir : dirs) {
+                FileCopier.fsyncDirectory(dir);
+            }
+            unsynced.clear();
+
+            Properties props = new Properties();
+            props.setProperty("version", String.valueOf(CHECKPOINT_VERSION));
+            props.setProperty("objectKey", source.getKey());
+            props.setProperty("etag", stat.etag);
+            props.setProperty("totalSize", String.valueOf(stat.length));
+            props.setProperty("offset", String.valueOf(offset));
+            props.setProperty("crc64", Long.toUnsignedString(crc64));
+            File file = checkpointFileFor(destDir);
+            File tmp = new File(file.getPath() + ".tmp");
+            FileOutputStream out = null;
+            try {
+                out = new FileOutputStream(tmp);
+                props.store(out, null);
+                out.flush();
+                out.getFD().sync();
+            } finally {
+                FileUtils.closeQuietly(out);
+            }
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Failed to commit checkpoint: " + file);
+            }
+            durable = offset;
+        }
+    }
+
+    @Nullable
+    private static Properties loadCheckpoint(File destDir) {
+        File file = checkpointFileFor(destDir);
+        if (!file.isFile() || !destDir.isDirectory()) return null;
+        Properties props = new Properties();
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            props.load(in);
+            if (Integer.parseInt(props.getProperty("version", "0")) != CHECKPOINT_VERSION) return null;
+            Long.parseLong(props.getProperty("totalSize"));
+            Long.parseLong(props.getProperty("offset"));
+            Long.parseUnsignedLong(props.getProperty("crc64"));
+            return props;
+        } catch (Exception e) {
+            Log.w(TAG, "Ignoring unreadable checkpoint: " + file, e);
+            return null;
+        } finally {
+            FileUtils.closeQuietly(in);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.otaupdate;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 进程内读取系统属性，不再为每个属性创建 getprop 进程
+ * 优先通过反射调用 android.os.SystemProperties#get 读取运行时属性；
+ * 不可用或属性为空时查询 build.prop，所有 build.prop 文件在首次使用时通过内存映射读取并解析为不可变 Map
+ */
+public class SystemPropertyReader implements PropertySource {
+    private static final String TAG = "SystemPropertyReader";
+    // 按 Android 加载顺序排列，ro.* 属性只能设置一次，因此先出现的值生效
+    private static final String[] BUILD_PROP_PATHS = {
+            "/system/build.prop",
+            "/vendor/build.prop",
+            "/system/vendor/build.prop"
+    };
+
+    private static SystemPropertyReader instance;
+
+    private final Method systemPropertiesGet;
+    private final String[] buildPropPaths;
+    private volatile MapPropertySource buildProps;
+
+    @NonNull
+    public static synchronized SystemPropertyReader getInstance() {
+        if (instance == null) {
+            instance = new SystemPropertyReader(BUILD_PROP_PATHS, true);
+        }
+        return instance;
+    }
+
+    /**
+     * @param useReflection 是否尝试反射 SystemProperties；为 false 时只读取 build.prop
+     */
+    public SystemPropertyReader(@NonNull String[] buildPropPaths, boolean useReflection) {
+        this.buildPropPaths = buildPropPaths.clone();
+        this.systemPropertiesGet = useReflection ? findSystemPropertiesGet() : null;
+    }
+
+    @Nullable
+    private static Method findSystemPropertiesGet() {
+        try {
+            return Class.forName("android.os.SystemProperties").getMethod("get", String.class);
+        } catch (Exception e) {
+            Log.w(TAG, "SystemProperties unavailable, using build.prop only: " + e);
+            return null;
+        }
+    }
+
+    @Nullable
+    @Override
+    public String get(@NonNull String key) {
+        String value = getRuntime(key);
+        return value != null ? value : buildProps().get(key);
+    }
+
+    /**
+     * 批量解析：运行时属性逐个通过进程内调用读取，缺失的再统一在 build.prop 中查找
+     */
+    @NonNull
+    @Override
+    public Map<String, String> getAll(@NonNull Collection<String> keys) {
+        Map<String, String> result = new HashMap<>();
+        MapPropertySource fallback = null;
+        for (String key : keys) {
+            String value = getRuntime(key);
+            if (value == null) {
+                if (fallback == null) fallback = buildProps();
+                value = fallback.get(key);
+            }
+            if (value != null) result.put(key, value);
+        }
+        return result;
+    }
+
+    @Nullable
+    private String getRuntime(String key) {
+        if (systemPropertiesGet == null) return null;
+        try {
+            String value = (String) systemPropertiesGet.invoke(null, key);
+            return value == null || value.isEmpty() ? null : value.trim();
+        } catch (Exception e) {
+            Log.w(TAG, "SystemProperties.get failed: " + key, e);
+            return null;
+        }
+    }
+
+    @NonNull
+    private MapPropertySource buildProps() {
+        MapPropertySource props = buildProps;
+        if (props == null) {
+            synchronized (this) {
+                props = buildProps;
+                if (props == null) {
+                    long start = System.nanoTime();
+                    Map<String, String> values = new HashMap<>();
+                    for (String path : buildPropPaths) {
+                        parseBuildProp(new File(path), values);
+                    }
+                    props = new MapPropertySource(values);
+                    buildProps = props;
+                    Log.d(TAG, "Parsed " + props.size() + " build properties in "
+                            + (System.nanoTime() - start) / 1000 + "us");
+                }
+            }
+        }
+        return props;
+    }
+
+    /**
+     * 解析 key=value 行，忽略注释、空行和 import 指令；已存在的键不覆盖
+     */
+    static void parseBuildProp(@NonNull File file, @NonNull Map<String, String> into) {
+        if (!file.isFile() || !file.canRead()) return;
+        String content;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            content = StandardCharsets.UTF_8.decode(buffer).toString();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read " + file, e);
+            return;
+        }
+        int length = content.length();
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = content.indexOf('\n', lineStart);
+            if (lineEnd < 0) lineEnd = length;
+            int eq = content.indexOf('=', lineStart);
+            if (eq > lineStart && eq < lineEnd) {
+                String key = content.substring(lineStart, eq).trim();
+                if (!key.isEmpty() && key.charAt(0) != '#' && !into.containsKey(key)) {
+                    into.put(key, content.substring(eq + 1, lineEnd).trim());
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+    }
+}
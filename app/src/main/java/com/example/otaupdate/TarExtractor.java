@@ -0,0 +1,210 @@
+package com.example.otaupdate;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 顺序解包 tar 数据流
+ * 支持 ustar（含 prefix 字段）、GNU 长文件名（'L'）和 pax 扩展头中的 path，大小字段支持八进制与 base-256。
+ * 只写出普通文件和目录，链接等其他类型跳过；条目路径与 zip 解压相同，经 {@link FileUtils#resolveEntryTarget} 校验
+ */
+final class TarExtractor {
+    private static final String TAG = "TarExtractor";
+    private static final int BLOCK_SIZE = 512;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // 长文件名与 pax 扩展头的上限，防止损坏的头部导致申请超大缓冲区
+    private static final int MAX_META_SIZE = 1024 * 1024;
+
+    private TarExtractor() {
+    }
+
+    /**
+     * 解包到 destDir，返回写出的文件数。读到结束块（全零块）即返回，之后的填充数据不再读取
+     */
+    static int extract(@NonNull InputStream in, @NonNull File destDir, boolean isMcuUpdate,
+                       @Nullable ProgressTracker tracker) throws IOException {
+        if (!destDir.exists() && !destDir.mkdirs()) {
+            throw new IOException("Failed mkdir: " + destDir);
+        }
+        String canonicalDestinationPath = destDir.getCanonicalPath();
+        byte[] header = new byte[BLOCK_SIZE];
+        byte[] buffer = new byte[BUFFER_SIZE];
+        String longName = null;
+        int files = 0;
+        while (true) {
+            FileUtils.readFully(in, header, 0, BLOCK_SIZE);
+            if (isZeroBlock(header)) break;
+            verifyChecksum(header);
+            long size = parseNumber(header, 124, 12);
+            char type = (char) header[156];
+            if (type == 'L' || type == 'x') {
+                byte[] meta = readMeta(in, size);
+                longName = type == 'L' ? field(meta, 0, (int) size) : paxPath(meta, (int) size, longName);
+                continue;
+            }
+            String name = longName != null ? longName : entryName(header);
+            longName = null;
+            // "tar -C dir ." 打包时条目带 "./" 前缀，根目录本身的条目直接跳过
+            while (name.startsWith("./")) name = name.substring(2);
+            if (type == 'g' || name.isEmpty()) {
+                // 全局 pax 头不影响条目路径
+                skip(in, padded(size), buffer);
+                continue;
+            }
+            File target = FileUtils.resolveEntryTarget(destDir, canonicalDestinationPath, name, isMcuUpdate);
+            if (target == null) {
+                skip(in, padded(size), buffer);
+                continue;
+            }
+            if (type == '5') {
+                if (!target.isDirectory() && !target.mkdirs()) {
+                    throw new IOException("Failed mkdir: " + target);
+                }
+                skip(in, padded(size), buffer);
+            } else if (type == '0' || type == '\0' || type == '7') {
+                writeFile(in, target, size, buffer, tracker);
+                skip(in, padded(size) - size, buffer);
+                files++;
+            } else {
+                Log.w(TAG, "Skipping unsupported tar entry type '" + type + "': " + name);
+                skip(in, padded(size), buffer);
+            }
+        }
+        return files;
+    }
+
+    private static void writeFile(InputStream in, File target, long size, byte[] buffer,
+                                  @Nullable ProgressTracker tracker) throws IOException {
+        File parent = target.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Failed mkdir parent: " + parent);
+        }
+        FileOutputStream out = new FileOutputStream(target);
+        try {
+            long remaining = size;
+            while (remaining > 0) {
+                int n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (n < 0) throw new EOFException("Truncated tar entry: " + target);
+                out.write(buffer, 0, n);
+                remaining -= n;
+                if (tracker != null) {
+                    tracker.addInflated(n);
+                    tracker.addWritten(n);
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static byte[] readMeta(InputStream in, long size) throws IOException {
+        if (size < 0 || size > MAX_META_SIZE) throw new IOException("Invalid tar extended header size: " + size);
+        byte[] data = new byte[(int) padded(size)];
+        FileUtils.readFully(in, data, 0, data.length);
+        return data;
+    }
+
+    /**
+     * pax 记录格式为 "长度 key=value\n"，长度按字节计且包含自身。只取 path，没有时保留之前的长文件名
+     */
+    @Nullable
+    private static String paxPath(byte[] records, int size, @Nullable String fallback) throws IOException {
+        String path = fallback;
+        int pos = 0;
+        while (pos < size) {
+            int length = 0;
+            int i = pos;
+            while (i < size && records[i] >= '0' && records[i] <= '9') {
+                length = length * 10 + (records[i++] - '0');
+            }
+            if (i >= size || records[i] != ' ' || length <= i - pos || pos + length > size
+                    || records[pos + length - 1] != '\n') {
+                throw new IOException("Invalid pax record at " + pos);
+            }
+            String record = new String(records, i + 1, pos + length - 1 - (i + 1), StandardCharsets.UTF_8);
+            if (record.startsWith("path=")) path = record.substring(5);
+            pos += length;
+        }
+        return path;
+    }
+
+    private static String entryName(byte[] header) {
+        String name = field(header, 0, 100);
+        // POSIX ustar 格式的长路径拆成 prefix 与 name 两部分，GNU 格式（"ustar "）的同一位置是时间戳
+        if (field(header, 257, 6).equals("ustar")) {
+            String prefix = field(header, 345, 155);
+            if (!prefix.isEmpty()) return prefix + "/" + name;
+        }
+        return name;
+    }
+
+    private static void verifyChecksum(byte[] header) throws IOException {
+        long expected = parseNumber(header, 148, 8);
+        long sum = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            sum += (i >= 148 && i < 156) ? ' ' : header[i] & 0xff;
+        }
+        if (sum != expected) throw new IOException("Invalid tar header checksum: " + field(header, 0, 100));
+    }
+
+    /**
+     * 八进制数字段；最高位为 1 时为 GNU base-256 大端二进制数，用于超过 8GB 的文件
+     */
+    private static long parseNumber(byte[] header, int offset, int length) throws IOException {
+        if ((header[offset] & 0x80) != 0) {
+            long value = header[offset] & 0x7f;
+            for (int i = 1; i < length; i++) {
+                if (value > (Long.MAX_VALUE >> 8)) throw new IOException("Tar number field overflow");
+                value = (value << 8) | (header[offset + i] & 0xff);
+            }
+            return value;
+        }
+        int i = offset;
+        int end = offset + length;
+        // 数字前可以有空格，之后以空格或 NUL 结束
+        while (i < end && header[i] == ' ') i++;
+        long value = 0;
+        for (; i < end && header[i] != 0 && header[i] != ' '; i++) {
+            if (header[i] < '0' || header[i] > '7') throw new IOException("Invalid octal field in tar header");
+            value = (value << 3) + (header[i] - '0');
+        }
+        return value;
+    }
+
+    private static String field(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) end++;
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isZeroBlock(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) return false;
+        }
+        return true;
+    }
+
+    private static long padded(long size) {
+        return (size + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+    }
+
+    /**
+     * 按读取而不是 InputStream#skip 跳过数据，解压流的 skip 不保证跳过全部字节
+     */
+    private static void skip(InputStream in, long count, byte[] buffer) throws IOException {
+        while (count > 0) {
+            int n = in.read(buffer, 0, (int) Math.min(buffer.length, count));
+            if (n < 0) throw new EOFException("Truncated tar stream");
+            count -= n;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.otaupdate;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 更新目录索引
+ * 服务端发布单个 JSON 对象（{@link #OBJECT_KEY}），按 CPU 型号和分辨率列出各类升级包的最新版本，
+ * 设备取一次即可在本地完成系统、系统应用和 MCU 三项检查，不再逐个列举 OSS 目录并解析文件名。格式：
+ * <pre>
+ * {
+ *   "schema": 1,
+ *   "revision": 42,
+ *   "system":    { "UIS8581A_1280x800": { "version": "20250306", "key": "firmware/System/UIS8581A_1280x800_20250306.zip" } },
+ *   "systemApp": { "UIS8581A_1280x800": { "version": "20250306", "key": "firmware/System APP/ALLApp_UIS8581A_1280x800_20250306.zip" } },
+ *   "mcu":       { "L6315": { "version": "L6315_MCU", "key": "firmware/MCU/L6315_MCU.zip" } }
+ * }
+ * </pre>
+ * 目录中没有对应条目表示该设备没有可用更新。条目可带 "sha256"（小写十六进制），下载后用于校验升级包；
+ * 系统包条目还可带 "size" 和 "patches"，列出从旧版本到新版本的增量补丁，设备按当前版本选择补丁链：
+ * <pre>
+ * "patches": [ { "from": "20250206", "to": "20250306", "key": "firmware/System/patches/UIS8581A_1280x800_20250206_20250306.zip", "size": 73400320 } ]
+ * </pre>
+ */
+public class UpdateCatalog {
+    private static final String TAG = "UpdateCatalog";
+    public static final String OBJECT_KEY = "firmware/catalog.json";
+    private static final int SCHEMA = 1;
+
+    /**
+     * 增量补丁：把 from 版本的已安装文件更新为 to 版本，格式见 {@link DeltaUpdate}
+     */
+    public static final class Patch {
+        @NonNull
+        public final String from;
+        @NonNull
+        public final String to;
+        @NonNull
+        public final String key;
+        public final long size;
+
+        Patch(@NonNull String from, @NonNull String to, @NonNull String key, long size) {
+            this.from = from;
+            this.to = to;
+            this.key = key;
+            this.size = size;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return from + "->" + to + " (" + size + " bytes)";
+        }
+    }
+
+    /**
+     * 按对象键索引的条目附加信息
+     */
+    private static final class Extras {
+        final Map<String, String> version = new HashMap<>();
+        final Map<String, String> sha256 = new HashMap<>();
+        final Map<String, Long> size = new HashMap<>();
+        final Map<String, List<Patch>> patches = new HashMap<>();
+    }
+
+    private final long revision;
+    private final String etag;
+    private final String rawJson;
+    private final Map<String, UpdateInfo> system;
+    private final Map<String, UpdateInfo> systemApp;
+    private final Map<String, UpdateInfo> mcu;
+    private final Extras extras;
+
+    private UpdateCatalog(long revision, @Nullable String etag, @NonNull String rawJson,
+                          @NonNull Map<String, UpdateInfo> system, @NonNull Map<String, UpdateInfo> systemApp,
+                          @NonNull Map<String, UpdateInfo> mcu, @NonNull Extras extras) {
+        this.revision = revision;
+        this.etag = etag;
+        this.rawJson = rawJson;
+        this.system = system;
+        this.systemApp = systemApp;
+        this.mcu = mcu;
+        this.extras = extras;
+    }
+
+    /**
+     * 解析目录内容，schema 不支持或格式错误时抛出 JSONException
+     */
+    @NonNull
+    public static UpdateCatalog parse(@NonNull String json, @Nullable String etag) throws JSONException {
+        JSONObject root = new JSONObject(json);
+        int schema = root.optInt("schema", 0);
+        if (schema != SCHEMA) {
+            throw new JSONException("Unsupported catalog schema: " + schema);
+        }
+        Extras extras = new Extras();
+        return new UpdateCatalog(root.optLong("revision", 0), etag, json,
+                parseSection(root.optJSONObject("system"), extras),
+                parseSection(root.optJSONObject("systemApp"), extras),
+                parseSection(root.optJSONObject("mcu"), extras),
+                extras);
+    }
+
+    private static Map<String, UpdateInfo> parseSection(@Nullable JSONObject section,
+                                                        @NonNull Extras extras) throws JSONException {
+        Map<String, UpdateInfo> entries = new HashMap<>();
+        if (section == null) return entries;
+        Iterator<String> names = section.keys();
+        while (names.hasNext()) {
+            String name = names.next();
+            JSONObject entry = section.getJSONObject(name);
+            String key = entry.getString("key");
+            String version = entry.getString("version");
+            entries.put(normalize(name), new UpdateInfo(version, key));
+            extras.version.put(key, version);
+            String sha256 = entry.optString("sha256", null);
+            if (sha256 != null && !sha256.isEmpty()) extras.sha256.put(key, sha256);
+            if (entry.has("size")) extras.size.put(key, entry.getLong("size"));
+            JSONArray patchList = entry.optJSONArray("patches");
+            if (patchList != null) {
+                List<Patch> patches = new ArrayList<>(patchList.length());
+                for (int i = 0; i < patchList.length(); i++) {
+                    JSONObject patch = patchList.getJSONObject(i);
+                    patches.add(new Patch(patch.getString("from"), patch.getString("to"),
+                            patch.getString("key"), patch.getLong("size")));
+                }
+                extras.patches.put(key, patches);
+            }
+        }
+        return entries;
+    }
+
+    private static String normalize(String name) {
+        return name.trim().toUpperCase(Locale.ROOT);
+    }
+
+    public long getRevision() {
+        return revision;
+    }
+
+    @Nullable
+    public String getETag() {
+        return etag;
+    }
+
+    /**
+     * 系统升级包，resolution 需为宽在前的格式（如 1280x800）
+     */
+    @Nullable
+    public UpdateInfo findSystem(@NonNull String cpuModel, @NonNull String resolution) {
+        return system.get(normalize(cpuModel + "_" + resolution));
+    }
+
+    @Nullable
+    public UpdateInfo findSystemApp(@NonNull String cpuModel, @NonNull String resolution) {
+        return systemApp.get(normalize(cpuModel + "_" + resolution));
+    }
+
+    /**
+     * MCU 升级包，mcuModel 如 L6315、L6523
+     */
+    @Nullable
+    public UpdateInfo findMcu(@NonNull String mcuModel) {
+        return mcu.get(normalize(mcuModel));
+    }
+
+    /**
+     * 对象键对应的条目版本，不在目录中时返回 null
+     */
+    @Nullable
+    public String findVersion(@NonNull String objectKey) {
+        return extras.version.get(objectKey);
+    }
+
+    /**
+     * 目录中为该对象发布的 SHA-256，没有时返回 null
+     */
+    @Nullable
+    public String findSha256(@NonNull String objectKey) {
+        return extras.sha256.get(objectKey);
+    }
+
+    /**
+     * 目录中记录的包大小，没有时返回 -1
+     */
+    public long findSize(@NonNull String objectKey) {
+        Long size = extras.size.get(objectKey);
+        return size != null ? size : -1;
+    }
+
+    /**
+     * 可用于更新到该完整包版本的增量补丁
+     */
+    @NonNull
+    public List<Patch> findPatches(@NonNull String objectKey) {
+        List<Patch> patches = extras.patches.get(objectKey);
+        return patches != null ? patches : Collections.emptyList();
+    }
+
+    /**
+     * 读取本地保存的目录及其 ETag，不存在或损坏时返回 null
+     */
+    @Nullable
+    public static UpdateCatalog load(@NonNull File file) {
+        if (!file.isFile()) return null;
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            JSONObject saved = new JSONObject(readFully(in));
+            return parse(saved.getString("catalog"), saved.optString("etag", null));
+        } catch (Exception e) {
+            Log.w(TAG, "Ignoring unreadable catalog: " + file, e);
+            return null;
+        } finally {
+            FileUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * 连同 ETag 一起保存，下次启动时可直接用于条件请求；先写临时文件再重命名
+     */
+    public void save(@NonNull File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            JSONObject saved = new JSONObject();
+            saved.put("catalog", rawJson);
+            if (etag != null) saved.put("etag", etag);
+            out.write(saved.toString().getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        } catch (JSONException e) {
+            throw new IOException(e);
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Failed to rename " + tmp + " -> " + file);
+        }
+    }
+
+    @NonNull
+    static String readFully(@NonNull InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int len;
+        while ((len = in.read(buffer)) > 0) {
+            out.write(buffer, 0, len);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.otaupdate;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONException;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * 更新目录的内存副本与本地文件（连同 ETag 保存）
+ * 检查更新时用条件请求重新校验（{@link #revalidate}）；下载只读取当前副本（{@link #current}），不发起请求。
+ * 进程重启后检查更新可能直接命中 {@link UpdateCheckCache} 而不请求目录，这时下载所需的 SHA-256 与增量补丁
+ * 从本地文件读入
+ */
+public class UpdateCatalogStore {
+    private static final String TAG = "UpdateCatalogStore";
+
+    /**
+     * 请求远端目录
+     */
+    public interface Fetcher {
+        /**
+         * @param etag 本地副本的 ETag，不为 null 时作为 If-None-Match 发起条件请求
+         * @return 新的目录；未变化（304）时返回 null
+         * @throws FileNotFoundException 目录未发布（404）
+         */
+        @Nullable
+        UpdateCatalog fetch(@Nullable String etag) throws Exception;
+    }
+
+    private final File file;
+    private final long revalidateIntervalMs;
+    // 写入都在锁内；下载时不加锁读取，不必等待正在进行的校验请求
+    private volatile UpdateCatalog catalog;
+    private volatile boolean loaded = false;
+    private long checkedAt = 0;
+
+    public UpdateCatalogStore(@NonNull File file, long revalidateIntervalMs) {
+        this.file = file;
+        this.revalidateIntervalMs = revalidateIntervalMs;
+    }
+
+    /**
+     * 当前的目录副本，尚未读入内存时从本地文件读取；没有时返回 null
+     */
+    @Nullable
+    public UpdateCatalog current() {
+        if (loaded) return catalog;
+        synchronized (this) {
+            if (!loaded) {
+                catalog = UpdateCatalog.load(file);
+                loaded = true;
+            }
+            return catalog;
+        }
+    }
+
+    /**
+     * 距上次校验超过间隔时重新请求目录，未变化（304）时继续使用本地副本。
+     * 目录未发布（404）或暂时无法获取且本地没有副本时返回 null，由调用方退回到列举目录的方式。
+     * 在网络线程上调用
+     *
+     * @param now 单调时钟的当前时间
+     */
+    @Nullable
+    public synchronized UpdateCatalog revalidate(@NonNull Fetcher fetcher, long now) {
+        UpdateCatalog cached = current();
+        if (checkedAt != 0 && now - checkedAt < revalidateIntervalMs) {
+            return cached;
+        }
+        try {
+            UpdateCatalog fetched = fetcher.fetch(cached != null ? cached.getETag() : null);
+            checkedAt = now;
+            if (fetched == null) {
+                Log.d(TAG, "Catalog not modified, revision " + (cached != null ? cached.getRevision() : -1));
+                return cached;
+            }
+            catalog = fetched;
+            Log.d(TAG, "Catalog updated to revision " + fetched.getRevision());
+            try {
+                fetched.save(file);
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to save catalog", e);
+            }
+        } catch (FileNotFoundException e) {
+            // 目录未发布，本地副本也已失效
+            catalog = null;
+            checkedAt = now;
+            if (file.exists() && !file.delete()) {
+                Log.w(TAG, "Failed to delete stale catalog: " + file);
+            }
+            Log.d(TAG, "No catalog published, falling back to listing");
+        } catch (JSONException e) {
+            Log.w(TAG, "Invalid catalog, falling back to listing", e);
+        } catch (Exception e) {
+            Log.w(TAG, "Catalog unavailable, using cached copy: " + (catalog != null), e);
+        }
+        return catalog;
+    }
+}
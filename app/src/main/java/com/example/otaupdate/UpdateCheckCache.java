@@ -0,0 +1,140 @@
+package com.example.otaupdate;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 更新检查结果的本地缓存
+ * 按（目录前缀, CPU 型号, 分辨率）保存最近一次检查结果（包括"没有更新"），并记录结果所依据的目录 ETag。
+ * 在 {@link #FRESH_MILLIS} 内直接使用；超过后、{@link #MAX_STALE_MILLIS} 内先返回旧结果再在后台重新校验；
+ * 再往后必须重新检查
+ */
+public class UpdateCheckCache {
+    private static final String TAG = "UpdateCheckCache";
+    public static final long FRESH_MILLIS = 5 * 60 * 1000L;
+    public static final long MAX_STALE_MILLIS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * 缓存条目，info 为 null 表示检查结果为没有更新
+     */
+    public static final class Entry {
+        @Nullable
+        public final UpdateInfo info;
+        @Nullable
+        public final String etag;
+        public final long checkedAt;
+
+        Entry(@Nullable UpdateInfo info, @Nullable String etag, long checkedAt) {
+            this.info = info;
+            this.etag = etag;
+            this.checkedAt = checkedAt;
+        }
+
+        public boolean isFresh(long now) {
+            return now >= checkedAt && now - checkedAt < FRESH_MILLIS;
+        }
+
+        /**
+         * 已过期但仍可先返回给调用方，同时在后台重新校验
+         */
+        public boolean isUsableStale(long now) {
+            return now >= checkedAt && now - checkedAt < MAX_STALE_MILLIS;
+        }
+    }
+
+    private final File file;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private boolean loaded = false;
+
+    public UpdateCheckCache(@NonNull File file) {
+        this.file = file;
+    }
+
+    @NonNull
+    private static String keyOf(@NonNull String prefix, @Nullable String cpuModel, @Nullable String resolution) {
+        return prefix + "|" + cpuModel + "|" + resolution;
+    }
+
+    @Nullable
+    public synchronized Entry get(@NonNull String prefix, @Nullable String cpuModel, @Nullable String resolution) {
+        ensureLoaded();
+        return entries.get(keyOf(prefix, cpuModel, resolution));
+    }
+
+    /**
+     * 记录一次检查结果并立即写入磁盘
+     */
+    public synchronized void put(@NonNull String prefix, @Nullable String cpuModel, @Nullable String resolution,
+                                 @Nullable UpdateInfo info, @Nullable String etag) {
+        ensureLoaded();
+        entries.put(keyOf(prefix, cpuModel, resolution), new Entry(info, etag, System.currentTimeMillis()));
+        try {
+            save();
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "Failed to save update check cache", e);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        loaded = true;
+        if (!file.isFile()) return;
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            JSONObject root = new JSONObject(UpdateCatalog.readFully(in));
+            Iterator<String> keys = root.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                JSONObject item = root.getJSONObject(key);
+                UpdateInfo info = item.has("key")
+                        ? new UpdateInfo(item.getString("version"), item.getString("key")) : null;
+                entries.put(key, new Entry(info, item.optString("etag", null), item.getLong("checkedAt")));
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Ignoring unreadable update check cache: " + file, e);
+            entries.clear();
+        } finally {
+            FileUtils.closeQuietly(in);
+        }
+    }
+
+    private void save() throws IOException, JSONException {
+        JSONObject root = new JSONObject();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            JSONObject item = new JSONObject();
+            if (entry.info != null) {
+                item.put("version", entry.info.getVersion());
+                item.put("key", entry.info.getObjectKey());
+            }
+            if (entry.etag != null) item.put("etag", entry.etag);
+            item.put("checkedAt", entry.checkedAt);
+            root.put(e.getKey(), item);
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            out.write(root.toString().getBytes(StandardCharsets.UTF_8));
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Failed to rename " + tmp + " -> " + file);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.otaupdate;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * tar + zstd 升级包解压
+ * 包按 zstd seekable 格式切成独立帧时，先用两个小的区间请求读出末尾的 {@link ZstdSeekTable}，
+ * 然后顺序读取数据流，按帧边界切分后交给多个线程并行解压，按帧顺序拼接后交给 {@link TarExtractor} 写出文件；
+ * 同时在途的帧按字节预算限制，内存占用与包大小和核数无关。没有跳转表或帧过大时退回单线程流式解压。
+ * 包先按分段方式下载到本地再解压：tar 没有中央目录，无法像 zip 那样按条目边界记录断点，边下载边解压时中断只能从头再来
+ */
+public class ZstdPackageExtractor {
+    private static final String TAG = "ZstdPackageExtractor";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // 单帧解压后超过该大小时不并行解压，避免多帧同时在内存中
+    private static final long MAX_PARALLEL_FRAME_SIZE = 16L * 1024 * 1024;
+    // 同时在途的帧（压缩数据与解压结果）合计不超过该字节数，车机上按核数放大窗口会耗尽堆内存
+    private static final long FRAME_WINDOW_BYTES = 48L * 1024 * 1024;
+    private static final int DECODER_KEEP_ALIVE_SECONDS = 30;
+
+    private final int parallelism;
+    // 所有解压共用的解码线程，空闲后自动退出
+    private final ExecutorService decoders;
+
+    public ZstdPackageExtractor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ZstdPackageExtractor(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(this.parallelism, this.parallelism,
+                DECODER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(@NonNull Runnable r) {
+                        Thread thread = new Thread(r, "zstd-decoder-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        this.decoders = executor;
+    }
+
+    /**
+     * 解压已下载的包，在调用线程上执行。失败时删除 destDir 并返回 false，与 {@link FileUtils#unzip} 一致
+     */
+    public boolean extractFile(@NonNull File packageFile, @NonNull File destDir, boolean isMcuUpdate,
+                               @Nullable ProgressTracker tracker) {
+        InputStream in = null;
+        try {
+            long length = packageFile.length();
+            ZstdSeekTable seekTable;
+            RandomAccessFile raf = new RandomAccessFile(packageFile, "r");
+            try {
+                seekTable = ZstdSeekTable.read(length, (offset, size) -> {
+                    byte[] data = new byte[size];
+                    raf.seek(offset);
+                    raf.readFully(data);
+                    return data;
+                });
+            } finally {
+                raf.close();
+            }
+            Log.d(TAG, "Extracting zstd package: " + packageFile.getName() + ", frames="
+                    + (seekTable != null ? seekTable.getFrameCount() : "unknown"));
+            if (tracker != null) tracker.startPhase(ProgressTracker.Phase.EXTRACT, length);
+            in = new FileInputStream(packageFile);
+            extract(tracker != null ? new CountingInputStream(in, tracker::addCompressed) : in, seekTable, destDir,
+                    isMcuUpdate, tracker);
+            if (tracker != null) tracker.flush();
+            return true;
+        } catch (Throwable e) {
+            // 包括 OutOfMemoryError 等错误，调用方只按返回值报告失败
+            Log.e(TAG, "zstd extraction failed: " + packageFile, e);
+            FileUtils.deleteRecursive(destDir);
+            return false;
+        } finally {
+            FileUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * 从压缩数据流解包到 destDir，有跳转表时 in 必须从包的第一个字节开始。
+     * 读到 tar 结束块即返回，不关闭 in，调用方可以继续读完剩余数据做校验
+     */
+    void extract(@NonNull InputStream in, @Nullable ZstdSeekTable seekTable, @NonNull File destDir,
+                 boolean isMcuUpdate, @Nullable ProgressTracker tracker) throws IOException {
+        long start = System.nanoTime();
+        boolean parallel = seekTable != null && parallelism > 1 && seekTable.getFrameCount() > 1
+                && seekTable.getMaxDecompressedSize() <= MAX_PARALLEL_FRAME_SIZE;
+        int threads = 1;
+        int window = 1;
+        if (parallel) {
+            // 按最大帧的解压后大小计算窗口，压缩数据在解压完成后即可回收
+            long frameBytes = Math.max(seekTable.getMaxDecompressedSize(), 1);
+            window = (int) Math.max(1, Math.min(parallelism * 2L, FRAME_WINDOW_BYTES / frameBytes));
+            threads = Math.min(Math.min(parallelism, seekTable.getFrameCount()), window);
+            parallel = threads > 1;
+        }
+        InputStream tar = null;
+        try {
+            tar = parallel ? new FrameDecodingInputStream(in, seekTable, decoders, window)
+                    : new ZstdInputStream(new BufferedInputStream(nonClosing(in), BUFFER_SIZE));
+            final long[] inflated = {0};
+            int files = TarExtractor.extract(new CountingInputStream(tar, n -> inflated[0] += n), destDir,
+                    isMcuUpdate, tracker);
+            long elapsedMs = Math.max((System.nanoTime() - start) / 1000000, 1);
+            Log.i(TAG, "Extracted " + files + " files (" + inflated[0] + " bytes) in " + elapsedMs + "ms on "
+                    + threads + " threads, " + String.format(Locale.ROOT, "%.1f", inflated[0] / 1048576.0 * 1000 / elapsedMs)
+                    + " MB/s");
+        } finally {
+            // 关闭 ZstdInputStream 释放原生解压上下文，in 不随之关闭，之后还要读完剩余数据做校验；
+            // 并行解压时关闭即取消尚未完成的帧
+            FileUtils.closeQuietly(tar);
+        }
+    }
+
+    private static InputStream nonClosing(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * 按跳转表从压缩流中逐帧读出数据并提交解压，最多 window 帧同时在途，按帧顺序输出解压结果。
+     * 只在调用线程上读取压缩流，读取位置总是停在帧边界
+     */
+    private static final class FrameDecodingInputStream extends InputStream {
+        private final InputStream in;
+        private final ZstdSeekTable seekTable;
+        private final ExecutorService decoders;
+        private final int window;
+        private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+        private int nextFrame;
+        private byte[] current = new byte[0];
+        private int position;
+
+        FrameDecodingInputStream(InputStream in, ZstdSeekTable seekTable, ExecutorService decoders, int window) {
+            this.in = in;
+            this.seekTable = seekTable;
+            this.decoders = decoders;
+            this.window = Math.max(window, 1);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) return -1;
+            return current[position++] & 0xff;
+        }
+
+        @Override
+        public int read(@NonNull byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (!fill()) return -1;
+            int n = Math.min(len, current.length - position);
+            System.arraycopy(current, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        private boolean fill() throws IOException {
+            while (position >= current.length) {
+                submitFrames();
+                Future<byte[]> next = pending.poll();
+                if (next == null) return false;
+                try {
+                    current = next.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) throw (IOException) cause;
+                    throw new IOException("zstd frame decode failed", cause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Extraction interrupted", e);
+                }
+                position = 0;
+            }
+            return true;
+        }
+
+        private void submitFrames() throws IOException {
+            while (pending.size() < window && nextFrame < seekTable.getFrameCount()) {
+                final int frame = nextFrame++;
+                final byte[] compressed = new byte[(int) seekTable.getCompressedSize(frame)];
+                final int size = (int) seekTable.getDecompressedSize(frame);
+                FileUtils.readFully(in, compressed, 0, compressed.length);
+                pending.add(decoders.submit(() -> decodeFrame(frame, compressed, size)));
+            }
+        }
+
+        @Override
+        public void close() {
+            for (Future<byte[]> future : pending) {
+                future.cancel(true);
+            }
+            pending.clear();
+        }
+    }
+
+    private static byte[] decodeFrame(int frame, byte[] compressed, int size) throws IOException {
+        byte[] data;
+        try {
+            data = Zstd.decompress(compressed, size);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt zstd frame " + frame, e);
+        }
+        if (data.length != size) {
+            throw new IOException("zstd frame " + frame + " decompressed to " + data.length + " bytes, expected " + size);
+        }
+        return data;
+    }
+}
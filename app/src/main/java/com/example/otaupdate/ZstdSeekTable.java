@@ -0,0 +1,122 @@
+package com.example.otaupdate;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+
+/**
+ * zstd seekable 格式的跳转表
+ * 包末尾的跳帧中依次记录每个独立帧的压缩大小与解压大小，结构如下（均为小端序）：
+ * <pre>
+ * 跳帧头   Magic 0x184D2A5E (4) | Frame_Size (4)
+ * 条目     Compressed_Size (4) | Decompressed_Size (4) | [Checksum (4)]   × Number_Of_Frames
+ * 尾部     Number_Of_Frames (4) | Descriptor (1，最高位表示条目带校验和) | Magic 0x8F92EAB1 (4)
+ * </pre>
+ * 按帧边界切分压缩数据后，各帧可以交给不同线程独立解压
+ */
+final class ZstdSeekTable {
+    static final int FOOTER_SIZE = 9;
+    private static final int SKIPPABLE_HEADER_SIZE = 8;
+    private static final int SKIPPABLE_MAGIC = 0x184d2a5e;
+    private static final int SEEKABLE_MAGIC = 0x8f92eab1;
+    private static final int CHECKSUM_FLAG = 0x80;
+    // 跳转表的上限，防止损坏的尾部导致申请超大缓冲区
+    private static final int MAX_FRAMES = 1 << 20;
+
+    /**
+     * 按偏移读取包末尾的数据，可以是区间请求或本地文件
+     */
+    interface TailReader {
+        @NonNull
+        byte[] read(long offset, int length) throws IOException;
+    }
+
+    private final int[] compressedSizes;
+    private final int[] decompressedSizes;
+    private final long totalCompressed;
+    private final long totalDecompressed;
+
+    private ZstdSeekTable(int[] compressedSizes, int[] decompressedSizes) {
+        this.compressedSizes = compressedSizes;
+        this.decompressedSizes = decompressedSizes;
+        long compressed = 0;
+        long decompressed = 0;
+        for (int i = 0; i < compressedSizes.length; i++) {
+            compressed += compressedSizes[i] & 0xffffffffL;
+            decompressed += decompressedSizes[i] & 0xffffffffL;
+        }
+        this.totalCompressed = compressed;
+        this.totalDecompressed = decompressed;
+    }
+
+    /**
+     * 读取长度为 length 的包的跳转表：先读 9 字节尾部，再读整个跳帧。
+     * 不是 seekable 格式时返回 null，跳转表与包长度不一致时抛出 IOException
+     */
+    @Nullable
+    static ZstdSeekTable read(long length, @NonNull TailReader reader) throws IOException {
+        if (length < SKIPPABLE_HEADER_SIZE + FOOTER_SIZE) return null;
+        byte[] footer = reader.read(length - FOOTER_SIZE, FOOTER_SIZE);
+        if (readInt(footer, 5) != SEEKABLE_MAGIC) return null;
+        long frames = readInt(footer, 0) & 0xffffffffL;
+        int descriptor = footer[4] & 0xff;
+        if (frames > MAX_FRAMES || (descriptor & 0x7c) != 0) {
+            throw new IOException("Invalid zstd seek table: frames=" + frames + ", descriptor=" + descriptor);
+        }
+        int entrySize = (descriptor & CHECKSUM_FLAG) != 0 ? 12 : 8;
+        int tableSize = SKIPPABLE_HEADER_SIZE + (int) frames * entrySize + FOOTER_SIZE;
+        if (tableSize > length) throw new IOException("zstd seek table larger than package: " + tableSize);
+        byte[] table = reader.read(length - tableSize, tableSize);
+        if (readInt(table, 0) != SKIPPABLE_MAGIC || readInt(table, 4) != tableSize - SKIPPABLE_HEADER_SIZE) {
+            throw new IOException("Invalid zstd seek table frame header");
+        }
+        int[] compressedSizes = new int[(int) frames];
+        int[] decompressedSizes = new int[(int) frames];
+        for (int i = 0; i < frames; i++) {
+            int offset = SKIPPABLE_HEADER_SIZE + i * entrySize;
+            compressedSizes[i] = readInt(table, offset);
+            decompressedSizes[i] = readInt(table, offset + 4);
+        }
+        ZstdSeekTable seekTable = new ZstdSeekTable(compressedSizes, decompressedSizes);
+        // 所有帧加上跳转表本身必须正好覆盖整个包，否则按帧切分会错位
+        if (seekTable.totalCompressed + tableSize != length) {
+            throw new IOException("zstd seek table covers " + seekTable.totalCompressed + " + " + tableSize
+                    + " bytes, package is " + length);
+        }
+        return seekTable;
+    }
+
+    int getFrameCount() {
+        return compressedSizes.length;
+    }
+
+    long getCompressedSize(int frame) {
+        return compressedSizes[frame] & 0xffffffffL;
+    }
+
+    long getDecompressedSize(int frame) {
+        return decompressedSizes[frame] & 0xffffffffL;
+    }
+
+    long getMaxDecompressedSize() {
+        long max = 0;
+        for (int i = 0; i < decompressedSizes.length; i++) {
+            max = Math.max(max, getDecompressedSize(i));
+        }
+        return max;
+    }
+
+    long getTotalCompressed() {
+        return totalCompressed;
+    }
+
+    long getTotalDecompressed() {
+        return totalDecompressed;
+    }
+
+    private static int readInt(byte[] b, int offset) {
+        return (b[offset] & 0xff) | (b[offset + 1] & 0xff) << 8 | (b[offset + 2] & 0xff) << 16
+                | (b[offset + 3] & 0xff) << 24;
+    }
+}
@@ -19,6 +19,7 @@ import com.example.otaupdate.DownloadProgressManager;
 import com.example.otaupdate.R;
 import com.example.otaupdate.UpdateInfo;
 import com.example.otaupdate.OssManager;
+import com.example.otaupdate.ProgressTracker;
 
 import java.io.File;
 import java.util.concurrent.ExecutorService;
@@ -114,12 +115,12 @@ public class McuUpdateFragment extends Fragment {
                 // 处理暂停/继续下载
                 if (isPaused) {
                     // 暂停下载逻辑
-                    OssManager ossManager = new OssManager(requireContext());
+                    OssManager ossManager = OssManager.getInstance(requireContext());
                     ossManager.pauseDownload();
                 } else {
                     // 继续下载逻辑
                     if (currentMcuUpdateInfo != null && downloadFile != null) {
-                        OssManager ossManager = new OssManager(requireContext());
+                        OssManager ossManager = OssManager.getInstance(requireContext());
                         ossManager.resumeDownload(currentMcuUpdateInfo.getKey(), downloadFile.getAbsolutePath());
                     }
                 }
@@ -139,51 +140,59 @@ public class McuUpdateFragment extends Fragment {
             mainThreadHandler.post(() -> {
                 if (isAdded()) {
                     tvCurrentMcu.setText(getString(R.string.current_mcu_label, mcuVersion));
+                    showLastCheckResult();
                 }
             });
         });
     }
     
+    /**
+     * 显示组合检查最近一次的结果；启动时的检查还没有完成时加入等待，本页不再单独检查
+     */
+    private void showLastCheckResult() {
+        if (isMcuDownloading) return;
+        OssManager.UpdateCheckResult last = OssManager.getInstance(requireContext()).getLastUpdateCheck();
+        if (last != null) {
+            showCheckResult(last.get(OssManager.UpdateKind.MCU), last.getError(OssManager.UpdateKind.MCU));
+        } else {
+            checkMcuUpdate();
+        }
+    }
+
     private void checkMcuUpdate() {
         showStatus(getString(R.string.status_checking), false);
         btnDownloadMcuUpdate.setEnabled(false);
-        
-        String mcuVersion = DeviceInfoUtils.getMcuVersion();
-        
-        OssManager ossManager = new OssManager(requireContext());
-        ossManager.checkMcuUpdate(mcuVersion, new OssManager.OssCallback<UpdateInfo>() {
+        OssManager.getInstance(requireContext()).checkAllUpdates(new OssManager.AllUpdatesCallback() {
             @Override
-            public void onSuccess(@Nullable UpdateInfo result) {
-                if (result != null) {
-                    currentMcuUpdateInfo = result;
-                    mainThreadHandler.post(() -> {
-                        if (isAdded()) {
-                            tvLatestMcuVersion.setText(getString(R.string.latest_version_label, result.getVersion()));
-                            showStatus(getString(R.string.status_mcu_update_available, result.getVersion()), false);
-                            btnDownloadMcuUpdate.setEnabled(true);
-                        }
-                    });
-                } else {
-                    mainThreadHandler.post(() -> {
-                        if (isAdded()) {
-                            showStatus(getString(R.string.status_no_mcu_update), false);
-                            btnDownloadMcuUpdate.setEnabled(false);
-                        }
-                    });
-                }
+            public void onPartialResult(@NonNull OssManager.UpdateKind kind, @Nullable UpdateInfo info,
+                                        @Nullable Exception error) {
+                if (kind == OssManager.UpdateKind.MCU) showCheckResult(info, error);
             }
-            
+
             @Override
-            public void onFailure(@NonNull Exception e) {
-                mainThreadHandler.post(() -> {
-                    if (isAdded()) {
-                        showStatus(getString(R.string.status_error_check, e.getMessage()), true);
-                        btnDownloadMcuUpdate.setEnabled(false);
-                    }
-                });
+            public void onComplete(@NonNull OssManager.UpdateCheckResult result) {
             }
         });
     }
+
+    /**
+     * 显示 MCU 更新的检查结果，在主线程调用
+     */
+    private void showCheckResult(@Nullable UpdateInfo result, @Nullable Exception error) {
+        if (!isAdded()) return;
+        if (error != null) {
+            showStatus(getString(R.string.status_error_check, error.getMessage()), true);
+            btnDownloadMcuUpdate.setEnabled(false);
+        } else if (result != null) {
+            currentMcuUpdateInfo = result;
+            tvLatestMcuVersion.setText(getString(R.string.latest_version_label, result.getVersion()));
+            showStatus(getString(R.string.status_mcu_update_available, result.getVersion()), false);
+            btnDownloadMcuUpdate.setEnabled(true);
+        } else {
+            showStatus(getString(R.string.status_no_mcu_update), false);
+            btnDownloadMcuUpdate.setEnabled(false);
+        }
+    }
     
     private void downloadUpdate() {
         if (currentMcuUpdateInfo == null) return;
@@ -213,7 +222,7 @@ public class McuUpdateFragment extends Fragment {
         
         String fileName = currentMcuUpdateInfo.getKey().substring(currentMcuUpdateInfo.getKey().lastIndexOf('/') + 1);
         downloadFile = new File(downloadDir, fileName);
-        OssManager ossManager = new OssManager(requireContext());
+        OssManager ossManager = OssManager.getInstance(requireContext());
         
         ossManager.downloadUpdate(currentMcuUpdateInfo.getKey(), downloadFile.getAbsolutePath(), 
             new OssManager.DownloadCallback() {
@@ -237,6 +246,17 @@ public class McuUpdateFragment extends Fragment {
                     });
                 }
                 
+                @Override
+                public void onPhaseProgress(@NonNull ProgressTracker.Snapshot progress) {
+                    // 下载阶段的进度由 onProgress 处理，这里只处理解压和安装阶段
+                    if (!isAdded() || downloadProgressManager == null) return;
+                    String status = downloadProgressManager.updatePhaseProgress(progress);
+                    if (status != null) {
+                        mcuDownloadProgress = progress.getPercent();
+                        mcuDownloadStatus = status;
+                    }
+                }
+                
                 @Override
                 public void onSuccess() {
                     com.example.otaupdate.MainActivity.setDownloading(false);
@@ -291,7 +311,7 @@ public class McuUpdateFragment extends Fragment {
     private void cancelDownload() {
         if (isMcuDownloading) {
             // 取消下载任务
-            OssManager ossManager = new OssManager(requireContext());
+            OssManager ossManager = OssManager.getInstance(requireContext());
             ossManager.cancelDownload();
             
             isMcuDownloading = false;
@@ -331,7 +351,7 @@ public class McuUpdateFragment extends Fragment {
             .setMessage(R.string.reboot_dialog_message)
             .setPositiveButton(R.string.reboot_dialog_confirm, (dialog, which) -> {
                 // Trigger reboot
-                OssManager ossManager = new OssManager(requireContext());
+                OssManager ossManager = OssManager.getInstance(requireContext());
                 ossManager.rebootDevice();
             })
             .setNegativeButton(R.string.reboot_dialog_later, null)
@@ -22,6 +22,7 @@ import com.example.otaupdate.DownloadProgressManager;
 import com.example.otaupdate.R;
 import com.example.otaupdate.UpdateInfo;
 import com.example.otaupdate.OssManager;
+import com.example.otaupdate.ProgressTracker;
 import com.google.android.material.progressindicator.CircularProgressIndicator;
 
 import java.io.File;
@@ -151,89 +152,98 @@ public class SystemUpdateFragment extends Fragment {
                 if (isAdded()) {
                     String versionToShow = latestOssVersion != null ? latestOssVersion : systemBuildDate;
                     tvCurrentVersion.setText(getString(R.string.current_version_label, versionToShow));
+                    showLastCheckResult();
                 }
             });
         });
     }
     
+    /**
+     * 显示组合检查最近一次的结果；启动时的检查还没有完成时加入等待，本页不再单独检查
+     */
+    private void showLastCheckResult() {
+        if (isSystemDownloading) return;
+        OssManager.UpdateCheckResult last = OssManager.getInstance(requireContext()).getLastUpdateCheck();
+        if (last != null) {
+            showCheckResult(last.get(OssManager.UpdateKind.SYSTEM), last.getError(OssManager.UpdateKind.SYSTEM));
+        } else {
+            checkSystemUpdate();
+        }
+    }
+
     private void checkSystemUpdate() {
         showStatus(getString(R.string.status_checking), false);
         canDownload = false;
         btnDownloadUpdate.setAlpha(0.3f);
         downloadClickCount = 0;
-        String cpuModel = DeviceInfoUtils.getCpuModel();
-        String resolution = DeviceInfoUtils.getScreenResolution(requireContext());
-        OssManager ossManager = new OssManager(requireContext());
-        ossManager.checkSystemUpdate(cpuModel, resolution, new OssManager.OssCallback<UpdateInfo>() {
+        OssManager.getInstance(requireContext()).checkAllUpdates(new OssManager.AllUpdatesCallback() {
             @Override
-            public void onSuccess(@Nullable UpdateInfo result) {
-                if (result != null) {
-                    currentSystemUpdateInfo = result;
-                    latestOssVersion = result.getVersion();
-                    mainThreadHandler.post(() -> {
-                        if (isAdded()) {
-                            tvCurrentVersion.setText(getString(R.string.current_version_label, latestOssVersion));
-                            tvLatestVersion.setText(getString(R.string.latest_version_label, result.getVersion()));
-                            
-                            // 获取本地标准化版本和OSS标准化版本
-                            String localStandardVersion = localSystemVersion; // 已经是标准化版本
-                            String ossStandardVersion = DeviceInfoUtils.formatDateToStandardVersion(latestOssVersion);
-                            
-                            // 直接比较标准化的版本号
-                            try {
-                                long localVersionNum = Long.parseLong(localStandardVersion);
-                                long ossVersionNum = Long.parseLong(ossStandardVersion);
-                                
-                                Log.d("SystemUpdateFragment", "比较版本: 本地=" + localVersionNum + "(" + DeviceInfoUtils.getSystemBuildDate() + "), " +
-                                      "OSS=" + ossVersionNum + "(" + latestOssVersion + ")");
-                                
-                                if (localVersionNum >= ossVersionNum) {
-                                    showStatus(getString(R.string.status_up_to_date), false);
-                                    canDownload = false;
-                                    btnDownloadUpdate.setAlpha(0.3f);
-                                } else {
-                                    showStatus(getString(R.string.status_update_available), false);
-                                    canDownload = true;
-                                    btnDownloadUpdate.setAlpha(1.0f);
-                                }
-                            } catch (NumberFormatException e) {
-                                // 极少数情况下可能会抛出异常，这里提供简单的回退策略
-                                Log.e("SystemUpdateFragment", "版本比较异常", e);
-                                if (localStandardVersion.equals(ossStandardVersion)) {
-                                    showStatus(getString(R.string.status_up_to_date), false);
-                                    canDownload = false;
-                                    btnDownloadUpdate.setAlpha(0.3f);
-                                } else {
-                                    showStatus(getString(R.string.status_update_available), false);
-                                    canDownload = true;
-                                    btnDownloadUpdate.setAlpha(1.0f);
-                                }
-                            }
-                        }
-                    });
-                } else {
-                    mainThreadHandler.post(() -> {
-                        if (isAdded()) {
-                            showStatus(getString(R.string.status_no_update), false);
-                            canDownload = false;
-                            btnDownloadUpdate.setAlpha(0.3f);
-                        }
-                    });
-                }
+            public void onPartialResult(@NonNull OssManager.UpdateKind kind, @Nullable UpdateInfo info,
+                                        @Nullable Exception error) {
+                if (kind == OssManager.UpdateKind.SYSTEM) showCheckResult(info, error);
             }
-            
+
             @Override
-            public void onFailure(@NonNull Exception e) {
-                mainThreadHandler.post(() -> {
-                    if (isAdded()) {
-                        showStatus(getString(R.string.status_error_check, e.getMessage()), true);
-                        canDownload = false;
-                        btnDownloadUpdate.setAlpha(0.3f);
-                    }
-                });
+            public void onComplete(@NonNull OssManager.UpdateCheckResult result) {
             }
         });
     }
+
+    /**
+     * 显示系统更新的检查结果，在主线程调用
+     */
+    private void showCheckResult(@Nullable UpdateInfo result, @Nullable Exception error) {
+        if (!isAdded()) return;
+        if (error != null) {
+            showStatus(getString(R.string.status_error_check, error.getMessage()), true);
+            canDownload = false;
+            btnDownloadUpdate.setAlpha(0.3f);
+        } else if (result != null) {
+            currentSystemUpdateInfo = result;
+            latestOssVersion = result.getVersion();
+            tvCurrentVersion.setText(getString(R.string.current_version_label, latestOssVersion));
+            tvLatestVersion.setText(getString(R.string.latest_version_label, result.getVersion()));
+
+            // 获取本地标准化版本和OSS标准化版本
+            String localStandardVersion = localSystemVersion; // 已经是标准化版本
+            String ossStandardVersion = DeviceInfoUtils.formatDateToStandardVersion(latestOssVersion);
+
+            // 直接比较标准化的版本号
+            try {
+                long localVersionNum = Long.parseLong(localStandardVersion);
+                long ossVersionNum = Long.parseLong(ossStandardVersion);
+
+                Log.d("SystemUpdateFragment", "比较版本: 本地=" + localVersionNum + "(" + DeviceInfoUtils.getSystemBuildDate() + "), " +
+                      "OSS=" + ossVersionNum + "(" + latestOssVersion + ")");
+
+                if (localVersionNum >= ossVersionNum) {
+                    showStatus(getString(R.string.status_up_to_date), false);
+                    canDownload = false;
+                    btnDownloadUpdate.setAlpha(0.3f);
+                } else {
+                    showStatus(getString(R.string.status_update_available), false);
+                    canDownload = true;
+                    btnDownloadUpdate.setAlpha(1.0f);
+                }
+            } catch (NumberFormatException e) {
+                // 极少数情况下可能会抛出异常，这里提供简单的回退策略
+                Log.e("SystemUpdateFragment", "版本比较异常", e);
+                if (localStandardVersion.equals(ossStandardVersion)) {
+                    showStatus(getString(R.string.status_up_to_date), false);
+                    canDownload = false;
+                    btnDownloadUpdate.setAlpha(0.3f);
+                } else {
+                    showStatus(getString(R.string.status_update_available), false);
+                    canDownload = true;
+                    btnDownloadUpdate.setAlpha(1.0f);
+                }
+            }
+        } else {
+            showStatus(getString(R.string.status_no_update), false);
+            canDownload = false;
+            btnDownloadUpdate.setAlpha(0.3f);
+        }
+    }
     
     private void downloadUpdate() {
         if (currentSystemUpdateInfo == null) return;
@@ -266,7 +276,7 @@ public class SystemUpdateFragment extends Fragment {
         downloadFile = new File(downloadDir, fileName);
         
         // 创建OssManager实例并开始下载
-        OssManager ossManager = new OssManager(requireContext());
+        OssManager ossManager = OssManager.getInstance(requireContext());
         ossManager.downloadUpdate(currentSystemUpdateInfo.getKey(), downloadFile.getAbsolutePath(), 
             new OssManager.DownloadCallback() {
                 @Override
@@ -289,6 +299,17 @@ public class SystemUpdateFragment extends Fragment {
                     });
                 }
                 
+                @Override
+                public void onPhaseProgress(@NonNull ProgressTracker.Snapshot progress) {
+                    // 下载阶段的进度由 onProgress 处理，这里只处理解压和安装阶段
+                    if (!isAdded() || downloadProgressManager == null) return;
+                    String status = downloadProgressManager.updatePhaseProgress(progress);
+                    if (status != null) {
+                        systemDownloadProgress = progress.getPercent();
+                        systemDownloadStatus = status;
+                    }
+                }
+                
                 @Override
                 public void onSuccess() {
                     com.example.otaupdate.MainActivity.setDownloading(false);
@@ -347,7 +368,7 @@ public class SystemUpdateFragment extends Fragment {
             .setMessage(R.string.reboot_dialog_message)
             .setPositiveButton(R.string.reboot_dialog_confirm, (dialog, which) -> {
                 // Trigger reboot
-                OssManager ossManager = new OssManager(requireContext());
+                OssManager ossManager = OssManager.getInstance(requireContext());
                 ossManager.rebootDevice();
             })
             .setNegativeButton(R.string.reboot_dialog_later, null)
@@ -379,12 +400,12 @@ public class SystemUpdateFragment extends Fragment {
                 // 处理暂停/继续下载
                 if (isPaused) {
                     // 暂停下载逻辑
-                    OssManager ossManager = new OssManager(requireContext());
+                    OssManager ossManager = OssManager.getInstance(requireContext());
                     ossManager.pauseDownload();
                 } else {
                     // 继续下载逻辑
                     if (currentSystemUpdateInfo != null && downloadFile != null) {
-                        OssManager ossManager = new OssManager(requireContext());
+                        OssManager ossManager = OssManager.getInstance(requireContext());
                         ossManager.resumeDownload(currentSystemUpdateInfo.getKey(), downloadFile.getAbsolutePath());
                     }
                 }
@@ -417,7 +438,7 @@ public class SystemUpdateFragment extends Fragment {
      */
     private void cancelDownload() {
         if (isSystemDownloading) {
-            OssManager ossManager = new OssManager(requireContext());
+            OssManager ossManager = OssManager.getInstance(requireContext());
             ossManager.cancelDownload();
             
             isSystemDownloading = false;
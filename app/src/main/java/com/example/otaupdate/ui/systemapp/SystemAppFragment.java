@@ -23,6 +23,7 @@ import androidx.fragment.app.Fragment;
 import com.example.otaupdate.BuildConfig;
 import com.example.otaupdate.DeviceInfoUtils;
 import com.example.otaupdate.OssManager;
+import com.example.otaupdate.ProgressTracker;
 import com.example.otaupdate.R;
 import com.example.otaupdate.UpdateInfo;
 import com.example.otaupdate.ui.views.RippleProgressView;
@@ -184,12 +185,12 @@ public class SystemAppFragment extends Fragment {
                 // 处理暂停/继续下载
                 if (isPaused) {
                     // 暂停下载逻辑
-                    OssManager ossManager = new OssManager(requireContext());
+                    OssManager ossManager = OssManager.getInstance(requireContext());
                     ossManager.pauseDownload();
                 } else {
                     // 继续下载逻辑
                     if (currentSystemAppUpdateInfo != null && downloadFile != null) {
-                        OssManager ossManager = new OssManager(requireContext());
+                        OssManager ossManager = OssManager.getInstance(requireContext());
                         ossManager.resumeDownload(currentSystemAppUpdateInfo.getKey(), downloadFile.getAbsolutePath());
                     }
                 }
@@ -253,88 +254,99 @@ public class SystemAppFragment extends Fragment {
                     
                     // 使用system_app_version_label替代build_time_label
                     tvBuildTime.setText(getString(R.string.system_app_version_label, finalAppBuildDate));
+                    showLastCheckResult();
                 }
             });
         });
     }
     
+    /**
+     * 显示组合检查最近一次的结果；启动时的检查还没有完成时加入等待，本页不再单独检查
+     */
+    private void showLastCheckResult() {
+        if (isSystemAppDownloading) return;
+        OssManager.UpdateCheckResult last = OssManager.getInstance(requireContext()).getLastUpdateCheck();
+        if (last != null) {
+            showCheckResult(last.get(OssManager.UpdateKind.SYSTEM_APP), last.getError(OssManager.UpdateKind.SYSTEM_APP));
+        } else {
+            checkSystemAppUpdate();
+        }
+    }
+
     private void checkSystemAppUpdate() {
         showStatus(getString(R.string.status_checking), false);
         canDownload = false;
         btnDownloadSystemAppUpdate.setAlpha(0.3f);
         downloadClickCount = 0;
-        OssManager ossManager = new OssManager(requireContext());
-        ossManager.checkSystemAppUpdate(new OssManager.OssCallback<UpdateInfo>() {
+        OssManager.getInstance(requireContext()).checkAllUpdates(new OssManager.AllUpdatesCallback() {
             @Override
-            public void onSuccess(@Nullable UpdateInfo result) {
-                if (result != null) {
-                    currentSystemAppUpdateInfo = result;
-                    mainThreadHandler.post(() -> {
-                        if (isAdded()) {
-                            tvLatestSystemAppVersion.setText(getString(R.string.latest_version_label, result.getVersion()));
-                            
-                            // 使用本地标准化版本
-                            String localStandardVersion = localAppBuildTime; // 已经是标准化版本
-                            // 获取OSS上最新应用的标准化版本
-                            String ossStandardVersion = DeviceInfoUtils.formatDateToStandardVersion(result.getVersion());
-                            
-                            // 打印日志，帮助调试版本比较
-                            Log.d("SystemAppFragment", "比较版本: 本地=" + localStandardVersion + "(" + DeviceInfoUtils.getAppBuildTime() + "), OSS=" + ossStandardVersion + "(" + result.getVersion() + ")");
-                            
-                            // 直接比较标准化的版本号
-                            try {
-                                long localVersionNum = Long.parseLong(localStandardVersion);
-                                long ossVersionNum = Long.parseLong(ossStandardVersion);
-                                
-                                if (localVersionNum >= ossVersionNum) {
-                                    // 本地版本比OSS版本新或相同，不需要更新
-                                    showStatus(getString(R.string.status_up_to_date), false);
-                                    canDownload = false;
-                                    btnDownloadSystemAppUpdate.setAlpha(0.3f);
-                                } else {
-                                    // OSS版本比本地版本新，可以更新
-                                    showStatus(getString(R.string.status_update_available), false);
-                                    canDownload = true;
-                                    btnDownloadSystemAppUpdate.setAlpha(1.0f);
-                                }
-                            } catch (NumberFormatException e) {
-                                // 如果解析失败，回退到字符串比较
-                                Log.e("SystemAppFragment", "版本比较异常", e);
-                                if (localStandardVersion.equals(ossStandardVersion)) {
-                                    showStatus(getString(R.string.status_up_to_date), false);
-                                    canDownload = false;
-                                    btnDownloadSystemAppUpdate.setAlpha(0.3f);
-                                } else {
-                                    showStatus(getString(R.string.status_update_available), false);
-                                    canDownload = true;
-                                    btnDownloadSystemAppUpdate.setAlpha(1.0f);
-                                }
-                            }
-                        }
-                    });
-                } else {
-                    mainThreadHandler.post(() -> {
-                        if (isAdded()) {
-                            showStatus(getString(R.string.status_no_update), false);
-                            canDownload = false;
-                            btnDownloadSystemAppUpdate.setAlpha(0.3f);
-                        }
-                    });
-                }
+            public void onPartialResult(@NonNull OssManager.UpdateKind kind, @Nullable UpdateInfo info,
+                                        @Nullable Exception error) {
+                if (kind == OssManager.UpdateKind.SYSTEM_APP) showCheckResult(info, error);
             }
-            
+
             @Override
-            public void onFailure(@NonNull Exception e) {
-                mainThreadHandler.post(() -> {
-                    if (isAdded()) {
-                        showStatus(getString(R.string.status_error_check, e.getMessage()), true);
-                        canDownload = false;
-                        btnDownloadSystemAppUpdate.setAlpha(0.3f);
-                    }
-                });
+            public void onComplete(@NonNull OssManager.UpdateCheckResult result) {
             }
         });
     }
+
+    /**
+     * 显示系统应用更新的检查结果，在主线程调用
+     */
+    private void showCheckResult(@Nullable UpdateInfo result, @Nullable Exception error) {
+        if (!isAdded()) return;
+        if (error != null) {
+            showStatus(getString(R.string.status_error_check, error.getMessage()), true);
+            canDownload = false;
+            btnDownloadSystemAppUpdate.setAlpha(0.3f);
+        } else if (result != null) {
+            currentSystemAppUpdateInfo = result;
+            tvLatestSystemAppVersion.setText(getString(R.string.latest_version_label, result.getVersion()));
+
+            // 使用本地标准化版本
+            String localStandardVersion = localAppBuildTime; // 已经是标准化版本
+            // 获取OSS上最新应用的标准化版本
+            String ossStandardVersion = DeviceInfoUtils.formatDateToStandardVersion(result.getVersion());
+
+            // 打印日志，帮助调试版本比较
+            Log.d("SystemAppFragment", "比较版本: 本地=" + localStandardVersion + "(" + DeviceInfoUtils.getAppBuildTime() + "), OSS=" + ossStandardVersion + "(" + result.getVersion() + ")");
+
+            // 直接比较标准化的版本号
+            try {
+                long localVersionNum = Long.parseLong(localStandardVersion);
+                long ossVersionNum = Long.parseLong(ossStandardVersion);
+
+                if (localVersionNum >= ossVersionNum) {
+                    // 本地版本比OSS版本新或相同，不需要更新
+                    showStatus(getString(R.string.status_up_to_date), false);
+                    canDownload = false;
+                    btnDownloadSystemAppUpdate.setAlpha(0.3f);
+                } else {
+                    // OSS版本比本地版本新，可以更新
+                    showStatus(getString(R.string.status_update_available), false);
+                    canDownload = true;
+                    btnDownloadSystemAppUpdate.setAlpha(1.0f);
+                }
+            } catch (NumberFormatException e) {
+                // 如果解析失败，回退到字符串比较
+                Log.e("SystemAppFragment", "版本比较异常", e);
+                if (localStandardVersion.equals(ossStandardVersion)) {
+                    showStatus(getString(R.string.status_up_to_date), false);
+                    canDownload = false;
+                    btnDownloadSystemAppUpdate.setAlpha(0.3f);
+                } else {
+                    showStatus(getString(R.string.status_update_available), false);
+                    canDownload = true;
+                    btnDownloadSystemAppUpdate.setAlpha(1.0f);
+                }
+            }
+        } else {
+            showStatus(getString(R.string.status_no_update), false);
+            canDownload = false;
+            btnDownloadSystemAppUpdate.setAlpha(0.3f);
+        }
+    }
     
     private void downloadSystemAppUpdate() {
         if (currentSystemAppUpdateInfo == null) {
@@ -401,7 +413,7 @@ public class SystemAppFragment extends Fragment {
         downloadFile = new File(downloadDir, fileName);
         
         // 创建OssManager实例并开始下载
-        OssManager ossManager = new OssManager(requireContext());
+        OssManager ossManager = OssManager.getInstance(requireContext());
         ossManager.downloadUpdate(currentSystemAppUpdateInfo.getKey(), downloadFile.getAbsolutePath(), 
             new OssManager.DownloadCallback() {
                 @Override
@@ -424,6 +436,17 @@ public class SystemAppFragment extends Fragment {
                     });
                 }
                 
+                @Override
+                public void onPhaseProgress(@NonNull ProgressTracker.Snapshot progress) {
+                    // 下载阶段的进度由 onProgress 处理，这里只处理解压和安装阶段
+                    if (!isAdded() || downloadProgressManager == null) return;
+                    String status = downloadProgressManager.updatePhaseProgress(progress);
+                    if (status != null) {
+                        systemAppDownloadProgress = progress.getPercent();
+                        systemAppDownloadStatus = status;
+                    }
+                }
+                
                 @Override
                 public void onSuccess() {
                     com.example.otaupdate.MainActivity.setDownloading(false);
@@ -530,7 +553,7 @@ public class SystemAppFragment extends Fragment {
      */
     private void cancelDownload() {
         if (isSystemAppDownloading) {
-            OssManager ossManager = new OssManager(requireContext());
+            OssManager ossManager = OssManager.getInstance(requireContext());
             ossManager.cancelDownload();
             
             isSystemAppDownloading = false;
@@ -0,0 +1,85 @@
+package com.example.otaupdate;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link DeltaUpdate#apply} 写入子目录中的文件，并拒绝越出工作目录的路径
+ */
+public class DeltaUpdateTest {
+    private static final UpdateCatalog.Patch PATCH = new UpdateCatalog.Patch("20250206", "20250306",
+            "firmware/System/patches/UIS8581A_1280x800_20250206_20250306.zip", 100);
+
+    private File dir;
+    private File baseDir;
+    private File workDir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("delta").toFile();
+        baseDir = new File(dir, "sdcard");
+        workDir = new File(dir, "work");
+        baseDir.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteRecursive(dir);
+    }
+
+    @Test
+    public void writesFilesInSubdirectories() throws Exception {
+        byte[] content = "volume=7\n".getBytes(StandardCharsets.UTF_8);
+        File patchZip = writePatch("oem/vaudioshow/config.xml", content);
+
+        DeltaUpdate.apply(patchZip, PATCH, baseDir, workDir);
+
+        assertArrayEquals(content, Files.readAllBytes(new File(workDir, "oem/vaudioshow/config.xml").toPath()));
+        assertFalse(new File(workDir, "oem/vaudioshow/config.xml.tmp").exists());
+        assertEquals("20250306", DeltaUpdate.readReachedVersion(workDir));
+    }
+
+    @Test
+    public void rejectsPathsOutsideWorkDir() throws Exception {
+        for (String name : new String[]{"../escape.bin", "oem/../../escape.bin", "/system/escape.bin",
+                "oem//config.xml", "oem/./config.xml", DeltaUpdate.VERSION_MARKER, "oem\\config.xml"}) {
+            File patchZip = writePatch(name, new byte[]{1});
+            try {
+                DeltaUpdate.apply(patchZip, PATCH, baseDir, workDir);
+                fail("accepted " + name);
+            } catch (IOException expected) {
+            }
+        }
+        assertFalse(new File(dir, "escape.bin").exists());
+    }
+
+    private File writePatch(String name, byte[] content) throws IOException {
+        String sha256 = Digests.toHex(Digests.newSha256().digest(content));
+        String manifest = "{\"schema\":1,\"from\":\"20250206\",\"to\":\"20250306\",\"files\":[{\"name\":\""
+                + name.replace("\\", "\\\\") + "\",\"sha256\":\"" + sha256 + "\",\"data\":\"file.bin\"}]}";
+        File patchZip = new File(dir, "patch.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(patchZip))) {
+            out.putNextEntry(new ZipEntry(DeltaUpdate.MANIFEST_ENTRY));
+            out.write(manifest.getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("file.bin"));
+            out.write(content);
+            out.closeEntry();
+        }
+        return patchZip;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.otaupdate;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 通过 {@link MapPropertySource} 在 JVM 上验证依赖系统属性的探测逻辑
+ */
+public class DeviceInfoUtilsTest {
+
+    @After
+    public void tearDown() {
+        DeviceInfoUtils.setPropertySource(SystemPropertyReader.getInstance());
+    }
+
+    @Test
+    public void buildDateFromFirstAvailableProperty() {
+        Map<String, String> props = new HashMap<>();
+        props.put("ro.build.date", "");
+        props.put("ro.system.build.date", "2025-03-06 12:33:44");
+        props.put("ro.vendor.build.date", "2024-01-01 00:00:00");
+        use(props);
+
+        assertEquals("2025-03-06", DeviceInfoUtils.probeSystemBuildDate());
+    }
+
+    @Test
+    public void buildDateWithWeekday() {
+        use(Collections.singletonMap("ro.build.date", "2025-03-06 12:33:44 Thursday"));
+
+        assertEquals("2025-03-06", DeviceInfoUtils.probeSystemBuildDate());
+    }
+
+    @Test
+    public void buildDateExtractedFromUnknownFormat() {
+        use(Collections.singletonMap("ro.vendor.build.date", "built 2024-11-20 by ci"));
+
+        assertEquals("2024-11-20", DeviceInfoUtils.probeSystemBuildDate());
+    }
+
+    @Test
+    public void buildDateUnknownWithoutProperties() {
+        use(Collections.singletonMap("ro.build.date", "unknown"));
+
+        assertEquals("Unknown", DeviceInfoUtils.probeSystemBuildDate());
+    }
+
+    @Test
+    public void cpuPropertiesFollowPriorityOrder() {
+        Map<String, String> props = new HashMap<>();
+        // ro.product.board 排在 ro.board.platform 之前
+        props.put("ro.product.board", "s9863a1h10_t310");
+        props.put("ro.board.platform", "ums512_t618");
+        use(props);
+
+        assertEquals("UIS8141E", DeviceInfoUtils.probeCpuProperties());
+    }
+
+    @Test
+    public void cpuPropertiesPrefer8581WithinOneValue() {
+        use(Collections.singletonMap("ro.hardware.chipname", "Unisoc UIS8581A"));
+
+        assertEquals("UIS8581A", DeviceInfoUtils.probeCpuProperties());
+    }
+
+    @Test
+    public void cpuPropertiesSkipUnrelatedValues() {
+        Map<String, String> props = new HashMap<>();
+        props.put("ro.product.board", "unknown");
+        props.put("ro.hardware", "qcom");
+        props.put("ro.build.description", "full_t618-user 10 QP1A release-keys");
+        use(props);
+
+        assertEquals("UIS8581A", DeviceInfoUtils.probeCpuProperties());
+    }
+
+    @Test
+    public void cpuPropertiesNullWhenNothingMatches() {
+        use(Collections.singletonMap("ro.hardware", "mt6765"));
+
+        assertNull(DeviceInfoUtils.probeCpuProperties());
+    }
+
+    private static void use(Map<String, String> props) {
+        DeviceInfoUtils.setPropertySource(new MapPropertySource(props));
+    }
+}
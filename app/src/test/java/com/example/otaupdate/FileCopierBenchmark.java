@@ -0,0 +1,112 @@
+package com.example.otaupdate;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * {@link FileCopier} 与原先 8KB 缓冲流复制的耗时对比，文件大小 1KB 到 1GB
+ * 小文件重复多次取平均，临时目录空间不足的大小跳过。
+ * 默认跳过，通过 ./gradlew testDebugUnitTest -Potaupdate.benchmark=true 运行
+ */
+public class FileCopierBenchmark {
+    private static final long[] SIZES = {1024L, 64 * 1024L, 1024 * 1024L, 64 * 1024 * 1024L, 1024 * 1024 * 1024L};
+    // 每个大小至少复制的总字节数，小文件因此重复多次
+    private static final long MIN_TOTAL_BYTES = 64L * 1024 * 1024;
+    private static final int WRITE_BLOCK = 1024 * 1024;
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        assumeTrue("benchmark disabled", Boolean.getBoolean("otaupdate.benchmark"));
+        dir = Files.createTempDirectory("benchmark").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        if (dir != null) FileUtils.deleteRecursive(dir);
+    }
+
+    @Test
+    public void compareWithStreamCopy() throws Exception {
+        FileCopier copier = new FileCopier();
+        for (long size : SIZES) {
+            // 源文件和两份副本
+            if (dir.getUsableSpace() < size * 3 + WRITE_BLOCK) {
+                System.out.println(String.format(Locale.ROOT, "%s: skipped, not enough space", format(size)));
+                continue;
+            }
+            File source = new File(dir, "source-" + size + ".bin");
+            writeRandom(source, size);
+            File streamTarget = new File(dir, "stream-" + size + ".bin");
+            File copierTarget = new File(dir, "copier-" + size + ".bin");
+            int runs = (int) Math.max(1, MIN_TOTAL_BYTES / size);
+
+            // 先各跑一次预热，结果不计入
+            streamCopy(source, streamTarget);
+            copier.copy(source, copierTarget);
+            long streamNanos = 0;
+            long copierNanos = 0;
+            for (int i = 0; i < runs; i++) {
+                long start = System.nanoTime();
+                streamCopy(source, streamTarget);
+                streamNanos += System.nanoTime() - start;
+                start = System.nanoTime();
+                copier.copy(source, copierTarget);
+                copierNanos += System.nanoTime() - start;
+            }
+
+            assertEquals(size, streamTarget.length());
+            assertEquals(size, copierTarget.length());
+            System.out.println(String.format(Locale.ROOT, "%s x%d: stream %.3f ms, FileCopier %.3f ms (%.2fx)",
+                    format(size), runs, streamNanos / 1e6 / runs, copierNanos / 1e6 / runs,
+                    (double) streamNanos / copierNanos));
+            FileUtils.deleteRecursive(source);
+            FileUtils.deleteRecursive(streamTarget);
+            FileUtils.deleteRecursive(copierTarget);
+        }
+    }
+
+    /**
+     * 原先 FileUtils.copyFile 的实现：8KB 缓冲区逐块读写
+     */
+    private static void streamCopy(File source, File target) throws IOException {
+        try (InputStream in = new FileInputStream(source); OutputStream out = new FileOutputStream(target)) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+        }
+    }
+
+    private static void writeRandom(File file, long size) throws IOException {
+        byte[] block = new byte[(int) Math.min(size, WRITE_BLOCK)];
+        new Random(size).nextBytes(block);
+        try (OutputStream out = new FileOutputStream(file)) {
+            for (long written = 0; written < size; written += block.length) {
+                out.write(block, 0, (int) Math.min(block.length, size - written));
+            }
+        }
+    }
+
+    private static String format(long size) {
+        if (size >= 1024 * 1024 * 1024) return size / (1024 * 1024 * 1024) + "GB";
+        if (size >= 1024 * 1024) return size / (1024 * 1024) + "MB";
+        return size / 1024 + "KB";
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.otaupdate;
+
+import com.alibaba.sdk.android.oss.model.ListObjectsResult;
+import com.alibaba.sdk.android.oss.model.OSSObjectSummary;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 用内存中按字节序排列的 1 万个键驱动 {@link ObjectLister} 分页列举与 {@link DatedPackageMatcher} 提前结束
+ */
+public class ObjectListerTest {
+    private static final String PREFIX = "firmware/System/";
+    private static final String[] CPUS = {"MT8788", "SC9863A", "T310", "UIS8141E", "UIS8581A"};
+    private static final String[] RESOLUTIONS = {"1024x600", "1280x800", "1920x720", "2000x1200"};
+
+    private List<String> keys;
+    private int requests;
+
+    @Before
+    public void setUp() {
+        TreeSet<String> sorted = new TreeSet<>();
+        Random random = new Random(1);
+        while (sorted.size() < 10000) {
+            String date = String.format(Locale.ROOT, "20%02d%02d%02d",
+                    20 + random.nextInt(6), 1 + random.nextInt(12), 1 + random.nextInt(28));
+            sorted.add(PREFIX + CPUS[random.nextInt(CPUS.length)] + "_"
+                    + RESOLUTIONS[random.nextInt(RESOLUTIONS.length)] + "_" + date + ".zip");
+        }
+        keys = new ArrayList<>(sorted);
+    }
+
+    @Test
+    public void findsLatestAcrossPages() throws Exception {
+        String expected = latestWithPrefix(PREFIX + "T310_1280x800_");
+        DatedPackageMatcher matcher = new DatedPackageMatcher(0, "t310", "1280x800", false);
+        ObjectLister.Result result = list(matcher);
+
+        assertNotNull(matcher.getLatest());
+        assertEquals(expected, matcher.getLatest().getKey());
+        assertEquals(expected.substring(expected.length() - 12, expected.length() - 4), matcher.getLatest().getVersion());
+        assertTrue(result.pages > 1);
+        assertEquals(requests, result.pages);
+        // 要越过全小写写法的区间才能结束，键全部是大写写法时会读完全部键
+        assertEquals(keys.size(), result.objects);
+    }
+
+    @Test
+    public void stopsEarlyWithoutMissingOtherCaseVariants() throws Exception {
+        // 同一 CPU_分辨率 的小写写法按字节序排在全部大写键之后
+        String lower = PREFIX + "t310_1280x800_20991231.zip";
+        String after = PREFIX + "uis8581a_1280x800_20991231.zip";
+        keys.add(lower);
+        keys.add(after);
+        Collections.sort(keys);
+        DatedPackageMatcher matcher = new DatedPackageMatcher(0, "T310", "1280X800", false);
+        ObjectLister.Result result = list(matcher);
+
+        assertNotNull(matcher.getLatest());
+        assertEquals(lower, matcher.getLatest().getKey());
+        assertTrue(result.stoppedEarly);
+        assertEquals(keys.indexOf(after) + 1, result.objects);
+    }
+
+    @Test
+    public void stopsRightAfterLowerCaseGroup() throws Exception {
+        List<String> lowerKeys = new ArrayList<>();
+        for (String key : keys) {
+            lowerKeys.add(PREFIX + key.substring(PREFIX.length()).toLowerCase(Locale.ROOT));
+        }
+        keys = new ArrayList<>(new TreeSet<>(lowerKeys));
+        String expected = latestWithPrefix(PREFIX + "sc9863a_1920x720_");
+        DatedPackageMatcher matcher = new DatedPackageMatcher(0, "SC9863A", "1920x720", false);
+        ObjectLister.Result result = list(matcher);
+
+        assertEquals(expected, matcher.getLatest().getKey());
+        assertTrue(result.stoppedEarly);
+        // 只多读到区间之后的第一个键
+        assertEquals(keys.indexOf(expected) + 2, result.objects);
+        assertTrue(result.pages < (keys.size() + ObjectLister.DEFAULT_PAGE_SIZE - 1) / ObjectLister.DEFAULT_PAGE_SIZE);
+    }
+
+    @Test
+    public void legacyModeListsEverything() throws Exception {
+        keys.add(PREFIX + "ALLApp_20991231.zip");
+        Collections.sort(keys);
+        DatedPackageMatcher matcher = new DatedPackageMatcher(0, "UIS8141E", "2000x1200", true);
+        ObjectLister.Result result = list(matcher);
+
+        assertFalse(result.stoppedEarly);
+        assertEquals(keys.size(), result.objects);
+        // 只有日期的旧文件名同样参与比较
+        assertEquals(PREFIX + "ALLApp_20991231.zip", matcher.getLatest().getKey());
+    }
+
+    @Test
+    public void noMatch() throws Exception {
+        DatedPackageMatcher matcher = new DatedPackageMatcher(0, "RK3566", "1280x800", false);
+        ObjectLister.Result result = list(matcher);
+
+        assertNull(matcher.getLatest());
+        assertFalse(result.stoppedEarly);
+        assertEquals(keys.size(), result.objects);
+    }
+
+    private String latestWithPrefix(String prefix) {
+        String latest = null;
+        for (String key : keys) {
+            if (key.startsWith(prefix)) latest = key;
+        }
+        return latest;
+    }
+
+    private ObjectLister.Result list(DatedPackageMatcher matcher) throws Exception {
+        requests = 0;
+        ObjectLister.PageFetcher fetcher = request -> {
+            requests++;
+            assertEquals(PREFIX, request.getPrefix());
+            int start = 0;
+            if (request.getMarker() != null) {
+                start = Collections.binarySearch(keys, request.getMarker());
+                start = start >= 0 ? start + 1 : -start - 1;
+            }
+            int end = Math.min(start + request.getMaxKeys(), keys.size());
+            ListObjectsResult page = new ListObjectsResult();
+            for (int i = start; i < end; i++) {
+                OSSObjectSummary summary = new OSSObjectSummary();
+                summary.setKey(keys.get(i));
+                summary.setSize(100);
+                page.addObjectSummary(summary);
+            }
+            page.setTruncated(end < keys.size());
+            if (end < keys.size()) page.setNextMarker(keys.get(end - 1));
+            return page;
+        };
+        return new ObjectLister(fetcher, "bucket").list(PREFIX, "/", null, matcher);
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.otaupdate;
+
+import com.alibaba.sdk.android.oss.common.utils.CRC64;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link PackageVerifier} 在分段乱序写入、断点续传和流式读取下计算的摘要与整包一致
+ */
+public class PackageVerifierTest {
+    private static final int SIZE = 3_000_000;
+
+    private ExecutorService executor;
+    private File file;
+    private byte[] data;
+    private SegmentedDownloader.ObjectStat stat;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newFixedThreadPool(2);
+        file = File.createTempFile("package", ".zip");
+        data = new byte[SIZE];
+        new Random(1).nextBytes(data);
+        CRC64 crc = new CRC64();
+        crc.update(data, 0, data.length);
+        stat = new SegmentedDownloader.ObjectStat(SIZE, "\"etag\"", crc.getValue(),
+                Digests.toHex(Digests.newSha256().digest(data)));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(SIZE);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        file.delete();
+    }
+
+    @Test
+    public void interleavedSegmentsReadBackInBackground() throws Exception {
+        AtomicInteger readBacks = new AtomicInteger();
+        PackageVerifier verifier = new PackageVerifier(file, task -> {
+            readBacks.incrementAndGet();
+            executor.execute(task);
+        });
+        writeInterleaved(verifier, 4, new Random(2));
+        verifier.verify(stat);
+        assertTrue(readBacks.get() > 0);
+    }
+
+    @Test
+    public void interleavedSegmentsRepeatedly() throws Exception {
+        Random random = new Random(3);
+        for (int i = 0; i < 20; i++) {
+            PackageVerifier verifier = new PackageVerifier(file, executor);
+            writeInterleaved(verifier, 1 + random.nextInt(6), random);
+            verifier.verify(stat);
+        }
+    }
+
+    @Test
+    public void withoutExecutorDefersToVerify() throws Exception {
+        PackageVerifier verifier = new PackageVerifier(file);
+        writeInterleaved(verifier, 4, new Random(4));
+        verifier.verify(stat);
+    }
+
+    @Test
+    public void rewrittenRangeRehashesFromFile() throws Exception {
+        PackageVerifier verifier = new PackageVerifier(file, executor);
+        writeInterleaved(verifier, 4, new Random(5));
+        verifier.onRewritten(0, 1024);
+        verifier.verify(stat);
+    }
+
+    @Test
+    public void resumedDownloadReadsBackEverything() throws Exception {
+        writeInterleaved(null, 1, new Random(6));
+        new PackageVerifier(file, executor).verify(stat);
+    }
+
+    @Test
+    public void corruptDataFails() throws Exception {
+        PackageVerifier verifier = new PackageVerifier(file, executor);
+        data[SIZE / 2] ^= 1;
+        writeInterleaved(verifier, 4, new Random(7));
+        try {
+            verifier.verify(stat);
+            fail("corrupt package verified");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("mismatch"));
+        }
+    }
+
+    @Test
+    public void streamingDigest() throws Exception {
+        PackageVerifier verifier = new PackageVerifier(null);
+        InputStream in = verifier.digesting(new ByteArrayInputStream(data));
+        in.read(new byte[1000]);
+        in.skip(5000);
+        in.read();
+        byte[] buffer = new byte[7777];
+        while (in.read(buffer) != -1) {
+            // 读完剩余数据
+        }
+        verifier.verify(stat);
+    }
+
+    /**
+     * 模拟分段下载的写线程：各分段每次写入 100KB，按随机顺序交替写入文件并通知 verifier
+     */
+    private void writeInterleaved(PackageVerifier verifier, int segments, Random random) throws IOException {
+        long[] position = new long[segments];
+        long[] end = new long[segments];
+        for (int i = 0; i < segments; i++) {
+            position[i] = (long) SIZE * i / segments;
+            end[i] = (long) SIZE * (i + 1) / segments;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            while (true) {
+                List<Integer> live = new ArrayList<>();
+                for (int i = 0; i < segments; i++) {
+                    if (position[i] < end[i]) live.add(i);
+                }
+                if (live.isEmpty()) break;
+                int i = live.get(random.nextInt(live.size()));
+                int n = (int) Math.min(100_000, end[i] - position[i]);
+                ByteBuffer buffer = ByteBuffer.wrap(data, (int) position[i], n).slice();
+                channel.write(buffer.duplicate(), position[i]);
+                if (verifier != null) verifier.onWritten(position[i], buffer);
+                position[i] += n;
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.otaupdate;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * {@link ProcFsReader} 的解析结果，以及直接读取与 fork cat 读取同一文件的结果一致
+ */
+public class ProcFsReaderTest {
+    private static final String[] SOC_TOKENS = {"8581", "t618", "8141", "unisoc", "t310", "sp9863a"};
+
+    private File cpuInfo;
+
+    @Before
+    public void setUp() throws IOException {
+        cpuInfo = File.createTempFile("cpuinfo", null);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            content.append("processor\t: ").append(i).append("\nBogoMIPS\t: 52.00\n");
+        }
+        content.append("Processor\t:\nHardware\t: Unisoc UIS8141E\n");
+        Files.write(cpuInfo.toPath(), content.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @After
+    public void tearDown() {
+        cpuInfo.delete();
+    }
+
+    @Test
+    public void findFieldSkipsEmptyValues() {
+        assertEquals("Unisoc UIS8141E", ProcFsReader.findField(cpuInfo.getPath(), "Hardware", "model name", "Processor"));
+    }
+
+    @Test
+    public void findTokensIgnoresCase() {
+        int mask = ProcFsReader.findTokens(cpuInfo.getPath(), SOC_TOKENS);
+        assertEquals(0b001100, mask);
+        assertEquals(0b000011, ProcFsReader.findTokensIn("Spreadtrum T618 (UIS8581A)", SOC_TOKENS));
+    }
+
+    @Test
+    public void unreadableFile() {
+        assertEquals(ProcFsReader.NOT_READABLE, ProcFsReader.findTokens("/nonexistent/cpuinfo", "8581"));
+        assertNull(ProcFsReader.readFirstLine("/nonexistent/cmdline"));
+        assertNull(ProcFsReader.findField("/nonexistent/cpuinfo", "Hardware"));
+    }
+
+    /**
+     * 原先每个文件都 fork 一个 cat 进程读取，直接读取的结果应与之相同
+     */
+    @Test
+    public void directReadMatchesForkedCat() throws Exception {
+        if (!new File("/bin/cat").canExecute()) return;
+        String path = cpuInfo.getPath();
+        assertEquals(ProcFsReader.findField(path, "Hardware"), fieldFromCat(path, "Hardware"));
+        assertEquals("Unisoc UIS8141E", fieldFromCat(path, "Hardware"));
+    }
+
+    private static String fieldFromCat(String path, String name) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder("cat", path).redirectErrorStream(true).start();
+        String content;
+        try (InputStream in = process.getInputStream()) {
+            content = new String(in.readAllBytes(), StandardCharsets.US_ASCII);
+        }
+        process.waitFor();
+        for (String line : content.split("\n")) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).contains(name)) {
+                String value = line.substring(colon + 1).trim();
+                if (!value.isEmpty()) return value;
+            }
+        }
+        return null;
+    }
+}
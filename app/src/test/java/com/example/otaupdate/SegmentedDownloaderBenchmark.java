@@ -0,0 +1,171 @@
+package com.example.otaupdate;
+
+import androidx.annotation.NonNull;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * {@link SegmentedDownloader} 1/4/8 分段的吞吐对比
+ * 本地 HTTP 服务按 Range 请求返回数据，每个连接限速，模拟车机 LTE 下单个 TCP 连接的带宽上限。
+ * 默认跳过，通过 ./gradlew testDebugUnitTest -Potaupdate.benchmark=true 运行
+ */
+public class SegmentedDownloaderBenchmark {
+    private static final int SIZE = 48 * 1024 * 1024;
+    private static final long BYTES_PER_SECOND_PER_CONNECTION = 8L * 1024 * 1024;
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private File dir;
+    private byte[] data;
+
+    @Before
+    public void setUp() throws IOException {
+        assumeTrue("benchmark disabled", Boolean.getBoolean("otaupdate.benchmark"));
+        data = new byte[SIZE];
+        new Random(1).nextBytes(data);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/package.zip", exchange -> {
+            long begin = 0;
+            long end = SIZE - 1;
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            Matcher matcher = range != null ? RANGE.matcher(range) : null;
+            if (matcher != null && matcher.matches()) {
+                begin = Long.parseLong(matcher.group(1));
+                end = Math.min(Long.parseLong(matcher.group(2)), SIZE - 1);
+            }
+            exchange.sendResponseHeaders(range != null ? 206 : 200, end - begin + 1);
+            try (OutputStream out = exchange.getResponseBody()) {
+                writeThrottled(out, (int) begin, (int) (end - begin + 1));
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        executor = Executors.newCachedThreadPool();
+        dir = Files.createTempDirectory("benchmark").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        if (server != null) server.stop(0);
+        if (executor != null) executor.shutdownNow();
+        if (dir != null) FileUtils.deleteRecursive(dir);
+    }
+
+    @Test
+    public void compareSegmentCounts() throws Exception {
+        for (int segments : new int[]{1, 4, 8}) {
+            File destination = new File(dir, "package-" + segments + ".zip");
+            long start = System.nanoTime();
+            Exception error = download(segments, destination);
+            long nanos = System.nanoTime() - start;
+
+            assertNull(error);
+            assertArrayEquals(data, Files.readAllBytes(destination.toPath()));
+            System.out.println(String.format(Locale.ROOT, "%d segments: %d ms, %.1f MB/s", segments,
+                    nanos / 1_000_000, SIZE / 1024.0 / 1024.0 * 1e9 / nanos));
+        }
+    }
+
+    private Exception download(int segments, File destination) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        Exception[] error = new Exception[1];
+        new SegmentedDownloader(executor, segments).start(new HttpSource(), destination,
+                new SegmentedDownloader.Listener() {
+                    @Override
+                    public void onProgress(long currentSize, long totalSize) {
+                    }
+
+                    @Override
+                    public void onComplete(@NonNull File file) {
+                        done.countDown();
+                    }
+
+                    @Override
+                    public void onFailure(@NonNull Exception e) {
+                        error[0] = e;
+                        done.countDown();
+                    }
+                });
+        assertTrue("download timed out", done.await(120, TimeUnit.SECONDS));
+        return error[0];
+    }
+
+    /**
+     * 按每个连接的带宽上限分片写出，每 64KB 按应达到的时间等待
+     */
+    private void writeThrottled(OutputStream out, int offset, int length) throws IOException {
+        long start = System.nanoTime();
+        int sent = 0;
+        while (sent < length) {
+            int n = Math.min(64 * 1024, length - sent);
+            out.write(data, offset + sent, n);
+            sent += n;
+            long due = start + sent * 1_000_000_000L / BYTES_PER_SECOND_PER_CONNECTION;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted");
+                }
+            }
+        }
+    }
+
+    private final class HttpSource implements SegmentedDownloader.RangeSource {
+        @NonNull
+        @Override
+        public String getKey() {
+            return "firmware/System/package.zip";
+        }
+
+        @NonNull
+        @Override
+        public SegmentedDownloader.ObjectStat stat() {
+            return new SegmentedDownloader.ObjectStat(SIZE, "\"" + Arrays.hashCode(data) + "\"");
+        }
+
+        @NonNull
+        @Override
+        public InputStream openRange(long begin, long end) throws IOException {
+            URL url = new URL("http", InetAddress.getLoopbackAddress().getHostAddress(),
+                    server.getAddress().getPort(), "/package.zip");
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestProperty("Range", "bytes=" + begin + "-" + end);
+            if (connection.getResponseCode() != 206) {
+                throw new IOException("Unexpected response " + connection.getResponseCode());
+            }
+            return connection.getInputStream();
+        }
+    }
+}
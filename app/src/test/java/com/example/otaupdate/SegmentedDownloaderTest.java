@@ -0,0 +1,258 @@
+package com.example.otaupdate;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 用内存数据源驱动 {@link SegmentedDownloader} 的分段下载、分段重试、断点续传与 {@link DownloadJournal} 读写
+ */
+public class SegmentedDownloaderTest {
+    private static final int SIZE = 20 * 1024 * 1024 + 123;
+    private static final String KEY = "firmware/System/test.zip";
+    private static final String ETAG = "\"etag-1\"";
+
+    private ExecutorService executor;
+    private File dir;
+    private File destination;
+    private byte[] data;
+
+    @Before
+    public void setUp() throws IOException {
+        executor = Executors.newCachedThreadPool();
+        dir = Files.createTempDirectory("segmented").toFile();
+        destination = new File(dir, "package.zip");
+        data = new byte[SIZE];
+        new Random(1).nextBytes(data);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        FileUtils.deleteRecursive(dir);
+    }
+
+    @Test
+    public void downloadsAllSegments() throws Exception {
+        MemorySource source = new MemorySource(data, ETAG);
+        Result result = download(source);
+
+        assertNull(result.error);
+        assertArrayEquals(data, Files.readAllBytes(destination.toPath()));
+        assertEquals(SIZE, source.served.get());
+        assertEquals(SegmentedDownloader.DEFAULT_SEGMENT_COUNT, source.opened.get());
+        assertFalse(DownloadJournal.journalFileFor(destination).exists());
+        assertEquals(SIZE, result.lastProgress);
+    }
+
+    @Test
+    public void retriesInterruptedSegmentFromCurrentOffset() throws Exception {
+        MemorySource source = new MemorySource(data, ETAG);
+        // 前两次打开的连接读到 1MB 后断开
+        source.failuresLeft.set(2);
+        source.failAfter = 1024 * 1024;
+        Result result = download(source);
+
+        assertNull(result.error);
+        assertArrayEquals(data, Files.readAllBytes(destination.toPath()));
+        assertEquals(SegmentedDownloader.DEFAULT_SEGMENT_COUNT + 2, source.opened.get());
+        // 重试从断开的偏移继续，不重复拉取已读到的数据
+        assertEquals(SIZE, source.served.get());
+    }
+
+    @Test
+    public void retryCountResetsOnceDataIsDurable() throws Exception {
+        MemorySource source = new MemorySource(data, ETAG);
+        // 单个分段每个连接读到 5MB 后断开，断开次数超过重试上限，但每次断开之前都有新的检查点落盘
+        source.failuresLeft.set(4);
+        source.failAfter = 5 * 1024 * 1024;
+        Result result = download(source, 1);
+
+        assertNull(result.error);
+        assertArrayEquals(data, Files.readAllBytes(destination.toPath()));
+        assertEquals(5, source.opened.get());
+        assertEquals(SIZE, source.served.get());
+    }
+
+    @Test
+    public void failsAfterRetriesAndResumesFromJournal() throws Exception {
+        MemorySource failing = new MemorySource(data, ETAG);
+        failing.downAfter = 12L * 1024 * 1024;
+        Result failed = download(failing);
+
+        assertNotNull(failed.error);
+        DownloadJournal journal = DownloadJournal.load(destination);
+        assertNotNull(journal);
+        assertTrue(journal.matches(KEY, ETAG, SIZE));
+        long completed = journal.getCompletedBytes();
+        assertTrue(completed > 0 && completed <= failing.served.get());
+
+        MemorySource healthy = new MemorySource(data, ETAG);
+        Result resumed = download(healthy);
+
+        assertNull(resumed.error);
+        assertArrayEquals(data, Files.readAllBytes(destination.toPath()));
+        assertEquals(SIZE - completed, healthy.served.get());
+        assertFalse(DownloadJournal.journalFileFor(destination).exists());
+    }
+
+    @Test
+    public void restartsWhenETagChanges() throws Exception {
+        MemorySource failing = new MemorySource(data, ETAG);
+        failing.downAfter = 8L * 1024 * 1024;
+        assertNotNull(download(failing).error);
+        assertNotNull(DownloadJournal.load(destination));
+
+        byte[] replaced = data.clone();
+        replaced[0] ^= 1;
+        MemorySource changed = new MemorySource(replaced, "\"etag-2\"");
+        assertNull(download(changed).error);
+
+        assertEquals(SIZE, changed.served.get());
+        assertArrayEquals(replaced, Files.readAllBytes(destination.toPath()));
+    }
+
+    @Test
+    public void journalRoundTrip() throws IOException {
+        List<DownloadJournal.Range> ranges = new ArrayList<>();
+        ranges.add(new DownloadJournal.Range(0, 99, 50));
+        ranges.add(new DownloadJournal.Range(100, 199, 200));
+        Files.write(destination.toPath(), new byte[200]);
+        new DownloadJournal(KEY, ETAG, 200, ranges).save(destination);
+
+        DownloadJournal loaded = DownloadJournal.load(destination);
+        assertNotNull(loaded);
+        assertEquals(KEY, loaded.getObjectKey());
+        assertEquals(ETAG, loaded.getETag());
+        assertEquals(200, loaded.getTotalSize());
+        assertEquals(2, loaded.getRanges().size());
+        assertEquals(50, loaded.getRanges().get(0).position);
+        assertEquals(150, loaded.getCompletedBytes());
+        assertTrue(loaded.matches(KEY, ETAG, 200));
+        assertFalse(loaded.matches(KEY, "\"other\"", 200));
+        assertFalse(loaded.matches(KEY, ETAG, 201));
+
+        // 数据文件大小与日志不一致时日志作废
+        Files.write(destination.toPath(), new byte[100]);
+        assertNull(DownloadJournal.load(destination));
+
+        DownloadJournal.delete(destination);
+        assertFalse(DownloadJournal.journalFileFor(destination).exists());
+    }
+
+    private Result download(SegmentedDownloader.RangeSource source) throws InterruptedException {
+        return download(source, SegmentedDownloader.DEFAULT_SEGMENT_COUNT);
+    }
+
+    private Result download(SegmentedDownloader.RangeSource source, int segmentCount) throws InterruptedException {
+        Result result = new Result();
+        new SegmentedDownloader(executor, segmentCount).start(source, destination, result);
+        assertTrue("download timed out", result.done.await(60, TimeUnit.SECONDS));
+        return result;
+    }
+
+    private static final class Result implements SegmentedDownloader.Listener {
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile Exception error;
+        volatile long lastProgress;
+
+        @Override
+        public void onProgress(long currentSize, long totalSize) {
+            lastProgress = currentSize;
+        }
+
+        @Override
+        public void onComplete(@NonNull File file) {
+            done.countDown();
+        }
+
+        @Override
+        public void onFailure(@NonNull Exception e) {
+            error = e;
+            done.countDown();
+        }
+    }
+
+    /**
+     * 内存中的对象，可以让前几次打开的连接读到 failAfter 字节后断开，或在累计发出 downAfter 字节后一直失败
+     */
+    private static final class MemorySource implements SegmentedDownloader.RangeSource {
+        final byte[] data;
+        final String etag;
+        final AtomicLong served = new AtomicLong();
+        final AtomicInteger opened = new AtomicInteger();
+        final AtomicInteger failuresLeft = new AtomicInteger();
+        volatile long failAfter = Long.MAX_VALUE;
+        volatile long downAfter = Long.MAX_VALUE;
+
+        MemorySource(byte[] data, String etag) {
+            this.data = data;
+            this.etag = etag;
+        }
+
+        @NonNull
+        @Override
+        public String getKey() {
+            return KEY;
+        }
+
+        @NonNull
+        @Override
+        public SegmentedDownloader.ObjectStat stat() {
+            return new SegmentedDownloader.ObjectStat(data.length, etag);
+        }
+
+        @NonNull
+        @Override
+        public InputStream openRange(long begin, long end) throws IOException {
+            if (served.get() >= downAfter) throw new IOException("Network down");
+            opened.incrementAndGet();
+            final long limit = failuresLeft.getAndDecrement() > 0 ? failAfter : Long.MAX_VALUE;
+            return new InputStream() {
+                long position = begin;
+                long read;
+
+                @Override
+                public int read() throws IOException {
+                    byte[] one = new byte[1];
+                    return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+                }
+
+                @Override
+                public int read(@NonNull byte[] b, int off, int len) throws IOException {
+                    if (position > end) return -1;
+                    if (read >= limit || served.get() >= downAfter) throw new IOException("Connection reset");
+                    int n = (int) Math.min(Math.min(len, end - position + 1), Math.min(limit - read, 64 * 1024));
+                    System.arraycopy(data, (int) position, b, off, n);
+                    position += n;
+                    read += n;
+                    served.addAndGet(n);
+                    return n;
+                }
+            };
+        }
+    }
+}
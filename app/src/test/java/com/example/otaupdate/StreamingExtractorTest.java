@@ -0,0 +1,229 @@
+package com.example.otaupdate;
+
+import androidx.annotation.NonNull;
+
+import com.alibaba.sdk.android.oss.common.utils.CRC64;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 用内存中的 zip 驱动 {@link StreamingExtractor}：条目边界重试、按断点续读与整包校验
+ */
+public class StreamingExtractorTest {
+    private static final String KEY = "firmware/System/test.zip";
+    private static final String ETAG = "\"etag-1\"";
+    private static final int FILES = 12;
+    private static final int FILE_SIZE = 1024 * 1024;
+
+    private ExecutorService executor;
+    private File dir;
+    private File destDir;
+    private byte[][] contents;
+    private byte[] zip;
+
+    @Before
+    public void setUp() throws IOException {
+        executor = Executors.newCachedThreadPool();
+        dir = Files.createTempDirectory("streaming").toFile();
+        destDir = new File(dir, "test");
+        Random random = new Random(1);
+        contents = new byte[FILES][];
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            out.putNextEntry(new ZipEntry("oem/"));
+            out.closeEntry();
+            for (int i = 0; i < FILES; i++) {
+                // 随机数据基本不可压缩，压缩后的包与解压后大小相当
+                contents[i] = new byte[FILE_SIZE + i];
+                random.nextBytes(contents[i]);
+                out.putNextEntry(new ZipEntry("oem/file" + i + ".bin"));
+                out.write(contents[i]);
+                out.closeEntry();
+            }
+        }
+        zip = bytes.toByteArray();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        FileUtils.deleteRecursive(dir);
+    }
+
+    @Test
+    public void extractsAndVerifiesPackage() throws Exception {
+        MemorySource source = new MemorySource(crc64(zip));
+        Result result = extract(source);
+
+        assertNull(result.error);
+        assertExtracted();
+        assertFalse(StreamingExtractor.checkpointFileFor(destDir).exists());
+        assertEquals(zip.length, result.lastProgress);
+    }
+
+    @Test
+    public void retriesFromLastEntryBoundary() throws Exception {
+        MemorySource source = new MemorySource(crc64(zip));
+        // 前两次打开的数据连接读到 2.5MB 后断开
+        source.failuresLeft.set(2);
+        source.failAfter = 5 * FILE_SIZE / 2;
+        Result result = extract(source);
+
+        assertNull(result.error);
+        assertExtracted();
+        // 每次断开最多重读一个条目
+        assertTrue(source.served.get() < zip.length + 2L * (FILE_SIZE + FILES) + 64 * 1024);
+    }
+
+    @Test
+    public void resumesFromCheckpointWithoutRereadingExtractedEntries() throws Exception {
+        MemorySource failing = new MemorySource(crc64(zip));
+        failing.downAfter = 10L * FILE_SIZE;
+        Result failed = extract(failing);
+
+        assertNotNull(failed.error);
+        assertTrue(StreamingExtractor.checkpointFileFor(destDir).exists());
+
+        MemorySource healthy = new MemorySource(crc64(zip));
+        Result resumed = extract(healthy);
+
+        assertNull(resumed.error);
+        assertExtracted();
+        // 至少有一个断点步长（8MB）的条目不再读取
+        assertTrue(healthy.served.get() < zip.length - 8L * FILE_SIZE + 128 * 1024);
+        assertFalse(StreamingExtractor.checkpointFileFor(destDir).exists());
+    }
+
+    @Test
+    public void corruptPackageIsDiscarded() throws Exception {
+        MemorySource source = new MemorySource(crc64(zip) ^ 1);
+        Result result = extract(source);
+
+        assertNotNull(result.error);
+        assertFalse(destDir.exists());
+        assertFalse(StreamingExtractor.checkpointFileFor(destDir).exists());
+    }
+
+    private void assertExtracted() throws IOException {
+        for (int i = 0; i < FILES; i++) {
+            assertArrayEquals(contents[i], Files.readAllBytes(new File(destDir, "oem/file" + i + ".bin").toPath()));
+        }
+    }
+
+    private Result extract(MemorySource source) throws InterruptedException {
+        Result result = new Result();
+        new StreamingExtractor(executor).start(source, destDir, false, result, null, new PackageVerifier(null));
+        assertTrue("extraction timed out", result.done.await(60, TimeUnit.SECONDS));
+        return result;
+    }
+
+    private static long crc64(byte[] data) {
+        CRC64 crc = new CRC64();
+        crc.update(data, 0, data.length);
+        return crc.getValue();
+    }
+
+    private static final class Result implements SegmentedDownloader.Listener {
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile Exception error;
+        volatile long lastProgress;
+
+        @Override
+        public void onProgress(long currentSize, long totalSize) {
+            lastProgress = currentSize;
+        }
+
+        @Override
+        public void onComplete(@NonNull File file) {
+            done.countDown();
+        }
+
+        @Override
+        public void onFailure(@NonNull Exception e) {
+            error = e;
+            done.countDown();
+        }
+    }
+
+    /**
+     * 内存中的包，可以让前几次打开的连接读到 failAfter 字节后断开，或在累计发出 downAfter 字节后一直失败
+     */
+    private final class MemorySource implements SegmentedDownloader.RangeSource {
+        final long crc64;
+        final AtomicLong served = new AtomicLong();
+        final AtomicInteger failuresLeft = new AtomicInteger();
+        volatile long failAfter = Long.MAX_VALUE;
+        volatile long downAfter = Long.MAX_VALUE;
+
+        MemorySource(long crc64) {
+            this.crc64 = crc64;
+        }
+
+        @NonNull
+        @Override
+        public String getKey() {
+            return KEY;
+        }
+
+        @NonNull
+        @Override
+        public SegmentedDownloader.ObjectStat stat() {
+            return new SegmentedDownloader.ObjectStat(zip.length, ETAG, crc64, null);
+        }
+
+        @NonNull
+        @Override
+        public InputStream openRange(long begin, long end) throws IOException {
+            if (served.get() >= downAfter) throw new IOException("Network down");
+            // 读取中央目录的短请求不计入断开
+            final long limit = end - begin > 1024 * 1024 && failuresLeft.getAndDecrement() > 0
+                    ? failAfter : Long.MAX_VALUE;
+            return new InputStream() {
+                long position = begin;
+                long read;
+
+                @Override
+                public int read() throws IOException {
+                    byte[] one = new byte[1];
+                    return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+                }
+
+                @Override
+                public int read(@NonNull byte[] b, int off, int len) throws IOException {
+                    if (position > end) return -1;
+                    if (read >= limit || served.get() >= downAfter) throw new IOException("Connection reset");
+                    int n = (int) Math.min(Math.min(len, end - position + 1), Math.min(limit - read, 64 * 1024));
+                    System.arraycopy(zip, (int) position, b, off, n);
+                    position += n;
+                    read += n;
+                    served.addAndGet(n);
+                    return n;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.otaupdate;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link UpdateCatalogStore}：检查更新命中缓存、没有请求目录时，下载仍能从本地副本取得 SHA-256 与增量补丁
+ */
+public class UpdateCatalogStoreTest {
+    private static final String KEY = "firmware/System/UIS8581A_1280x800_20250306.zip";
+    private static final String SHA256 = "5f70bf18a086007016e948b04aed3b82103a36bea41755b6cddfaf10ace3c6ef";
+    private static final String JSON = "{\"schema\":1,\"revision\":42,\"system\":{\"UIS8581A_1280x800\":"
+            + "{\"version\":\"20250306\",\"key\":\"" + KEY + "\",\"sha256\":\"" + SHA256 + "\",\"size\":1000,"
+            + "\"patches\":[{\"from\":\"20250206\",\"to\":\"20250306\","
+            + "\"key\":\"firmware/System/patches/UIS8581A_1280x800_20250206_20250306.zip\",\"size\":100}]}}}";
+    private static final long INTERVAL = 60 * 1000;
+
+    private File dir;
+    private File catalogFile;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("catalog").toFile();
+        catalogFile = new File(dir, "update_catalog.json");
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteRecursive(dir);
+    }
+
+    @Test
+    public void cachedCheckAfterRestartStillFindsPackageDigest() throws Exception {
+        // 第一次启动：检查更新请求目录并缓存结果
+        UpdateCatalogStore store = new UpdateCatalogStore(catalogFile, INTERVAL);
+        UpdateCatalog fetched = store.revalidate(etag -> UpdateCatalog.parse(JSON, "\"etag-1\""), 1000);
+        assertNotNull(fetched);
+        UpdateCheckCache checkCache = new UpdateCheckCache(new File(dir, "update_check_cache.json"));
+        checkCache.put("firmware/System/", "UIS8581A", "1280x800", fetched.findSystem("UIS8581A", "1280x800"),
+                fetched.getETag());
+
+        // 进程重启：检查结果仍然新鲜，不再请求目录，直接开始下载
+        UpdateCheckCache restartedCache = new UpdateCheckCache(new File(dir, "update_check_cache.json"));
+        UpdateCheckCache.Entry cached = restartedCache.get("firmware/System/", "UIS8581A", "1280x800");
+        assertNotNull(cached);
+        assertTrue(cached.isFresh(System.currentTimeMillis()));
+        assertNotNull(cached.info);
+
+        UpdateCatalogStore restarted = new UpdateCatalogStore(catalogFile, INTERVAL);
+        UpdateCatalog current = restarted.current();
+        assertNotNull(current);
+        assertEquals(SHA256, current.findSha256(cached.info.getObjectKey()));
+        assertEquals(1, current.findPatches(cached.info.getObjectKey()).size());
+        assertEquals(1000, current.findSize(cached.info.getObjectKey()));
+    }
+
+    @Test
+    public void revalidatesOnlyAfterInterval() {
+        AtomicInteger requests = new AtomicInteger();
+        UpdateCatalogStore store = new UpdateCatalogStore(catalogFile, INTERVAL);
+        UpdateCatalogStore.Fetcher fetcher = etag -> {
+            requests.incrementAndGet();
+            // 第一次无条件请求，之后带着本地副本的 ETag 请求，未变化
+            return etag == null ? UpdateCatalog.parse(JSON, "\"etag-1\"") : null;
+        };
+        UpdateCatalog first = store.revalidate(fetcher, 1000);
+        assertSame(first, store.revalidate(fetcher, 1000 + INTERVAL - 1));
+        assertEquals(1, requests.get());
+        assertSame(first, store.revalidate(fetcher, 1000 + INTERVAL));
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void unpublishedCatalogDropsLocalCopy() throws Exception {
+        UpdateCatalog.parse(JSON, "\"etag-1\"").save(catalogFile);
+        UpdateCatalogStore store = new UpdateCatalogStore(catalogFile, INTERVAL);
+        assertNotNull(store.current());
+
+        assertNull(store.revalidate(etag -> {
+            throw new FileNotFoundException(UpdateCatalog.OBJECT_KEY);
+        }, 1000));
+        assertNull(store.current());
+        assertFalse(catalogFile.exists());
+    }
+
+    @Test
+    public void networkFailureKeepsLocalCopy() throws Exception {
+        UpdateCatalog.parse(JSON, "\"etag-1\"").save(catalogFile);
+        UpdateCatalogStore store = new UpdateCatalogStore(catalogFile, INTERVAL);
+
+        UpdateCatalog catalog = store.revalidate(etag -> {
+            throw new IOException("Network down");
+        }, 1000);
+        assertNotNull(catalog);
+        assertEquals(SHA256, catalog.findSha256(KEY));
+    }
+}